@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Colours iteration values with anti-aliasing, supersampling only the pixels that lie on an edge.
+ *
+ * <p>A pixel is treated as an edge if the colour of any of its four neighbours differs noticeably;
+ * everywhere else, the colour changes too little across a pixel for extra samples to make a visible
+ * difference. Each edge pixel is sampled on an n by n grid
+ * (the first sample of which is the pixel's existing value), each sample is coloured, and the
+ * colours are averaged in linear light before being converted back to sRGB, so that edges are not
+ * darkened as they would be by averaging gamma encoded values. Only a small fraction of pixels are
+ * usually edges, so this costs much less than supersampling every pixel.
+ */
+public class AdaptiveSupersampler {
+
+  /**
+   * The smallest difference in any colour component (out of 255) between neighbouring pixels for
+   * them to be treated as an edge.
+   */
+  private static final int EDGE_THRESHOLD = 4;
+
+  /**
+   * Position i is sRGB component value i converted to linear light.
+   */
+  private static final double[] SRGB_TO_LINEAR = new double[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+
+      final double c = i / 255.0;
+
+      SRGB_TO_LINEAR[i] = c <= 0.04045 ? c / 12.92 : Math.pow((c + 0.055) / 1.055, 2.4);
+    }
+  }
+
+  /**
+   * The generator used to calculate the extra samples.
+   */
+  private final MandelbrotSetIterationCountGenerator generator;
+
+  /**
+   * The resolution of the x-axis of the image.
+   */
+  private final int xresolution;
+
+  /**
+   * The resolution of the y-axis of the image.
+   */
+  private final int yresolution;
+
+  /**
+   * The number of samples along each axis of an edge pixel.
+   */
+  private final int samplesPerAxis;
+
+  /**
+   * The number of threads to calculate the extra samples on.
+   */
+  private final int numberOfThreads;
+
+  /**
+   * The number of pixels that have been supersampled.
+   */
+  private final LongAdder supersampledPixels = new LongAdder();
+
+  /**
+   * Construct a supersampler.
+   *
+   * @param generator The generator used to calculate the extra samples. It must use the same bound
+   *        as the iteration values being coloured.
+   * @param xresolution The resolution of the x-axis of the image.
+   * @param yresolution The resolution of the y-axis of the image.
+   * @param samplesPerAxis The number of samples along each axis of an edge pixel, for example 4 to
+   *        take 16 samples.
+   * @param numberOfThreads The number of threads to calculate the extra samples on.
+   */
+  public AdaptiveSupersampler(final MandelbrotSetIterationCountGenerator generator,
+      final int xresolution, final int yresolution, final int samplesPerAxis,
+      final int numberOfThreads) {
+
+    if (samplesPerAxis < 1) {
+      throw new IllegalArgumentException("Samples per axis must be greater than zero.");
+    }
+
+    if (numberOfThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be greater than zero.");
+    }
+
+    this.generator = generator;
+    this.xresolution = xresolution;
+    this.yresolution = yresolution;
+    this.samplesPerAxis = samplesPerAxis;
+    this.numberOfThreads = numberOfThreads;
+  }
+
+  /**
+   * Get the number of pixels that have been supersampled.
+   *
+   * @return The number of supersampled pixels.
+   */
+  public long getSupersampledPixels() {
+    return supersampledPixels.sum();
+  }
+
+  /**
+   * Colours a sample at a position in the image.
+   */
+  private interface Sampler {
+
+    /**
+     * Calculate the colour of a sample.
+     *
+     * @param x The column of the sample, which may be fractional.
+     * @param y The row of the sample, which may be fractional.
+     *
+     * @return The ARGB colour of the sample.
+     */
+    int getColour(double x, double y);
+  }
+
+  /**
+   * Colour a horizontal strip of the image, supersampling the edge pixels. The rows either side of
+   * the strip are calculated if needed, so that edges along the boundary between strips are found.
+   *
+   * @param iterationValues The iteration values of the strip, accessed as array[x][y - yOffset].
+   * @param yOffset The row of the image corresponding to the first row of the strip.
+   * @param colorMapper The colour mapper, whose histogram should already contain the whole image.
+   *
+   * @return The ARGB colours of the strip, accessed as array[x][y - yOffset].
+   */
+  public int[][] colour(final int[][] iterationValues, final int yOffset,
+      final HistogramColorMapper colorMapper) {
+
+    // The colour mapper builds its lookup table on first use, so do that before the workers start
+    // to ensure they all see the finished table.
+    colorMapper.getColor(0);
+
+    return colour(iterationValues.length == 0 ? 0 : iterationValues[0].length, yOffset,
+        (x, y) -> colorMapper.getColor(iterationValues[x][y]),
+        (x, y) -> colorMapper.getColor(generator.calculatePixel(x, y, xresolution, yresolution)));
+  }
+
+  /**
+   * Colour a horizontal strip of the image from continuous iteration counts, supersampling the
+   * edge pixels. Smooth colouring removes the bands between iteration counts, so edges are only
+   * found where the colour changes sharply, such as at the boundary of the set.
+   *
+   * @param smoothIterationValues The continuous iteration counts of the strip, accessed as
+   *        array[x][y - yOffset].
+   * @param yOffset The row of the image corresponding to the first row of the strip.
+   * @param colorMapper The colour mapper, whose histogram should already contain the whole image.
+   *
+   * @return The ARGB colours of the strip, accessed as array[x][y - yOffset].
+   */
+  public int[][] colour(final float[][] smoothIterationValues, final int yOffset,
+      final HistogramColorMapper colorMapper) {
+
+    colorMapper.getSmoothColor(0);
+
+    return colour(smoothIterationValues.length == 0 ? 0 : smoothIterationValues[0].length,
+        yOffset, (x, y) -> colorMapper.getSmoothColor(smoothIterationValues[x][y]),
+        (x, y) -> colorMapper
+            .getSmoothColor(generator.calculateSmoothPixel(x, y, xresolution, yresolution)));
+  }
+
+  /**
+   * Colour a horizontal strip of the image, supersampling the edge pixels.
+   *
+   * @param rows The number of rows in the strip.
+   * @param yOffset The row of the image corresponding to the first row of the strip.
+   * @param existing Gives the colour of a pixel of the strip from its existing value, taking the
+   *        column and the row within the strip.
+   * @param sampler Calculates the colour of any sample in the image.
+   *
+   * @return The ARGB colours of the strip, accessed as array[x][y - yOffset].
+   */
+  private int[][] colour(final int rows, final int yOffset, final IntBinaryOperator existing,
+      final Sampler sampler) {
+
+    final int[][] colours = new int[xresolution][rows];
+
+    for (int x = 0; x < xresolution; x++) {
+      for (int y = 0; y < rows; y++) {
+        colours[x][y] = existing.applyAsInt(x, y);
+      }
+    }
+
+    final int[] below = yOffset > 0 ? calculateRow(sampler, yOffset - 1) : null;
+    final int[] above = yOffset + rows < yresolution ? calculateRow(sampler, yOffset + rows) : null;
+
+    // Edges are found from the colours before any are replaced, so that the result does not
+    // depend on the order the pixels are processed in.
+    final boolean[][] edges = new boolean[xresolution][rows];
+
+    for (int x = 0; x < xresolution; x++) {
+      for (int y = 0; y < rows; y++) {
+        edges[x][y] = isEdge(colours, below, above, x, y);
+      }
+    }
+
+    final Thread[] workers = new Thread[numberOfThreads];
+
+    for (int i = 0; i < numberOfThreads; i++) {
+
+      final int xStart = (int) ((long) xresolution * i / numberOfThreads);
+      final int xEnd = (int) ((long) xresolution * (i + 1) / numberOfThreads);
+
+      workers[i] = new Thread(() -> {
+
+        long supersampled = 0;
+
+        for (int x = xStart; x < xEnd; x++) {
+          for (int y = 0; y < rows; y++) {
+
+            if (edges[x][y]) {
+              colours[x][y] = supersample(sampler, x, y + yOffset, colours[x][y]);
+              supersampled++;
+            }
+          }
+        }
+
+        supersampledPixels.add(supersampled);
+      });
+
+      workers[i].start();
+    }
+
+    try {
+      for (Thread worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+
+    return colours;
+  }
+
+  /**
+   * Calculate the colours of a single row of the image.
+   *
+   * @param sampler Calculates the colour of a sample.
+   * @param y The row.
+   * @return The ARGB colours of the row, indexed by x.
+   */
+  private int[] calculateRow(final Sampler sampler, final int y) {
+
+    final int[] row = new int[xresolution];
+
+    for (int x = 0; x < xresolution; x++) {
+      row[x] = sampler.getColour(x, y);
+    }
+
+    return row;
+  }
+
+  /**
+   * Check if a pixel lies on an edge, that is, the colour of any of its neighbours is noticeably
+   * different.
+   *
+   * @param colours The colours of the strip.
+   * @param below The colours of the row below the strip, or null if the strip is at the bottom of
+   *        the image.
+   * @param above The colours of the row above the strip, or null if the strip is at the top of the
+   *        image.
+   * @param x The column of the pixel.
+   * @param y The row of the pixel within the strip.
+   *
+   * @return Whether the pixel lies on an edge.
+   */
+  private boolean isEdge(final int[][] colours, final int[] below, final int[] above, final int x,
+      final int y) {
+
+    final int colour = colours[x][y];
+    final int rows = colours[0].length;
+
+    final int left = x > 0 ? colours[x - 1][y] : colour;
+    final int right = x < xresolution - 1 ? colours[x + 1][y] : colour;
+    final int down = y > 0 ? colours[x][y - 1] : below == null ? colour : below[x];
+    final int up = y < rows - 1 ? colours[x][y + 1] : above == null ? colour : above[x];
+
+    return isDifferent(colour, left) || isDifferent(colour, right) || isDifferent(colour, down)
+        || isDifferent(colour, up);
+  }
+
+  /**
+   * Check if two colours differ by at least the edge threshold in any component.
+   *
+   * @param a The first ARGB colour.
+   * @param b The second ARGB colour.
+   *
+   * @return Whether the colours are noticeably different.
+   */
+  private static boolean isDifferent(final int a, final int b) {
+    return Math.abs(((a >> 16) & 0xFF) - ((b >> 16) & 0xFF)) >= EDGE_THRESHOLD
+        || Math.abs(((a >> 8) & 0xFF) - ((b >> 8) & 0xFF)) >= EDGE_THRESHOLD
+        || Math.abs((a & 0xFF) - (b & 0xFF)) >= EDGE_THRESHOLD;
+  }
+
+  /**
+   * Sample a pixel on a grid and average the colours of the samples in linear light.
+   *
+   * @param sampler Calculates the colour of a sample.
+   * @param x The column of the pixel.
+   * @param y The row of the pixel.
+   * @param colour The colour already calculated for the pixel, which is used as the first sample.
+   *
+   * @return The averaged ARGB colour.
+   */
+  private int supersample(final Sampler sampler, final int x, final int y, final int colour) {
+
+    double red = 0;
+    double green = 0;
+    double blue = 0;
+
+    for (int i = 0; i < samplesPerAxis; i++) {
+      for (int j = 0; j < samplesPerAxis; j++) {
+
+        final int sample = i == 0 && j == 0 ? colour
+            : sampler.getColour(x + i / (double) samplesPerAxis, y + j / (double) samplesPerAxis);
+
+        red += SRGB_TO_LINEAR[(sample >> 16) & 0xFF];
+        green += SRGB_TO_LINEAR[(sample >> 8) & 0xFF];
+        blue += SRGB_TO_LINEAR[sample & 0xFF];
+      }
+    }
+
+    final double samples = samplesPerAxis * samplesPerAxis;
+
+    return 0xFF000000 | (linearToSrgb(red / samples) << 16) | (linearToSrgb(green / samples) << 8)
+        | linearToSrgb(blue / samples);
+  }
+
+  /**
+   * Convert a colour component from linear light to sRGB.
+   *
+   * @param linear The component in linear light, between 0 and 1.
+   * @return The sRGB component, between 0 and 255.
+   */
+  static int linearToSrgb(final double linear) {
+
+    final double c =
+        linear <= 0.0031308 ? linear * 12.92 : 1.055 * Math.pow(linear, 1 / 2.4) - 0.055;
+
+    return (int) Math.round(Math.max(0, Math.min(1, c)) * 255);
+  }
+}
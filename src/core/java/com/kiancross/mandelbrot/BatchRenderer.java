@@ -0,0 +1,821 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders many saved states to PNGs on a single shared pool of worker threads. Each image is
+ * divided into tiles, and the tiles of several images are handed out in turn, so that while one
+ * image is being coloured and written the workers carry on calculating the next. This keeps every
+ * core busy across the whole batch, rather than idling at the end of each image.
+ *
+ * <p>The number of workers can be changed through the renderer's {@link MandelbrotEngine} while a
+ * batch is running: workers are started straight away, or stop after their current unit of work.
+ *
+ * <p>Any error in a unit of work, including one thrown by the virtual machine such as running out
+ * of memory for a large image, fails only the job it belongs to: the worker records the error in
+ * the job's result and carries on with the rest of the batch.
+ */
+public class BatchRenderer {
+
+  /**
+   * The approximate number of pixels in each tile.
+   */
+  private static final int PIXELS_PER_TILE = 1 << 16;
+
+  /**
+   * The number of images whose tiles are handed out at the same time. More than one is needed so
+   * there is always work available while an image is finishing, but keeping it small bounds the
+   * memory used by iteration values.
+   */
+  private static final int ACTIVE_JOBS = 2;
+
+  /**
+   * A single image to render.
+   */
+  public static class Job {
+
+    /**
+     * The state file describing the image.
+     */
+    private final Path stateFile;
+
+    /**
+     * The PNG file to write.
+     */
+    private final Path outputFile;
+
+    /**
+     * The width of the image.
+     */
+    private final int width;
+
+    /**
+     * The height of the image.
+     */
+    private final int height;
+
+    /**
+     * Construct a job.
+     *
+     * @param stateFile The state file describing the image.
+     * @param outputFile The PNG file to write.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     */
+    public Job(final Path stateFile, final Path outputFile, final int width, final int height) {
+
+      if (width < 1 || height < 1) {
+        throw new IllegalArgumentException("Width and height must be greater than zero.");
+      }
+
+      this.stateFile = stateFile;
+      this.outputFile = outputFile;
+      this.width = width;
+      this.height = height;
+    }
+
+    /**
+     * Get the state file.
+     *
+     * @return The state file describing the image.
+     */
+    public Path getStateFile() {
+      return stateFile;
+    }
+
+    /**
+     * Get the output file.
+     *
+     * @return The PNG file to write.
+     */
+    public Path getOutputFile() {
+      return outputFile;
+    }
+
+    /**
+     * Get the width.
+     *
+     * @return The width of the image.
+     */
+    public int getWidth() {
+      return width;
+    }
+
+    /**
+     * Get the height.
+     *
+     * @return The height of the image.
+     */
+    public int getHeight() {
+      return height;
+    }
+  }
+
+  /**
+   * The outcome of rendering a job.
+   */
+  public static class Result {
+
+    /**
+     * The job that was rendered.
+     */
+    private final Job job;
+
+    /**
+     * The error that stopped the job, or null if it succeeded.
+     */
+    private final Throwable error;
+
+    /**
+     * Time from the job starting to its image being written, in nanoseconds.
+     */
+    private final long wallTime;
+
+    /**
+     * Total time spent by all workers calculating the tiles of the job, in nanoseconds.
+     */
+    private final long computeTime;
+
+    /**
+     * Time spent colouring and writing the image, in nanoseconds.
+     */
+    private final long writeTime;
+
+    /**
+     * Construct a result.
+     *
+     * @param job The job that was rendered.
+     * @param error The error that stopped the job, or null if it succeeded.
+     * @param wallTime Time from the job starting to its image being written, in nanoseconds.
+     * @param computeTime Total time spent calculating the tiles of the job, in nanoseconds.
+     * @param writeTime Time spent colouring and writing the image, in nanoseconds.
+     */
+    Result(final Job job, final Throwable error, final long wallTime, final long computeTime,
+        final long writeTime) {
+      this.job = job;
+      this.error = error;
+      this.wallTime = wallTime;
+      this.computeTime = computeTime;
+      this.writeTime = writeTime;
+    }
+
+    /**
+     * Get the job.
+     *
+     * @return The job that was rendered.
+     */
+    public Job getJob() {
+      return job;
+    }
+
+    /**
+     * Get the error.
+     *
+     * @return The error that stopped the job, or null if it succeeded.
+     */
+    public Throwable getError() {
+      return error;
+    }
+
+    /**
+     * Get the wall time.
+     *
+     * @return Time from the job starting to its image being written, in nanoseconds.
+     */
+    public long getWallTime() {
+      return wallTime;
+    }
+
+    /**
+     * Get the compute time.
+     *
+     * @return Total time spent by all workers calculating the tiles of the job, in nanoseconds.
+     */
+    public long getComputeTime() {
+      return computeTime;
+    }
+
+    /**
+     * Get the write time.
+     *
+     * @return Time spent colouring and writing the image, in nanoseconds.
+     */
+    public long getWriteTime() {
+      return writeTime;
+    }
+  }
+
+  /**
+   * The progress of a job that has been started.
+   */
+  private static class ActiveJob {
+
+    /**
+     * The position of the job in the batch.
+     */
+    final int index;
+
+    /**
+     * The job.
+     */
+    final Job job;
+
+    /**
+     * The configuration read from the job's state file.
+     */
+    final ImageConfiguration configuration;
+
+    /**
+     * The generator used to calculate the tiles.
+     */
+    final MandelbrotSetIterationCountGenerator generator;
+
+    /**
+     * The iteration values of the whole image, filled in as tiles complete.
+     */
+    final int[][] iterationValues;
+
+    /**
+     * The tiles of the image.
+     */
+    final List<Tile> tiles;
+
+    /**
+     * The next tile to hand out.
+     */
+    int nextTile;
+
+    /**
+     * The number of tiles that have not finished being calculated.
+     */
+    final AtomicInteger remainingTiles;
+
+    /**
+     * Total time spent calculating tiles.
+     */
+    final LongAdder computeTime = new LongAdder();
+
+    /**
+     * Whether a tile of the job has failed, in which case its result has already been recorded.
+     */
+    final AtomicBoolean failed = new AtomicBoolean();
+
+    /**
+     * The time the job was started.
+     */
+    final long startTime;
+
+    /**
+     * Start a job.
+     *
+     * @param index The position of the job in the batch.
+     * @param job The job.
+     * @param configuration The configuration read from the job's state file.
+     * @param startTime The time the job was started.
+     */
+    ActiveJob(final int index, final Job job, final ImageConfiguration configuration,
+        final long startTime) {
+      this.index = index;
+      this.job = job;
+      this.configuration = configuration;
+      this.startTime = startTime;
+
+      generator = new MandelbrotSetIterationCountGenerator(
+          configuration.getBound().normalise(job.getWidth(), job.getHeight()),
+          configuration.getMaximumIterations(), configuration.getEscapeRadius());
+
+      iterationValues = new int[job.getWidth()][job.getHeight()];
+      tiles = Tile.split(job.getWidth(), job.getHeight(), PIXELS_PER_TILE);
+      remainingTiles = new AtomicInteger(tiles.size());
+    }
+  }
+
+  /**
+   * The statistics and settings of the renderer, including the number of worker threads.
+   */
+  private final MandelbrotEngine engine;
+
+  /**
+   * The number of worker threads that are running.
+   */
+  private int runningWorkers;
+
+  /**
+   * Lock held for the whole of a batch, so that only one batch is rendered at a time. This is
+   * separate from the renderer's own monitor, which guards the scheduling state and must be free
+   * for the workers while the batch is running.
+   */
+  private final Object batchLock = new Object();
+
+  /**
+   * Jobs that have not been started, in order.
+   */
+  private final Deque<Job> pendingJobs = new ArrayDeque<Job>();
+
+  /**
+   * The position in the batch of the next pending job.
+   */
+  private int nextJobIndex;
+
+  /**
+   * Jobs whose tiles are being handed out.
+   */
+  private final List<ActiveJob> activeJobs = new ArrayList<ActiveJob>();
+
+  /**
+   * The number of jobs that have been taken from the pending jobs by a worker, which is reading
+   * their state files, but are not active yet.
+   */
+  private int startingJobs;
+
+  /**
+   * The active job the next tile is taken from, so tiles are taken from each job in turn.
+   */
+  private int activeJobCursor;
+
+  /**
+   * Jobs whose tiles have all been calculated, waiting to be coloured and written.
+   */
+  private final Deque<ActiveJob> completedJobs = new ArrayDeque<ActiveJob>();
+
+  /**
+   * The number of jobs that have not yet produced a result.
+   */
+  private int unfinishedJobs;
+
+  /**
+   * The results, in the same order as the jobs.
+   */
+  private Result[] results;
+
+  /**
+   * Construct a batch renderer.
+   *
+   * @param numberOfThreads The number of worker threads to share between all images.
+   */
+  public BatchRenderer(final int numberOfThreads) {
+
+    if (numberOfThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be greater than zero.");
+    }
+
+    engine = new MandelbrotEngine(numberOfThreads, null);
+    engine.setQueueDepthSupplier(this::getQueueDepth);
+
+    // Wake the thread running the batch, so that it starts any extra workers, and the workers, so
+    // that any no longer needed stop.
+    engine.setWorkerCountListener(() -> {
+      synchronized (this) {
+        notifyAll();
+      }
+    });
+  }
+
+  /**
+   * Get the statistics and settings of the renderer, which can be registered to expose them
+   * through JMX.
+   *
+   * @return The engine.
+   */
+  public MandelbrotEngine getEngine() {
+    return engine;
+  }
+
+  /**
+   * Render a batch of jobs. A job that fails does not stop the rest of the batch; its error is
+   * recorded in its result instead.
+   *
+   * @param jobs The jobs to render.
+   * @return The result of each job, in the same order as the jobs.
+   */
+  public List<Result> render(final List<Job> jobs) {
+
+    synchronized (batchLock) {
+
+      synchronized (this) {
+        pendingJobs.clear();
+        pendingJobs.addAll(jobs);
+
+        nextJobIndex = 0;
+        startingJobs = 0;
+        activeJobs.clear();
+        completedJobs.clear();
+        unfinishedJobs = jobs.size();
+        results = new Result[jobs.size()];
+      }
+
+      final List<Thread> workers = new ArrayList<Thread>();
+
+      try {
+        synchronized (this) {
+
+          while (unfinishedJobs > 0) {
+
+            while (runningWorkers < engine.getWorkerCount()) {
+
+              final Thread worker = new Thread(this::work, "batch-worker-" + workers.size());
+              workers.add(worker);
+              runningWorkers++;
+
+              worker.start();
+            }
+
+            wait();
+          }
+        }
+
+        for (Thread worker : workers) {
+          worker.join();
+        }
+      } catch (InterruptedException e) {
+        throw new RuntimeException(e);
+      }
+
+      synchronized (this) {
+        final List<Result> resultList = new ArrayList<Result>();
+        Collections.addAll(resultList, results);
+
+        return resultList;
+      }
+    }
+  }
+
+  /**
+   * The loop run by each worker thread: repeatedly take the next unit of work until the whole batch
+   * has finished.
+   */
+  private void work() {
+
+    Runnable task;
+
+    while ((task = nextTask()) != null) {
+      task.run();
+    }
+  }
+
+  /**
+   * Get the next unit of work, waiting if there is none available yet but the batch has not
+   * finished. Finishing completed images takes priority, to release their memory as soon as
+   * possible, followed by starting pending jobs, so there are always tiles to hand out.
+   *
+   * @return The next unit of work, or null if the batch has finished or the worker is no longer
+   *         needed, in which case the worker must stop.
+   */
+  private synchronized Runnable nextTask() {
+
+    while (true) {
+
+      if (runningWorkers > engine.getWorkerCount()) {
+        runningWorkers--;
+        return null;
+      }
+
+      if (!completedJobs.isEmpty()) {
+        final ActiveJob activeJob = completedJobs.removeFirst();
+        return () -> finish(activeJob);
+      }
+
+      if (activeJobs.size() + startingJobs < ACTIVE_JOBS && !pendingJobs.isEmpty()) {
+
+        final Job job = pendingJobs.removeFirst();
+        final int index = nextJobIndex++;
+
+        startingJobs++;
+
+        return () -> start(index, job);
+      }
+
+      if (!activeJobs.isEmpty()) {
+
+        activeJobCursor %= activeJobs.size();
+
+        final ActiveJob activeJob = activeJobs.get(activeJobCursor);
+        final Tile tile = activeJob.tiles.get(activeJob.nextTile++);
+
+        if (activeJob.nextTile == activeJob.tiles.size()) {
+          activeJobs.remove(activeJobCursor);
+        } else {
+          activeJobCursor++;
+        }
+
+        return () -> calculate(activeJob, tile);
+      }
+
+      if (unfinishedJobs == 0) {
+        runningWorkers--;
+        return null;
+      }
+
+      // Other workers are still calculating the last tiles, or finishing images.
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        runningWorkers--;
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Get the number of units of work waiting for a worker: the tiles of active jobs that have not
+   * been handed out, and the completed jobs waiting to be finished. Jobs that have not been
+   * started are not counted, as they have not been divided into tiles yet.
+   *
+   * @return The number of units of work waiting.
+   */
+  private synchronized int getQueueDepth() {
+
+    int depth = completedJobs.size();
+
+    for (ActiveJob activeJob : activeJobs) {
+      depth += activeJob.tiles.size() - activeJob.nextTile;
+    }
+
+    return depth;
+  }
+
+  /**
+   * Start a job by reading its state file and allocating its iteration values. This is done
+   * outside the renderer's monitor, so that reading a slow file or allocating a large image does
+   * not hold up the other workers; the job is only published under the monitor once it is ready.
+   * A job that can't be started is recorded as failed.
+   *
+   * @param index The position of the job in the batch.
+   * @param job The job to start.
+   */
+  private void start(final int index, final Job job) {
+
+    final long startTime = System.nanoTime();
+
+    ActiveJob activeJob = null;
+    Throwable error = null;
+
+    try (final InputStream in = new FileInputStream(job.getStateFile().toFile())) {
+      activeJob = new ActiveJob(index, job, ImageState.read(in).getConfiguration(), startTime);
+
+    } catch (IOException | RuntimeException | Error e) {
+      error = e;
+    }
+
+    synchronized (this) {
+
+      startingJobs--;
+
+      if (activeJob == null) {
+        recordResult(index, new Result(job, error, System.nanoTime() - startTime, 0, 0));
+
+      } else {
+
+        if (activeJob.tiles.isEmpty()) {
+          completedJobs.addLast(activeJob);
+        } else {
+          activeJobs.add(activeJob);
+        }
+
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Calculate a tile of a job. If it is the last tile of the job, the job is queued to be finished.
+   * If the tile fails, the job is failed and none of its remaining tiles are handed out.
+   *
+   * @param activeJob The job the tile belongs to.
+   * @param tile The tile to calculate.
+   */
+  private void calculate(final ActiveJob activeJob, final Tile tile) {
+
+    if (activeJob.failed.get()) {
+      return;
+    }
+
+    final long start = System.nanoTime();
+
+    try {
+      calculateTile(activeJob.generator, activeJob.iterationValues, activeJob.job, tile);
+
+    } catch (RuntimeException | Error e) {
+      fail(activeJob, e);
+      return;
+    }
+
+    activeJob.computeTime.add(System.nanoTime() - start);
+
+    if (activeJob.remainingTiles.decrementAndGet() == 0) {
+      synchronized (this) {
+        completedJobs.addLast(activeJob);
+        notifyAll();
+      }
+    }
+  }
+
+  /**
+   * Calculate the iteration values of a tile of a job.
+   *
+   * @param generator The generator of the job.
+   * @param iterationValues The iteration values of the whole image.
+   * @param job The job the tile belongs to.
+   * @param tile The tile to calculate.
+   */
+  void calculateTile(final MandelbrotSetIterationCountGenerator generator,
+      final int[][] iterationValues, final Job job, final Tile tile) {
+    generator.calculateTile(iterationValues, 0, job.getWidth(), job.getHeight(), tile);
+  }
+
+  /**
+   * Fail a job whose tiles are being calculated, recording the error as its result. Tiles of the
+   * job that have not been handed out are dropped, and those still being calculated are discarded
+   * when they finish, since the job can never be completed.
+   *
+   * @param activeJob The job that failed.
+   * @param error The error.
+   */
+  private synchronized void fail(final ActiveJob activeJob, final Throwable error) {
+
+    if (!activeJob.failed.compareAndSet(false, true)) {
+      return;
+    }
+
+    activeJobs.remove(activeJob);
+
+    recordResult(activeJob.index, new Result(activeJob.job, error,
+        System.nanoTime() - activeJob.startTime, activeJob.computeTime.sum(), 0));
+  }
+
+  /**
+   * Colour the image of a job whose tiles have all been calculated and write it to its output file.
+   *
+   * @param activeJob The job to finish.
+   */
+  private void finish(final ActiveJob activeJob) {
+
+    final long start = System.nanoTime();
+
+    final Job job = activeJob.job;
+    final int width = job.getWidth();
+    final int height = job.getHeight();
+
+    Throwable error = null;
+
+    // The other workers are busy calculating tiles, so the image is compressed on this thread.
+    try (final OutputStream out =
+        new BufferedOutputStream(new FileOutputStream(job.getOutputFile().toFile()));
+        final PngWriter writer = new PngWriter(out, width, height)) {
+
+      final HistogramColorMapper colorMapper =
+          new HistogramColorMapper(activeJob.configuration.getMaximumIterations(),
+              activeJob.configuration.getColorTheme());
+
+      colorMapper.addIterations(activeJob.iterationValues);
+
+      final int[] row = new int[width];
+
+      for (int y = height - 1; y >= 0; y--) {
+
+        for (int x = 0; x < width; x++) {
+          row[x] = colorMapper.getColor(activeJob.iterationValues[x][y]);
+        }
+
+        writer.writeRow(row);
+      }
+
+    } catch (IOException | RuntimeException | Error e) {
+      error = e;
+    }
+
+    final long end = System.nanoTime();
+
+    engine.recordFrame(end - activeJob.startTime, RenderMetrics.countIterations(
+        activeJob.iterationValues, activeJob.configuration.getMaximumIterations()));
+
+    recordResult(activeJob.index, new Result(job, error, end - activeJob.startTime,
+        activeJob.computeTime.sum(), end - start));
+  }
+
+  /**
+   * Record the result of a job, waking any workers waiting for the batch to finish.
+   *
+   * @param index The position of the job in the batch.
+   * @param result The result.
+   */
+  private synchronized void recordResult(final int index, final Result result) {
+    results[index] = result;
+    unfinishedJobs--;
+    notifyAll();
+  }
+
+  /**
+   * Read a manifest of jobs. Each non-empty line that does not start with '#' describes one job as
+   * whitespace separated fields: the state file, the output file, and optionally the width and
+   * height. Relative paths are resolved against the directory containing the manifest.
+   *
+   * @param manifest The manifest file.
+   * @param defaultWidth The width used for jobs that don't specify one.
+   * @param defaultHeight The height used for jobs that don't specify one.
+   *
+   * @return The jobs, in the order they appear in the manifest.
+   *
+   * @throws IOException If the manifest could not be read or is malformed.
+   */
+  public static List<Job> readManifest(final Path manifest, final int defaultWidth,
+      final int defaultHeight) throws IOException {
+
+    final Path directory = manifest.toAbsolutePath().getParent();
+    final List<Job> jobs = new ArrayList<Job>();
+
+    final List<String> lines = Files.readAllLines(manifest, StandardCharsets.UTF_8);
+
+    for (int i = 0; i < lines.size(); i++) {
+
+      final String line = lines.get(i).trim();
+
+      if (line.isEmpty() || line.startsWith("#")) {
+        continue;
+      }
+
+      final String[] fields = line.split("\\s+");
+
+      try {
+        if (fields.length == 2) {
+          jobs.add(new Job(directory.resolve(fields[0]), directory.resolve(fields[1]),
+              defaultWidth, defaultHeight));
+
+        } else if (fields.length == 4) {
+          jobs.add(new Job(directory.resolve(fields[0]), directory.resolve(fields[1]),
+              Integer.parseInt(fields[2]), Integer.parseInt(fields[3])));
+
+        } else {
+          throw new IllegalArgumentException("Expected 2 or 4 fields.");
+        }
+
+      } catch (IllegalArgumentException e) {
+        throw new IOException(
+            String.format("Invalid manifest line %d: %s", i + 1, e.getMessage()), e);
+      }
+    }
+
+    return jobs;
+  }
+
+  /**
+   * Write a summary report of a batch as CSV.
+   *
+   * @param results The results of the batch.
+   * @param out The stream to write to.
+   */
+  public static void writeReport(final List<Result> results, final PrintStream out) {
+
+    out.println("state,output,width,height,status,wall_seconds,compute_seconds,write_seconds,"
+        + "error");
+
+    for (Result result : results) {
+
+      final Job job = result.getJob();
+      final Throwable error = result.getError();
+
+      out.printf("%s,%s,%d,%d,%s,%.3f,%.3f,%.3f,%s%n", csvField(job.getStateFile().toString()),
+          csvField(job.getOutputFile().toString()), job.getWidth(), job.getHeight(),
+          error == null ? "ok" : "failed", result.getWallTime() / 1e9,
+          result.getComputeTime() / 1e9, result.getWriteTime() / 1e9,
+          error == null ? "" : csvField(String.valueOf(error.getMessage())));
+    }
+  }
+
+  /**
+   * Quote a CSV field if it contains characters that would otherwise break the format.
+   *
+   * @param value The value of the field.
+   * @return The value, quoted if necessary.
+   */
+  private static String csvField(final String value) {
+
+    if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+      return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    return value;
+  }
+}
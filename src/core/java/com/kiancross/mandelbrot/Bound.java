@@ -66,6 +66,51 @@ public class Bound implements Serializable {
     return maximum.minus(minimum);
   }
 
+  /**
+   * Scales the bound such that the aspect ratio of the imaginary part to the y-axis and the real
+   * part to the x-axis are the same. This prevents the image from being scaled disproportionally
+   * (resulting in a stretched/squashed image).
+   *
+   * @param rangeX The width of the image being displayed.
+   * @param rangeY The height of the image being displayed
+   * @return The normalised bound.
+   */
+  public Bound normalise(final double rangeX, final double rangeY) {
+
+    final ComplexNumber range = getRange();
+
+    final double realPartRange = range.getReal();
+    final double imaginaryPartRange = range.getImaginary();
+
+    final double xRatio = rangeX / realPartRange;
+    final double yRatio = rangeY / imaginaryPartRange;
+
+    final double addToRealRange;
+    final double addToImaginarrangeY;
+
+    // Here we calculate the additional value needed to add to the range to make the
+    // two rations equal.
+    if (xRatio > yRatio) {
+      addToRealRange = ((imaginaryPartRange * rangeX) / rangeY) - realPartRange;
+      addToImaginarrangeY = 0;
+
+    } else {
+
+      addToRealRange = 0;
+      addToImaginarrangeY = ((realPartRange * rangeY) / rangeX) - imaginaryPartRange;
+    }
+
+    // We then add an equal amount of the additional range to both the minimum
+    // and maximum. This ensures the image remains centred.
+    final ComplexNumber newMinimum = new ComplexNumber(minimum.getReal() - (addToRealRange / 2),
+        minimum.getImaginary() - (addToImaginarrangeY / 2));
+
+    final ComplexNumber newMaximum = new ComplexNumber(maximum.getReal() + (addToRealRange / 2),
+        maximum.getImaginary() + (addToImaginarrangeY / 2));
+
+    return new Bound(newMinimum, newMaximum);
+  }
+
   @Override
   public boolean equals(final Object o) {
 
@@ -7,7 +7,6 @@ package com.kiancross.mandelbrot;
 import java.io.Serializable;
 import java.util.HashMap;
 import java.util.Map;
-import javafx.scene.paint.Color;
 
 /**
  * Represents a colour gradient.
@@ -43,12 +42,13 @@ public class ColorGradient implements Serializable {
    * @param end The end colour.
    * @param name The name of the gradient.
    */
-  public ColorGradient(final Color start, final Color end, final String name) {
+  public ColorGradient(final SerializableColor start, final SerializableColor end,
+      final String name) {
 
     this.name = name;
 
-    colorMap.put((double) 0, new SerializableColor(start));
-    colorMap.put((double) 1, new SerializableColor(end));
+    colorMap.put((double) 0, start);
+    colorMap.put((double) 1, end);
   }
 
   /**
@@ -57,13 +57,22 @@ public class ColorGradient implements Serializable {
    * @param stop The stop: a number in-between 0 and 1.
    * @param color The color corresponding to this stop.
    */
-  public void setStop(final double stop, final Color color) {
+  public void setStop(final double stop, final SerializableColor color) {
 
     if (stop < 0 || stop > 1) {
       throw new IllegalArgumentException("Stop must be between 0 and 1.");
     }
 
-    colorMap.put(stop, new SerializableColor(color));
+    colorMap.put(stop, color);
+  }
+
+  /**
+   * Get the name of the gradient.
+   *
+   * @return The human readable name of the gradient.
+   */
+  public String getName() {
+    return name;
   }
 
   /**
@@ -73,7 +82,7 @@ public class ColorGradient implements Serializable {
    *
    * @return The color.
    */
-  public Color getColor(final double position) {
+  public SerializableColor getColor(final double position) {
 
     if (position < 0 || position > 1) {
       throw new IllegalArgumentException("Position must be between 0 and 1.");
@@ -95,8 +104,8 @@ public class ColorGradient implements Serializable {
       }
     }
 
-    final Color startColor = colorMap.get(start).getColor();
-    final Color endColor = colorMap.get(end).getColor();
+    final SerializableColor startColor = colorMap.get(start);
+    final SerializableColor endColor = colorMap.get(end);
 
     final double normalisedPosition = (position - start) / (end - start);
 
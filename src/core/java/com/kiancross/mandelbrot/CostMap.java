@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * A coarse map of how many iterations the points of a region of the complex plane took, built
+ * from iteration values that have already been calculated, used to predict where the work of a
+ * nearby image lies.
+ *
+ * <p>After a pan or a small zoom, most of the new image covers the same part of the plane as the
+ * previous one, so the previous iteration values show which columns are expensive. Dividing the
+ * columns of an image evenly between threads leaves the threads given the columns through the set
+ * with many times the work of the others; dividing them so that each thread gets the same
+ * predicted cost keeps every thread busy until the end. Points outside the mapped region take the
+ * cost of the nearest mapped cell, so a pan predicts the newly revealed columns from the edge
+ * they are revealed from.
+ */
+public class CostMap {
+
+  /**
+   * The largest number of cells along each axis of the map.
+   */
+  static final int CELLS = 64;
+
+  /**
+   * The region of the plane that is mapped.
+   */
+  private final Bound bound;
+
+  /**
+   * The average number of iterations of the points in each cell, accessed as array[x][y], where y
+   * increases with the imaginary part.
+   */
+  private final double[][] costs;
+
+  /**
+   * Build a cost map from iteration values.
+   *
+   * @param bound The region of the plane the iteration values were calculated for.
+   * @param iterationValues The iteration values, accessed as array[x][y], where y increases with
+   *        the imaginary part. There must be at least one.
+   * @param maximumIterations The maximum number of iterations the values were calculated with.
+   */
+  public CostMap(final Bound bound, final int[][] iterationValues, final int maximumIterations) {
+
+    this.bound = bound;
+    this.costs = newCells(iterationValues.length, iterationValues[0].length);
+
+    final int[][] counts = new int[costs.length][costs[0].length];
+
+    for (int x = 0; x < iterationValues.length; x++) {
+      for (int y = 0; y < iterationValues[x].length; y++) {
+
+        final int value = iterationValues[x][y];
+
+        addSample(counts, x, y, iterationValues.length, iterationValues[x].length,
+            value == -1 ? maximumIterations : value);
+      }
+    }
+
+    average(counts);
+  }
+
+  /**
+   * Build a cost map from continuous iteration counts.
+   *
+   * @param bound The region of the plane the counts were calculated for.
+   * @param smoothIterationValues The continuous iteration counts, accessed as array[x][y], where y
+   *        increases with the imaginary part. There must be at least one.
+   * @param maximumIterations The maximum number of iterations the counts were calculated with.
+   */
+  public CostMap(final Bound bound, final float[][] smoothIterationValues,
+      final int maximumIterations) {
+
+    this.bound = bound;
+    this.costs = newCells(smoothIterationValues.length, smoothIterationValues[0].length);
+
+    final int[][] counts = new int[costs.length][costs[0].length];
+
+    for (int x = 0; x < smoothIterationValues.length; x++) {
+      for (int y = 0; y < smoothIterationValues[x].length; y++) {
+
+        final float value = smoothIterationValues[x][y];
+
+        addSample(counts, x, y, smoothIterationValues.length, smoothIterationValues[x].length,
+            value < 0 ? maximumIterations : (int) value + 1);
+      }
+    }
+
+    average(counts);
+  }
+
+  /**
+   * Create the cells of a map of an image. Each cell covers at least one pixel.
+   *
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @return The cells, accessed as array[x][y].
+   */
+  private static double[][] newCells(final int width, final int height) {
+
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("A cost map needs at least one iteration value.");
+    }
+
+    return new double[Math.min(CELLS, width)][Math.min(CELLS, height)];
+  }
+
+  /**
+   * Add the cost of a pixel to the total of its cell.
+   *
+   * @param counts The number of pixels added to each cell so far.
+   * @param x The column of the pixel.
+   * @param y The row of the pixel.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @param cost The number of iterations the pixel took.
+   */
+  private void addSample(final int[][] counts, final int x, final int y, final int width,
+      final int height, final int cost) {
+
+    final int cellX = (int) ((long) x * costs.length / width);
+    final int cellY = (int) ((long) y * costs[0].length / height);
+
+    costs[cellX][cellY] += cost;
+    counts[cellX][cellY]++;
+  }
+
+  /**
+   * Turn the totals of the cells into averages.
+   *
+   * @param counts The number of pixels added to each cell.
+   */
+  private void average(final int[][] counts) {
+    for (int x = 0; x < costs.length; x++) {
+      for (int y = 0; y < costs[x].length; y++) {
+        costs[x][y] /= counts[x][y];
+      }
+    }
+  }
+
+  /**
+   * Get the predicted number of iterations of a point.
+   *
+   * @param real The real part of the point.
+   * @param imaginary The imaginary part of the point.
+   * @return The average number of iterations of the mapped cell containing the point, or nearest
+   *         to it.
+   */
+  public double getCost(final double real, final double imaginary) {
+
+    final ComplexNumber minimum = bound.getMinimum();
+    final ComplexNumber range = bound.getRange();
+
+    final int x = (int) Math.floor((real - minimum.getReal()) / range.getReal() * costs.length);
+    final int y = (int) Math.floor(
+        (imaginary - minimum.getImaginary()) / range.getImaginary() * costs[0].length);
+
+    return costs[Math.max(0, Math.min(costs.length - 1, x))][Math.max(0,
+        Math.min(costs[0].length - 1, y))];
+  }
+
+  /**
+   * Divide the columns of a strip of an image into contiguous ranges with the same predicted cost.
+   * The cost of each column is predicted from a sample of its rows.
+   *
+   * @param imageBound The region of the plane the image covers.
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @param yStart The first row (inclusive) of the strip.
+   * @param yEnd The last row (exclusive) of the strip.
+   * @param parts The number of ranges to divide the columns into.
+   *
+   * @return The boundaries of the ranges: range i is the columns from element i (inclusive) to
+   *         element i + 1 (exclusive). There is one more element than there are ranges.
+   */
+  public int[] partition(final Bound imageBound, final int xresolution, final int yresolution,
+      final int yStart, final int yEnd, final int parts) {
+
+    final ComplexNumber minimum = imageBound.getMinimum();
+    final double realStep = imageBound.getRange().getReal() / xresolution;
+    final double imaginaryStep = imageBound.getRange().getImaginary() / yresolution;
+
+    final int rows = yEnd - yStart;
+    final int sampledRows = Math.max(1, Math.min(CELLS, rows));
+
+    // The cumulative predicted cost of the columns to the left of each column.
+    final double[] cumulativeCosts = new double[xresolution + 1];
+
+    for (int x = 0; x < xresolution; x++) {
+
+      final double real = minimum.getReal() + x * realStep;
+
+      double cost = 0;
+
+      for (int sample = 0; sample < sampledRows; sample++) {
+
+        final double y = yStart + (sample + 0.5) * rows / sampledRows;
+
+        cost += getCost(real, minimum.getImaginary() + y * imaginaryStep);
+      }
+
+      // Every pixel takes at least one iteration.
+      cumulativeCosts[x + 1] = cumulativeCosts[x] + Math.max(sampledRows, cost);
+    }
+
+    final int[] boundaries = new int[parts + 1];
+    final double total = cumulativeCosts[xresolution];
+
+    int x = 0;
+
+    for (int part = 1; part < parts; part++) {
+
+      final double target = total * part / parts;
+
+      while (x < xresolution && cumulativeCosts[x] < target) {
+        x++;
+      }
+
+      boundaries[part] = x;
+    }
+
+    boundaries[parts] = xresolution;
+
+    return boundaries;
+  }
+}
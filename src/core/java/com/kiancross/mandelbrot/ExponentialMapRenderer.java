@@ -0,0 +1,364 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Renders a zoom towards a fixed centre as a sequence of PNG frames by way of an exponential map.
+ *
+ * <p>Rather than calculating every frame, the set is sampled once on a log-polar grid around the
+ * centre: column j of the map is at angle 2&pi;j / columns, and row k is at radius
+ * e<sup>&rho;<sub>0</sub> - k&Delta;</sup>, where &Delta; is the angle between columns, so that
+ * samples are evenly spaced in both directions. Each frame is then reconstructed by looking up the
+ * nearest sample of every pixel. A zoom by a factor of z needs only ln(z) / &Delta; more rows, so
+ * the cost of a long zoom is close to that of a single tall strip rather than of every frame.
+ *
+ * <p>The map is calculated from the outermost row inwards, as frames need it, and only the rows
+ * covering the current frame are kept, so the memory used does not depend on the depth of the
+ * zoom.
+ */
+public class ExponentialMapRenderer {
+
+  /**
+   * The configuration of the first frame. Everything but the bound is shared by every frame.
+   */
+  private final ImageConfiguration configuration;
+
+  /**
+   * The centre of every frame.
+   */
+  private final ComplexNumber centre;
+
+  /**
+   * The real range of the first frame.
+   */
+  private final double startWidth;
+
+  /**
+   * The real range of the last frame.
+   */
+  private final double endWidth;
+
+  /**
+   * The number of frames.
+   */
+  private final int numberOfFrames;
+
+  /**
+   * The easing applied to the zoom.
+   */
+  private final ZoomAnimationRenderer.Easing easing;
+
+  /**
+   * The width of each frame.
+   */
+  private final int width;
+
+  /**
+   * The height of each frame.
+   */
+  private final int height;
+
+  /**
+   * The number of threads used to calculate the map and compress the frames.
+   */
+  private final int numberOfThreads;
+
+  /**
+   * The number of columns (angles) in the map.
+   */
+  private final int columns;
+
+  /**
+   * The difference in angle between columns, which is also the difference in log-radius between
+   * rows.
+   */
+  private final double step;
+
+  /**
+   * The log of the radius of row 0 of the map, which is the half diagonal of the widest frame.
+   */
+  private final double outerLogRadius;
+
+  /**
+   * The rows of the map covering the current frame. Row k is stored at position k modulo the
+   * length of the array.
+   */
+  private int[][] window;
+
+  /**
+   * The number of rows of the map that have been passed, either by being calculated or skipped.
+   */
+  private int calculatedRows;
+
+  /**
+   * The number of rows of the map that have actually been calculated, excluding rows skipped
+   * because no frame needed them.
+   */
+  private int rowsCalculated;
+
+  /**
+   * Construct an exponential map renderer. The frames zoom from the width of the configuration's
+   * bound to the width of the end bound, centred on the centre of the end bound.
+   *
+   * @param configuration The configuration of the first frame. Everything but the centre of the
+   *        bound is used for every frame.
+   * @param endBound The bound of the last frame.
+   * @param numberOfFrames The number of frames, including the first and last.
+   * @param easing The easing applied to the zoom.
+   * @param width The width of each frame.
+   * @param height The height of each frame.
+   * @param numberOfThreads The number of threads to calculate the map and compress the frames
+   *        with.
+   */
+  public ExponentialMapRenderer(final ImageConfiguration configuration, final Bound endBound,
+      final int numberOfFrames, final ZoomAnimationRenderer.Easing easing, final int width,
+      final int height, final int numberOfThreads) {
+
+    if (configuration == null || endBound == null || easing == null) {
+      throw new IllegalArgumentException("configuration, endBound and easing must not be null");
+    }
+
+    if (numberOfFrames < 1 || width < 1 || height < 1 || numberOfThreads < 1) {
+      throw new IllegalArgumentException(
+          "Number of frames, width, height and number of threads must be greater than zero.");
+    }
+
+    final Bound normalisedEnd = endBound.normalise(width, height);
+
+    this.configuration = configuration;
+    this.centre = ZoomAnimationRenderer.getCentre(normalisedEnd);
+    this.startWidth = configuration.getBound().normalise(width, height).getRange().getReal();
+    this.endWidth = normalisedEnd.getRange().getReal();
+    this.numberOfFrames = numberOfFrames;
+    this.easing = easing;
+    this.width = width;
+    this.height = height;
+    this.numberOfThreads = numberOfThreads;
+
+    // Enough angles that the outermost ring of every frame has a sample per pixel.
+    this.columns = Math.max(8, (int) Math.ceil(Math.PI * Math.hypot(width, height)));
+    this.step = 2 * Math.PI / columns;
+    this.outerLogRadius = Math.log(getHalfDiagonal(Math.max(startWidth, endWidth)));
+  }
+
+  /**
+   * Get the real range of a frame.
+   *
+   * @param frame The frame number, starting from 0.
+   * @return The real range of the frame.
+   */
+  double getFrameWidth(final int frame) {
+
+    final double progress =
+        numberOfFrames == 1 ? 0 : easing.apply(frame / (double) (numberOfFrames - 1));
+
+    return startWidth * Math.pow(endWidth / startWidth, progress);
+  }
+
+  /**
+   * Get the bound of a frame.
+   *
+   * @param frame The frame number, starting from 0.
+   * @return The bound of the frame.
+   */
+  public Bound getFrameBound(final int frame) {
+
+    final double frameWidth = getFrameWidth(frame);
+    final ComplexNumber halfRange =
+        new ComplexNumber(frameWidth / 2, frameWidth * height / width / 2);
+
+    return new Bound(centre.minus(halfRange), centre.add(halfRange));
+  }
+
+  /**
+   * Get the number of rows of the map that were calculated by the last render. Multiplied by
+   * {@link #getColumns}, this is the number of iteration values that were calculated.
+   *
+   * @return The number of rows.
+   */
+  public int getRows() {
+    return rowsCalculated;
+  }
+
+  /**
+   * Get the number of columns (angles) in the map.
+   *
+   * @return The number of columns.
+   */
+  public int getColumns() {
+    return columns;
+  }
+
+  /**
+   * Get the distance from the centre to the corner of a frame.
+   *
+   * @param frameWidth The real range of the frame.
+   * @return The distance from the centre to the corner.
+   */
+  private double getHalfDiagonal(final double frameWidth) {
+    return frameWidth / width * Math.hypot(width, height) / 2;
+  }
+
+  /**
+   * Get the row of the map at a given radius.
+   *
+   * @param radius The radius.
+   * @return The row, which may be fractional.
+   */
+  private double getRow(final double radius) {
+    return (outerLogRadius - Math.log(radius)) / step;
+  }
+
+  /**
+   * Render every frame, writing frame i to a file named frame-i.png (with i padded to five digits)
+   * in a directory.
+   *
+   * @param directory The directory to write the frames to. It is created if it does not exist.
+   *
+   * @throws IOException If there was a problem writing a frame.
+   */
+  public void render(final Path directory) throws IOException {
+
+    Files.createDirectories(directory);
+
+    // Every frame covers the same number of rows: from its corner to the centre of the pixel next
+    // to the centre.
+    final int rowsPerFrame = (int) Math.ceil(Math.log(Math.hypot(width, height)) / step) + 2;
+
+    window = new int[rowsPerFrame + 1][];
+    calculatedRows = 0;
+    rowsCalculated = 0;
+
+    final HistogramColorMapper colorMapper = new HistogramColorMapper(
+        configuration.getMaximumIterations(), configuration.getColorTheme());
+
+    final int[][] frameValues = new int[width][height];
+
+    // The map is calculated from the outside in, so frames are rendered from widest to narrowest.
+    final boolean zoomingIn = endWidth <= startWidth;
+
+    for (int i = 0; i < numberOfFrames; i++) {
+
+      final int frame = zoomingIn ? i : numberOfFrames - 1 - i;
+
+      remapFrame(frameValues, getFrameWidth(frame));
+
+      ZoomAnimationRenderer.writeFrame(ZoomAnimationRenderer.getFrameFile(directory, frame),
+          frameValues, colorMapper, numberOfThreads);
+    }
+
+    window = null;
+  }
+
+  /**
+   * Reconstruct the iteration values of a frame from the map, calculating any rows of the map it
+   * needs that have not yet been calculated.
+   *
+   * @param frameValues The array to place the iteration values, accessed as array[x][y].
+   * @param frameWidth The real range of the frame.
+   */
+  private void remapFrame(final int[][] frameValues, final double frameWidth) {
+
+    final double pixelSize = frameWidth / width;
+
+    // The centre pixel is sampled exactly at the centre, whose radius is zero, so radii are
+    // clamped to half a pixel to keep them within the rows covering this frame.
+    final double minimumRadius = pixelSize / 2;
+
+    calculateRows((int) Math.ceil(getRow(minimumRadius)) + 1);
+
+    for (int x = 0; x < width; x++) {
+
+      final double dx = (x - width / 2.0) * pixelSize;
+
+      for (int y = 0; y < height; y++) {
+
+        final double dy = (y - height / 2.0) * pixelSize;
+        final double radius = Math.max(minimumRadius, Math.hypot(dx, dy));
+
+        final int row = (int) Math.round(getRow(radius));
+        final int column = Math.floorMod((int) Math.round(Math.atan2(dy, dx) / step), columns);
+
+        frameValues[x][y] = window[Math.max(0, row) % window.length][column];
+      }
+    }
+  }
+
+  /**
+   * Calculate rows of the map, on several threads, until a given number of rows have been
+   * calculated.
+   *
+   * @param rows The number of rows that should have been calculated.
+   */
+  private void calculateRows(final int rows) {
+
+    if (rows <= calculatedRows) {
+      return;
+    }
+
+    // If frames are far apart, rows between them that no frame covers are skipped.
+    final int firstRow = Math.max(calculatedRows, rows - window.length);
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound(), configuration.getMaximumIterations(),
+        configuration.getEscapeRadius());
+
+    final Thread[] workers = new Thread[numberOfThreads];
+
+    for (int i = 0; i < numberOfThreads; i++) {
+
+      final int offset = i;
+
+      // Rows are interleaved between the threads, as the cost of a row varies with its radius.
+      workers[i] = new Thread(() -> {
+        for (int row = firstRow + offset; row < rows; row += numberOfThreads) {
+          window[row % window.length] = calculateRow(generator, row);
+        }
+      });
+
+      workers[i].start();
+    }
+
+    try {
+      for (Thread worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+
+    rowsCalculated += rows - firstRow;
+    calculatedRows = rows;
+  }
+
+  /**
+   * Calculate a single row of the map.
+   *
+   * @param generator The generator used to calculate the iteration values.
+   * @param row The row number.
+   * @return The iteration values of the row, indexed by column.
+   */
+  private int[] calculateRow(final MandelbrotSetIterationCountGenerator generator,
+      final int row) {
+
+    final int[] values = new int[columns];
+    final double radius = Math.exp(outerLogRadius - row * step);
+
+    for (int column = 0; column < columns; column++) {
+
+      final double angle = column * step;
+
+      values[column] = generator.calculateIterations(new ComplexNumber(
+          centre.getReal() + radius * Math.cos(angle),
+          centre.getImaginary() + radius * Math.sin(angle)));
+    }
+
+    return values;
+  }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.Arrays;
+
+/**
+ * An implementation of the algorithm described here:
+ * https://en.wikipedia.org/wiki/Mandelbrot_set#Histogram_coloring
+ *
+ * <p>The histogram can either be built from a single array of iteration values, using
+ * {@link #mapIterationsToColors}, or accumulated over several arrays (for example the strips of an
+ * image too large to hold in memory) using {@link #addIterations} and then applied with
+ * {@link #getColor}.
+ *
+ * <p>Continuous iteration counts (see
+ * {@link MandelbrotSetIterationCountGenerator#calculateSmoothIterations}) can be coloured with
+ * {@link #getSmoothColor}, which interpolates between the cumulative histogram values either side
+ * of the count to avoid banding, and looks the result up in a precomputed table of the gradient.
+ *
+ * <p>The histogram and the gradient are kept separate: {@link #setGradient} replaces the gradient
+ * without recounting the iteration values, so an image can be recoloured with a different theme
+ * for the cost of a table lookup per pixel.
+ */
+public class HistogramColorMapper {
+
+  /**
+   * The number of entries in the gradient lookup table. This is large enough that neighbouring
+   * entries differ by less than one colour level for any gradient of up to 16 stops.
+   */
+  static final int GRADIENT_TABLE_SIZE = 4096;
+
+  /**
+   * The maximum number of iterations.
+   */
+  private int maximumIterations;
+
+  /**
+   * The gradient used to calculate the colours.
+   */
+  private ColorGradient gradient;
+
+  /**
+   * Position i is the number of times the iteration value i + 1 occurred.
+   */
+  private final long[] iterationsCount;
+
+  /**
+   * Position i is the fraction of iteration values that are less than or equal to i. This is
+   * calculated from the iteration counts when it is first needed, and set to null whenever the
+   * iteration counts change.
+   */
+  private double[] cumulativeFactors;
+
+  /**
+   * The gradient sampled at evenly spaced positions between 0 and 1, as ARGB colours. This is
+   * calculated when it is first needed.
+   */
+  private int[] gradientTable;
+
+  /**
+   * Position i is the colour of iteration value i, as an ARGB colour. This is calculated from the
+   * cumulative factors and the gradient when it is first needed, and set to null whenever either
+   * changes.
+   */
+  private int[] colorTable;
+
+  /**
+   * Construct the histogram mapper.
+   *
+   * @param maximumIterations The maximum number of iterations that will appear in the list of
+   *        iterations.
+   *
+   * @param gradient The gradient used to calculate the colours.
+   */
+  public HistogramColorMapper(final int maximumIterations, final ColorGradient gradient) {
+    this.maximumIterations = maximumIterations;
+    this.gradient = gradient;
+    this.iterationsCount = new long[maximumIterations];
+  }
+
+  /**
+   * Adds an array of iteration values to the histogram.
+   *
+   * @param iterationValues The iteration values.
+   */
+  public void addIterations(final int[][] iterationValues) {
+
+    for (int x = 0; x < iterationValues.length; x++) {
+
+      final int[] column = iterationValues[x];
+
+      for (int y = 0; y < column.length; y++) {
+
+        if (column[y] > 0) {
+          iterationsCount[column[y] - 1]++;
+        }
+      }
+    }
+
+    cumulativeFactors = null;
+    colorTable = null;
+  }
+
+  /**
+   * Adds an array of continuous iteration counts to the histogram. Each is counted under its
+   * integer iteration count.
+   *
+   * @param smoothIterationValues The continuous iteration counts.
+   */
+  public void addIterations(final float[][] smoothIterationValues) {
+
+    for (int x = 0; x < smoothIterationValues.length; x++) {
+
+      final float[] column = smoothIterationValues[x];
+
+      for (int y = 0; y < column.length; y++) {
+
+        if (column[y] >= 0) {
+          iterationsCount[(int) column[y]]++;
+        }
+      }
+    }
+
+    cumulativeFactors = null;
+    colorTable = null;
+  }
+
+  /**
+   * Removes all iteration values from the histogram.
+   */
+  public void clear() {
+    Arrays.fill(iterationsCount, 0);
+    cumulativeFactors = null;
+    colorTable = null;
+  }
+
+  /**
+   * Replaces the gradient used to calculate the colours. The histogram is kept, so colours from the
+   * new gradient can be looked up without adding the iteration values again.
+   *
+   * @param gradient The new gradient.
+   */
+  public void setGradient(final ColorGradient gradient) {
+    this.gradient = gradient;
+    gradientTable = null;
+    colorTable = null;
+  }
+
+  /**
+   * Gets the cumulative factors, calculating them from the iteration counts if required. Computing
+   * these once means each colour can be looked up directly, rather than summing the histogram for
+   * every pixel.
+   *
+   * @return The cumulative factors.
+   */
+  private double[] getCumulativeFactors() {
+
+    if (cumulativeFactors == null) {
+
+      final double[] factors = new double[maximumIterations + 1];
+
+      long total = 0;
+
+      for (int i = 0; i < maximumIterations; i++) {
+        total += iterationsCount[i];
+        factors[i + 1] = total;
+      }
+
+      // If every value lies within the set there is nothing to normalise against.
+      if (total > 0) {
+        for (int i = 0; i <= maximumIterations; i++) {
+          factors[i] /= (double) total;
+        }
+      }
+
+      cumulativeFactors = factors;
+    }
+
+    return cumulativeFactors;
+  }
+
+  /**
+   * Maps a single iteration value to a colour using the current histogram.
+   *
+   * @param iterations The iteration value.
+   * @return The colour corresponding to the iteration value, packed as 0xAARRGGBB.
+   */
+  public int getColor(final int iterations) {
+
+    // If the iteration limit was exceeded then the value will be -1 (indicating that the
+    // value was inside the set up to the maximum iteration value). In this case the colour
+    // should be black.
+    if (iterations == -1) {
+      return SerializableColor.BLACK.toArgb();
+    }
+
+    return getColorTable()[iterations];
+  }
+
+  /**
+   * Gets the colour of every iteration value, calculating them from the cumulative factors if
+   * required.
+   *
+   * @return The colour table.
+   */
+  private int[] getColorTable() {
+
+    if (colorTable == null) {
+
+      final double[] factors = getCumulativeFactors();
+      final int[] table = new int[factors.length];
+
+      for (int i = 0; i < factors.length; i++) {
+        table[i] = gradient.getColor(factors[i]).toArgb();
+      }
+
+      colorTable = table;
+    }
+
+    return colorTable;
+  }
+
+  /**
+   * Gets the gradient lookup table, calculating it if required.
+   *
+   * @return The gradient lookup table.
+   */
+  int[] getGradientTable() {
+
+    if (gradientTable == null) {
+
+      final int[] table = new int[GRADIENT_TABLE_SIZE];
+
+      for (int i = 0; i < GRADIENT_TABLE_SIZE; i++) {
+        table[i] = gradient.getColor(i / (double) (GRADIENT_TABLE_SIZE - 1)).toArgb();
+      }
+
+      gradientTable = table;
+    }
+
+    return gradientTable;
+  }
+
+  /**
+   * Maps a single continuous iteration count to a colour using the current histogram. The position
+   * in the gradient is interpolated between the cumulative histogram values of the neighbouring
+   * integer counts, so that colours change smoothly rather than in bands.
+   *
+   * @param smoothIterations The continuous iteration count, or -1 if the value is inside the set.
+   * @return The colour corresponding to the iteration count, packed as 0xAARRGGBB.
+   */
+  public int getSmoothColor(final float smoothIterations) {
+
+    if (smoothIterations < 0) {
+      return SerializableColor.BLACK.toArgb();
+    }
+
+    return getGradientTable()[getGradientPosition(smoothIterations)];
+  }
+
+  /**
+   * Gets the position in the gradient lookup table of an iteration count, using the current
+   * histogram. This is the entry {@link #getSmoothColor} looks up.
+   *
+   * @param smoothIterations The continuous iteration count, which must not be negative. An integer
+   *        iteration value can be given as is.
+   * @return The position in the gradient lookup table.
+   */
+  int getGradientPosition(final float smoothIterations) {
+
+    final double[] factors = getCumulativeFactors();
+
+    final int lower = Math.min((int) smoothIterations, maximumIterations - 1);
+    final double fraction = Math.min(1, smoothIterations - lower);
+
+    final double factor = factors[lower] + (factors[lower + 1] - factors[lower]) * fraction;
+
+    return (int) Math.round(factor * (GRADIENT_TABLE_SIZE - 1));
+  }
+
+  /**
+   * Takes an array of iteration values and maps each of these values to a colour. The histogram is
+   * built from the given iteration values only.
+   *
+   * @param iterationValues The iteration values.
+   * @return 2D array where each position in iterationValues corresponds to a colour, packed as
+   *         0xAARRGGBB.
+   */
+  public int[][] mapIterationsToColors(final int[][] iterationValues) {
+
+    clear();
+    addIterations(iterationValues);
+
+    final int xLength = iterationValues.length;
+    final int yLength = iterationValues[0].length;
+
+    final int[][] colorMap = new int[xLength][yLength];
+
+    for (int x = 0; x < xLength; x++) {
+      for (int y = 0; y < yLength; y++) {
+        colorMap[x][y] = getColor(iterationValues[x][y]);
+      }
+    }
+
+    return colorMap;
+  }
+
+  /**
+   * Takes an array of continuous iteration counts and maps each of these values to a colour. The
+   * histogram is built from the given values only.
+   *
+   * @param smoothIterationValues The continuous iteration counts.
+   * @return 2D array where each position in smoothIterationValues corresponds to a colour, packed
+   *         as 0xAARRGGBB.
+   */
+  public int[][] mapIterationsToColors(final float[][] smoothIterationValues) {
+
+    clear();
+    addIterations(smoothIterationValues);
+
+    final int xLength = smoothIterationValues.length;
+    final int yLength = smoothIterationValues[0].length;
+
+    final int[][] colorMap = new int[xLength][yLength];
+
+    for (int x = 0; x < xLength; x++) {
+      for (int y = 0; y < yLength; y++) {
+        colorMap[x][y] = getSmoothColor(smoothIterationValues[x][y]);
+      }
+    }
+
+    return colorMap;
+  }
+}
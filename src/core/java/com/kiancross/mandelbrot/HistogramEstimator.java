@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * Estimates the histogram of an image from a low resolution version of it, so that any part of the
+ * image can be coloured as soon as it has been calculated.
+ *
+ * <p>Histogram colouring normally needs every iteration value of the image before any pixel can be
+ * coloured. The cumulative histogram only depends on the proportion of the image covered by each
+ * iteration value though, which a few hundred thousand evenly spread samples estimate well. Every
+ * tile coloured with the estimated histogram uses the same colour for the same iteration value, so
+ * tiles coloured independently join without seams.
+ */
+public class HistogramEstimator {
+
+  /**
+   * The default number of samples taken. This is roughly a 512 by 512 image, which takes a small
+   * fraction of the time of a poster sized image.
+   */
+  public static final int DEFAULT_SAMPLES = 1 << 18;
+
+  /**
+   * The configuration of the image.
+   */
+  private final ImageConfiguration configuration;
+
+  /**
+   * The width of the image.
+   */
+  private final int width;
+
+  /**
+   * The height of the image.
+   */
+  private final int height;
+
+  /**
+   * Construct a histogram estimator.
+   *
+   * @param configuration The configuration of the image.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   */
+  public HistogramEstimator(final ImageConfiguration configuration, final int width,
+      final int height) {
+
+    if (configuration == null) {
+      throw new IllegalArgumentException("configuration must not be null");
+    }
+
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height must be greater than zero.");
+    }
+
+    this.configuration = configuration;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Get the resolution of the low resolution image for a number of samples. The image has the same
+   * aspect ratio as the full image, and is never larger than it.
+   *
+   * @param samples The approximate number of samples to take.
+   * @return The width and height of the low resolution image.
+   */
+  int[] getSampleResolution(final int samples) {
+    return getSampleResolution(width, height, samples);
+  }
+
+  /**
+   * Get the resolution of a low resolution version of an image for a number of samples. The image
+   * has the same aspect ratio as the full image, and is never larger than it.
+   *
+   * @param width The width of the full image.
+   * @param height The height of the full image.
+   * @param samples The approximate number of samples to take.
+   * @return The width and height of the low resolution image.
+   */
+  static int[] getSampleResolution(final int width, final int height, final int samples) {
+
+    final double scale = Math.min(1, Math.sqrt(samples / ((double) width * height)));
+
+    return new int[] {Math.max(1, (int) Math.round(width * scale)),
+        Math.max(1, (int) Math.round(height * scale))};
+  }
+
+  /**
+   * Estimate the histogram of the image from the default number of samples.
+   *
+   * @param numberOfThreads The number of threads to calculate the samples on.
+   * @return A colour mapper holding the estimated histogram.
+   */
+  public HistogramColorMapper estimate(final int numberOfThreads) {
+    return estimate(DEFAULT_SAMPLES, numberOfThreads);
+  }
+
+  /**
+   * Estimate the histogram of the image by calculating a low resolution version of it.
+   *
+   * @param samples The approximate number of samples to take.
+   * @param numberOfThreads The number of threads to calculate the samples on.
+   *
+   * @return A colour mapper holding the estimated histogram.
+   */
+  public HistogramColorMapper estimate(final int samples, final int numberOfThreads) {
+
+    if (samples < 1) {
+      throw new IllegalArgumentException("Number of samples must be greater than zero.");
+    }
+
+    final int[] resolution = getSampleResolution(samples);
+
+    // The low resolution image covers the bound of the full image, so the samples are spread
+    // evenly over it.
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(width, height), configuration.getMaximumIterations(),
+        configuration.getEscapeRadius());
+
+    final HistogramColorMapper colorMapper = new HistogramColorMapper(
+        configuration.getMaximumIterations(), configuration.getColorTheme());
+
+    colorMapper.addIterations(generator.calculate(resolution[0], resolution[1], numberOfThreads));
+
+    return colorMapper;
+  }
+}
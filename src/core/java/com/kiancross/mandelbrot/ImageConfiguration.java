@@ -39,6 +39,12 @@ public class ImageConfiguration implements Serializable {
    */
   private final ColorGradient colorTheme;
 
+  /**
+   * Whether the image should be coloured using continuous iteration counts, rather than integer
+   * counts which produce visible bands.
+   */
+  private final boolean smoothColoring;
+
   /**
    * A builder (using the builder design pattern) to create an
    * {@link com.kiancross.mandelbrot.ImageConfiguration}.
@@ -70,6 +76,11 @@ public class ImageConfiguration implements Serializable {
      */
     private ColorGradient colorTheme;
 
+    /**
+     * Whether the image should be coloured using continuous iteration counts.
+     */
+    private boolean smoothColoring;
+
     /**
      * Use a given configuration as the base for the new configuration.
      * 
@@ -82,6 +93,7 @@ public class ImageConfiguration implements Serializable {
       this.maximumIterations = configuration.getMaximumIterations();
       this.overlayZoom = configuration.getOverlayZoom();
       this.colorTheme = configuration.getColorTheme();
+      this.smoothColoring = configuration.getSmoothColoring();
 
       return this;
     }
@@ -143,6 +155,17 @@ public class ImageConfiguration implements Serializable {
       return this;
     }
 
+    /**
+     * Set whether smooth colouring should be used.
+     *
+     * @param smoothColoring Whether the image should be coloured using continuous iteration counts.
+     * @return This builder.
+     */
+    public Builder smoothColoring(final boolean smoothColoring) {
+      this.smoothColoring = smoothColoring;
+      return this;
+    }
+
     /**
      * Builds an {@link com.kiancross.mandelbrot.ImageConfiguration} from the set values.
      *
@@ -150,7 +173,7 @@ public class ImageConfiguration implements Serializable {
      */
     public ImageConfiguration build() {
       return new ImageConfiguration(bound, escapeRadius, maximumIterations, overlayZoom,
-          colorTheme);
+          colorTheme, smoothColoring);
     }
   }
 
@@ -166,15 +189,18 @@ public class ImageConfiguration implements Serializable {
    *
    * @param overlayZoom Whether the zoom amount should be overlayed onto the image.
    * @param colorTheme Colour theme to be used to display the image.
+   * @param smoothColoring Whether the image should be coloured using continuous iteration counts.
    */
   private ImageConfiguration(final Bound bound, final double escapeRadius,
-      final int maximumIterations, final boolean overlayZoom, final ColorGradient colorTheme) {
+      final int maximumIterations, final boolean overlayZoom, final ColorGradient colorTheme,
+      final boolean smoothColoring) {
 
     this.bound = bound;
     this.escapeRadius = escapeRadius;
     this.maximumIterations = maximumIterations;
     this.overlayZoom = overlayZoom;
     this.colorTheme = colorTheme;
+    this.smoothColoring = smoothColoring;
   }
 
   /**
@@ -223,6 +249,15 @@ public class ImageConfiguration implements Serializable {
     return colorTheme;
   }
 
+  /**
+   * Whether smooth colouring should be used.
+   *
+   * @return Whether the image should be coloured using continuous iteration counts.
+   */
+  public boolean getSmoothColoring() {
+    return smoothColoring;
+  }
+
   @Override
   public boolean equals(final Object b) {
 
@@ -235,7 +270,8 @@ public class ImageConfiguration implements Serializable {
     return bound.equals(configuration.getBound()) && escapeRadius == configuration.getEscapeRadius()
         && maximumIterations == configuration.getMaximumIterations()
         && overlayZoom == configuration.getOverlayZoom()
-        && colorTheme.equals(configuration.getColorTheme());
+        && colorTheme.equals(configuration.getColorTheme())
+        && smoothColoring == configuration.getSmoothColoring();
   }
 
   @Override
@@ -253,6 +289,7 @@ public class ImageConfiguration implements Serializable {
     result = 31 * result + (maximumIterations ^ (maximumIterations >>> 32));
     result = 31 * result + (overlayZoom ? 1 : 0);
     result = 31 * result + colorTheme.hashCode();
+    result = 31 * result + (smoothColoring ? 1 : 0);
 
     return result;
   }
@@ -0,0 +1,568 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A snapshot of the explorer's state: an image configuration and, optionally, the iteration values
+ * that were calculated for it. Snapshots are stored in a compact, versioned binary format rather
+ * than using Java serialisation, so that an imported state can be displayed without recalculating
+ * the iteration values.
+ *
+ * <p>The format is as follows (all values are big-endian):
+ *
+ * <pre>
+ * magic              4 bytes  "MBST"
+ * version            short
+ * flags              byte     bit 0: overlay zoom, bit 1: iteration values present,
+ *                             bit 2: smooth colouring, bit 3: continuous iteration counts present
+ * bound              4 doubles (minimum real, minimum imaginary, maximum real, maximum imaginary)
+ * escape radius      double
+ * maximum iterations int
+ * colour theme       UTF name, int stop count, then per stop: double position, 4 doubles RGBA
+ * iteration values   int x resolution, int y resolution, then a deflate compressed stream
+ *                    of zigzag varint encoded differences between consecutive values in
+ *                    each column (only present if flag bit 1 is set)
+ * continuous counts  in the same compressed stream, straight after the iteration values: the
+ *                    float bits of each count XORed with those of the previous count in its
+ *                    column, as zigzag varints (only present if flag bits 1 and 3 are set)
+ * </pre>
+ *
+ * <p>The continuous iteration counts are stored for smooth coloured images, so that they too can
+ * be displayed without recalculating them.
+ */
+public class ImageState {
+
+  /**
+   * The magic number at the start of every state file.
+   */
+  static final byte[] MAGIC = {'M', 'B', 'S', 'T'};
+
+  /**
+   * The current version of the format.
+   */
+  static final short VERSION = 1;
+
+  /**
+   * The largest number of iteration values a state can hold (a 16384 x 16384 image), so that a
+   * corrupt or hostile header can't request more memory than any real image needs.
+   */
+  static final long MAXIMUM_ITERATION_VALUES = 1L << 28;
+
+  /**
+   * Flag indicating the zoom should be overlayed.
+   */
+  private static final int FLAG_OVERLAY_ZOOM = 1;
+
+  /**
+   * Flag indicating iteration values follow the configuration.
+   */
+  private static final int FLAG_ITERATION_VALUES = 1 << 1;
+
+  /**
+   * Flag indicating smooth colouring should be used. Older versions ignore this flag, so it does
+   * not need a new version of the format.
+   */
+  private static final int FLAG_SMOOTH_COLORING = 1 << 2;
+
+  /**
+   * Flag indicating continuous iteration counts follow the iteration values. Older versions stop
+   * reading after the iteration values, so it does not need a new version of the format.
+   */
+  private static final int FLAG_SMOOTH_ITERATION_VALUES = 1 << 3;
+
+  /**
+   * The configuration stored in this state.
+   */
+  private final ImageConfiguration configuration;
+
+  /**
+   * The iteration values calculated for the configuration, or null if there are none.
+   */
+  private final int[][] iterationValues;
+
+  /**
+   * The continuous iteration counts calculated for the configuration, or null if there are none.
+   */
+  private final float[][] smoothIterationValues;
+
+  /**
+   * Construct a state.
+   *
+   * @param configuration The image configuration.
+   * @param iterationValues The iteration values calculated for the configuration (accessed as
+   *        array[x][y]), or null if they should not be stored.
+   */
+  public ImageState(final ImageConfiguration configuration, final int[][] iterationValues) {
+    this(configuration, iterationValues, null);
+  }
+
+  /**
+   * Construct a state that also stores the continuous iteration counts of a smooth coloured image.
+   *
+   * @param configuration The image configuration.
+   * @param iterationValues The iteration values calculated for the configuration (accessed as
+   *        array[x][y]), or null if they should not be stored.
+   * @param smoothIterationValues The continuous iteration counts calculated for the configuration
+   *        (accessed as array[x][y]), or null if they should not be stored. They can only be
+   *        stored with iteration values of the same resolution.
+   */
+  public ImageState(final ImageConfiguration configuration, final int[][] iterationValues,
+      final float[][] smoothIterationValues) {
+
+    if (configuration == null) {
+      throw new IllegalArgumentException("configuration must not be null");
+    }
+
+    if (smoothIterationValues != null && (iterationValues == null
+        || smoothIterationValues.length != iterationValues.length
+        || (iterationValues.length > 0
+            && smoothIterationValues[0].length != iterationValues[0].length))) {
+      throw new IllegalArgumentException(
+          "Continuous iteration counts must have the same resolution as the iteration values.");
+    }
+
+    this.configuration = configuration;
+    this.iterationValues = iterationValues;
+    this.smoothIterationValues = smoothIterationValues;
+  }
+
+  /**
+   * Get the configuration.
+   *
+   * @return The image configuration.
+   */
+  public ImageConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  /**
+   * Get the iteration values.
+   *
+   * @return The iteration values, or null if none were stored.
+   */
+  public int[][] getIterationValues() {
+    return iterationValues;
+  }
+
+  /**
+   * Get the continuous iteration counts.
+   *
+   * @return The continuous iteration counts, or null if none were stored.
+   */
+  public float[][] getSmoothIterationValues() {
+    return smoothIterationValues;
+  }
+
+  /**
+   * Check if a stream starts with the magic number of this format. The stream must support mark
+   * and reset; its position is left unchanged.
+   *
+   * @param in The stream to check.
+   * @return Whether the stream contains a state in this format.
+   *
+   * @throws IOException If there was a problem reading from the stream.
+   */
+  public static boolean isImageState(final InputStream in) throws IOException {
+
+    in.mark(MAGIC.length);
+
+    try {
+      for (int i = 0; i < MAGIC.length; i++) {
+        if (in.read() != MAGIC[i]) {
+          return false;
+        }
+      }
+
+      return true;
+
+    } finally {
+      in.reset();
+    }
+  }
+
+  /**
+   * Write the state to a stream.
+   *
+   * @param stream The stream to write to. It is not closed.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  public void write(final OutputStream stream) throws IOException {
+
+    final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+
+    out.write(MAGIC);
+    out.writeShort(VERSION);
+
+    int flags = 0;
+
+    if (configuration.getOverlayZoom()) {
+      flags |= FLAG_OVERLAY_ZOOM;
+    }
+
+    if (iterationValues != null) {
+      flags |= FLAG_ITERATION_VALUES;
+    }
+
+    if (configuration.getSmoothColoring()) {
+      flags |= FLAG_SMOOTH_COLORING;
+    }
+
+    if (smoothIterationValues != null) {
+      flags |= FLAG_SMOOTH_ITERATION_VALUES;
+    }
+
+    out.writeByte(flags);
+
+    final Bound bound = configuration.getBound();
+
+    out.writeDouble(bound.getMinimum().getReal());
+    out.writeDouble(bound.getMinimum().getImaginary());
+    out.writeDouble(bound.getMaximum().getReal());
+    out.writeDouble(bound.getMaximum().getImaginary());
+
+    out.writeDouble(configuration.getEscapeRadius());
+    out.writeInt(configuration.getMaximumIterations());
+
+    writeColorGradient(out, configuration.getColorTheme());
+
+    if (iterationValues != null) {
+      writeIterationValues(out, iterationValues, smoothIterationValues);
+    }
+
+    out.flush();
+  }
+
+  /**
+   * Read a state from a stream.
+   *
+   * @param stream The stream to read from. It is not closed.
+   * @return The state.
+   *
+   * @throws IOException If there was a problem reading from the stream, or the stream does not
+   *         contain a valid state.
+   */
+  public static ImageState read(final InputStream stream) throws IOException {
+
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+    final byte[] magic = new byte[MAGIC.length];
+    in.readFully(magic);
+
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (magic[i] != MAGIC[i]) {
+        throw new IOException("Not a Mandelbrot explorer state file.");
+      }
+    }
+
+    final short version = in.readShort();
+
+    if (version != VERSION) {
+      throw new IOException(String.format("Unsupported state file version: %d.", version));
+    }
+
+    final int flags = in.readUnsignedByte();
+
+    final ComplexNumber minimum = new ComplexNumber(in.readDouble(), in.readDouble());
+    final ComplexNumber maximum = new ComplexNumber(in.readDouble(), in.readDouble());
+
+    final ImageConfiguration configuration = new ImageConfiguration.Builder()
+        .bound(new Bound(minimum, maximum)).escapeRadius(in.readDouble())
+        .maximumIterations(in.readInt()).overlayZoom((flags & FLAG_OVERLAY_ZOOM) != 0)
+        .smoothColoring((flags & FLAG_SMOOTH_COLORING) != 0).colorTheme(readColorGradient(in))
+        .build();
+
+    if ((flags & FLAG_ITERATION_VALUES) == 0) {
+      return new ImageState(configuration, null);
+    }
+
+    final int xresolution = in.readInt();
+    final int yresolution = in.readInt();
+
+    if (xresolution < 0 || yresolution < 0
+        || (long) xresolution * yresolution > MAXIMUM_ITERATION_VALUES
+        || (yresolution == 0 && xresolution > MAXIMUM_ITERATION_VALUES)) {
+      throw new IOException("Invalid iteration value resolution.");
+    }
+
+    final InputStream decompressed = new BufferedInputStream(new InflaterInputStream(in), 1 << 16);
+
+    final int[][] iterationValues = readIterationValues(decompressed, xresolution, yresolution);
+
+    final float[][] smoothIterationValues = (flags & FLAG_SMOOTH_ITERATION_VALUES) != 0
+        ? readSmoothIterationValues(decompressed, xresolution, yresolution)
+        : null;
+
+    return new ImageState(configuration, iterationValues, smoothIterationValues);
+  }
+
+  /**
+   * Write a colour gradient to a stream.
+   *
+   * @param out The stream to write to.
+   * @param gradient The gradient to write.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  private static void writeColorGradient(final DataOutputStream out, final ColorGradient gradient)
+      throws IOException {
+
+    // Sort the stops so that the same gradient always produces the same bytes.
+    final Map<Double, SerializableColor> stops =
+        new TreeMap<Double, SerializableColor>(gradient.getColorMap());
+
+    out.writeUTF(gradient.getName());
+    out.writeInt(stops.size());
+
+    for (Map.Entry<Double, SerializableColor> stop : stops.entrySet()) {
+
+      final SerializableColor color = stop.getValue();
+
+      out.writeDouble(stop.getKey());
+      out.writeDouble(color.getRed());
+      out.writeDouble(color.getGreen());
+      out.writeDouble(color.getBlue());
+      out.writeDouble(color.getOpacity());
+    }
+  }
+
+  /**
+   * Read a colour gradient from a stream.
+   *
+   * @param in The stream to read from.
+   * @return The gradient.
+   *
+   * @throws IOException If there was a problem reading from the stream.
+   */
+  private static ColorGradient readColorGradient(final DataInputStream in) throws IOException {
+
+    final String name = in.readUTF();
+    final int numberOfStops = in.readInt();
+
+    if (numberOfStops < 2) {
+      throw new IOException("A colour gradient must have at least two stops.");
+    }
+
+    final double[] positions = new double[numberOfStops];
+    final double[][] components = new double[numberOfStops][4];
+
+    for (int i = 0; i < numberOfStops; i++) {
+      positions[i] = in.readDouble();
+
+      for (int j = 0; j < 4; j++) {
+        components[i][j] = in.readDouble();
+      }
+    }
+
+    final ColorGradient gradient;
+
+    try {
+      final SerializableColor[] colors = new SerializableColor[numberOfStops];
+
+      for (int i = 0; i < numberOfStops; i++) {
+        colors[i] = new SerializableColor(components[i][0], components[i][1], components[i][2],
+            components[i][3]);
+      }
+
+      // The stops were written in order, so the first and last are the start and end colours.
+      gradient = new ColorGradient(colors[0], colors[numberOfStops - 1], name);
+
+      for (int i = 1; i < numberOfStops - 1; i++) {
+        gradient.setStop(positions[i], colors[i]);
+      }
+
+    } catch (IllegalArgumentException e) {
+      throw new IOException("Invalid colour gradient.", e);
+    }
+
+    return gradient;
+  }
+
+  /**
+   * Write iteration values to a stream. Neighbouring iteration values are usually very similar, so
+   * the difference between consecutive values in a column is stored as a variable length integer
+   * and the result compressed. Continuous iteration counts are written to the same compressed
+   * stream, with the bits of each XORed with those of the previous count, which leaves few bits
+   * set where neighbouring counts are similar or both inside the set.
+   *
+   * @param out The stream to write to.
+   * @param values The iteration values.
+   * @param smoothValues The continuous iteration counts, or null if they are not written.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  private static void writeIterationValues(final DataOutputStream out, final int[][] values,
+      final float[][] smoothValues) throws IOException {
+
+    final int xresolution = values.length;
+    final int yresolution = xresolution == 0 ? 0 : values[0].length;
+
+    out.writeInt(xresolution);
+    out.writeInt(yresolution);
+
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    try {
+      final DeflaterOutputStream compressed = new DeflaterOutputStream(out, deflater, 1 << 16);
+      final BufferedOutputStream buffered = new BufferedOutputStream(compressed, 1 << 16);
+
+      for (int x = 0; x < xresolution; x++) {
+
+        int previous = 0;
+
+        for (int y = 0; y < yresolution; y++) {
+          writeVarInt(buffered, values[x][y] - previous);
+          previous = values[x][y];
+        }
+      }
+
+      if (smoothValues != null) {
+        for (int x = 0; x < xresolution; x++) {
+
+          int previous = 0;
+
+          for (int y = 0; y < yresolution; y++) {
+            final int bits = Float.floatToIntBits(smoothValues[x][y]);
+            writeVarInt(buffered, bits ^ previous);
+            previous = bits;
+          }
+        }
+      }
+
+      buffered.flush();
+      compressed.finish();
+
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Read iteration values from a decompressed stream.
+   *
+   * @param in The stream to read from.
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @return The iteration values.
+   *
+   * @throws IOException If there was a problem reading from the stream.
+   */
+  private static int[][] readIterationValues(final InputStream in, final int xresolution,
+      final int yresolution) throws IOException {
+
+    // Each column is only allocated once the values before it have been read, so a truncated
+    // file fails before the memory for the whole image is allocated.
+    final int[][] values = new int[xresolution][];
+
+    for (int x = 0; x < xresolution; x++) {
+
+      values[x] = new int[yresolution];
+
+      int previous = 0;
+
+      for (int y = 0; y < yresolution; y++) {
+        previous += readVarInt(in);
+        values[x][y] = previous;
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Read continuous iteration counts from a decompressed stream.
+   *
+   * @param in The stream to read from.
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @return The continuous iteration counts.
+   *
+   * @throws IOException If there was a problem reading from the stream.
+   */
+  private static float[][] readSmoothIterationValues(final InputStream in, final int xresolution,
+      final int yresolution) throws IOException {
+
+    final float[][] values = new float[xresolution][];
+
+    for (int x = 0; x < xresolution; x++) {
+
+      values[x] = new float[yresolution];
+
+      int previous = 0;
+
+      for (int y = 0; y < yresolution; y++) {
+        previous ^= readVarInt(in);
+        values[x][y] = Float.intBitsToFloat(previous);
+      }
+    }
+
+    return values;
+  }
+
+  /**
+   * Write a signed integer as a zigzag encoded variable length integer, so that small positive and
+   * negative values take a single byte.
+   *
+   * @param out The stream to write to.
+   * @param value The value to write.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  private static void writeVarInt(final OutputStream out, final int value) throws IOException {
+
+    int zigzag = (value << 1) ^ (value >> 31);
+
+    while ((zigzag & ~0x7F) != 0) {
+      out.write((zigzag & 0x7F) | 0x80);
+      zigzag >>>= 7;
+    }
+
+    out.write(zigzag);
+  }
+
+  /**
+   * Read a zigzag encoded variable length integer.
+   *
+   * @param in The stream to read from.
+   * @return The value read.
+   *
+   * @throws IOException If there was a problem reading from the stream.
+   */
+  private static int readVarInt(final InputStream in) throws IOException {
+
+    int zigzag = 0;
+
+    for (int shift = 0; shift < 35; shift += 7) {
+
+      final int b = in.read();
+
+      if (b == -1) {
+        throw new EOFException("Unexpected end of iteration values.");
+      }
+
+      zigzag |= (b & 0x7F) << shift;
+
+      if ((b & 0x80) == 0) {
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+    }
+
+    throw new IOException("Malformed iteration value.");
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * A cache of calculated iteration values, so that returning to an image that has already been
+ * calculated, for example by undoing a zoom, does not calculate it again.
+ *
+ * <p>The cache holds at most a budget of bytes of iteration values; when it is exceeded, the least
+ * recently used images are evicted. An image larger than the whole budget is not cached. The
+ * cached arrays are shared with everyone that looks them up, so must not be modified.
+ */
+public class IterationCache {
+
+  /**
+   * The parameters that the iteration values of an image depend on.
+   */
+  private static class Key {
+
+    /**
+     * The bound of the image, before it is normalised.
+     */
+    private final Bound bound;
+
+    /**
+     * The maximum number of iterations.
+     */
+    private final int maximumIterations;
+
+    /**
+     * The escape radius.
+     */
+    private final double escapeRadius;
+
+    /**
+     * The width of the image.
+     */
+    private final int width;
+
+    /**
+     * The height of the image.
+     */
+    private final int height;
+
+    /**
+     * Construct a key.
+     *
+     * @param configuration The configuration of the image.
+     * @param width The width of the image.
+     * @param height The height of the image.
+     */
+    Key(final ImageConfiguration configuration, final int width, final int height) {
+      this.bound = configuration.getBound();
+      this.maximumIterations = configuration.getMaximumIterations();
+      this.escapeRadius = configuration.getEscapeRadius();
+      this.width = width;
+      this.height = height;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+
+      if (!(o instanceof Key)) {
+        return false;
+      }
+
+      final Key key = (Key) o;
+
+      return bound.equals(key.bound) && maximumIterations == key.maximumIterations
+          && escapeRadius == key.escapeRadius && width == key.width && height == key.height;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(bound, maximumIterations, escapeRadius, width, height);
+    }
+  }
+
+  /**
+   * The cached iteration values of an image.
+   */
+  public static class Entry {
+
+    /**
+     * The iteration values.
+     */
+    private final int[][] iterationValues;
+
+    /**
+     * The continuous iteration counts, or null if they were not calculated.
+     */
+    private final float[][] smoothIterationValues;
+
+    /**
+     * The number of bytes the values take up.
+     */
+    private final long size;
+
+    /**
+     * Construct an entry.
+     *
+     * @param iterationValues The iteration values.
+     * @param smoothIterationValues The continuous iteration counts, or null.
+     * @param size The number of bytes the values take up.
+     */
+    Entry(final int[][] iterationValues, final float[][] smoothIterationValues, final long size) {
+      this.iterationValues = iterationValues;
+      this.smoothIterationValues = smoothIterationValues;
+      this.size = size;
+    }
+
+    /**
+     * Get the iteration values.
+     *
+     * @return The iteration values, accessed as array[x][y].
+     */
+    public int[][] getIterationValues() {
+      return iterationValues;
+    }
+
+    /**
+     * Get the continuous iteration counts.
+     *
+     * @return The continuous iteration counts, accessed as array[x][y], or null if they were not
+     *         calculated.
+     */
+    public float[][] getSmoothIterationValues() {
+      return smoothIterationValues;
+    }
+  }
+
+  /**
+   * The cached images, from least to most recently used.
+   */
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>();
+
+  /**
+   * The maximum number of bytes of iteration values to hold.
+   */
+  private long budget;
+
+  /**
+   * The number of bytes of iteration values held.
+   */
+  private long size;
+
+  /**
+   * The number of lookups that found the image.
+   */
+  private long hits;
+
+  /**
+   * The number of lookups.
+   */
+  private long lookups;
+
+  /**
+   * Construct an iteration cache.
+   *
+   * @param budget The maximum number of bytes of iteration values to hold.
+   */
+  public IterationCache(final long budget) {
+    setBudget(budget);
+  }
+
+  /**
+   * Look up the iteration values of an image.
+   *
+   * @param configuration The configuration of the image.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @return The cached values, or null if they are not cached, or continuous iteration counts are
+   *         needed for smooth colouring but were not cached.
+   */
+  public synchronized Entry get(final ImageConfiguration configuration, final int width,
+      final int height) {
+
+    final Entry entry = peek(configuration, width, height);
+
+    lookups++;
+
+    if (entry == null) {
+      return null;
+    }
+
+    hits++;
+
+    // Move the entry to the end, marking it as the most recently used.
+    final Key key = new Key(configuration, width, height);
+    entries.remove(key);
+    entries.put(key, entry);
+
+    return entry;
+  }
+
+  /**
+   * Check whether the iteration values of an image are cached, without counting it as a lookup.
+   *
+   * @param configuration The configuration of the image.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @return Whether {@link #get} would find the values.
+   */
+  public synchronized boolean contains(final ImageConfiguration configuration, final int width,
+      final int height) {
+    return peek(configuration, width, height) != null;
+  }
+
+  /**
+   * Find the iteration values of an image without changing the order of use.
+   *
+   * @param configuration The configuration of the image.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @return The cached values, or null if they are not cached or are missing the continuous
+   *         iteration counts.
+   */
+  private Entry peek(final ImageConfiguration configuration, final int width, final int height) {
+
+    final Entry entry = entries.get(new Key(configuration, width, height));
+
+    if (entry == null
+        || (configuration.getSmoothColoring() && entry.getSmoothIterationValues() == null)) {
+      return null;
+    }
+
+    return entry;
+  }
+
+  /**
+   * Add the iteration values of an image, replacing any already cached for it.
+   *
+   * @param configuration The configuration of the image.
+   * @param iterationValues The iteration values, accessed as array[x][y].
+   * @param smoothIterationValues The continuous iteration counts, accessed as array[x][y], or null
+   *        if they were not calculated.
+   */
+  public synchronized void put(final ImageConfiguration configuration,
+      final int[][] iterationValues, final float[][] smoothIterationValues) {
+
+    final int width = iterationValues.length;
+    final int height = width == 0 ? 0 : iterationValues[0].length;
+    final Key key = new Key(configuration, width, height);
+
+    final long pixels = (long) width * height;
+    final long entrySize =
+        pixels * (Integer.BYTES + (smoothIterationValues == null ? 0 : Float.BYTES));
+
+    final Entry previous = entries.remove(key);
+
+    if (previous != null) {
+      size -= previous.size;
+    }
+
+    if (entrySize > budget) {
+      return;
+    }
+
+    entries.put(key, new Entry(iterationValues, smoothIterationValues, entrySize));
+    size += entrySize;
+
+    evict();
+  }
+
+  /**
+   * Evict the least recently used images until the cache is within its budget.
+   */
+  private void evict() {
+
+    final Iterator<Entry> iterator = entries.values().iterator();
+
+    while (size > budget && iterator.hasNext()) {
+      size -= iterator.next().size;
+      iterator.remove();
+    }
+  }
+
+  /**
+   * Get the maximum number of bytes of iteration values the cache holds.
+   *
+   * @return The budget, in bytes.
+   */
+  public synchronized long getBudget() {
+    return budget;
+  }
+
+  /**
+   * Set the maximum number of bytes of iteration values the cache holds, evicting images if it
+   * is now exceeded.
+   *
+   * @param budget The budget, in bytes. Zero disables the cache.
+   */
+  public synchronized void setBudget(final long budget) {
+
+    if (budget < 0) {
+      throw new IllegalArgumentException("The budget must not be negative.");
+    }
+
+    this.budget = budget;
+
+    evict();
+  }
+
+  /**
+   * Get the number of bytes of iteration values held.
+   *
+   * @return The size, in bytes.
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Get the number of images held.
+   *
+   * @return The number of images.
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * Get the proportion of lookups that found the image.
+   *
+   * @return The hit ratio, between 0 and 1, or 0 if there have been no lookups.
+   */
+  public synchronized double getHitRatio() {
+    return lookups == 0 ? 0 : hits / (double) lookups;
+  }
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The statistics and tunable settings of something that renders mandelbrot images, such as the
+ * explorer's {@code ImageGenerator} or a {@link BatchRenderer}. Once registered, it is visible to
+ * JMX clients such as jconsole as {@code com.kiancross.mandelbrot:type=MandelbrotEngine,name=...},
+ * so that a long running process can be inspected and retuned without restarting it.
+ *
+ * <p>Statistics are recorded by the renderer from any thread, and the settings are read by the
+ * renderer each time they are needed, so changes take effect without any further action.
+ */
+public class MandelbrotEngine implements MandelbrotEngineMBean {
+
+  /**
+   * The domain of the names engines are registered under.
+   */
+  static final String DOMAIN = "com.kiancross.mandelbrot";
+
+  /**
+   * The number of frames rendered.
+   */
+  private final LongAdder framesRendered = new LongAdder();
+
+  /**
+   * The number of iterations computed.
+   */
+  private final LongAdder iterationsComputed = new LongAdder();
+
+  /**
+   * The total time taken to render every frame, in nanoseconds.
+   */
+  private final LongAdder frameTime = new LongAdder();
+
+  /**
+   * The number of pipeline stages whose previous results were reused.
+   */
+  private final LongAdder stageHits = new LongAdder();
+
+  /**
+   * The number of pipeline stages that have been needed.
+   */
+  private final LongAdder stageLookups = new LongAdder();
+
+  /**
+   * The iteration cache, or null if the renderer does not have one.
+   */
+  private final IterationCache cache;
+
+  /**
+   * The number of worker threads used to calculate iteration values.
+   */
+  private volatile int workerCount;
+
+  /**
+   * Gets the number of units of work waiting for a worker.
+   */
+  private volatile IntSupplier queueDepth = () -> 0;
+
+  /**
+   * Called when the number of workers is changed.
+   */
+  private volatile Runnable workerCountListener = () -> {
+  };
+
+  /**
+   * The name the engine is registered under, or null if it is not registered.
+   */
+  private ObjectName objectName;
+
+  /**
+   * Construct an engine.
+   *
+   * @param workerCount The initial number of worker threads.
+   * @param cache The iteration cache, or null if the renderer does not have one.
+   */
+  public MandelbrotEngine(final int workerCount, final IterationCache cache) {
+    setWorkerCount(workerCount);
+    this.cache = cache;
+  }
+
+  /**
+   * Register the engine with the platform MBean server, so that it is visible to JMX clients.
+   *
+   * @param name The name of the engine, which distinguishes it from any others in the process.
+   */
+  public synchronized void register(final String name) {
+
+    try {
+      final ObjectName newName =
+          new ObjectName(DOMAIN + ":type=MandelbrotEngine,name=" + ObjectName.quote(name));
+
+      ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+      objectName = newName;
+
+    } catch (JMException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Unregister the engine from the platform MBean server, if it is registered.
+   */
+  public synchronized void unregister() {
+
+    if (objectName == null) {
+      return;
+    }
+
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    try {
+      server.unregisterMBean(objectName);
+      objectName = null;
+
+    } catch (JMException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Get the name the engine is registered under.
+   *
+   * @return The name, or null if the engine is not registered.
+   */
+  public synchronized ObjectName getObjectName() {
+    return objectName;
+  }
+
+  /**
+   * Record a rendered frame.
+   *
+   * @param latency The time taken to render the frame, in nanoseconds.
+   * @param iterations The number of iterations computed for the frame.
+   */
+  public void recordFrame(final long latency, final long iterations) {
+    framesRendered.increment();
+    frameTime.add(latency);
+    iterationsComputed.add(iterations);
+  }
+
+  /**
+   * Record the pipeline stages needed to render a frame.
+   *
+   * @param hits The number of stages whose previous results were reused.
+   * @param lookups The number of stages needed.
+   */
+  public void recordStages(final long hits, final long lookups) {
+    stageHits.add(hits);
+    stageLookups.add(lookups);
+  }
+
+  /**
+   * Set how the queue depth is found.
+   *
+   * @param queueDepth Gets the number of units of work waiting for a worker. It is called from
+   *        JMX threads, so must be thread safe.
+   */
+  public void setQueueDepthSupplier(final IntSupplier queueDepth) {
+    this.queueDepth = queueDepth;
+  }
+
+  /**
+   * Set a listener that is called when the number of workers is changed, so that a renderer that
+   * is running can start or stop workers.
+   *
+   * @param listener The listener. It is called on the thread changing the number of workers.
+   */
+  public void setWorkerCountListener(final Runnable listener) {
+    this.workerCountListener = listener;
+  }
+
+  /**
+   * Get the iteration cache.
+   *
+   * @return The iteration cache, or null if the renderer does not have one.
+   */
+  public IterationCache getCache() {
+    return cache;
+  }
+
+  @Override
+  public long getFramesRendered() {
+    return framesRendered.sum();
+  }
+
+  @Override
+  public long getIterationsComputed() {
+    return iterationsComputed.sum();
+  }
+
+  @Override
+  public double getAverageFrameLatency() {
+
+    final long frames = framesRendered.sum();
+
+    return frames == 0 ? 0 : frameTime.sum() / 1e6 / frames;
+  }
+
+  @Override
+  public int getQueueDepth() {
+    return queueDepth.getAsInt();
+  }
+
+  @Override
+  public int getCacheEntries() {
+    return cache == null ? 0 : cache.getEntryCount();
+  }
+
+  @Override
+  public long getCacheSize() {
+    return cache == null ? 0 : cache.getSize();
+  }
+
+  @Override
+  public double getCacheHitRatio() {
+    return cache == null ? 0 : cache.getHitRatio();
+  }
+
+  @Override
+  public double getStageHitRatio() {
+
+    final long lookups = stageLookups.sum();
+
+    return lookups == 0 ? 0 : stageHits.sum() / (double) lookups;
+  }
+
+  @Override
+  public int getWorkerCount() {
+    return workerCount;
+  }
+
+  @Override
+  public void setWorkerCount(final int workerCount) {
+
+    if (workerCount < 1) {
+      throw new IllegalArgumentException("Number of workers must be greater than zero.");
+    }
+
+    this.workerCount = workerCount;
+    workerCountListener.run();
+  }
+
+  @Override
+  public long getCacheBudget() {
+    return cache == null ? 0 : cache.getBudget();
+  }
+
+  @Override
+  public void setCacheBudget(final long cacheBudget) {
+
+    if (cache == null) {
+      throw new UnsupportedOperationException("This engine has no iteration cache.");
+    }
+
+    cache.setBudget(cacheBudget);
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * The management interface of a {@link MandelbrotEngine}, through which the statistics of a running
+ * explorer or batch renderer can be inspected, and its worker count and cache budget changed,
+ * with a JMX client such as jconsole.
+ */
+public interface MandelbrotEngineMBean {
+
+  /**
+   * Get the number of frames rendered since the engine was created.
+   *
+   * @return The number of frames.
+   */
+  long getFramesRendered();
+
+  /**
+   * Get the number of iterations computed since the engine was created. Iteration values that were
+   * reused rather than computed are not counted.
+   *
+   * @return The number of iterations.
+   */
+  long getIterationsComputed();
+
+  /**
+   * Get the average time taken to render a frame.
+   *
+   * @return The average latency, in milliseconds, or 0 if no frames have been rendered.
+   */
+  double getAverageFrameLatency();
+
+  /**
+   * Get the number of units of work, such as tiles, waiting for a worker.
+   *
+   * @return The queue depth.
+   */
+  int getQueueDepth();
+
+  /**
+   * Get the number of images held in the iteration cache.
+   *
+   * @return The number of images, or 0 if the engine has no cache.
+   */
+  int getCacheEntries();
+
+  /**
+   * Get the number of bytes of iteration values held in the iteration cache.
+   *
+   * @return The size, in bytes, or 0 if the engine has no cache.
+   */
+  long getCacheSize();
+
+  /**
+   * Get the proportion of iteration cache lookups that found the image.
+   *
+   * @return The hit ratio, between 0 and 1.
+   */
+  double getCacheHitRatio();
+
+  /**
+   * Get the proportion of pipeline stages whose previous results were reused.
+   *
+   * @return The hit ratio, between 0 and 1.
+   */
+  double getStageHitRatio();
+
+  /**
+   * Get the number of worker threads used to calculate iteration values.
+   *
+   * @return The number of workers.
+   */
+  int getWorkerCount();
+
+  /**
+   * Set the number of worker threads used to calculate iteration values.
+   *
+   * @param workerCount The number of workers, which must be greater than zero.
+   */
+  void setWorkerCount(int workerCount);
+
+  /**
+   * Get the maximum number of bytes of iteration values held in the iteration cache.
+   *
+   * @return The budget, in bytes, or 0 if the engine has no cache.
+   */
+  long getCacheBudget();
+
+  /**
+   * Set the maximum number of bytes of iteration values held in the iteration cache, evicting
+   * images if it is now exceeded.
+   *
+   * @param cacheBudget The budget, in bytes.
+   */
+  void setCacheBudget(long cacheBudget);
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.function.Consumer;
+
+/**
+ * Implements the mandelbrot set calculations.
+ */
+public class MandelbrotSetIterationCountGenerator {
+
+  /**
+   * Bound representing the minimum and maximum complex number to have iteration values calculated
+   * for.
+   */
+  final Bound bound;
+
+  /**
+   * Maximum number of iterations before assuming the complex number lies within the mandelbrot set.
+   */
+  final int maximumIterations;
+
+  /**
+   * The escape radius to use when calculating the iteration values.
+   */
+  final double escapeRadius;
+
+  /**
+   * The time each thread spent calculating in the last multithreaded calculation, in nanoseconds.
+   */
+  private volatile long[] workerBusyTimes = new long[0];
+
+  /**
+   * The progress that calculated pixels are reported to, or null if progress is not reported.
+   */
+  private volatile RenderProgress progress;
+
+  /**
+   * The predicted cost of the points of the image, used to divide the columns between threads, or
+   * null to divide them evenly.
+   */
+  private volatile CostMap costMap;
+
+  /**
+   * Constructor for the generator.
+   *
+   * @param bound Bound representing the minimum and maximum complex number to have iteration values
+   *        calculated for.
+   *
+   * @param maximumIterations Maximum number of iterations before assuming the complex number lies
+   *        within the mandelbrot set.
+   *
+   * @param escapeRadius The escape radius to use when calculating the iteration values.
+   */
+  public MandelbrotSetIterationCountGenerator(final Bound bound, final int maximumIterations,
+      final double escapeRadius) {
+
+    if (bound == null) {
+      throw new IllegalArgumentException("bound must not be null");
+    }
+
+    this.bound = bound;
+    this.maximumIterations = maximumIterations;
+    this.escapeRadius = escapeRadius;
+  }
+
+  /**
+   * Set the progress that calculated pixels are reported to. Each thread reports once per column of
+   * its tile, so reporting does not slow the calculation of individual pixels.
+   *
+   * @param progress The progress, or null to stop reporting progress.
+   */
+  public void setProgress(final RenderProgress progress) {
+    this.progress = progress;
+  }
+
+  /**
+   * Set the predicted cost of the points of the image, such as from the iteration values of a
+   * previous, overlapping image. Each multithreaded calculation then gives each thread a range of
+   * columns with the same predicted cost, rather than the same number of columns.
+   *
+   * @param costMap The predicted cost, or null to divide the columns evenly.
+   */
+  public void setCostMap(final CostMap costMap) {
+    this.costMap = costMap;
+  }
+
+  /**
+   * Calculate the number of iterations required for the given complex number to exceed the escape
+   * radius.
+   *
+   * @param c The complex number to be used in the mandelbrot iterative calculation.
+   *
+   * @return The number of iterations taken to exceed the radius, or -1 if the maximum number of
+   *         iterations was reached.
+   */
+  public int calculateIterations(final ComplexNumber c) {
+
+    ComplexNumber z = new ComplexNumber(0, 0);
+
+    for (int i = 1; i <= maximumIterations; i++) {
+
+      z = z.square().add(c);
+
+      if (z.getAbsoluteSquare() > (escapeRadius * escapeRadius)) {
+        return i;
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Calculate a continuous iteration count for the given complex number, which varies smoothly
+   * across the boundaries between integer iteration counts. If the point escapes after n
+   * iterations, the value is n - 1 + f, where f is between 0 and 1 and is derived from how far past
+   * the escape radius the final value of z landed: f is 1 when |z| is just over the escape radius
+   * and falls to 0 as |z| approaches its square.
+   *
+   * <p>The integer iteration count can be recovered as the floor of the value plus one.
+   *
+   * @param c The complex number to be used in the mandelbrot iterative calculation.
+   *
+   * @return The continuous iteration count, or -1 if the maximum number of iterations was reached.
+   */
+  public float calculateSmoothIterations(final ComplexNumber c) {
+
+    ComplexNumber z = new ComplexNumber(0, 0);
+
+    for (int i = 1; i <= maximumIterations; i++) {
+
+      z = z.square().add(c);
+
+      final double absoluteSquare = z.getAbsoluteSquare();
+
+      if (absoluteSquare > (escapeRadius * escapeRadius)) {
+        return getSmoothValue(i, absoluteSquare);
+      }
+    }
+
+    return -1;
+  }
+
+  /**
+   * Get the continuous iteration count of a point that escaped.
+   *
+   * @param iterations The number of iterations taken to exceed the escape radius.
+   * @param absoluteSquare The absolute square of z after the final iteration.
+   *
+   * @return The continuous iteration count, between iterations - 1 (inclusive) and iterations
+   *         (exclusive).
+   */
+  private float getSmoothValue(final int iterations, final double absoluteSquare) {
+
+    // The fraction is only meaningful if the logarithm of the escape radius is positive.
+    if (escapeRadius <= 1) {
+      return iterations - 1;
+    }
+
+    // log|z| / log(escapeRadius) is just over 1 when z has only just escaped, and up to about 2.
+    final double ratio = Math.log(absoluteSquare) / (2 * Math.log(escapeRadius));
+    final double fraction = Math.max(0, 1 - (Math.log(ratio) / Math.log(2)));
+
+    final float value = (float) (iterations - 1 + fraction);
+
+    // Rounding to a float must not carry the value into the next iteration count.
+    return value < iterations ? value : Math.nextDown((float) iterations);
+  }
+
+  /**
+   * Calculate the iteration value of a single pixel of an image of a given resolution. The position
+   * may be fractional, to take extra samples within a pixel.
+   *
+   * @param x The column of the pixel.
+   * @param y The row of the pixel, where row 0 corresponds to the minimum imaginary value.
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   *
+   * @return The number of iterations taken to exceed the escape radius, or -1 if the maximum number
+   *         of iterations was reached.
+   */
+  public int calculatePixel(final double x, final double y, final int xresolution,
+      final int yresolution) {
+
+    final ComplexNumber minimumC = bound.getMinimum();
+    final ComplexNumber range = bound.getRange();
+
+    return calculateIterations(
+        new ComplexNumber(minimumC.getReal() + (x * (range.getReal() / (double) xresolution)),
+            minimumC.getImaginary() + (y * (range.getImaginary() / (double) yresolution))));
+  }
+
+  /**
+   * Calculate the continuous iteration count of a single pixel of an image of a given resolution.
+   * The position may be fractional, to take extra samples within a pixel.
+   *
+   * @param x The column of the pixel.
+   * @param y The row of the pixel, where row 0 corresponds to the minimum imaginary value.
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   *
+   * @return The continuous iteration count (see {@link #calculateSmoothIterations}), or -1 if the
+   *         maximum number of iterations was reached.
+   */
+  public float calculateSmoothPixel(final double x, final double y, final int xresolution,
+      final int yresolution) {
+
+    final ComplexNumber minimumC = bound.getMinimum();
+    final ComplexNumber range = bound.getRange();
+
+    return calculateSmoothIterations(
+        new ComplexNumber(minimumC.getReal() + (x * (range.getReal() / (double) xresolution)),
+            minimumC.getImaginary() + (y * (range.getImaginary() / (double) yresolution))));
+  }
+
+  /**
+   * Calculate the iteration values of a tile of an image of a given resolution on the calling
+   * thread. This allows the work of calculating an image to be scheduled by the caller, for example
+   * on a thread pool shared with other images.
+   *
+   * @param set The array to place the results, accessed as array[x][y - yOffset].
+   * @param yOffset The row of the image corresponding to the first row of the array.
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @param tile The tile to calculate.
+   */
+  public void calculateTile(final int[][] set, final int yOffset, final int xresolution,
+      final int yresolution, final Tile tile) {
+
+    final ComplexNumber minimumC = bound.getMinimum();
+    final ComplexNumber maximumC = bound.getMaximum();
+
+    final double realStepSize = (maximumC.getReal() - minimumC.getReal()) / (double) xresolution;
+
+    final double imaginaryStepSize =
+        (maximumC.getImaginary() - minimumC.getImaginary()) / (double) yresolution;
+
+    final int xEnd = tile.getX() + tile.getWidth();
+    final int yEnd = tile.getY() + tile.getHeight();
+
+    final RenderProgress currentProgress = progress;
+
+    for (int x = tile.getX(); x < xEnd; x++) {
+
+      final double realPart = minimumC.getReal() + (x * realStepSize);
+
+      long columnIterations = 0;
+
+      for (int y = tile.getY(); y < yEnd; y++) {
+
+        final double imaginaryPart = minimumC.getImaginary() + (y * imaginaryStepSize);
+
+        final int value = calculateIterations(new ComplexNumber(realPart, imaginaryPart));
+
+        set[x][y - yOffset] = value;
+        columnIterations += value == -1 ? maximumIterations : value;
+      }
+
+      if (currentProgress != null) {
+        currentProgress.record(tile.getHeight(), columnIterations);
+      }
+    }
+  }
+
+  /**
+   * Calculate the continuous iteration counts of a tile of an image of a given resolution on the
+   * calling thread.
+   *
+   * @param set The array to place the results, accessed as array[x][y - yOffset].
+   * @param yOffset The row of the image corresponding to the first row of the array.
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @param tile The tile to calculate.
+   */
+  public void calculateSmoothTile(final float[][] set, final int yOffset, final int xresolution,
+      final int yresolution, final Tile tile) {
+
+    final ComplexNumber minimumC = bound.getMinimum();
+    final ComplexNumber maximumC = bound.getMaximum();
+
+    final double realStepSize = (maximumC.getReal() - minimumC.getReal()) / (double) xresolution;
+
+    final double imaginaryStepSize =
+        (maximumC.getImaginary() - minimumC.getImaginary()) / (double) yresolution;
+
+    final int xEnd = tile.getX() + tile.getWidth();
+    final int yEnd = tile.getY() + tile.getHeight();
+
+    final RenderProgress currentProgress = progress;
+
+    for (int x = tile.getX(); x < xEnd; x++) {
+
+      final double realPart = minimumC.getReal() + (x * realStepSize);
+
+      long columnIterations = 0;
+
+      for (int y = tile.getY(); y < yEnd; y++) {
+
+        final double imaginaryPart = minimumC.getImaginary() + (y * imaginaryStepSize);
+
+        final float value = calculateSmoothIterations(new ComplexNumber(realPart, imaginaryPart));
+
+        set[x][y - yOffset] = value;
+        columnIterations += value < 0 ? maximumIterations : (int) value + 1;
+      }
+
+      if (currentProgress != null) {
+        currentProgress.record(tile.getHeight(), columnIterations);
+      }
+    }
+  }
+
+  /**
+   * Gets a subtask of the calculation which can be used to run the calculation in multiple threads.
+   *
+   * @param calculation The calculation to run on the subtask's tile.
+   * @param xStart The first column (inclusive) to calculate.
+   * @param xEnd The last column (exclusive) to calculate.
+   * @param yStart The first row (inclusive) to calculate.
+   * @param yEnd The last row (exclusive) to calculate.
+   *
+   * @return Returns a runnable that can be called to execute the task.
+   */
+  private Runnable getSubtask(final Consumer<Tile> calculation, final int xStart, final int xEnd,
+      final int yStart, final int yEnd) {
+    return new Runnable() {
+      public void run() {
+        calculation.accept(new Tile(xStart, yStart, xEnd - xStart, yEnd - yStart));
+      }
+    };
+  }
+
+  /**
+   * Divide the columns of a strip between threads.
+   *
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @param yStart The first row (inclusive) of the strip.
+   * @param yEnd The last row (exclusive) of the strip.
+   * @param numberOfThreads The number of threads.
+   *
+   * @return The boundaries of the threads' columns: thread i calculates the columns from element i
+   *         (inclusive) to element i + 1 (exclusive).
+   */
+  int[] partition(final int xresolution, final int yresolution, final int yStart, final int yEnd,
+      final int numberOfThreads) {
+
+    final CostMap currentCostMap = costMap;
+
+    if (currentCostMap != null) {
+      return currentCostMap.partition(bound, xresolution, yresolution, yStart, yEnd,
+          numberOfThreads);
+    }
+
+    // Each range ends where the next starts, so the full range of values is calculated with no
+    // gaps, and no column is calculated twice (which would also count it twice in the progress).
+    final int[] boundaries = new int[numberOfThreads + 1];
+
+    for (int i = 0; i <= numberOfThreads; i++) {
+      boundaries[i] = (int) ((long) i * xresolution / numberOfThreads);
+    }
+
+    return boundaries;
+  }
+
+  /**
+   * Run a calculation over a strip of an image, divided between a number of threads.
+   *
+   * @param calculation The calculation to run on each thread's tile.
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @param yStart The first row (inclusive) of the strip.
+   * @param yEnd The last row (exclusive) of the strip.
+   * @param numberOfThreads The number of threads to run the calculation on.
+   */
+  private void calculateInThreads(final Consumer<Tile> calculation, final int xresolution,
+      final int yresolution, final int yStart, final int yEnd, final int numberOfThreads) {
+
+    if (numberOfThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be greater than zero.");
+    }
+
+    if (yStart < 0 || yEnd > yresolution || yStart > yEnd) {
+      throw new IllegalArgumentException("Strip must lie within the y resolution.");
+    }
+
+    final Thread[] tasks = new Thread[numberOfThreads];
+    final long[] busyTimes = new long[numberOfThreads];
+    final int[] boundaries = partition(xresolution, yresolution, yStart, yEnd, numberOfThreads);
+
+    for (int i = 0; i < numberOfThreads; i++) {
+
+      final int threadNumber = i;
+      final Runnable subtask =
+          getSubtask(calculation, boundaries[i], boundaries[i + 1], yStart, yEnd);
+
+      final Thread thread = new Thread(() -> {
+        final long start = System.nanoTime();
+        subtask.run();
+        busyTimes[threadNumber] = System.nanoTime() - start;
+      });
+
+      thread.start();
+
+      tasks[i] = thread;
+    }
+
+    try {
+      for (int i = 0; i < numberOfThreads; i++) {
+        tasks[i].join();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+
+    workerBusyTimes = busyTimes;
+  }
+
+  /**
+   * Get the time each thread spent calculating in the last calculation of a whole image or strip.
+   * Threads that finish early leave cores idle, so uneven times show that the work was not evenly
+   * divided.
+   *
+   * @return The time of each thread, in nanoseconds, or an empty array if no image or strip has
+   *         been calculated.
+   */
+  public long[] getWorkerBusyTimes() {
+    return workerBusyTimes.clone();
+  }
+
+  /**
+   * Calculate the iteration values for a given resolution using a certain number of threads.
+   *
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @param numberOfThreads The number of threads to run the calculation on.
+   *
+   * @return A 2D array containing the iteration values. Each position in the array can be accessed
+   *         as so: array[x][y].
+   */
+  public int[][] calculate(final int xresolution, final int yresolution,
+      final int numberOfThreads) {
+    return calculate(xresolution, yresolution, 0, yresolution, numberOfThreads);
+  }
+
+  /**
+   * Calculate the iteration values for a horizontal strip of an image of a given resolution using a
+   * certain number of threads. This allows very large images to be calculated a strip at a time,
+   * without holding all of the iteration values in memory.
+   *
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @param yStart The first row (inclusive) of the strip. Row 0 corresponds to the minimum
+   *        imaginary value of the bound.
+   * @param yEnd The last row (exclusive) of the strip.
+   * @param numberOfThreads The number of threads to run the calculation on.
+   *
+   * @return A 2D array containing the iteration values of the strip. Each position in the array can
+   *         be accessed as so: array[x][y - yStart].
+   */
+  public int[][] calculate(final int xresolution, final int yresolution, final int yStart,
+      final int yEnd, final int numberOfThreads) {
+
+    final int[][] set = new int[xresolution][Math.max(0, yEnd - yStart)];
+
+    calculateInThreads(tile -> calculateTile(set, yStart, xresolution, yresolution, tile),
+        xresolution, yresolution, yStart, yEnd, numberOfThreads);
+
+    return set;
+  }
+
+  /**
+   * Calculate the continuous iteration counts for a horizontal strip of an image of a given
+   * resolution using a certain number of threads. These are stored as floats, which gives a
+   * fractional precision of better than 1/16 of an iteration up to a million iterations.
+   *
+   * @param xresolution The resolution of the x-axis.
+   * @param yresolution The resolution of the y-axis.
+   * @param yStart The first row (inclusive) of the strip. Row 0 corresponds to the minimum
+   *        imaginary value of the bound.
+   * @param yEnd The last row (exclusive) of the strip.
+   * @param numberOfThreads The number of threads to run the calculation on.
+   *
+   * @return A 2D array containing the continuous iteration counts (see
+   *         {@link #calculateSmoothIterations}) of the strip. Each position in the array can be
+   *         accessed as so: array[x][y - yStart].
+   */
+  public float[][] calculateSmooth(final int xresolution, final int yresolution, final int yStart,
+      final int yEnd, final int numberOfThreads) {
+
+    final float[][] set = new float[xresolution][Math.max(0, yEnd - yStart)];
+
+    calculateInThreads(tile -> calculateSmoothTile(set, yStart, xresolution, yresolution, tile),
+        xresolution, yresolution, yStart, yEnd, numberOfThreads);
+
+    return set;
+  }
+
+  /**
+   * Convert continuous iteration counts to the integer iteration counts they were derived from.
+   *
+   * @param smoothIterationValues The continuous iteration counts, accessed as array[x][y].
+   * @return The integer iteration counts, accessed as array[x][y], with -1 for points inside the
+   *         set.
+   */
+  public static int[][] toIterationCounts(final float[][] smoothIterationValues) {
+
+    final int[][] iterationValues = new int[smoothIterationValues.length][];
+
+    for (int x = 0; x < smoothIterationValues.length; x++) {
+
+      final float[] column = smoothIterationValues[x];
+
+      iterationValues[x] = new int[column.length];
+
+      for (int y = 0; y < column.length; y++) {
+        iterationValues[x][y] = column[y] < 0 ? -1 : (int) column[y] + 1;
+      }
+    }
+
+    return iterationValues;
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * Animates an image by cycling its colours through the gradient, without recalculating anything.
+ *
+ * <p>When the cycler is created, every pixel is reduced to its position in the gradient lookup
+ * table of a {@link HistogramColorMapper}, using the histogram it already holds. A frame is then
+ * produced by rotating the gradient by an offset and looking up each pixel's position in the
+ * rotated table, which is a single array lookup per pixel. The gradient is run forwards and then
+ * backwards, so that the colours wrap around without a seam.
+ *
+ * <p>Frames are produced on the calling thread. The lookup is limited by memory bandwidth rather
+ * than computation, so spreading it over more threads gains little.
+ */
+public class PaletteCycler {
+
+  /**
+   * The number of entries in one full cycle of the gradient: forwards, then backwards without
+   * repeating the end points.
+   */
+  private static final int CYCLE_LENGTH = 2 * HistogramColorMapper.GRADIENT_TABLE_SIZE - 2;
+
+  /**
+   * The position used for pixels inside the set, which are always black.
+   */
+  private static final short INSIDE_SET = HistogramColorMapper.GRADIENT_TABLE_SIZE;
+
+  /**
+   * The width of the image.
+   */
+  private final int width;
+
+  /**
+   * The height of the image.
+   */
+  private final int height;
+
+  /**
+   * The gradient for one full cycle, as ARGB colours.
+   */
+  private final int[] cycle = new int[CYCLE_LENGTH];
+
+  /**
+   * The position of each pixel in the gradient lookup table, in rows from the top of the image.
+   */
+  private final short[] positions;
+
+  /**
+   * The gradient rotated for the current frame, followed by black for pixels inside the set.
+   */
+  private final int[] rotated = new int[HistogramColorMapper.GRADIENT_TABLE_SIZE + 1];
+
+  /**
+   * The pixels of the current frame, in rows from the top of the image.
+   */
+  private final int[] pixels;
+
+  /**
+   * Construct a palette cycler for an image coloured with integer iteration values.
+   *
+   * @param colorMapper The colour mapper, whose histogram should already contain the image.
+   * @param iterationValues The iteration values of the image, accessed as array[x][y], where y
+   *        increases upwards.
+   */
+  public PaletteCycler(final HistogramColorMapper colorMapper, final int[][] iterationValues) {
+
+    this(colorMapper, iterationValues.length,
+        iterationValues.length == 0 ? 0 : iterationValues[0].length);
+
+    for (int x = 0; x < width; x++) {
+      for (int y = 0; y < height; y++) {
+
+        final int value = iterationValues[x][y];
+
+        positions[(height - 1 - y) * width + x] =
+            value == -1 ? INSIDE_SET : (short) colorMapper.getGradientPosition(value);
+      }
+    }
+  }
+
+  /**
+   * Construct a palette cycler for an image coloured with continuous iteration counts.
+   *
+   * @param colorMapper The colour mapper, whose histogram should already contain the image.
+   * @param smoothIterationValues The continuous iteration counts of the image, accessed as
+   *        array[x][y], where y increases upwards.
+   */
+  public PaletteCycler(final HistogramColorMapper colorMapper,
+      final float[][] smoothIterationValues) {
+
+    this(colorMapper, smoothIterationValues.length,
+        smoothIterationValues.length == 0 ? 0 : smoothIterationValues[0].length);
+
+    for (int x = 0; x < width; x++) {
+      for (int y = 0; y < height; y++) {
+
+        final float value = smoothIterationValues[x][y];
+
+        positions[(height - 1 - y) * width + x] =
+            value < 0 ? INSIDE_SET : (short) colorMapper.getGradientPosition(value);
+      }
+    }
+  }
+
+  /**
+   * Construct a palette cycler, building the gradient cycle.
+   *
+   * @param colorMapper The colour mapper.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   */
+  private PaletteCycler(final HistogramColorMapper colorMapper, final int width,
+      final int height) {
+
+    this.width = width;
+    this.height = height;
+    this.positions = new short[width * height];
+    this.pixels = new int[width * height];
+
+    final int[] gradientTable = colorMapper.getGradientTable();
+
+    for (int i = 0; i < CYCLE_LENGTH; i++) {
+      cycle[i] = gradientTable[i < gradientTable.length ? i : CYCLE_LENGTH - i];
+    }
+
+    rotated[INSIDE_SET] = SerializableColor.BLACK.toArgb();
+  }
+
+  /**
+   * Get the width of the image.
+   *
+   * @return The width of the image.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the height of the image.
+   *
+   * @return The height of the image.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Produce a frame with the gradient rotated by a given amount. A phase of 0 gives the original
+   * colours, and the colours repeat with a period of 1.
+   *
+   * @param phase The rotation of the gradient, in cycles.
+   * @return The ARGB pixels of the frame, in rows from the top of the image. The same array is
+   *         reused by every frame, so it must not be kept after the next call.
+   */
+  public int[] cycle(final double phase) {
+
+    final int offset = (int) Math.floorMod(Math.round(phase * CYCLE_LENGTH), (long) CYCLE_LENGTH);
+
+    for (int i = 0; i < HistogramColorMapper.GRADIENT_TABLE_SIZE; i++) {
+
+      final int position = i + offset;
+
+      rotated[i] = cycle[position < CYCLE_LENGTH ? position : position - CYCLE_LENGTH];
+    }
+
+    for (int i = 0; i < pixels.length; i++) {
+      pixels[i] = rotated[positions[i]];
+    }
+
+    return pixels;
+  }
+}
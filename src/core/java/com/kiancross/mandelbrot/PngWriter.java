@@ -0,0 +1,514 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes an 8-bit RGB PNG image one row at a time. Unlike {@link javax.imageio.ImageIO}, the whole
+ * image never has to be held in memory, so images of any size can be written. The format is
+ * described here: https://www.w3.org/TR/png/
+ *
+ * <p>Compression dominates the time taken to write a large image, so the rows are grouped into
+ * strips which are compressed in parallel. Each strip is compressed independently (primed with the
+ * end of the previous strip as a dictionary, so little compression is lost) and ends on a byte
+ * boundary, allowing the compressed strips to be concatenated into a single valid zlib stream. This
+ * is the same technique used by pigz.
+ */
+public class PngWriter implements Closeable {
+
+  /**
+   * The signature at the start of every PNG file.
+   */
+  private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+  /**
+   * The maximum size of the data in each IDAT chunk.
+   */
+  private static final int MAXIMUM_CHUNK_SIZE = 1 << 16;
+
+  /**
+   * The number of bytes used for each pixel (red, green and blue).
+   */
+  private static final int BYTES_PER_PIXEL = 3;
+
+  /**
+   * The "Up" filter type, which stores the difference between each byte and the byte above it.
+   */
+  private static final int FILTER_UP = 2;
+
+  /**
+   * The approximate number of uncompressed bytes in each strip that is compressed independently.
+   */
+  private static final int STRIP_SIZE = 1 << 19;
+
+  /**
+   * The size of the deflate window, and therefore the most data that is useful as a dictionary.
+   */
+  private static final int DICTIONARY_SIZE = 1 << 15;
+
+  /**
+   * The zlib header for a deflate stream with a 32K window and the default compression level.
+   */
+  private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9C};
+
+  /**
+   * The stream the PNG is written to.
+   */
+  private final DataOutputStream out;
+
+  /**
+   * The width of the image.
+   */
+  private final int width;
+
+  /**
+   * The height of the image.
+   */
+  private final int height;
+
+  /**
+   * The stream the compressed image data is written to.
+   */
+  private final ChunkOutputStream imageData = new ChunkOutputStream();
+
+  /**
+   * The executor used to compress strips, or null if they are compressed on the calling thread.
+   */
+  private final ExecutorService executor;
+
+  /**
+   * The maximum number of strips that may be waiting to be written. This bounds the memory used.
+   */
+  private final int maximumPendingStrips;
+
+  /**
+   * Strips that are being compressed, in the order they must be written.
+   */
+  private final Deque<Future<byte[]>> pendingStrips = new ArrayDeque<Future<byte[]>>();
+
+  /**
+   * The checksum of all of the uncompressed image data, required at the end of the zlib stream.
+   */
+  private final Adler32 checksum = new Adler32();
+
+  /**
+   * The uncompressed (filtered) data of the current strip.
+   */
+  private byte[] strip;
+
+  /**
+   * The number of bytes in the current strip.
+   */
+  private int stripLength;
+
+  /**
+   * The end of the previous strip, used as the dictionary for the current strip.
+   */
+  private byte[] dictionary;
+
+  /**
+   * The unfiltered bytes of the current row.
+   */
+  private byte[] currentRow;
+
+  /**
+   * The unfiltered bytes of the previous row (used by the "Up" filter).
+   */
+  private byte[] previousRow;
+
+  /**
+   * The filtered bytes of the current row, preceded by the filter type.
+   */
+  private final byte[] filteredRow;
+
+  /**
+   * The number of rows that have been written.
+   */
+  private int rowsWritten;
+
+  /**
+   * Construct a PNG writer that compresses on the calling thread, writing the header of the image
+   * immediately.
+   *
+   * @param out The stream to write the image to. This is closed when the writer is closed.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  public PngWriter(final OutputStream out, final int width, final int height) throws IOException {
+    this(out, width, height, 1);
+  }
+
+  /**
+   * Construct a PNG writer, writing the header of the image immediately.
+   *
+   * @param out The stream to write the image to. This is closed when the writer is closed.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @param numberOfThreads The number of threads to compress the image data with.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  public PngWriter(final OutputStream out, final int width, final int height,
+      final int numberOfThreads) throws IOException {
+
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height must be greater than zero.");
+    }
+
+    if (numberOfThreads < 1) {
+      throw new IllegalArgumentException("Number of threads must be greater than zero.");
+    }
+
+    this.out = new DataOutputStream(out);
+    this.width = width;
+    this.height = height;
+
+    currentRow = new byte[width * BYTES_PER_PIXEL];
+    previousRow = new byte[width * BYTES_PER_PIXEL];
+    filteredRow = new byte[width * BYTES_PER_PIXEL + 1];
+    filteredRow[0] = FILTER_UP;
+
+    // Always hold at least one whole row in a strip.
+    strip = new byte[Math.max(STRIP_SIZE, filteredRow.length)];
+
+    if (numberOfThreads == 1) {
+      executor = null;
+      maximumPendingStrips = 1;
+
+    } else {
+
+      executor = Executors.newFixedThreadPool(numberOfThreads, runnable -> {
+        final Thread thread = new Thread(runnable);
+        thread.setDaemon(true);
+        return thread;
+      });
+
+      maximumPendingStrips = numberOfThreads * 2;
+    }
+
+    this.out.write(SIGNATURE);
+
+    final byte[] header = new byte[13];
+
+    writeInt(header, 0, width);
+    writeInt(header, 4, height);
+
+    header[8] = 8; // Bit depth.
+    header[9] = 2; // Colour type: truecolour.
+    header[10] = 0; // Compression method: deflate.
+    header[11] = 0; // Filter method: adaptive.
+    header[12] = 0; // Interlace method: none.
+
+    writeChunk("IHDR", header, 0, header.length);
+
+    imageData.write(ZLIB_HEADER);
+  }
+
+  /**
+   * Write the next row of the image, starting from the top.
+   *
+   * @param pixels The pixels of the row, from left to right, packed as 0xRRGGBB (any alpha value
+   *        in the upper byte is ignored).
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  public void writeRow(final int[] pixels) throws IOException {
+
+    if (pixels.length != width) {
+      throw new IllegalArgumentException("Row must contain exactly one pixel per column.");
+    }
+
+    if (rowsWritten == height) {
+      throw new IllegalStateException("All rows have already been written.");
+    }
+
+    for (int x = 0; x < width; x++) {
+      currentRow[x * BYTES_PER_PIXEL] = (byte) (pixels[x] >> 16);
+      currentRow[x * BYTES_PER_PIXEL + 1] = (byte) (pixels[x] >> 8);
+      currentRow[x * BYTES_PER_PIXEL + 2] = (byte) pixels[x];
+    }
+
+    // Neighbouring rows of a Mandelbrot image are usually very similar, so storing the difference
+    // from the row above compresses much better than the raw values. The previous row is all zeros
+    // for the first row, as required by the specification.
+    for (int i = 0; i < currentRow.length; i++) {
+      filteredRow[i + 1] = (byte) (currentRow[i] - previousRow[i]);
+    }
+
+    if (stripLength + filteredRow.length > strip.length) {
+      submitStrip(false);
+    }
+
+    System.arraycopy(filteredRow, 0, strip, stripLength, filteredRow.length);
+    stripLength += filteredRow.length;
+
+    final byte[] swap = previousRow;
+    previousRow = currentRow;
+    currentRow = swap;
+
+    rowsWritten++;
+  }
+
+  /**
+   * Finish the image and close the underlying stream.
+   *
+   * @throws IOException If there was a problem writing to the stream, or not all rows were written.
+   */
+  @Override
+  public void close() throws IOException {
+
+    try {
+      if (rowsWritten != height) {
+        throw new IOException(
+            String.format("Only %d of %d rows were written.", rowsWritten, height));
+      }
+
+      submitStrip(true);
+
+      while (!pendingStrips.isEmpty()) {
+        writeNextStrip();
+      }
+
+      final byte[] trailer = new byte[4];
+      writeInt(trailer, 0, (int) checksum.getValue());
+
+      imageData.write(trailer);
+      imageData.close();
+
+      writeChunk("IEND", new byte[0], 0, 0);
+
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+
+      out.close();
+    }
+  }
+
+  /**
+   * Compress the current strip (in the background if there are multiple threads) and start a new
+   * strip.
+   *
+   * @param last Whether this is the last strip of the image.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  private void submitStrip(final boolean last) throws IOException {
+
+    final byte[] data = strip;
+    final int length = stripLength;
+    final byte[] stripDictionary = dictionary;
+
+    checksum.update(data, 0, length);
+
+    // The end of this strip primes the compression of the next, so that repeated patterns that
+    // cross the boundary are still found.
+    dictionary = Arrays.copyOfRange(data, Math.max(0, length - DICTIONARY_SIZE), length);
+
+    if (executor == null) {
+
+      imageData.write(compress(data, length, stripDictionary, last));
+
+      // The strip has already been compressed so its buffer can be reused.
+      stripLength = 0;
+
+      return;
+    }
+
+    if (pendingStrips.size() >= maximumPendingStrips) {
+      writeNextStrip();
+    }
+
+    pendingStrips.addLast(executor.submit(() -> compress(data, length, stripDictionary, last)));
+
+    strip = new byte[data.length];
+    stripLength = 0;
+  }
+
+  /**
+   * Wait for the oldest strip to be compressed and write it to the stream.
+   *
+   * @throws IOException If there was a problem writing to the stream or compressing the strip.
+   */
+  private void writeNextStrip() throws IOException {
+
+    try {
+      imageData.write(pendingStrips.removeFirst().get());
+
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Compress a strip as raw deflate data. Every strip apart from the last ends with a sync flush,
+   * which ends the data on a byte boundary without marking it as the final block, so the next strip
+   * can be appended directly.
+   *
+   * @param data Array containing the uncompressed strip.
+   * @param length The number of bytes in the strip.
+   * @param dictionary The data preceding the strip, or null if this is the first strip.
+   * @param last Whether this is the last strip of the image.
+   *
+   * @return The compressed strip.
+   */
+  private static byte[] compress(final byte[] data, final int length, final byte[] dictionary,
+      final boolean last) {
+
+    final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+    try {
+      if (dictionary != null && dictionary.length > 0) {
+        deflater.setDictionary(dictionary);
+      }
+
+      deflater.setInput(data, 0, length);
+
+      final ByteArrayOutputStream compressed = new ByteArrayOutputStream(length / 4 + 64);
+      final byte[] buffer = new byte[MAXIMUM_CHUNK_SIZE];
+
+      if (last) {
+
+        deflater.finish();
+
+        while (!deflater.finished()) {
+          compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+
+      } else {
+
+        // If the buffer is filled there may be more output waiting.
+        int count;
+
+        do {
+          count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+          compressed.write(buffer, 0, count);
+        } while (count == buffer.length);
+      }
+
+      return compressed.toByteArray();
+
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Write an integer into a byte array in big-endian order.
+   *
+   * @param array The array to write to.
+   * @param offset The position to write the integer at.
+   * @param value The value to write.
+   */
+  private static void writeInt(final byte[] array, final int offset, final int value) {
+    array[offset] = (byte) (value >>> 24);
+    array[offset + 1] = (byte) (value >>> 16);
+    array[offset + 2] = (byte) (value >>> 8);
+    array[offset + 3] = (byte) value;
+  }
+
+  /**
+   * Write a chunk to the stream.
+   *
+   * @param type The four letter chunk type.
+   * @param data Array containing the chunk data.
+   * @param offset The position of the chunk data within the array.
+   * @param length The length of the chunk data.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  private void writeChunk(final String type, final byte[] data, final int offset,
+      final int length) throws IOException {
+
+    final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+
+    final CRC32 crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data, offset, length);
+
+    out.writeInt(length);
+    out.write(typeBytes);
+    out.write(data, offset, length);
+    out.writeInt((int) crc.getValue());
+  }
+
+  /**
+   * Stream that buffers the compressed image data and writes it out as IDAT chunks.
+   */
+  private class ChunkOutputStream extends OutputStream {
+
+    /**
+     * The data waiting to be written in the next chunk.
+     */
+    private final byte[] buffer = new byte[MAXIMUM_CHUNK_SIZE];
+
+    /**
+     * The number of bytes in the buffer.
+     */
+    private int count;
+
+    @Override
+    public void write(final int b) throws IOException {
+      write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] data, final int offset, final int length) throws IOException {
+
+      int written = 0;
+
+      while (written < length) {
+
+        final int toCopy = Math.min(length - written, buffer.length - count);
+
+        System.arraycopy(data, offset + written, buffer, count, toCopy);
+
+        count += toCopy;
+        written += toCopy;
+
+        if (count == buffer.length) {
+          flush();
+        }
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+
+      if (count > 0) {
+        writeChunk("IDAT", buffer, 0, count);
+        count = 0;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      flush();
+    }
+  }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+
+/**
+ * Renders an image of any resolution straight to a PNG, independent of the size of the display.
+ * The image is calculated in horizontal strips, which are streamed to the PNG a row at a time, so
+ * the memory used is bounded by the size of a strip regardless of the size of the image.
+ *
+ * <p>Histogram colouring needs the iteration values of the whole image before any pixel can be
+ * coloured, so each strip is calculated twice: once to build the histogram and once to colour and
+ * write it. This trades computation for memory. If the image fits in memory,
+ * {@link #renderInMemory} calculates it once instead.
+ *
+ * <p>Alternatively, the histogram can be estimated from a low resolution pre-pass (see
+ * {@link HistogramEstimator}), in which case each strip is calculated once and written as soon as
+ * it is done, at the cost of colours that differ slightly from those of the exact histogram.
+ *
+ * <p>If the configuration uses smooth colouring, the histogram is still built from integer
+ * iteration values, and the second pass calculates continuous iteration counts to colour with.
+ */
+public class PosterRenderer {
+
+  /**
+   * The approximate number of pixels calculated in each strip. This bounds the memory used (4
+   * bytes per pixel for the iteration values).
+   */
+  private static final int PIXELS_PER_STRIP = 1 << 22;
+
+  /**
+   * The configuration of the image to render.
+   */
+  private final ImageConfiguration configuration;
+
+  /**
+   * The width of the image.
+   */
+  private final int width;
+
+  /**
+   * The height of the image.
+   */
+  private final int height;
+
+  /**
+   * The number of threads to calculate each strip and compress the image with.
+   */
+  private final int numberOfThreads;
+
+  /**
+   * The number of samples along each axis of edge pixels, or 1 to disable anti-aliasing.
+   */
+  private int samplesPerAxis = 1;
+
+  /**
+   * Whether the histogram is estimated from a low resolution pre-pass rather than built from every
+   * strip.
+   */
+  private boolean estimateHistogram;
+
+  /**
+   * Construct a poster renderer.
+   *
+   * @param configuration The configuration of the image to render.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @param numberOfThreads The number of threads to calculate each strip and compress the image
+   *        with.
+   */
+  public PosterRenderer(final ImageConfiguration configuration, final int width, final int height,
+      final int numberOfThreads) {
+
+    if (configuration == null) {
+      throw new IllegalArgumentException("configuration must not be null");
+    }
+
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height must be greater than zero.");
+    }
+
+    this.configuration = configuration;
+    this.width = width;
+    this.height = height;
+    this.numberOfThreads = numberOfThreads;
+  }
+
+  /**
+   * Set the amount of anti-aliasing. Pixels on an edge are sampled on a grid of the given size, and
+   * the results averaged; see {@link AdaptiveSupersampler}.
+   *
+   * @param samplesPerAxis The number of samples along each axis of edge pixels, or 1 to disable
+   *        anti-aliasing.
+   */
+  public void setSupersampling(final int samplesPerAxis) {
+
+    if (samplesPerAxis < 1) {
+      throw new IllegalArgumentException("Samples per axis must be greater than zero.");
+    }
+
+    this.samplesPerAxis = samplesPerAxis;
+  }
+
+  /**
+   * Set whether the histogram is estimated from a low resolution pre-pass, so that
+   * {@link #render} calculates each strip once and writes it straight away, rather than building
+   * the exact histogram from every strip first.
+   *
+   * @param estimateHistogram Whether the histogram should be estimated.
+   */
+  public void setHistogramEstimation(final boolean estimateHistogram) {
+    this.estimateHistogram = estimateHistogram;
+  }
+
+  /**
+   * Get the number of rows in each strip.
+   *
+   * @return The number of rows in each strip.
+   */
+  int getStripHeight() {
+    return Math.max(1, Math.min(height, PIXELS_PER_STRIP / width));
+  }
+
+  /**
+   * Calculate the iteration values of one strip of the image. Strips are numbered from the top of
+   * the image.
+   *
+   * @param generator The generator used to calculate the iteration values.
+   * @param strip The strip number.
+   * @return The iteration values of the strip, accessed as array[x][y], where y increases upwards.
+   */
+  private int[][] calculateStrip(final MandelbrotSetIterationCountGenerator generator,
+      final int strip) {
+
+    final int stripHeight = getStripHeight();
+
+    // The iteration values have the imaginary axis increasing upwards, whereas the image rows
+    // go from top to bottom, so the first strip of the image is at the end of the y-axis.
+    final int yEnd = height - (strip * stripHeight);
+
+    return generator.calculate(width, height, getStripStart(strip), yEnd, numberOfThreads);
+  }
+
+  /**
+   * Divide the next strip between threads by the cost of a strip that has just been calculated.
+   * Neighbouring strips cover neighbouring parts of the plane, so the expensive columns of one are
+   * usually the expensive columns of the next.
+   *
+   * @param generator The generator used to calculate the iteration values.
+   * @param strip The strip number of the strip that has been calculated.
+   * @param stripValues The iteration values of the strip, accessed as array[x][y].
+   */
+  private void predictFrom(final MandelbrotSetIterationCountGenerator generator, final int strip,
+      final int[][] stripValues) {
+    generator.setCostMap(
+        new CostMap(getStripBound(generator, strip), stripValues, generator.maximumIterations));
+  }
+
+  /**
+   * Divide the next strip between threads by the cost of a strip that has just been calculated.
+   *
+   * @param generator The generator used to calculate the continuous iteration counts.
+   * @param strip The strip number of the strip that has been calculated.
+   * @param stripValues The continuous iteration counts of the strip, accessed as array[x][y].
+   */
+  private void predictFrom(final MandelbrotSetIterationCountGenerator generator, final int strip,
+      final float[][] stripValues) {
+    generator.setCostMap(
+        new CostMap(getStripBound(generator, strip), stripValues, generator.maximumIterations));
+  }
+
+  /**
+   * Get the region of the plane a strip covers.
+   *
+   * @param generator The generator of the whole image.
+   * @param strip The strip number.
+   * @return The bound of the strip.
+   */
+  private Bound getStripBound(final MandelbrotSetIterationCountGenerator generator,
+      final int strip) {
+
+    final ComplexNumber minimum = generator.bound.getMinimum();
+    final ComplexNumber maximum = generator.bound.getMaximum();
+    final double rowHeight = generator.bound.getRange().getImaginary() / height;
+
+    final int yStart = getStripStart(strip);
+    final int yEnd = height - (strip * getStripHeight());
+
+    return new Bound(
+        new ComplexNumber(minimum.getReal(), minimum.getImaginary() + yStart * rowHeight),
+        new ComplexNumber(maximum.getReal(), minimum.getImaginary() + yEnd * rowHeight));
+  }
+
+  /**
+   * Get the first row of a strip.
+   *
+   * @param strip The strip number.
+   * @return The row of the image (counting upwards) corresponding to the first row of the strip.
+   */
+  private int getStripStart(final int strip) {
+    return Math.max(0, height - ((strip + 1) * getStripHeight()));
+  }
+
+  /**
+   * Colour iteration values and write them to the PNG, from the top row down.
+   *
+   * @param writer The writer to write the rows to.
+   * @param iterationValues The iteration values, accessed as array[x][y - yOffset].
+   * @param yOffset The row of the image corresponding to the first row of the iteration values.
+   * @param generator The generator used to take extra samples for anti-aliasing.
+   * @param colorMapper The colour mapper.
+   *
+   * @throws IOException If there was a problem writing to the PNG.
+   */
+  private void writeRows(final PngWriter writer, final int[][] iterationValues, final int yOffset,
+      final MandelbrotSetIterationCountGenerator generator, final HistogramColorMapper colorMapper)
+      throws IOException {
+
+    final int[][] colours = samplesPerAxis == 1 ? null
+        : new AdaptiveSupersampler(generator, width, height, samplesPerAxis, numberOfThreads)
+            .colour(iterationValues, yOffset, colorMapper);
+
+    final int[] row = new int[width];
+
+    for (int y = iterationValues[0].length - 1; y >= 0; y--) {
+
+      for (int x = 0; x < width; x++) {
+        row[x] = colours == null ? colorMapper.getColor(iterationValues[x][y]) : colours[x][y];
+      }
+
+      writer.writeRow(row);
+    }
+  }
+
+  /**
+   * Colour continuous iteration counts and write them to the PNG, from the top row down.
+   *
+   * @param writer The writer to write the rows to.
+   * @param smoothIterationValues The continuous iteration counts, accessed as
+   *        array[x][y - yOffset].
+   * @param yOffset The row of the image corresponding to the first row of the values.
+   * @param generator The generator used to take extra samples for anti-aliasing.
+   * @param colorMapper The colour mapper.
+   *
+   * @throws IOException If there was a problem writing to the PNG.
+   */
+  private void writeRows(final PngWriter writer, final float[][] smoothIterationValues,
+      final int yOffset, final MandelbrotSetIterationCountGenerator generator,
+      final HistogramColorMapper colorMapper) throws IOException {
+
+    final int[][] colours = samplesPerAxis == 1 ? null
+        : new AdaptiveSupersampler(generator, width, height, samplesPerAxis, numberOfThreads)
+            .colour(smoothIterationValues, yOffset, colorMapper);
+
+    final int[] row = new int[width];
+
+    for (int y = smoothIterationValues[0].length - 1; y >= 0; y--) {
+
+      for (int x = 0; x < width; x++) {
+        row[x] = colours == null ? colorMapper.getSmoothColor(smoothIterationValues[x][y])
+            : colours[x][y];
+      }
+
+      writer.writeRow(row);
+    }
+  }
+
+  /**
+   * Calculate a strip, or load it from the checkpoint if an earlier render already calculated it.
+   * Newly calculated strips are saved to the checkpoint.
+   *
+   * @param generator The generator used to calculate the iteration values.
+   * @param checkpoint The checkpoint, or null if strips should not be saved.
+   * @param strip The strip number.
+   * @return The iteration values of the strip, accessed as array[x][y], where y increases upwards.
+   *
+   * @throws IOException If there was a problem reading or writing the checkpoint.
+   */
+  private int[][] getStrip(final MandelbrotSetIterationCountGenerator generator,
+      final RenderCheckpoint checkpoint, final int strip) throws IOException {
+
+    if (checkpoint == null) {
+      return calculateStrip(generator, strip);
+    }
+
+    final int rows = Math.min(getStripHeight(), height - strip * getStripHeight());
+    final int[][] saved = checkpoint.load(strip, rows);
+
+    if (saved != null) {
+      return saved;
+    }
+
+    final int[][] iterationValues = calculateStrip(generator, strip);
+    checkpoint.save(strip, iterationValues);
+
+    return iterationValues;
+  }
+
+  /**
+   * Render the image and write it to a stream as a PNG.
+   *
+   * @param out The stream to write to. This is closed once the image has been written.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  public void render(final OutputStream out) throws IOException {
+    render(out, null);
+  }
+
+  /**
+   * Render the image and write it to a stream as a PNG, saving each strip to a checkpoint
+   * directory as soon as it is calculated. If the directory holds strips from an earlier,
+   * interrupted render of the same image, they are reused rather than recalculated. The second
+   * pass reads the strips back from the checkpoint instead of recalculating them. The checkpoint
+   * is deleted once the image has been written.
+   *
+   * @param out The stream to write to. This is closed once the image has been written.
+   * @param checkpointDirectory The directory to save strips to, or null to not save them.
+   *
+   * @throws IOException If there was a problem writing to the stream or the checkpoint, or the
+   *         directory holds a checkpoint for a different image.
+   */
+  public void render(final OutputStream out, final Path checkpointDirectory) throws IOException {
+
+    final RenderJobEvent event = new RenderJobEvent("strip");
+    event.begin();
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(width, height), configuration.getMaximumIterations(),
+        configuration.getEscapeRadius());
+
+    final RenderCheckpoint checkpoint = checkpointDirectory == null ? null
+        : new RenderCheckpoint(checkpointDirectory, configuration, width, height,
+            getStripHeight());
+
+    final int numberOfStrips = (height + getStripHeight() - 1) / getStripHeight();
+
+    final HistogramColorMapper colorMapper;
+
+    if (estimateHistogram) {
+      colorMapper = new HistogramEstimator(configuration, width, height).estimate(numberOfThreads);
+
+    } else {
+
+      colorMapper = new HistogramColorMapper(configuration.getMaximumIterations(),
+          configuration.getColorTheme());
+
+      // First pass: build the histogram of the whole image.
+      for (int strip = 0; strip < numberOfStrips; strip++) {
+
+        final int[][] iterationValues = getStrip(generator, checkpoint, strip);
+
+        colorMapper.addIterations(iterationValues);
+        predictFrom(generator, strip, iterationValues);
+      }
+    }
+
+    // The last strip of the first pass is at the other end of the image from the first strip of the
+    // second.
+    generator.setCostMap(null);
+
+    // Second pass (or the only pass, if the histogram was estimated): colour each strip and stream
+    // it to the PNG.
+    try (final PngWriter writer = new PngWriter(out, width, height, numberOfThreads)) {
+      for (int strip = 0; strip < numberOfStrips; strip++) {
+
+        if (configuration.getSmoothColoring()) {
+
+          // The checkpoint only holds integer values, so continuous counts are always calculated.
+          final int yEnd = height - (strip * getStripHeight());
+
+          final float[][] smoothIterationValues = generator.calculateSmooth(width, height,
+              getStripStart(strip), yEnd, numberOfThreads);
+
+          // Iterations are only counted when they will be recorded.
+          if (event.isEnabled()) {
+            event.iterations += RenderMetrics.countIterations(smoothIterationValues,
+                configuration.getMaximumIterations());
+          }
+
+          writeRows(writer, smoothIterationValues, getStripStart(strip), generator, colorMapper);
+          predictFrom(generator, strip, smoothIterationValues);
+
+        } else {
+
+          final int[][] iterationValues = getStrip(generator, checkpoint, strip);
+
+          if (event.isEnabled()) {
+            event.iterations += RenderMetrics.countIterations(iterationValues,
+                configuration.getMaximumIterations());
+          }
+
+          writeRows(writer, iterationValues, getStripStart(strip), generator, colorMapper);
+          predictFrom(generator, strip, iterationValues);
+        }
+      }
+    }
+
+    if (checkpoint != null) {
+      checkpoint.delete();
+    }
+
+    commitEvent(event);
+  }
+
+  /**
+   * End a Flight Recorder event and commit it, if it is enabled, with the fields describing the
+   * image.
+   *
+   * @param event The event.
+   */
+  private void commitEvent(final RenderJobEvent event) {
+
+    event.end();
+
+    if (event.shouldCommit()) {
+      event.setImage(configuration.getBound().normalise(width, height), width, height,
+          configuration.getMaximumIterations());
+      event.commit();
+    }
+  }
+
+  /**
+   * Render the image and write it to a stream as a PNG, holding all of the iteration values in
+   * memory. This is quicker than {@link #render}, as each value is only calculated once, but needs
+   * 4 bytes of memory per pixel (for either integer or continuous iteration counts).
+   *
+   * @param out The stream to write to. This is closed once the image has been written.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  public void renderInMemory(final OutputStream out) throws IOException {
+
+    final RenderJobEvent event = new RenderJobEvent("memory");
+    event.begin();
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(width, height), configuration.getMaximumIterations(),
+        configuration.getEscapeRadius());
+
+    final HistogramColorMapper colorMapper = new HistogramColorMapper(
+        configuration.getMaximumIterations(), configuration.getColorTheme());
+
+    if (configuration.getSmoothColoring()) {
+
+      final float[][] smoothIterationValues =
+          generator.calculateSmooth(width, height, 0, height, numberOfThreads);
+
+      colorMapper.addIterations(smoothIterationValues);
+
+      try (final PngWriter writer = new PngWriter(out, width, height, numberOfThreads)) {
+        writeRows(writer, smoothIterationValues, 0, generator, colorMapper);
+      }
+
+      if (event.isEnabled()) {
+        event.iterations = RenderMetrics.countIterations(smoothIterationValues,
+            configuration.getMaximumIterations());
+      }
+
+      commitEvent(event);
+
+      return;
+    }
+
+    final int[][] iterationValues = generator.calculate(width, height, numberOfThreads);
+
+    colorMapper.addIterations(iterationValues);
+
+    try (final PngWriter writer = new PngWriter(out, width, height, numberOfThreads)) {
+      writeRows(writer, iterationValues, 0, generator, colorMapper);
+    }
+
+    if (event.isEnabled()) {
+      event.iterations =
+          RenderMetrics.countIterations(iterationValues, configuration.getMaximumIterations());
+    }
+
+    commitEvent(event);
+  }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A directory that the strips of a long render are saved to as they are calculated, so that the
+ * render can be resumed after a crash without recalculating them.
+ *
+ * <p>The directory holds a description of the job (the configuration, resolution and strip height)
+ * and one file per completed strip. Each file is written to a temporary name and then moved into
+ * place, so a crash never leaves a partially written file under its final name; each file also ends
+ * with a CRC-32 of its contents, and any file that fails the check is discarded and recalculated.
+ */
+public class RenderCheckpoint {
+
+  /**
+   * The magic number at the start of every checkpoint file.
+   */
+  private static final byte[] MAGIC = {'M', 'B', 'C', 'P'};
+
+  /**
+   * The current version of the checkpoint format.
+   */
+  private static final short VERSION = 1;
+
+  /**
+   * The name of the file describing the job.
+   */
+  private static final String JOB_FILE = "job.bin";
+
+  /**
+   * The suffix of the file names that strips are written to before being moved into place.
+   */
+  private static final String TEMPORARY_SUFFIX = ".tmp";
+
+  /**
+   * The directory the checkpoint is stored in.
+   */
+  private final Path directory;
+
+  /**
+   * The width of the image.
+   */
+  private final int width;
+
+  /**
+   * Open a checkpoint directory for a job, creating it if it does not exist. If the directory
+   * already holds a checkpoint, it must be for the same job.
+   *
+   * @param directory The directory to store the checkpoint in.
+   * @param configuration The configuration of the image being rendered.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @param stripHeight The number of rows in each strip.
+   *
+   * @throws IOException If the directory could not be created, or it holds a checkpoint for a
+   *         different job.
+   */
+  public RenderCheckpoint(final Path directory, final ImageConfiguration configuration,
+      final int width, final int height, final int stripHeight) throws IOException {
+
+    this.directory = directory;
+    this.width = width;
+
+    final ByteArrayOutputStream description = new ByteArrayOutputStream();
+    final DataOutputStream out = new DataOutputStream(description);
+
+    out.writeInt(width);
+    out.writeInt(height);
+    out.writeInt(stripHeight);
+    new ImageState(configuration, null).write(out);
+    out.flush();
+
+    Files.createDirectories(directory);
+
+    final Path jobFile = directory.resolve(JOB_FILE);
+    final byte[] existing = Files.exists(jobFile) ? readVerified(jobFile) : null;
+
+    if (existing == null) {
+      clear();
+      writeAtomically(jobFile, description.toByteArray());
+
+    } else if (!Arrays.equals(existing, description.toByteArray())) {
+      throw new IOException(
+          String.format("Checkpoint directory %s belongs to a different render.", directory));
+    }
+  }
+
+  /**
+   * Get the file a strip is stored in.
+   *
+   * @param strip The strip number.
+   * @return The path of the file.
+   */
+  private Path getStripFile(final int strip) {
+    return directory.resolve(String.format("strip-%06d.bin", strip));
+  }
+
+  /**
+   * Save the iteration values of a strip.
+   *
+   * @param strip The strip number.
+   * @param iterationValues The iteration values of the strip, accessed as array[x][y].
+   *
+   * @throws IOException If there was a problem writing the strip.
+   */
+  public void save(final int strip, final int[][] iterationValues) throws IOException {
+
+    final int rows = iterationValues[0].length;
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+    try (final DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater), 1 << 16))) {
+
+      out.writeInt(strip);
+      out.writeInt(rows);
+
+      for (int x = 0; x < width; x++) {
+        for (int y = 0; y < rows; y++) {
+          out.writeInt(iterationValues[x][y]);
+        }
+      }
+
+    } finally {
+      deflater.end();
+    }
+
+    writeAtomically(getStripFile(strip), bytes.toByteArray());
+  }
+
+  /**
+   * Load the iteration values of a strip saved by an earlier render. A strip file that is
+   * incomplete or corrupt is deleted, so that the strip is recalculated.
+   *
+   * @param strip The strip number.
+   * @param rows The number of rows expected in the strip.
+   * @return The iteration values of the strip, accessed as array[x][y], or null if the strip has
+   *         not been saved.
+   *
+   * @throws IOException If there was a problem reading the strip.
+   */
+  public int[][] load(final int strip, final int rows) throws IOException {
+
+    final Path file = getStripFile(strip);
+
+    if (!Files.exists(file)) {
+      return null;
+    }
+
+    final byte[] contents = readVerified(file);
+
+    if (contents != null) {
+
+      try (final DataInputStream in = new DataInputStream(new BufferedInputStream(
+          new InflaterInputStream(new ByteArrayInputStream(contents)), 1 << 16))) {
+
+        if (in.readInt() == strip && in.readInt() == rows) {
+
+          final int[][] iterationValues = new int[width][rows];
+
+          for (int x = 0; x < width; x++) {
+            for (int y = 0; y < rows; y++) {
+              iterationValues[x][y] = in.readInt();
+            }
+          }
+
+          return iterationValues;
+        }
+
+      } catch (IOException e) {
+        // The checksum matched, but the contents are still invalid - discard them below.
+      }
+    }
+
+    Files.delete(file);
+    return null;
+  }
+
+  /**
+   * Delete every file in the checkpoint directory, and the directory itself if it is then empty.
+   * This is called once the image has been written successfully.
+   *
+   * @throws IOException If there was a problem deleting the files.
+   */
+  public void delete() throws IOException {
+
+    clear();
+    Files.deleteIfExists(directory.resolve(JOB_FILE));
+
+    try (final DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+      if (!files.iterator().hasNext()) {
+        Files.delete(directory);
+      }
+    }
+  }
+
+  /**
+   * Delete any strip files (including partially written ones) from the checkpoint directory.
+   *
+   * @throws IOException If there was a problem deleting the files.
+   */
+  private void clear() throws IOException {
+
+    try (final DirectoryStream<Path> files =
+        Files.newDirectoryStream(directory, "strip-*.bin*")) {
+
+      for (Path file : files) {
+        Files.delete(file);
+      }
+    }
+
+    Files.deleteIfExists(directory.resolve(JOB_FILE + TEMPORARY_SUFFIX));
+  }
+
+  /**
+   * Write a file with a header and checksum, so that a crash during the write leaves either the
+   * old file or the complete new file in place.
+   *
+   * @param file The file to write.
+   * @param contents The contents of the file.
+   *
+   * @throws IOException If there was a problem writing the file.
+   */
+  private static void writeAtomically(final Path file, final byte[] contents) throws IOException {
+
+    final Path temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+
+    final CRC32 crc = new CRC32();
+    crc.update(contents);
+
+    try (final OutputStream out = Files.newOutputStream(temporary)) {
+
+      final DataOutputStream data = new DataOutputStream(out);
+
+      data.write(MAGIC);
+      data.writeShort(VERSION);
+      data.writeInt(contents.length);
+      data.write(contents);
+      data.writeInt((int) crc.getValue());
+      data.flush();
+    }
+
+    try {
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /**
+   * Read a file written by {@link #writeAtomically} and verify its header and checksum.
+   *
+   * @param file The file to read.
+   * @return The contents of the file, or null if it is incomplete or corrupt.
+   *
+   * @throws IOException If there was a problem reading the file.
+   */
+  private static byte[] readVerified(final Path file) throws IOException {
+
+    final ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+    final int headerLength = MAGIC.length + Short.BYTES + Integer.BYTES;
+
+    if (buffer.remaining() < headerLength + Integer.BYTES) {
+      return null;
+    }
+
+    final byte[] magic = new byte[MAGIC.length];
+    buffer.get(magic);
+
+    if (!Arrays.equals(magic, MAGIC) || buffer.getShort() != VERSION) {
+      return null;
+    }
+
+    final int length = buffer.getInt();
+
+    if (length != buffer.remaining() - Integer.BYTES) {
+      return null;
+    }
+
+    final byte[] contents = new byte[length];
+    buffer.get(contents);
+
+    final CRC32 crc = new CRC32();
+    crc.update(contents);
+
+    return buffer.getInt() == (int) crc.getValue() ? contents : null;
+  }
+}
@@ -0,0 +1,664 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line entry point that renders a saved state to a PNG without a display. This only uses
+ * the JavaFX free core classes, so it can be run on headless machines.
+ */
+public class RenderCommand {
+
+  /**
+   * The ways an image can be rendered.
+   */
+  enum Engine {
+
+    /**
+     * Render in strips, keeping memory bounded regardless of the image size.
+     */
+    STRIP,
+
+    /**
+     * Render the whole image in memory, calculating each value only once.
+     */
+    MEMORY,
+
+    /**
+     * Render an animation by resampling a single exponential map around the zoom centre, rather
+     * than calculating every frame. Only used for animations.
+     */
+    EXPONENTIAL_MAP
+  }
+
+  /**
+   * Usage message displayed when the arguments are invalid.
+   */
+  static final String USAGE = String.join(System.lineSeparator(),
+      "Usage: render [options] <state file> <output png>",
+      "       render [options] --manifest <file>",
+      "       render [options] --output-dir <directory> <state file>...",
+      "       render [options] --frames <count> --zoom-to <bound> <state file> <directory>", "",
+      "Options:",
+      "  --width <pixels>     Width of the image (default 1920).",
+      "  --height <pixels>    Height of the image (default 1080).",
+      "  --threads <count>    Number of threads to use (default: number of cores).",
+      "  --engine <name>      'memory' to hold the whole image in memory, or 'strip' to",
+      "                       render in strips with bounded memory (default memory).",
+      "  --antialias <n>      Sample pixels on edges n x n times and average them (default 1).",
+      "  --checkpoint <dir>   Save strips to <dir> as they are calculated, and resume from",
+      "                       them if the render is interrupted (implies --engine strip).",
+      "  --histogram <mode>   'exact' to build the histogram from every pixel, or 'estimated'",
+      "                       to estimate it from a low resolution pre-pass, so each strip is",
+      "                       written as soon as it is calculated (implies --engine strip).",
+      "  --max-time <seconds> Estimate how long each image will take from a sparse sample, and",
+      "                       reduce its resolution if the estimate is longer than this.", "",
+      "Batch options:",
+      "  --manifest <file>    Render every job in a manifest. Each line contains a state",
+      "                       file, an output file and optionally a width and height.",
+      "  --output-dir <dir>   Render each state file to a PNG of the same name in <dir>.",
+      "  --report <file>      Write a CSV summary of the batch to <file> (default: print it).",
+      "", "Animation options:",
+      "  --frames <count>     Render a zoom from the state's bound as this many frames.",
+      "  --zoom-to <bound>    The bound of the last frame, as minimum real, minimum",
+      "                       imaginary, maximum real, maximum imaginary separated by commas.",
+      "  --easing <name>      'linear', 'ease-in', 'ease-out' or 'ease-in-out' (default linear).",
+      "  --engine exponential-map",
+      "                       Zoom towards the centre of the --zoom-to bound, resampling every",
+      "                       frame from one exponential map instead of calculating each frame.");
+
+  /**
+   * Main method - the entry point of the command.
+   *
+   * @param args The command line arguments.
+   */
+  public static void main(final String[] args) {
+
+    final int status = run(args, System.out, System.err);
+
+    if (status != 0) {
+      System.exit(status);
+    }
+  }
+
+  /**
+   * Run the command.
+   *
+   * @param args The command line arguments.
+   * @param out The stream to write messages to.
+   * @param err The stream to write errors to.
+   *
+   * @return The exit status: 0 on success, 1 if rendering failed, 2 if the arguments were invalid.
+   */
+  static int run(final String[] args, final PrintStream out, final PrintStream err) {
+
+    final Map<String, String> options = new HashMap<String, String>();
+    final List<String> files = new ArrayList<String>();
+
+    final int width;
+    final int height;
+    final int numberOfThreads;
+    final Engine engine;
+    final int samplesPerAxis;
+    final boolean estimateHistogram;
+    final int maximumTime;
+
+    try {
+      parseArguments(args, options, files);
+
+      width = parsePositive(options, "width", 1920);
+      height = parsePositive(options, "height", 1080);
+      numberOfThreads =
+          parsePositive(options, "threads", Runtime.getRuntime().availableProcessors());
+      samplesPerAxis = parsePositive(options, "antialias", 1);
+      maximumTime = parsePositive(options, "max-time", 0);
+      estimateHistogram = parseHistogram(options.getOrDefault("histogram", "exact"));
+      engine = parseEngine(options.getOrDefault("engine",
+          options.containsKey("checkpoint") || estimateHistogram ? "strip" : "memory"));
+
+      if (options.containsKey("checkpoint") && engine != Engine.STRIP) {
+        throw new IllegalArgumentException("--checkpoint can only be used with the strip engine.");
+      }
+
+      if (estimateHistogram && engine != Engine.STRIP) {
+        throw new IllegalArgumentException(
+            "An estimated histogram can only be used with the strip engine.");
+      }
+
+      if (options.containsKey("manifest") || options.containsKey("output-dir")) {
+        return runBatch(options, files, width, height, numberOfThreads, maximumTime, out, err);
+      }
+
+      if (files.size() != 2) {
+        throw new IllegalArgumentException("Expected a state file and an output file.");
+      }
+
+      if (options.containsKey("frames")) {
+
+        if (maximumTime > 0) {
+          throw new IllegalArgumentException("--max-time can't be used for an animation.");
+        }
+
+        return runAnimation(options, files, width, height, numberOfThreads, engine, out, err);
+      }
+
+      if (engine == Engine.EXPONENTIAL_MAP) {
+        throw new IllegalArgumentException("The exponential-map engine is only for animations.");
+      }
+
+    } catch (IllegalArgumentException e) {
+      err.println(e.getMessage());
+      err.println(USAGE);
+      return 2;
+    }
+
+    try {
+      final ImageConfiguration configuration;
+
+      try (final InputStream in = new FileInputStream(files.get(0))) {
+        configuration = ImageState.read(in).getConfiguration();
+      }
+
+      final int[] size = maximumTime == 0 ? new int[] {width, height}
+          : fitToTime(configuration, width, height, numberOfThreads, maximumTime,
+              RenderCostEstimator.measureThroughput(numberOfThreads), out);
+
+      final PosterRenderer renderer =
+          new PosterRenderer(configuration, size[0], size[1], numberOfThreads);
+
+      renderer.setSupersampling(samplesPerAxis);
+      renderer.setHistogramEstimation(estimateHistogram);
+
+      final long start = System.nanoTime();
+
+      // The renderer closes the stream once the image is written, but it must also be closed if
+      // rendering fails before then.
+      try (final BufferedOutputStream output =
+          new BufferedOutputStream(new FileOutputStream(files.get(1)))) {
+
+        if (engine == Engine.STRIP) {
+          renderer.render(output,
+              options.containsKey("checkpoint") ? Paths.get(options.get("checkpoint")) : null);
+        } else {
+          renderer.renderInMemory(output);
+        }
+      }
+
+      out.printf("Rendered %dx%d to %s in %.2fs.%n", size[0], size[1], files.get(1),
+          (System.nanoTime() - start) / 1e9);
+
+      return 0;
+
+    } catch (IOException e) {
+      err.println("Rendering failed: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  /**
+   * Run a batch of renders on a shared pool of threads.
+   *
+   * @param options The parsed options.
+   * @param files The state files to render, if a manifest is not being used.
+   * @param width The default width of the images.
+   * @param height The default height of the images.
+   * @param numberOfThreads The number of threads shared by all of the images.
+   * @param maximumTime The longest time, in seconds, each image is predicted to take before its
+   *        resolution is reduced, or 0 for no limit.
+   * @param out The stream to write messages to.
+   * @param err The stream to write errors to.
+   *
+   * @return The exit status: 0 if every job succeeded, otherwise 1.
+   */
+  private static int runBatch(final Map<String, String> options, final List<String> files,
+      final int width, final int height, final int numberOfThreads, final int maximumTime,
+      final PrintStream out, final PrintStream err) {
+
+    if (options.containsKey("checkpoint")) {
+      throw new IllegalArgumentException("--checkpoint can't be used when rendering a batch.");
+    }
+
+    if (options.containsKey("histogram")) {
+      throw new IllegalArgumentException("--histogram can't be used when rendering a batch.");
+    }
+
+    if (options.containsKey("antialias")) {
+      throw new IllegalArgumentException("--antialias can't be used when rendering a batch.");
+    }
+
+    if (options.containsKey("engine")) {
+      throw new IllegalArgumentException("--engine can't be used when rendering a batch.");
+    }
+
+    final List<BatchRenderer.Job> jobs = new ArrayList<BatchRenderer.Job>();
+
+    if (options.containsKey("manifest")) {
+
+      if (!files.isEmpty()) {
+        throw new IllegalArgumentException("State files can't be given with a manifest.");
+      }
+
+      try {
+        jobs.addAll(BatchRenderer.readManifest(Paths.get(options.get("manifest")), width, height));
+
+      } catch (IOException e) {
+        err.println("Could not read manifest: " + e.getMessage());
+        return 1;
+      }
+
+    } else {
+
+      final Path outputDirectory = Paths.get(options.get("output-dir"));
+
+      for (String file : files) {
+
+        final Path stateFile = Paths.get(file);
+        final String name = stateFile.getFileName().toString().replaceFirst("\\.[^.]*$", "");
+
+        jobs.add(new BatchRenderer.Job(stateFile, outputDirectory.resolve(name + ".png"), width,
+            height));
+      }
+    }
+
+    final double throughput =
+        maximumTime > 0 ? RenderCostEstimator.measureThroughput(numberOfThreads) : 0;
+
+    for (int i = 0; i < jobs.size(); i++) {
+
+      final ImageConfiguration configuration = readConfiguration(jobs.get(i).getStateFile());
+
+      // Jobs whose state file can't be read are left as they are, to fail when they are rendered.
+      if (configuration == null) {
+        continue;
+      }
+
+      warnIfSmoothColoring(configuration, jobs.get(i).getStateFile().toString(), out);
+
+      if (maximumTime > 0) {
+        jobs.set(i,
+            fitToTime(jobs.get(i), configuration, numberOfThreads, maximumTime, throughput, out));
+      }
+    }
+
+    final BatchRenderer renderer = new BatchRenderer(numberOfThreads);
+    final List<BatchRenderer.Result> results;
+
+    // The renderer can be inspected and retuned with a JMX client while the batch runs.
+    renderer.getEngine().register("batch");
+
+    final long start = System.nanoTime();
+
+    try {
+      results = renderer.render(jobs);
+    } finally {
+      renderer.getEngine().unregister();
+    }
+
+    out.printf("Rendered %d images in %.2fs.%n", jobs.size(), (System.nanoTime() - start) / 1e9);
+
+    if (options.containsKey("report")) {
+
+      try (final PrintStream report = new PrintStream(options.get("report"), "UTF-8")) {
+        BatchRenderer.writeReport(results, report);
+
+      } catch (IOException e) {
+        err.println("Could not write report: " + e.getMessage());
+        return 1;
+      }
+
+    } else {
+      BatchRenderer.writeReport(results, out);
+    }
+
+    for (BatchRenderer.Result result : results) {
+      if (result.getError() != null) {
+        return 1;
+      }
+    }
+
+    return 0;
+  }
+
+  /**
+   * Render a zoom animation as a sequence of frames.
+   *
+   * @param options The parsed options.
+   * @param files The state file and the directory to write the frames to.
+   * @param width The width of each frame.
+   * @param height The height of each frame.
+   * @param numberOfThreads The number of threads to render the frames on.
+   * @param engine The engine to use. The exponential map engine resamples every frame from one
+   *        exponential map; if no engine was given, the frames are calculated directly.
+   * @param out The stream to write messages to.
+   * @param err The stream to write errors to.
+   *
+   * @return The exit status: 0 on success, otherwise 1.
+   */
+  private static int runAnimation(final Map<String, String> options, final List<String> files,
+      final int width, final int height, final int numberOfThreads, final Engine engine,
+      final PrintStream out, final PrintStream err) {
+
+    if (options.containsKey("antialias")) {
+      throw new IllegalArgumentException("--antialias can't be used for an animation.");
+    }
+
+    if (options.containsKey("checkpoint")) {
+      throw new IllegalArgumentException("--checkpoint can't be used for an animation.");
+    }
+
+    if (options.containsKey("histogram")) {
+      throw new IllegalArgumentException("--histogram can't be used for an animation.");
+    }
+
+    if (options.containsKey("engine") && engine != Engine.EXPONENTIAL_MAP) {
+      throw new IllegalArgumentException(
+          "Only the exponential-map engine can be used for an animation.");
+    }
+
+    final int numberOfFrames = parsePositive(options, "frames", 1);
+    final Bound endBound = parseBound(options.get("zoom-to"));
+    final ZoomAnimationRenderer.Easing easing =
+        parseEasing(options.getOrDefault("easing", "linear"));
+
+    try {
+      final ImageConfiguration configuration;
+
+      try (final InputStream in = new FileInputStream(files.get(0))) {
+        configuration = ImageState.read(in).getConfiguration();
+      }
+
+      warnIfSmoothColoring(configuration, files.get(0), out);
+
+      final long start = System.nanoTime();
+
+      if (engine == Engine.EXPONENTIAL_MAP) {
+
+        final ExponentialMapRenderer renderer = new ExponentialMapRenderer(configuration,
+            endBound, numberOfFrames, easing, width, height, numberOfThreads);
+
+        renderer.render(Paths.get(files.get(1)));
+
+        out.printf("Rendered %d frames to %s in %.2fs from a %dx%d exponential map.%n",
+            numberOfFrames, files.get(1), (System.nanoTime() - start) / 1e9,
+            renderer.getColumns(), renderer.getRows());
+
+      } else {
+
+        final ZoomAnimationRenderer renderer = new ZoomAnimationRenderer(configuration, endBound,
+            numberOfFrames, easing, width, height, numberOfThreads);
+
+        renderer.render(Paths.get(files.get(1)));
+
+        out.printf("Rendered %d frames to %s in %.2fs (%d pixels reused).%n", numberOfFrames,
+            files.get(1), (System.nanoTime() - start) / 1e9, renderer.getReusedPixels());
+      }
+
+      return 0;
+
+    } catch (IOException e) {
+      err.println("Rendering failed: " + e.getMessage());
+      return 1;
+    }
+  }
+
+  /**
+   * Parse a bound given as four comma separated numbers: minimum real, minimum imaginary, maximum
+   * real and maximum imaginary.
+   *
+   * @param value The value to parse.
+   * @return The bound.
+   */
+  static Bound parseBound(final String value) {
+
+    if (value == null) {
+      throw new IllegalArgumentException("--zoom-to is required when rendering an animation.");
+    }
+
+    final String[] parts = value.split(",");
+
+    try {
+      if (parts.length == 4) {
+
+        final double[] numbers = new double[4];
+
+        for (int i = 0; i < 4; i++) {
+          numbers[i] = Double.parseDouble(parts[i].trim());
+        }
+
+        if (numbers[0] < numbers[2] && numbers[1] < numbers[3]) {
+          return new Bound(new ComplexNumber(numbers[0], numbers[1]),
+              new ComplexNumber(numbers[2], numbers[3]));
+        }
+      }
+
+    } catch (NumberFormatException e) {
+      // Fall through to the exception below.
+    }
+
+    throw new IllegalArgumentException(String.format("Invalid bound '%s'.", value));
+  }
+
+  /**
+   * Parse the name of an easing.
+   *
+   * @param name The name of the easing, for example 'ease-in-out'.
+   * @return The easing.
+   */
+  private static ZoomAnimationRenderer.Easing parseEasing(final String name) {
+
+    try {
+      return ZoomAnimationRenderer.Easing.valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format("Unknown easing '%s'.", name), e);
+    }
+  }
+
+  /**
+   * Split the arguments into options (of the form --name value) and files.
+   *
+   * @param args The command line arguments.
+   * @param options Map the options are added to, keyed by their name without the dashes.
+   * @param files List the remaining arguments are added to.
+   */
+  static void parseArguments(final String[] args, final Map<String, String> options,
+      final List<String> files) {
+
+    for (int i = 0; i < args.length; i++) {
+
+      if (args[i].startsWith("--")) {
+
+        if (i + 1 == args.length) {
+          throw new IllegalArgumentException("Missing value for " + args[i] + ".");
+        }
+
+        options.put(args[i].substring(2), args[++i]);
+
+      } else {
+        files.add(args[i]);
+      }
+    }
+  }
+
+  /**
+   * Parse an option that must be a positive integer.
+   *
+   * @param options The options.
+   * @param name The name of the option.
+   * @param defaultValue The value to use if the option is not present.
+   *
+   * @return The value of the option.
+   */
+  static int parsePositive(final Map<String, String> options, final String name,
+      final int defaultValue) {
+
+    final String value = options.get(name);
+
+    if (value == null) {
+      return defaultValue;
+    }
+
+    try {
+      final int parsed = Integer.parseInt(value);
+
+      if (parsed > 0) {
+        return parsed;
+      }
+
+    } catch (NumberFormatException e) {
+      // Fall through to the exception below.
+    }
+
+    throw new IllegalArgumentException(
+        String.format("--%s must be a positive integer, but was '%s'.", name, value));
+  }
+
+  /**
+   * Get the resolution to render an image at so that it is predicted to take no longer than a
+   * given time. If the full resolution is predicted to take longer, a smaller resolution with the
+   * same aspect ratio is used, and a warning is written.
+   *
+   * @param configuration The configuration of the image.
+   * @param width The requested width of the image.
+   * @param height The requested height of the image.
+   * @param numberOfThreads The number of threads the image will be rendered on.
+   * @param maximumTime The longest the image should take, in seconds.
+   * @param throughput The throughput of the machine, in iterations per second.
+   * @param out The stream to write the warning to.
+   *
+   * @return The width and height to render the image at.
+   */
+  static int[] fitToTime(final ImageConfiguration configuration, final int width,
+      final int height, final int numberOfThreads, final int maximumTime, final double throughput,
+      final PrintStream out) {
+
+    final double estimatedTime = new RenderCostEstimator(configuration, width, height)
+        .estimate(numberOfThreads).getTime(throughput) / 1e9;
+
+    if (estimatedTime <= maximumTime) {
+      return new int[] {width, height};
+    }
+
+    // The average cost of a pixel doesn't depend on the resolution, so the time is proportional
+    // to the number of pixels.
+    final double scale = Math.sqrt(maximumTime / estimatedTime);
+
+    final int[] size = {Math.max(1, (int) (width * scale)), Math.max(1, (int) (height * scale))};
+
+    out.printf("Warning: %dx%d is estimated to take %.0fs, longer than --max-time; "
+        + "rendering at %dx%d instead.%n", width, height, estimatedTime, size[0], size[1]);
+
+    return size;
+  }
+
+  /**
+   * Read the configuration of a state file.
+   *
+   * @param stateFile The state file.
+   * @return The configuration, or null if the state file can't be read.
+   */
+  private static ImageConfiguration readConfiguration(final Path stateFile) {
+
+    try (final InputStream in = new FileInputStream(stateFile.toFile())) {
+      return ImageState.read(in).getConfiguration();
+
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Write a warning if a configuration uses smooth colouring, which batches and animations don't
+   * support: they colour every pixel by its whole number of iterations instead.
+   *
+   * @param configuration The configuration.
+   * @param stateFile The name of the state file the configuration was read from.
+   * @param out The stream to write the warning to.
+   */
+  private static void warnIfSmoothColoring(final ImageConfiguration configuration,
+      final String stateFile, final PrintStream out) {
+
+    if (configuration.getSmoothColoring()) {
+      out.printf("Warning: %s uses smooth colouring, which is not supported for batches or "
+          + "animations; it will be coloured by whole iteration counts instead.%n", stateFile);
+    }
+  }
+
+  /**
+   * Reduce the resolution of a batch job so that it is predicted to take no longer than a given
+   * time.
+   *
+   * @param job The job.
+   * @param configuration The configuration read from the job's state file.
+   * @param numberOfThreads The number of threads the batch will be rendered on.
+   * @param maximumTime The longest the image should take, in seconds.
+   * @param throughput The throughput of the machine, in iterations per second.
+   * @param out The stream to write warnings to.
+   *
+   * @return The job, or a copy of it with a smaller resolution.
+   */
+  private static BatchRenderer.Job fitToTime(final BatchRenderer.Job job,
+      final ImageConfiguration configuration, final int numberOfThreads, final int maximumTime,
+      final double throughput, final PrintStream out) {
+
+    final int[] size = fitToTime(configuration, job.getWidth(), job.getHeight(), numberOfThreads,
+        maximumTime, throughput, out);
+
+    if (size[0] == job.getWidth() && size[1] == job.getHeight()) {
+      return job;
+    }
+
+    return new BatchRenderer.Job(job.getStateFile(), job.getOutputFile(), size[0], size[1]);
+  }
+
+  /**
+   * Parse the histogram mode.
+   *
+   * @param mode The name of the mode: 'exact' or 'estimated'.
+   * @return Whether the histogram should be estimated.
+   */
+  private static boolean parseHistogram(final String mode) {
+
+    switch (mode.toLowerCase(Locale.ROOT)) {
+      case "exact":
+        return false;
+
+      case "estimated":
+        return true;
+
+      default:
+        throw new IllegalArgumentException(String.format("Unknown histogram mode '%s'.", mode));
+    }
+  }
+
+  /**
+   * Parse the name of an engine.
+   *
+   * @param name The name of the engine.
+   * @return The engine.
+   */
+  private static Engine parseEngine(final String name) {
+
+    try {
+      return Engine.valueOf(name.toUpperCase(Locale.ROOT).replace('-', '_'));
+
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException(String.format("Unknown engine '%s'.", name), e);
+    }
+  }
+}
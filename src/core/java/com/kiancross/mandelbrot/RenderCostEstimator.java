@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * Predicts how much work an image will take to calculate from a sparse grid of samples, before
+ * committing to calculating it.
+ *
+ * <p>The cost of a pixel is the number of iterations it takes, which varies by many orders of
+ * magnitude across the plane: points far outside the set escape after a few iterations, while
+ * points inside it take the maximum. The average over an evenly spread grid of a thousand or so
+ * points estimates the average over the whole image well, for a small fraction of its cost. The
+ * number of iterations is turned into a time with a throughput, in iterations per second, which
+ * can be measured on the machine with {@link #measureThroughput} or taken from earlier renders.
+ */
+public class RenderCostEstimator {
+
+  /**
+   * The default number of samples taken. This is roughly a 32 by 32 grid.
+   */
+  public static final int DEFAULT_SAMPLES = 1 << 10;
+
+  /**
+   * The width and height of the image calculated to measure the throughput.
+   */
+  private static final int CALIBRATION_RESOLUTION = 256;
+
+  /**
+   * The maximum number of iterations of the image calculated to measure the throughput.
+   */
+  private static final int CALIBRATION_ITERATIONS = 1000;
+
+  /**
+   * The predicted cost of an image.
+   */
+  public static class Estimate {
+
+    /**
+     * The predicted number of iterations.
+     */
+    private final long iterations;
+
+    /**
+     * The number of pixels in the image.
+     */
+    private final long pixels;
+
+    /**
+     * Construct an estimate.
+     *
+     * @param iterations The predicted number of iterations.
+     * @param pixels The number of pixels in the image.
+     */
+    Estimate(final long iterations, final long pixels) {
+      this.iterations = iterations;
+      this.pixels = pixels;
+    }
+
+    /**
+     * Get the predicted number of iterations needed to calculate the image.
+     *
+     * @return The number of iterations.
+     */
+    public long getIterations() {
+      return iterations;
+    }
+
+    /**
+     * Get the predicted average number of iterations of each pixel.
+     *
+     * @return The number of iterations per pixel, or 0 if the image has no pixels.
+     */
+    public double getIterationsPerPixel() {
+      return pixels == 0 ? 0 : iterations / (double) pixels;
+    }
+
+    /**
+     * Predict the time needed to calculate the image.
+     *
+     * @param iterationsPerSecond The throughput of the calculation, in iterations per second
+     *        across every thread.
+     * @return The time, in nanoseconds.
+     */
+    public long getTime(final double iterationsPerSecond) {
+
+      if (iterationsPerSecond <= 0) {
+        throw new IllegalArgumentException("The throughput must be greater than zero.");
+      }
+
+      return (long) (iterations / iterationsPerSecond * 1e9);
+    }
+
+    /**
+     * Get the number of pixels in a tile so that each tile takes about a given number of
+     * iterations. Cheap images get large tiles, so the cost of scheduling them stays small, and
+     * expensive images get small tiles, so the work is spread evenly and appears steadily.
+     *
+     * @param tileIterations The number of iterations each tile should take.
+     * @param minimumPixels The smallest number of pixels in a tile.
+     * @param maximumPixels The largest number of pixels in a tile.
+     * @return The number of pixels in each tile.
+     */
+    public int getPixelsPerTile(final long tileIterations, final int minimumPixels,
+        final int maximumPixels) {
+
+      final double perPixel = Math.max(1, getIterationsPerPixel());
+
+      return (int) Math.max(minimumPixels, Math.min(maximumPixels, tileIterations / perPixel));
+    }
+  }
+
+  /**
+   * The configuration of the image.
+   */
+  private final ImageConfiguration configuration;
+
+  /**
+   * The width of the image.
+   */
+  private final int width;
+
+  /**
+   * The height of the image.
+   */
+  private final int height;
+
+  /**
+   * Construct a cost estimator.
+   *
+   * @param configuration The configuration of the image, whose bound is the proposed view.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   */
+  public RenderCostEstimator(final ImageConfiguration configuration, final int width,
+      final int height) {
+
+    if (configuration == null) {
+      throw new IllegalArgumentException("configuration must not be null");
+    }
+
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height must be greater than zero.");
+    }
+
+    this.configuration = configuration;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Estimate the cost of the image from the default number of samples.
+   *
+   * @param numberOfThreads The number of threads to calculate the samples on.
+   * @return The estimate.
+   */
+  public Estimate estimate(final int numberOfThreads) {
+    return estimate(DEFAULT_SAMPLES, numberOfThreads);
+  }
+
+  /**
+   * Estimate the cost of the image by calculating an evenly spread grid of samples of it.
+   *
+   * @param samples The approximate number of samples to take.
+   * @param numberOfThreads The number of threads to calculate the samples on.
+   * @return The estimate.
+   */
+  public Estimate estimate(final int samples, final int numberOfThreads) {
+
+    if (samples < 1) {
+      throw new IllegalArgumentException("Number of samples must be greater than zero.");
+    }
+
+    final int[] resolution = HistogramEstimator.getSampleResolution(width, height, samples);
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(width, height), configuration.getMaximumIterations(),
+        configuration.getEscapeRadius());
+
+    final long sampleIterations = RenderMetrics.countIterations(
+        generator.calculate(resolution[0], resolution[1], numberOfThreads),
+        configuration.getMaximumIterations());
+
+    final long pixels = (long) width * height;
+    final double perSample = sampleIterations / ((double) resolution[0] * resolution[1]);
+
+    return new Estimate((long) (perSample * pixels), pixels);
+  }
+
+  /**
+   * Measure the throughput of this machine by calculating a small image of the whole set.
+   *
+   * @param numberOfThreads The number of threads to calculate the image on.
+   * @return The throughput, in iterations per second across every thread.
+   */
+  public static double measureThroughput(final int numberOfThreads) {
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -1.25), new ComplexNumber(0.7, 1.25)),
+        CALIBRATION_ITERATIONS, 2);
+
+    // A smaller image first, so that the calculation is compiled before it is timed.
+    generator.calculate(CALIBRATION_RESOLUTION / 4, CALIBRATION_RESOLUTION / 4, numberOfThreads);
+
+    final long start = System.nanoTime();
+    final int[][] values =
+        generator.calculate(CALIBRATION_RESOLUTION, CALIBRATION_RESOLUTION, numberOfThreads);
+    final long time = Math.max(1, System.nanoTime() - start);
+
+    return RenderMetrics.countIterations(values, CALIBRATION_ITERATIONS) / (time / 1e9);
+  }
+}
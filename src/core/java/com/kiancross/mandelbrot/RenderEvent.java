@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+
+/**
+ * The fields shared by the Flight Recorder events emitted while rendering, which describe the image
+ * being rendered. Events cost next to nothing unless they are enabled in a recording, so fields
+ * that are expensive to work out, such as iteration totals, should only be set if
+ * {@link #shouldCommit} returns true.
+ */
+@Category("Mandelbrot")
+public abstract class RenderEvent extends Event {
+
+  /**
+   * The real part of the minimum of the bound.
+   */
+  @Label("Minimum Real")
+  double minimumReal;
+
+  /**
+   * The imaginary part of the minimum of the bound.
+   */
+  @Label("Minimum Imaginary")
+  double minimumImaginary;
+
+  /**
+   * The real part of the maximum of the bound.
+   */
+  @Label("Maximum Real")
+  double maximumReal;
+
+  /**
+   * The imaginary part of the maximum of the bound.
+   */
+  @Label("Maximum Imaginary")
+  double maximumImaginary;
+
+  /**
+   * The width of the image.
+   */
+  @Label("Width")
+  int width;
+
+  /**
+   * The height of the image.
+   */
+  @Label("Height")
+  int height;
+
+  /**
+   * The maximum number of iterations.
+   */
+  @Label("Maximum Iterations")
+  int maximumIterations;
+
+  /**
+   * The number of iterations done.
+   */
+  @Label("Iterations")
+  @Description("The number of iterations done, or 0 if none were done or they were not counted.")
+  long iterations;
+
+  /**
+   * Set the fields describing the image.
+   *
+   * @param bound The bound of the image, normalised to its resolution.
+   * @param imageWidth The width of the image.
+   * @param imageHeight The height of the image.
+   * @param imageMaximumIterations The maximum number of iterations.
+   */
+  void setImage(final Bound bound, final int imageWidth, final int imageHeight,
+      final int imageMaximumIterations) {
+
+    minimumReal = bound.getMinimum().getReal();
+    minimumImaginary = bound.getMinimum().getImaginary();
+    maximumReal = bound.getMaximum().getReal();
+    maximumImaginary = bound.getMaximum().getImaginary();
+    width = imageWidth;
+    height = imageHeight;
+    maximumIterations = imageMaximumIterations;
+  }
+}
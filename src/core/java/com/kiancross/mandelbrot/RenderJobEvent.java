@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering the render of a whole image: a frame of the explorer, or an image
+ * rendered by the headless renderer.
+ */
+@Name("com.kiancross.mandelbrot.RenderJob")
+@Label("Render Job")
+@Description("The render of a whole image.")
+public class RenderJobEvent extends RenderEvent {
+
+  /**
+   * The engine that calculated the iteration values.
+   */
+  @Label("Engine")
+  @Description("How the iteration values were calculated: 'tiles' or 'threads' in the explorer, "
+      + "'cached' if they were reused, or 'strip' or 'memory' in the headless renderer.")
+  String engine;
+
+  /**
+   * Construct an event.
+   *
+   * @param engine The engine that calculated the iteration values.
+   */
+  RenderJobEvent(final String engine) {
+    this.engine = engine;
+  }
+}
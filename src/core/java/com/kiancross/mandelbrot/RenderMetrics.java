@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * Measurements of how the time spent producing a frame was divided, so that it can be seen where
+ * frame time goes. All times are in nanoseconds; a stage whose result was reused from the previous
+ * frame takes no time.
+ *
+ * <p>The stages of a frame are:
+ *
+ * <ul>
+ * <li>normalise - fitting the bound to the aspect ratio of the image.</li>
+ * <li>iterate - calculating the iteration values.</li>
+ * <li>histogram - building the histogram of the iteration values.</li>
+ * <li>colour - mapping the iteration values to colours.</li>
+ * <li>blit - writing the pixels to the display.</li>
+ * </ul>
+ */
+public class RenderMetrics {
+
+  /**
+   * The time spent normalising the bound.
+   */
+  private final long normaliseTime;
+
+  /**
+   * The time spent calculating the iteration values.
+   */
+  private final long iterateTime;
+
+  /**
+   * The time spent building the histogram.
+   */
+  private final long histogramTime;
+
+  /**
+   * The time spent mapping the iteration values to colours.
+   */
+  private final long colorTime;
+
+  /**
+   * The time spent writing the pixels to the display.
+   */
+  private final long blitTime;
+
+  /**
+   * The number of iterations done when the iteration values were last calculated.
+   */
+  private final long iterations;
+
+  /**
+   * The time each worker thread spent calculating when the iteration values were last calculated.
+   */
+  private final long[] workerBusyTimes;
+
+  /**
+   * The number of stages whose results have been reused, over every frame so far.
+   */
+  private final long stageHits;
+
+  /**
+   * The number of stages that have been needed, over every frame so far.
+   */
+  private final long stageLookups;
+
+  /**
+   * Builder used to construct render metrics.
+   */
+  public static class Builder {
+
+    /**
+     * The time spent normalising the bound.
+     */
+    private long normaliseTime;
+
+    /**
+     * The time spent calculating the iteration values.
+     */
+    private long iterateTime;
+
+    /**
+     * The time spent building the histogram.
+     */
+    private long histogramTime;
+
+    /**
+     * The time spent mapping the iteration values to colours.
+     */
+    private long colorTime;
+
+    /**
+     * The time spent writing the pixels to the display.
+     */
+    private long blitTime;
+
+    /**
+     * The number of iterations done when the iteration values were last calculated.
+     */
+    private long iterations;
+
+    /**
+     * The time each worker thread spent calculating.
+     */
+    private long[] workerBusyTimes = new long[0];
+
+    /**
+     * The number of stages whose results have been reused.
+     */
+    private long stageHits;
+
+    /**
+     * The number of stages that have been needed.
+     */
+    private long stageLookups;
+
+    /**
+     * Use given metrics as the base for the new metrics.
+     *
+     * @param metrics The metrics to use as the base for the new metrics.
+     * @return This builder.
+     */
+    public Builder use(final RenderMetrics metrics) {
+      this.normaliseTime = metrics.getNormaliseTime();
+      this.iterateTime = metrics.getIterateTime();
+      this.histogramTime = metrics.getHistogramTime();
+      this.colorTime = metrics.getColorTime();
+      this.blitTime = metrics.getBlitTime();
+      this.iterations = metrics.getIterations();
+      this.workerBusyTimes = metrics.getWorkerBusyTimes();
+      this.stageHits = metrics.getStageHits();
+      this.stageLookups = metrics.getStageLookups();
+
+      return this;
+    }
+
+    /**
+     * Set the time spent normalising the bound.
+     *
+     * @param normaliseTime The time, in nanoseconds.
+     * @return This builder.
+     */
+    public Builder normaliseTime(final long normaliseTime) {
+      this.normaliseTime = normaliseTime;
+      return this;
+    }
+
+    /**
+     * Set the time spent calculating the iteration values.
+     *
+     * @param iterateTime The time, in nanoseconds.
+     * @return This builder.
+     */
+    public Builder iterateTime(final long iterateTime) {
+      this.iterateTime = iterateTime;
+      return this;
+    }
+
+    /**
+     * Set the time spent building the histogram.
+     *
+     * @param histogramTime The time, in nanoseconds.
+     * @return This builder.
+     */
+    public Builder histogramTime(final long histogramTime) {
+      this.histogramTime = histogramTime;
+      return this;
+    }
+
+    /**
+     * Set the time spent mapping the iteration values to colours.
+     *
+     * @param colorTime The time, in nanoseconds.
+     * @return This builder.
+     */
+    public Builder colorTime(final long colorTime) {
+      this.colorTime = colorTime;
+      return this;
+    }
+
+    /**
+     * Set the time spent writing the pixels to the display.
+     *
+     * @param blitTime The time, in nanoseconds.
+     * @return This builder.
+     */
+    public Builder blitTime(final long blitTime) {
+      this.blitTime = blitTime;
+      return this;
+    }
+
+    /**
+     * Set the number of iterations done when the iteration values were last calculated.
+     *
+     * @param iterations The number of iterations.
+     * @return This builder.
+     */
+    public Builder iterations(final long iterations) {
+      this.iterations = iterations;
+      return this;
+    }
+
+    /**
+     * Set the time each worker thread spent calculating.
+     *
+     * @param workerBusyTimes The time of each worker, in nanoseconds.
+     * @return This builder.
+     */
+    public Builder workerBusyTimes(final long[] workerBusyTimes) {
+      this.workerBusyTimes = workerBusyTimes.clone();
+      return this;
+    }
+
+    /**
+     * Set the number of stages whose results have been reused, and the number that have been
+     * needed.
+     *
+     * @param stageHits The number of stages whose results have been reused.
+     * @param stageLookups The number of stages that have been needed.
+     * @return This builder.
+     */
+    public Builder stageCache(final long stageHits, final long stageLookups) {
+      this.stageHits = stageHits;
+      this.stageLookups = stageLookups;
+      return this;
+    }
+
+    /**
+     * Build the metrics.
+     *
+     * @return The metrics.
+     */
+    public RenderMetrics build() {
+      return new RenderMetrics(this);
+    }
+  }
+
+  /**
+   * Construct metrics from a builder.
+   *
+   * @param builder The builder.
+   */
+  private RenderMetrics(final Builder builder) {
+    this.normaliseTime = builder.normaliseTime;
+    this.iterateTime = builder.iterateTime;
+    this.histogramTime = builder.histogramTime;
+    this.colorTime = builder.colorTime;
+    this.blitTime = builder.blitTime;
+    this.iterations = builder.iterations;
+    this.workerBusyTimes = builder.workerBusyTimes;
+    this.stageHits = builder.stageHits;
+    this.stageLookups = builder.stageLookups;
+  }
+
+  /**
+   * Count the iterations that were done to calculate some iteration values. A point that escaped
+   * after n iterations took n iterations, and a point inside the set took the maximum number.
+   *
+   * @param iterationValues The iteration values, accessed as array[x][y].
+   * @param maximumIterations The maximum number of iterations the values were calculated with.
+   * @return The number of iterations.
+   */
+  public static long countIterations(final int[][] iterationValues, final int maximumIterations) {
+
+    long iterations = 0;
+
+    for (int[] column : iterationValues) {
+      for (int value : column) {
+        iterations += value == -1 ? maximumIterations : value;
+      }
+    }
+
+    return iterations;
+  }
+
+  /**
+   * Count the iterations that were done to calculate some continuous iteration counts.
+   *
+   * @param smoothIterationValues The continuous iteration counts, accessed as array[x][y].
+   * @param maximumIterations The maximum number of iterations the values were calculated with.
+   * @return The number of iterations.
+   */
+  public static long countIterations(final float[][] smoothIterationValues,
+      final int maximumIterations) {
+
+    long iterations = 0;
+
+    for (float[] column : smoothIterationValues) {
+      for (float value : column) {
+        iterations += value < 0 ? maximumIterations : (int) value + 1;
+      }
+    }
+
+    return iterations;
+  }
+
+  /**
+   * Get the time spent normalising the bound.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getNormaliseTime() {
+    return normaliseTime;
+  }
+
+  /**
+   * Get the time spent calculating the iteration values.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getIterateTime() {
+    return iterateTime;
+  }
+
+  /**
+   * Get the time spent building the histogram.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getHistogramTime() {
+    return histogramTime;
+  }
+
+  /**
+   * Get the time spent mapping the iteration values to colours.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getColorTime() {
+    return colorTime;
+  }
+
+  /**
+   * Get the time spent writing the pixels to the display.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getBlitTime() {
+    return blitTime;
+  }
+
+  /**
+   * Get the total time of the frame.
+   *
+   * @return The sum of the times of every stage, in nanoseconds.
+   */
+  public long getTotalTime() {
+    return normaliseTime + iterateTime + histogramTime + colorTime + blitTime;
+  }
+
+  /**
+   * Get the number of iterations done when the iteration values were last calculated, which may
+   * have been for an earlier frame.
+   *
+   * @return The number of iterations.
+   */
+  public long getIterations() {
+    return iterations;
+  }
+
+  /**
+   * Get the rate at which iterations were done when the iteration values were last calculated.
+   *
+   * @return The number of iterations per second of wall clock time, or 0 if the iteration values
+   *         were not calculated for this frame.
+   */
+  public double getIterationsPerSecond() {
+    return iterateTime == 0 ? 0 : iterations / (iterateTime / 1e9);
+  }
+
+  /**
+   * Get the time each worker thread spent calculating when the iteration values were last
+   * calculated. Workers that finish early leave cores idle, so uneven times show where the work
+   * is badly divided.
+   *
+   * @return The time of each worker, in nanoseconds.
+   */
+  public long[] getWorkerBusyTimes() {
+    return workerBusyTimes.clone();
+  }
+
+  /**
+   * Get the number of stages whose results have been reused, over every frame so far.
+   *
+   * @return The number of stages reused.
+   */
+  public long getStageHits() {
+    return stageHits;
+  }
+
+  /**
+   * Get the number of stages that have been needed, over every frame so far.
+   *
+   * @return The number of stages needed.
+   */
+  public long getStageLookups() {
+    return stageLookups;
+  }
+
+  /**
+   * Get the proportion of stages whose results have been reused, over every frame so far.
+   *
+   * @return The hit rate, between 0 and 1, or 0 if no stages have been needed.
+   */
+  public double getCacheHitRate() {
+    return stageLookups == 0 ? 0 : stageHits / (double) stageLookups;
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The progress of calculating the iteration values of an image, reported by the worker threads as
+ * they complete pixels, and read from any other thread to show progress and an estimate of the
+ * time remaining.
+ *
+ * <p>The counts are {@link LongAdder}s, which keep a separate cell for each contending thread, so
+ * workers reporting at the same time do not contend on a single value. They are only summed when
+ * the progress is read.
+ */
+public class RenderProgress {
+
+  /**
+   * The number of pixels in the image.
+   */
+  private final long totalPixels;
+
+  /**
+   * The number of pixels that have been calculated.
+   */
+  private final LongAdder completedPixels = new LongAdder();
+
+  /**
+   * The number of iterations done for the calculated pixels.
+   */
+  private final LongAdder iterations = new LongAdder();
+
+  /**
+   * The value of {@link System#nanoTime} when the calculation started.
+   */
+  private final long startTime = System.nanoTime();
+
+  /**
+   * Construct the progress of a calculation that is starting.
+   *
+   * @param totalPixels The number of pixels in the image.
+   */
+  public RenderProgress(final long totalPixels) {
+
+    if (totalPixels < 0) {
+      throw new IllegalArgumentException("The number of pixels must not be negative.");
+    }
+
+    this.totalPixels = totalPixels;
+  }
+
+  /**
+   * Record that some pixels have been calculated. This is called by the worker threads, so is
+   * cheap and does not block.
+   *
+   * @param pixels The number of pixels calculated.
+   * @param pixelIterations The number of iterations done to calculate them.
+   */
+  public void record(final long pixels, final long pixelIterations) {
+    completedPixels.add(pixels);
+    iterations.add(pixelIterations);
+  }
+
+  /**
+   * Get the number of pixels in the image.
+   *
+   * @return The number of pixels.
+   */
+  public long getTotalPixels() {
+    return totalPixels;
+  }
+
+  /**
+   * Get the number of pixels that have been calculated.
+   *
+   * @return The number of pixels.
+   */
+  public long getCompletedPixels() {
+    return completedPixels.sum();
+  }
+
+  /**
+   * Get the number of iterations done so far.
+   *
+   * @return The number of iterations.
+   */
+  public long getIterations() {
+    return iterations.sum();
+  }
+
+  /**
+   * Get the proportion of the pixels that have been calculated.
+   *
+   * @return The proportion, between 0 and 1. An image with no pixels is complete.
+   */
+  public double getFraction() {
+    return totalPixels == 0 ? 1 : Math.min(1, getCompletedPixels() / (double) totalPixels);
+  }
+
+  /**
+   * Check whether every pixel has been calculated.
+   *
+   * @return Whether the calculation is complete.
+   */
+  public boolean isDone() {
+    return getCompletedPixels() >= totalPixels;
+  }
+
+  /**
+   * Get the time since the calculation started.
+   *
+   * @return The time, in nanoseconds.
+   */
+  public long getElapsedTime() {
+    return System.nanoTime() - startTime;
+  }
+
+  /**
+   * Get the rate at which iterations have been done since the calculation started.
+   *
+   * @return The number of iterations per second, or 0 if no time has passed.
+   */
+  public double getIterationRate() {
+
+    final long elapsed = getElapsedTime();
+
+    return elapsed <= 0 ? 0 : getIterations() / (elapsed / 1e9);
+  }
+
+  /**
+   * Estimate the number of iterations still to be done. The pixels that remain are assumed to take
+   * as many iterations each, on average, as those already calculated.
+   *
+   * @return The number of iterations, or -1 if no pixels have been calculated to estimate from.
+   */
+  public long getEstimatedRemainingIterations() {
+
+    final long completed = getCompletedPixels();
+
+    if (completed == 0) {
+      return -1;
+    }
+
+    final long remainingPixels = Math.max(0, totalPixels - completed);
+
+    return (long) (getIterations() / (double) completed * remainingPixels);
+  }
+
+  /**
+   * Estimate the time until the calculation is complete, from the remaining iterations and the
+   * rate at which iterations have been done so far.
+   *
+   * @return The time, in nanoseconds, or -1 if there is not enough progress to estimate it.
+   */
+  public long getEstimatedTimeRemaining() {
+
+    if (isDone()) {
+      return 0;
+    }
+
+    final long remaining = getEstimatedRemainingIterations();
+    final double rate = getIterationRate();
+
+    if (remaining < 0 || rate <= 0) {
+      return -1;
+    }
+
+    return (long) (remaining / rate * 1e9);
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering a stage of the explorer's pipeline (see {@link RenderMetrics}).
+ * Stages whose results are reused are not recorded.
+ */
+@Name("com.kiancross.mandelbrot.RenderStage")
+@Label("Render Stage")
+@Description("A stage of generating a frame in the explorer.")
+public class RenderStageEvent extends RenderEvent {
+
+  /**
+   * The name of the stage.
+   */
+  @Label("Stage")
+  @Description("One of 'normalise', 'iterate', 'histogram' or 'colour'.")
+  String stage;
+
+  /**
+   * Construct an event.
+   *
+   * @param stage The name of the stage.
+   */
+  RenderStageEvent(final String stage) {
+    this.stage = stage;
+  }
+}
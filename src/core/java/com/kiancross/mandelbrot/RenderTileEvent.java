@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight Recorder event covering the calculation and colouring of a tile by a
+ * {@link TileRenderer}.
+ */
+@Name("com.kiancross.mandelbrot.RenderTile")
+@Label("Render Tile")
+public class RenderTileEvent extends RenderEvent {
+
+  /**
+   * The column of the left of the tile.
+   */
+  @Label("Tile X")
+  int tileX;
+
+  /**
+   * The row of the bottom of the tile.
+   */
+  @Label("Tile Y")
+  int tileY;
+
+  /**
+   * The width of the tile.
+   */
+  @Label("Tile Width")
+  int tileWidth;
+
+  /**
+   * The height of the tile.
+   */
+  @Label("Tile Height")
+  int tileHeight;
+
+  /**
+   * Construct an event.
+   *
+   * @param tile The tile.
+   */
+  RenderTileEvent(final Tile tile) {
+    this.tileX = tile.getX();
+    this.tileY = tile.getY();
+    this.tileWidth = tile.getWidth();
+    this.tileHeight = tile.getHeight();
+  }
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.prefs.Preferences;
+
+/**
+ * Learns the number of workers and the size of tiles that calculate images fastest on this
+ * machine, from measurements of the tiled renders it is told about.
+ *
+ * <p>The best number of workers depends on the number of cores, whether they are shared with
+ * hyperthreads or other processes, and how the work is divided, so it is found by experiment: the
+ * tuner occasionally tries one more or fewer workers, and keeps the change only if the throughput
+ * of that render, in iterations per second, is clearly better. The size of tiles is adjusted
+ * directly from what is measured. Tiles that take less than a millisecond each spend too much of
+ * their time being scheduled and published, so they are made larger; if the workers are idle for
+ * much of a render, because a few large tiles are still being calculated at the end, they are made
+ * smaller.
+ *
+ * <p>Consecutive frames of an exploration cover similar views, so their throughputs are
+ * comparable. The throughput of the settings in use is a moving average, so a single unusually
+ * cheap or expensive frame does not fix the settings for good. The learned settings can be saved
+ * to {@link Preferences}, so that each machine starts from what it learned before.
+ */
+public class RenderTuner {
+
+  /**
+   * Renders with fewer iterations than this take so little time that their throughput is mostly a
+   * measure of fixed costs, so they are not learned from.
+   */
+  static final long MINIMUM_SAMPLE_ITERATIONS = 1 << 24;
+
+  /**
+   * How much faster a trial setting must be than the setting in use to replace it.
+   */
+  static final double IMPROVEMENT = 1.05;
+
+  /**
+   * The shortest time a tile should take to calculate, in nanoseconds.
+   */
+  static final long MINIMUM_TILE_TIME = 1_000_000;
+
+  /**
+   * The proportion of a render the workers can be idle for before tiles are made smaller.
+   */
+  static final double MAXIMUM_IDLE_FRACTION = 0.1;
+
+  /**
+   * The number of tiles each worker should have, at least, for tiles to be made smaller.
+   */
+  static final int TILES_PER_WORKER = 8;
+
+  /**
+   * The smallest number of iterations a tile is sized for.
+   */
+  static final long MINIMUM_ITERATIONS_PER_TILE = 1 << 16;
+
+  /**
+   * The largest number of iterations a tile is sized for.
+   */
+  static final long MAXIMUM_ITERATIONS_PER_TILE = 1 << 28;
+
+  /**
+   * The preference the number of workers is saved under.
+   */
+  private static final String WORKER_COUNT_KEY = "workerCount";
+
+  /**
+   * The preference the number of iterations per tile is saved under.
+   */
+  private static final String ITERATIONS_PER_TILE_KEY = "iterationsPerTile";
+
+  /**
+   * The largest number of workers that will be tried.
+   */
+  private final int maximumWorkers;
+
+  /**
+   * Where the settings are saved, or null if they are not saved.
+   */
+  private final Preferences preferences;
+
+  /**
+   * The number of workers the next render should use.
+   */
+  private int workerCount;
+
+  /**
+   * The number of iterations each tile of the next render should be sized for.
+   */
+  private long iterationsPerTile;
+
+  /**
+   * The number of workers of the best setting found, which is the one in use unless a trial is
+   * being made.
+   */
+  private int bestWorkerCount;
+
+  /**
+   * The moving average throughput of the best setting, in iterations per second, or 0 if it has not
+   * been measured.
+   */
+  private double bestThroughput;
+
+  /**
+   * Whether the next render is a trial of a different number of workers.
+   */
+  private boolean trial;
+
+  /**
+   * Whether the next trial is of more workers, rather than fewer.
+   */
+  private boolean tryMoreWorkers = true;
+
+  /**
+   * The number of renders learned from.
+   */
+  private int samples;
+
+  /**
+   * The average time each tile of the last render learned from took, in nanoseconds.
+   */
+  private long tileTime;
+
+  /**
+   * The proportion of the last render learned from that the workers were idle for.
+   */
+  private double idleFraction;
+
+  /**
+   * Construct a tuner.
+   *
+   * @param maximumWorkers The largest number of workers to try.
+   * @param preferences Where the settings are loaded from and saved to, or null to not save them.
+   *        If it holds no settings, the tuner starts from one worker per processor.
+   */
+  public RenderTuner(final int maximumWorkers, final Preferences preferences) {
+
+    if (maximumWorkers < 1) {
+      throw new IllegalArgumentException("Number of workers must be greater than zero.");
+    }
+
+    this.maximumWorkers = maximumWorkers;
+    this.preferences = preferences;
+
+    final int processors = Math.min(maximumWorkers, Runtime.getRuntime().availableProcessors());
+
+    workerCount = preferences == null ? processors
+        : Math.max(1, Math.min(maximumWorkers, preferences.getInt(WORKER_COUNT_KEY, processors)));
+
+    iterationsPerTile = preferences == null ? TileRenderer.ITERATIONS_PER_TILE
+        : clampIterationsPerTile(
+            preferences.getLong(ITERATIONS_PER_TILE_KEY, TileRenderer.ITERATIONS_PER_TILE));
+
+    bestWorkerCount = workerCount;
+  }
+
+  /**
+   * Construct a tuner that saves its settings for this machine, with a separate set of settings
+   * for each number of processors, so that a machine whose processors change learns again.
+   *
+   * @return The tuner.
+   */
+  public static RenderTuner forThisMachine() {
+
+    final int processors = Runtime.getRuntime().availableProcessors();
+
+    return new RenderTuner(4 * processors, Preferences.userNodeForPackage(RenderTuner.class)
+        .node("tuner").node(Integer.toString(processors)));
+  }
+
+  /**
+   * Get the number of workers the next render should use.
+   *
+   * @return The number of workers.
+   */
+  public synchronized int getWorkerCount() {
+    return workerCount;
+  }
+
+  /**
+   * Get the number of iterations each tile of the next render should be sized for (see
+   * {@link TileRenderer#setIterationsPerTile}).
+   *
+   * @return The number of iterations per tile.
+   */
+  public synchronized long getIterationsPerTile() {
+    return iterationsPerTile;
+  }
+
+  /**
+   * Get the number of renders that have been learned from.
+   *
+   * @return The number of renders.
+   */
+  public synchronized int getSamples() {
+    return samples;
+  }
+
+  /**
+   * Get the average time each tile of the last render learned from took to calculate.
+   *
+   * @return The time, in nanoseconds, or 0 if no render has been learned from.
+   */
+  public synchronized long getTileTime() {
+    return tileTime;
+  }
+
+  /**
+   * Get the proportion of the last render learned from that the workers were not calculating
+   * tiles, such as while waiting for the last tiles to finish, or for tiles to be published.
+   *
+   * @return The proportion, between 0 and 1.
+   */
+  public synchronized double getIdleFraction() {
+    return idleFraction;
+  }
+
+  /**
+   * Learn from a tiled render, and choose the settings of the next render.
+   *
+   * @param workers The number of workers the render used.
+   * @param tileIterations The number of iterations each tile of the render was sized for.
+   * @param tiles The number of tiles the render was split into.
+   * @param iterations The number of iterations done.
+   * @param time The time the render took, in nanoseconds.
+   * @param workerBusyTimes The time each worker spent calculating tiles, in nanoseconds.
+   */
+  public synchronized void record(final int workers, final long tileIterations, final int tiles,
+      final long iterations, final long time, final long[] workerBusyTimes) {
+
+    if (workers < 1 || tiles < 1 || time <= 0 || iterations < MINIMUM_SAMPLE_ITERATIONS) {
+      return;
+    }
+
+    samples++;
+
+    long busyTime = 0;
+
+    for (final long workerBusyTime : workerBusyTimes) {
+      busyTime += workerBusyTime;
+    }
+
+    final double throughput = iterations / (time / 1e9);
+
+    tileTime = busyTime / tiles;
+    idleFraction = Math.max(0, Math.min(1, 1 - busyTime / ((double) workers * time)));
+
+    if (workers != workerCount || tileIterations != iterationsPerTile) {
+
+      // The render did not use the settings chosen, for example because the number of workers was
+      // changed by hand, so tuning continues from the settings it did use.
+      workerCount = workers;
+      iterationsPerTile = clampIterationsPerTile(tileIterations);
+      bestWorkerCount = workers;
+      bestThroughput = throughput;
+      trial = false;
+
+    } else if (trial) {
+
+      if (throughput > bestThroughput * IMPROVEMENT) {
+        bestWorkerCount = workerCount;
+        bestThroughput = throughput;
+      } else {
+        workerCount = bestWorkerCount;
+      }
+
+      trial = false;
+
+    } else {
+
+      bestThroughput = bestThroughput == 0 ? throughput : (bestThroughput + throughput) / 2;
+
+      if (tileTime < MINIMUM_TILE_TIME) {
+        iterationsPerTile = clampIterationsPerTile(iterationsPerTile * 2);
+
+      } else if (idleFraction > MAXIMUM_IDLE_FRACTION && tiles < workers * TILES_PER_WORKER) {
+        iterationsPerTile = clampIterationsPerTile(iterationsPerTile / 2);
+
+      } else {
+        startTrial();
+      }
+    }
+
+    save();
+  }
+
+  /**
+   * Choose a number of workers to try next, alternating between more and fewer than the best
+   * number found.
+   */
+  private void startTrial() {
+
+    final int step = Math.max(1, bestWorkerCount / 4);
+    final int candidate = tryMoreWorkers ? bestWorkerCount + step : bestWorkerCount - step;
+
+    tryMoreWorkers = !tryMoreWorkers;
+
+    if (candidate >= 1 && candidate <= maximumWorkers) {
+      workerCount = candidate;
+      trial = true;
+    }
+  }
+
+  /**
+   * Save the best settings found, if the tuner has somewhere to save them.
+   */
+  private void save() {
+    if (preferences != null) {
+      preferences.putInt(WORKER_COUNT_KEY, bestWorkerCount);
+      preferences.putLong(ITERATIONS_PER_TILE_KEY, iterationsPerTile);
+    }
+  }
+
+  /**
+   * Limit a number of iterations per tile to the range that is tried.
+   *
+   * @param tileIterations The number of iterations per tile.
+   * @return The limited number of iterations per tile.
+   */
+  private static long clampIterationsPerTile(final long tileIterations) {
+    return Math.max(MINIMUM_ITERATIONS_PER_TILE,
+        Math.min(MAXIMUM_ITERATIONS_PER_TILE, tileIterations));
+  }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * A tile of an image that has been calculated and coloured, as published by a
+ * {@link TileRenderer}.
+ */
+public class RenderedTile {
+
+  /**
+   * The region of the image the tile covers.
+   */
+  private final Tile tile;
+
+  /**
+   * The ARGB pixels of the tile, in rows from the top of the tile.
+   */
+  private final int[] pixels;
+
+  /**
+   * Construct a rendered tile.
+   *
+   * @param tile The region of the image the tile covers.
+   * @param pixels The ARGB pixels of the tile, in rows from the top of the tile.
+   */
+  public RenderedTile(final Tile tile, final int[] pixels) {
+
+    if (pixels.length != tile.getArea()) {
+      throw new IllegalArgumentException("There must be one pixel for each position in the tile.");
+    }
+
+    this.tile = tile;
+    this.pixels = pixels;
+  }
+
+  /**
+   * Get the region of the image the tile covers. Its coordinates are those of the iteration values,
+   * so y increases upwards.
+   *
+   * @return The region of the image.
+   */
+  public Tile getTile() {
+    return tile;
+  }
+
+  /**
+   * Get the pixels of the tile. The first row is the top row of the tile (its largest y
+   * coordinate), so the array can be written to an image with a scan line stride of the tile's
+   * width.
+   *
+   * @return The ARGB pixels of the tile.
+   */
+  public int[] getPixels() {
+    return pixels;
+  }
+}
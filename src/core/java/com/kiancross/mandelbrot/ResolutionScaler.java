@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * Chooses how far to reduce the resolution of an image, while the user is interacting with it, so
+ * that it can be calculated within a target frame time.
+ *
+ * <p>The time to calculate an image is proportional to its number of pixels, so dividing the width
+ * and height by a divisor divides the time by its square. The divisor is a whole number, so that
+ * each calculated pixel is upscaled to a whole number of screen pixels, and successive frames of
+ * similar views use the same reduced resolution rather than flickering between nearby ones.
+ */
+public class ResolutionScaler {
+
+  /**
+   * The time each frame should take to calculate, in seconds.
+   */
+  private final double targetFrameTime;
+
+  /**
+   * The largest divisor used, however slow the image, so that it remains recognisable.
+   */
+  private final int maximumDivisor;
+
+  /**
+   * Construct a resolution scaler.
+   *
+   * @param targetFrameTime The time each frame should take to calculate, in seconds.
+   * @param maximumDivisor The largest number the width and height are divided by.
+   */
+  public ResolutionScaler(final double targetFrameTime, final int maximumDivisor) {
+
+    if (targetFrameTime <= 0) {
+      throw new IllegalArgumentException("The target frame time must be greater than zero.");
+    }
+
+    if (maximumDivisor < 1) {
+      throw new IllegalArgumentException("The maximum divisor must be greater than zero.");
+    }
+
+    this.targetFrameTime = targetFrameTime;
+    this.maximumDivisor = maximumDivisor;
+  }
+
+  /**
+   * Get the number the width and height of an image should be divided by for it to be calculated
+   * within the target frame time.
+   *
+   * @param predictedTime The time the image is predicted to take at full resolution, in seconds.
+   * @return The divisor, between 1 (full resolution) and the maximum divisor.
+   */
+  public int getDivisor(final double predictedTime) {
+
+    if (!(predictedTime > targetFrameTime)) {
+      return 1;
+    }
+
+    final int divisor = (int) Math.ceil(Math.sqrt(predictedTime / targetFrameTime));
+
+    return Math.min(maximumDivisor, divisor);
+  }
+
+  /**
+   * Divide a resolution, rounding up so that the reduced image covers the whole of the full one.
+   *
+   * @param resolution The full resolution.
+   * @param divisor The divisor.
+   * @return The reduced resolution, which is at least 1 unless the full resolution is 0.
+   */
+  public static int scale(final int resolution, final int divisor) {
+    return (resolution + divisor - 1) / divisor;
+  }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+
+/**
+ * A serializable RGBA colour. This was originally a wrapper around the JavaFX Color class, but it
+ * now stores the components itself so that the rendering code does not depend on JavaFX. The
+ * serialised form is unchanged, so previously saved files can still be read.
+ */
+public class SerializableColor implements Serializable {
+
+  private static final long serialVersionUID = 1;
+
+  /**
+   * Opaque black.
+   */
+  public static final SerializableColor BLACK = new SerializableColor(0, 0, 0, 1);
+
+  /**
+   * Opaque white.
+   */
+  public static final SerializableColor WHITE = new SerializableColor(1, 1, 1, 1);
+
+  /**
+   * The red component, between 0 and 1. This is not final as it is set when de-serialising.
+   */
+  private double red;
+
+  /**
+   * The green component, between 0 and 1.
+   */
+  private double green;
+
+  /**
+   * The blue component, between 0 and 1.
+   */
+  private double blue;
+
+  /**
+   * The opacity, between 0 and 1.
+   */
+  private double opacity;
+
+  /**
+   * Constructor for the colour.
+   *
+   * @param red The red component, between 0 and 1.
+   * @param green The green component, between 0 and 1.
+   * @param blue The blue component, between 0 and 1.
+   * @param opacity The opacity, between 0 and 1.
+   */
+  public SerializableColor(final double red, final double green, final double blue,
+      final double opacity) {
+
+    if (!isComponent(red) || !isComponent(green) || !isComponent(blue) || !isComponent(opacity)) {
+      throw new IllegalArgumentException("Colour components must be between 0 and 1.");
+    }
+
+    this.red = red;
+    this.green = green;
+    this.blue = blue;
+    this.opacity = opacity;
+  }
+
+  /**
+   * Create an opaque colour from 8-bit components.
+   *
+   * @param red The red component, between 0 and 255.
+   * @param green The green component, between 0 and 255.
+   * @param blue The blue component, between 0 and 255.
+   *
+   * @return The colour.
+   */
+  public static SerializableColor rgb(final int red, final int green, final int blue) {
+    return new SerializableColor(red / 255.0, green / 255.0, blue / 255.0, 1);
+  }
+
+  /**
+   * Check if a value is a valid colour component.
+   *
+   * @param value The value to check.
+   * @return Whether the value is between 0 and 1.
+   */
+  private static boolean isComponent(final double value) {
+    return value >= 0 && value <= 1;
+  }
+
+  /**
+   * Gets the red component.
+   *
+   * @return The red component, between 0 and 1.
+   */
+  public double getRed() {
+    return red;
+  }
+
+  /**
+   * Gets the green component.
+   *
+   * @return The green component, between 0 and 1.
+   */
+  public double getGreen() {
+    return green;
+  }
+
+  /**
+   * Gets the blue component.
+   *
+   * @return The blue component, between 0 and 1.
+   */
+  public double getBlue() {
+    return blue;
+  }
+
+  /**
+   * Gets the opacity.
+   *
+   * @return The opacity, between 0 and 1.
+   */
+  public double getOpacity() {
+    return opacity;
+  }
+
+  /**
+   * Get the colour a given fraction of the way between this colour and another colour.
+   *
+   * @param end The colour at the end of the interpolation.
+   * @param t The fraction of the way to the end colour, between 0 and 1.
+   *
+   * @return The interpolated colour.
+   */
+  public SerializableColor interpolate(final SerializableColor end, final double t) {
+
+    if (t <= 0) {
+      return this;
+    }
+
+    if (t >= 1) {
+      return end;
+    }
+
+    return new SerializableColor(red + (end.getRed() - red) * t,
+        green + (end.getGreen() - green) * t, blue + (end.getBlue() - blue) * t,
+        opacity + (end.getOpacity() - opacity) * t);
+  }
+
+  /**
+   * Get the colour packed into an integer as 0xAARRGGBB.
+   *
+   * @return The packed colour.
+   */
+  public int toArgb() {
+    return ((int) Math.round(opacity * 255) << 24) | ((int) Math.round(red * 255) << 16)
+        | ((int) Math.round(green * 255) << 8) | (int) Math.round(blue * 255);
+  }
+
+  /**
+   * Serialises the object.
+   *
+   * @param out The object output stream.
+   *
+   * @throws IOException If there was a problem when writing to the output stream.
+   */
+  private void writeObject(final ObjectOutputStream out) throws IOException {
+    out.writeDouble(red);
+    out.writeDouble(green);
+    out.writeDouble(blue);
+    out.writeDouble(opacity);
+  }
+
+  /**
+   * De-serialises the object.
+   *
+   * @param in The object input stream.
+   *
+   * @throws IOException If there was an problem when reading from the object input stream.
+   * @throws ClassNotFoundException Should not be thrown as only primitives are being read.
+   */
+  private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+    red = in.readDouble();
+    green = in.readDouble();
+    blue = in.readDouble();
+    opacity = in.readDouble();
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+
+    if (!(o instanceof SerializableColor)) {
+      return false;
+    }
+
+    final SerializableColor c = (SerializableColor) o;
+
+    return red == c.getRed() && green == c.getGreen() && blue == c.getBlue()
+        && opacity == c.getOpacity();
+  }
+
+  @Override
+  public int hashCode() {
+
+    int result = 17;
+
+    result = 31 * result + Double.hashCode(red);
+    result = 31 * result + Double.hashCode(green);
+    result = 31 * result + Double.hashCode(blue);
+    result = 31 * result + Double.hashCode(opacity);
+
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("#%08x", toArgb());
+  }
+}
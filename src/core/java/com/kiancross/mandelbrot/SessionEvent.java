@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * An interaction recorded by a {@link SessionRecorder}: a change to the configuration, or to the
+ * size of the image, and when it happened.
+ */
+public class SessionEvent {
+
+  /**
+   * The kinds of interaction that are recorded.
+   */
+  public enum Type {
+
+    /**
+     * Recording started. The configuration is the initial configuration of the explorer, which is
+     * what resetting returns to.
+     */
+    START,
+
+    /**
+     * A configuration was added, for example by zooming, panning or changing an option.
+     */
+    ADD,
+
+    /**
+     * The last change was undone.
+     */
+    UNDO,
+
+    /**
+     * The last undone change was redone.
+     */
+    REDO,
+
+    /**
+     * Every change was reset.
+     */
+    RESET,
+
+    /**
+     * The image was resized.
+     */
+    RESIZE
+  }
+
+  /**
+   * The kind of interaction.
+   */
+  private final Type type;
+
+  /**
+   * The number of milliseconds between recording starting and the interaction.
+   */
+  private final long time;
+
+  /**
+   * The width of the image after the interaction.
+   */
+  private final int width;
+
+  /**
+   * The height of the image after the interaction.
+   */
+  private final int height;
+
+  /**
+   * The configuration, or null if the interaction does not have one.
+   */
+  private final ImageConfiguration configuration;
+
+  /**
+   * Construct an event.
+   *
+   * @param type The kind of interaction.
+   * @param time The number of milliseconds between recording starting and the interaction.
+   * @param width The width of the image after the interaction.
+   * @param height The height of the image after the interaction.
+   * @param configuration The configuration of a {@link Type#START} or {@link Type#ADD}
+   *        interaction, or null for any other interaction.
+   */
+  public SessionEvent(final Type type, final long time, final int width, final int height,
+      final ImageConfiguration configuration) {
+
+    if (type == null) {
+      throw new IllegalArgumentException("type must not be null");
+    }
+
+    if ((configuration != null) != (type == Type.START || type == Type.ADD)) {
+      throw new IllegalArgumentException(
+          "Only start and add interactions must, and can, have a configuration.");
+    }
+
+    this.type = type;
+    this.time = time;
+    this.width = width;
+    this.height = height;
+    this.configuration = configuration;
+  }
+
+  /**
+   * Get the kind of interaction.
+   *
+   * @return The kind of interaction.
+   */
+  public Type getType() {
+    return type;
+  }
+
+  /**
+   * Get the time of the interaction.
+   *
+   * @return The number of milliseconds between recording starting and the interaction.
+   */
+  public long getTime() {
+    return time;
+  }
+
+  /**
+   * Get the width of the image after the interaction.
+   *
+   * @return The width of the image.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the height of the image after the interaction.
+   *
+   * @return The height of the image.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Get the configuration of the interaction.
+   *
+   * @return The configuration, or null if the interaction is not a {@link Type#START} or
+   *         {@link Type#ADD} interaction.
+   */
+  public ImageConfiguration getConfiguration() {
+    return configuration;
+  }
+
+  /**
+   * Write the event to a stream. The configuration is written as an {@link ImageState}, preceded
+   * by its length.
+   *
+   * @param out The stream to write to.
+   *
+   * @throws IOException If there was a problem writing to the stream.
+   */
+  void write(final DataOutputStream out) throws IOException {
+
+    out.writeByte(type.ordinal());
+    out.writeLong(time);
+    out.writeInt(width);
+    out.writeInt(height);
+
+    if (configuration != null) {
+
+      final ByteArrayOutputStream state = new ByteArrayOutputStream();
+      new ImageState(configuration, null).write(state);
+
+      out.writeInt(state.size());
+      state.writeTo(out);
+    }
+  }
+
+  /**
+   * Read an event from a stream.
+   *
+   * @param in The stream to read from.
+   * @return The event.
+   *
+   * @throws IOException If there was a problem reading from the stream, or it does not contain a
+   *         valid event.
+   */
+  static SessionEvent read(final DataInputStream in) throws IOException {
+
+    final int ordinal = in.readUnsignedByte();
+
+    if (ordinal >= Type.values().length) {
+      throw new IOException(String.format("Unknown session event type: %d.", ordinal));
+    }
+
+    final Type type = Type.values()[ordinal];
+    final long time = in.readLong();
+    final int width = in.readInt();
+    final int height = in.readInt();
+
+    ImageConfiguration configuration = null;
+
+    if (type == Type.START || type == Type.ADD) {
+
+      final int length = in.readInt();
+
+      if (length < 0) {
+        throw new IOException("Invalid session event length.");
+      }
+
+      final byte[] state = new byte[length];
+      in.readFully(state);
+
+      configuration = ImageState.read(new ByteArrayInputStream(state)).getConfiguration();
+    }
+
+    return new SessionEvent(type, time, width, height, configuration);
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records the interactions of an explorer session, with their times and the size of the image, so
+ * that the session can be replayed later to measure how quickly it responds to real navigation.
+ *
+ * <p>A recording is the magic number "MBSS", a short version, then a sequence of
+ * {@link SessionEvent}s until the end of the stream. The first event is always a
+ * {@link SessionEvent.Type#START} event.
+ *
+ * <p>Interactions are recorded from the user interface, which can not deal with failures, so
+ * errors writing the recording are kept and thrown by {@link #close}.
+ */
+public class SessionRecorder implements Closeable {
+
+  /**
+   * The magic number at the start of every recording.
+   */
+  static final byte[] MAGIC = {'M', 'B', 'S', 'S'};
+
+  /**
+   * The current version of the format.
+   */
+  static final short VERSION = 1;
+
+  /**
+   * The stream the recording is written to.
+   */
+  private final DataOutputStream out;
+
+  /**
+   * The value of {@link System#nanoTime} when recording started.
+   */
+  private final long startTime = System.nanoTime();
+
+  /**
+   * The current width of the image.
+   */
+  private int width;
+
+  /**
+   * The current height of the image.
+   */
+  private int height;
+
+  /**
+   * The first error writing the recording, or null if there has not been one.
+   */
+  private IOException error;
+
+  /**
+   * Start a recording.
+   *
+   * @param stream The stream to write the recording to. It is closed by {@link #close}.
+   * @param width The current width of the image.
+   * @param height The current height of the image.
+   */
+  public SessionRecorder(final OutputStream stream, final int width, final int height) {
+
+    this.out = new DataOutputStream(new BufferedOutputStream(stream));
+    this.width = width;
+    this.height = height;
+
+    try {
+      out.write(MAGIC);
+      out.writeShort(VERSION);
+
+    } catch (IOException e) {
+      error = e;
+    }
+  }
+
+  /**
+   * Record an interaction, at the current time and size of the image.
+   *
+   * @param type The kind of interaction.
+   * @param configuration The configuration of a {@link SessionEvent.Type#START} or
+   *        {@link SessionEvent.Type#ADD} interaction, or null for any other interaction.
+   */
+  public synchronized void record(final SessionEvent.Type type,
+      final ImageConfiguration configuration) {
+
+    final SessionEvent event = new SessionEvent(type,
+        (System.nanoTime() - startTime) / 1_000_000, width, height, configuration);
+
+    if (error != null) {
+      return;
+    }
+
+    try {
+      event.write(out);
+
+    } catch (IOException e) {
+      error = e;
+    }
+  }
+
+  /**
+   * Set the size of the image, recording a {@link SessionEvent.Type#RESIZE} interaction if it has
+   * changed.
+   *
+   * @param newWidth The width of the image.
+   * @param newHeight The height of the image.
+   */
+  public synchronized void setSize(final int newWidth, final int newHeight) {
+
+    if (newWidth != width || newHeight != height) {
+      width = newWidth;
+      height = newHeight;
+
+      record(SessionEvent.Type.RESIZE, null);
+    }
+  }
+
+  /**
+   * Finish the recording and close the stream.
+   *
+   * @throws IOException If there was a problem writing any part of the recording.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+
+    try {
+      out.close();
+
+    } catch (IOException e) {
+      if (error == null) {
+        error = e;
+      }
+    }
+
+    if (error != null) {
+      throw error;
+    }
+  }
+
+  /**
+   * Read a recording.
+   *
+   * @param stream The stream to read from. It is not closed.
+   * @return The recorded interactions, in the order they happened.
+   *
+   * @throws IOException If there was a problem reading from the stream, or it does not contain a
+   *         valid recording.
+   */
+  public static List<SessionEvent> read(final InputStream stream) throws IOException {
+
+    final DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+
+    final byte[] magic = new byte[MAGIC.length];
+    in.readFully(magic);
+
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (magic[i] != MAGIC[i]) {
+        throw new IOException("Not a Mandelbrot explorer session recording.");
+      }
+    }
+
+    final short version = in.readShort();
+
+    if (version != VERSION) {
+      throw new IOException(String.format("Unsupported session recording version: %d.", version));
+    }
+
+    final List<SessionEvent> events = new ArrayList<SessionEvent>();
+
+    while (true) {
+
+      // The end of the stream is only valid between events.
+      in.mark(1);
+
+      if (in.read() == -1) {
+        break;
+      }
+
+      in.reset();
+
+      try {
+        events.add(SessionEvent.read(in));
+
+      } catch (EOFException e) {
+        throw new IOException("The session recording is truncated.", e);
+      }
+    }
+
+    if (events.isEmpty() || events.get(0).getType() != SessionEvent.Type.START) {
+      throw new IOException("A session recording must start with a start event.");
+    }
+
+    return events;
+  }
+}
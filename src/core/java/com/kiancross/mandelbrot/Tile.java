@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A rectangular region of an image, used to divide the calculation of an image into independent
+ * units of work. Coordinates are in the same space as the iteration values: x increases to the
+ * right and y increases upwards (towards the maximum imaginary value).
+ */
+public class Tile {
+
+  /**
+   * The x coordinate of the left column (inclusive).
+   */
+  private final int x;
+
+  /**
+   * The y coordinate of the bottom row (inclusive).
+   */
+  private final int y;
+
+  /**
+   * The width of the tile.
+   */
+  private final int width;
+
+  /**
+   * The height of the tile.
+   */
+  private final int height;
+
+  /**
+   * Construct a tile.
+   *
+   * @param x The x coordinate of the left column (inclusive).
+   * @param y The y coordinate of the bottom row (inclusive).
+   * @param width The width of the tile.
+   * @param height The height of the tile.
+   */
+  public Tile(final int x, final int y, final int width, final int height) {
+
+    if (x < 0 || y < 0 || width < 0 || height < 0) {
+      throw new IllegalArgumentException("Tile coordinates and size must not be negative.");
+    }
+
+    this.x = x;
+    this.y = y;
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Divide an image into tiles of roughly a given number of pixels. Each tile spans the full width
+   * of the image (so that it is contiguous in the rows of the final image) unless a single row is
+   * already larger than the requested size.
+   *
+   * @param xresolution The width of the image.
+   * @param yresolution The height of the image.
+   * @param pixelsPerTile The approximate number of pixels in each tile.
+   *
+   * @return The tiles, ordered from the top of the image to the bottom.
+   */
+  public static List<Tile> split(final int xresolution, final int yresolution,
+      final int pixelsPerTile) {
+
+    final List<Tile> tiles = new ArrayList<Tile>();
+
+    if (xresolution == 0 || yresolution == 0) {
+      return tiles;
+    }
+
+    final int rowsPerTile = Math.max(1, pixelsPerTile / xresolution);
+    final int columnsPerTile = rowsPerTile == 1 ? Math.max(1, pixelsPerTile) : xresolution;
+
+    for (int yEnd = yresolution; yEnd > 0; yEnd -= rowsPerTile) {
+
+      final int yStart = Math.max(0, yEnd - rowsPerTile);
+
+      for (int xStart = 0; xStart < xresolution; xStart += columnsPerTile) {
+
+        final int xEnd = Math.min(xresolution, xStart + columnsPerTile);
+
+        tiles.add(new Tile(xStart, yStart, xEnd - xStart, yEnd - yStart));
+      }
+    }
+
+    return tiles;
+  }
+
+  /**
+   * Get the x coordinate of the left column.
+   *
+   * @return The x coordinate of the left column (inclusive).
+   */
+  public int getX() {
+    return x;
+  }
+
+  /**
+   * Get the y coordinate of the bottom row.
+   *
+   * @return The y coordinate of the bottom row (inclusive).
+   */
+  public int getY() {
+    return y;
+  }
+
+  /**
+   * Get the width of the tile.
+   *
+   * @return The width of the tile.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the height of the tile.
+   *
+   * @return The height of the tile.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Get the number of pixels in the tile.
+   *
+   * @return The number of pixels in the tile.
+   */
+  public int getArea() {
+    return width * height;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+
+    if (!(o instanceof Tile)) {
+      return false;
+    }
+
+    final Tile t = (Tile) o;
+
+    return x == t.getX() && y == t.getY() && width == t.getWidth() && height == t.getHeight();
+  }
+
+  @Override
+  public int hashCode() {
+
+    int result = 17;
+
+    result = 31 * result + x;
+    result = 31 * result + y;
+    result = 31 * result + width;
+    result = 31 * result + height;
+
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("(%d, %d) %dx%d", x, y, width, height);
+  }
+}
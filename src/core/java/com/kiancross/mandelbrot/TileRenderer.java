@@ -0,0 +1,394 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Calculates an image in tiles, publishing each tile as soon as it is done so that it can be
+ * displayed straight away.
+ *
+ * <p>Tiles are coloured with a histogram estimated from a quick, low resolution pre-pass (see
+ * {@link HistogramEstimator}), as the exact histogram is not known until every tile is done. The
+ * iteration values of the whole image are available once {@link #render} returns, so that the
+ * image can then be coloured exactly.
+ *
+ * <p>Tiles are delivered to subscribers asynchronously, on the common fork/join pool, and
+ * {@link Flow.Subscriber#onComplete} is called once every tile has been published. If a
+ * subscriber falls behind, calculation waits for it to catch up.
+ */
+public class TileRenderer implements Flow.Publisher<RenderedTile> {
+
+  /**
+   * The default approximate number of iterations in each tile. This is small enough for the first
+   * tile to be ready in a few milliseconds.
+   */
+  static final long ITERATIONS_PER_TILE = 1 << 22;
+
+  /**
+   * The smallest number of pixels in a tile, however expensive the image, so that scheduling and
+   * publishing tiles takes little time compared to calculating them.
+   */
+  private static final int MINIMUM_PIXELS_PER_TILE = 1 << 10;
+
+  /**
+   * The largest number of pixels in a tile, however cheap the image, so that there are always
+   * enough tiles to share between the workers.
+   */
+  private static final int MAXIMUM_PIXELS_PER_TILE = 1 << 15;
+
+  /**
+   * The number of samples used to estimate the histogram the tiles are coloured with.
+   */
+  private static final int ESTIMATE_SAMPLES = 1 << 14;
+
+  /**
+   * The configuration of the image.
+   */
+  private final ImageConfiguration configuration;
+
+  /**
+   * The width of the image.
+   */
+  private final int width;
+
+  /**
+   * The height of the image.
+   */
+  private final int height;
+
+  /**
+   * The number of threads to calculate the tiles on.
+   */
+  private final int numberOfThreads;
+
+  /**
+   * The publisher the tiles are delivered through.
+   */
+  private final SubmissionPublisher<RenderedTile> publisher =
+      new SubmissionPublisher<RenderedTile>();
+
+  /**
+   * The iteration values of the image, filled in as tiles are calculated.
+   */
+  private final int[][] iterationValues;
+
+  /**
+   * The continuous iteration counts of the image, or null if the configuration does not use
+   * smooth colouring.
+   */
+  private final float[][] smoothIterationValues;
+
+  /**
+   * The time each worker spent calculating and colouring tiles, in nanoseconds.
+   */
+  private long[] workerBusyTimes = new long[0];
+
+  /**
+   * The number of tiles the image is split into, or 0 before rendering starts.
+   */
+  private volatile int tileCount;
+
+  /**
+   * The position of the next tile to hand to a worker.
+   */
+  private final AtomicInteger nextTile = new AtomicInteger();
+
+  /**
+   * The progress that calculated pixels are reported to, or null if progress is not reported.
+   */
+  private volatile RenderProgress progress;
+
+  /**
+   * The approximate number of iterations in each tile.
+   */
+  private volatile long iterationsPerTile = ITERATIONS_PER_TILE;
+
+  /**
+   * Construct a tile renderer.
+   *
+   * @param configuration The configuration of the image.
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @param numberOfThreads The number of threads to calculate the tiles on.
+   */
+  public TileRenderer(final ImageConfiguration configuration, final int width, final int height,
+      final int numberOfThreads) {
+
+    if (configuration == null) {
+      throw new IllegalArgumentException("configuration must not be null");
+    }
+
+    if (width < 1 || height < 1 || numberOfThreads < 1) {
+      throw new IllegalArgumentException(
+          "Width, height and number of threads must be greater than zero.");
+    }
+
+    this.configuration = configuration;
+    this.width = width;
+    this.height = height;
+    this.numberOfThreads = numberOfThreads;
+    this.iterationValues = new int[width][height];
+    this.smoothIterationValues =
+        configuration.getSmoothColoring() ? new float[width][height] : null;
+  }
+
+  @Override
+  public void subscribe(final Flow.Subscriber<? super RenderedTile> subscriber) {
+    publisher.subscribe(subscriber);
+  }
+
+  /**
+   * Calculate the image, publishing each tile as it is completed, and close the publisher once
+   * every tile has been published. Subscribers should subscribe before this is called, as tiles
+   * published before a subscriber subscribes are not delivered to it. This can only be called
+   * once.
+   *
+   * <p>If a tile fails, the remaining tiles are abandoned, the publisher is closed exceptionally
+   * and the failure is rethrown, so an incomplete image is never reported as finished.
+   */
+  public void render() {
+
+    // The first failure of any worker; the others stop taking tiles once it is set.
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    try {
+      final Bound bound = configuration.getBound().normalise(width, height);
+
+      final MandelbrotSetIterationCountGenerator generator =
+          new MandelbrotSetIterationCountGenerator(bound, configuration.getMaximumIterations(),
+              configuration.getEscapeRadius());
+
+      generator.setProgress(progress);
+
+      final HistogramColorMapper colorMapper = new HistogramEstimator(configuration, width, height)
+          .estimate(ESTIMATE_SAMPLES, numberOfThreads);
+
+      // Build the lookup tables before the workers start, so that they all see them.
+      colorMapper.getColor(0);
+      colorMapper.getSmoothColor(0);
+
+      // The tiles are sized from the predicted cost of the image, so each takes about as long.
+      final int pixelsPerTile = new RenderCostEstimator(configuration, width, height)
+          .estimate(numberOfThreads)
+          .getPixelsPerTile(iterationsPerTile, MINIMUM_PIXELS_PER_TILE, MAXIMUM_PIXELS_PER_TILE);
+
+      final List<Tile> tiles = Tile.split(width, height, pixelsPerTile);
+      tileCount = tiles.size();
+
+      final Thread[] workers = new Thread[numberOfThreads];
+      final long[] busyTimes = new long[numberOfThreads];
+
+      for (int i = 0; i < numberOfThreads; i++) {
+
+        final int workerNumber = i;
+
+        workers[i] = new Thread(() -> {
+
+          try {
+            int index;
+
+            while (failure.get() == null
+                && (index = nextTile.getAndIncrement()) < tiles.size()) {
+
+              final RenderTileEvent event = new RenderTileEvent(tiles.get(index));
+              event.begin();
+
+              final long start = System.nanoTime();
+              final RenderedTile tile = renderTile(generator, colorMapper, tiles.get(index));
+              busyTimes[workerNumber] += System.nanoTime() - start;
+
+              event.end();
+
+              if (event.shouldCommit()) {
+                event.setImage(bound, width, height, configuration.getMaximumIterations());
+                event.iterations = countIterations(tile.getTile());
+                event.commit();
+              }
+
+              // Time spent waiting for a slow subscriber is not counted as busy.
+              publisher.submit(tile);
+            }
+          } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+          }
+        });
+
+        workers[i].start();
+      }
+
+      for (Thread worker : workers) {
+        worker.join();
+      }
+
+      workerBusyTimes = busyTimes;
+
+    } catch (InterruptedException e) {
+      publisher.closeExceptionally(e);
+      throw new RuntimeException(e);
+
+    } catch (RuntimeException e) {
+      publisher.closeExceptionally(e);
+      throw e;
+    }
+
+    final Throwable workerFailure = failure.get();
+
+    if (workerFailure != null) {
+      publisher.closeExceptionally(workerFailure);
+
+      if (workerFailure instanceof Error) {
+        throw (Error) workerFailure;
+      }
+
+      throw workerFailure instanceof RuntimeException ? (RuntimeException) workerFailure
+          : new RuntimeException(workerFailure);
+    }
+
+    publisher.close();
+  }
+
+  /**
+   * Set the progress that the pixels of the tiles are reported to as they are calculated. This must
+   * be called before {@link #render}.
+   *
+   * @param progress The progress, or null to not report progress.
+   */
+  public void setProgress(final RenderProgress progress) {
+    this.progress = progress;
+  }
+
+  /**
+   * Set the approximate number of iterations in each tile, such as one learned by a
+   * {@link RenderTuner}. This must be called before {@link #render}.
+   *
+   * @param iterationsPerTile The number of iterations.
+   */
+  public void setIterationsPerTile(final long iterationsPerTile) {
+
+    if (iterationsPerTile < 1) {
+      throw new IllegalArgumentException(
+          "Number of iterations per tile must be greater than zero.");
+    }
+
+    this.iterationsPerTile = iterationsPerTile;
+  }
+
+  /**
+   * Get the number of tiles the image is split into.
+   *
+   * @return The number of tiles, or 0 if rendering has not started.
+   */
+  public int getTileCount() {
+    return tileCount;
+  }
+
+  /**
+   * Get the number of tiles that have not yet been handed to a worker.
+   *
+   * @return The number of tiles waiting to be calculated.
+   */
+  public int getQueueDepth() {
+    return Math.max(0, tileCount - nextTile.get());
+  }
+
+  /**
+   * Calculate and colour a single tile.
+   *
+   * @param generator The generator used to calculate the iteration values.
+   * @param colorMapper The colour mapper holding the estimated histogram.
+   * @param tile The tile.
+   * @return The rendered tile.
+   */
+  private RenderedTile renderTile(final MandelbrotSetIterationCountGenerator generator,
+      final HistogramColorMapper colorMapper, final Tile tile) {
+
+    if (smoothIterationValues == null) {
+      generator.calculateTile(iterationValues, 0, width, height, tile);
+    } else {
+      generator.calculateSmoothTile(smoothIterationValues, 0, width, height, tile);
+    }
+
+    final int[] pixels = new int[tile.getArea()];
+    final int top = tile.getY() + tile.getHeight() - 1;
+
+    for (int row = 0; row < tile.getHeight(); row++) {
+      for (int column = 0; column < tile.getWidth(); column++) {
+
+        final int x = tile.getX() + column;
+        final int y = top - row;
+
+        if (smoothIterationValues == null) {
+          pixels[row * tile.getWidth() + column] = colorMapper.getColor(iterationValues[x][y]);
+
+        } else {
+
+          final float value = smoothIterationValues[x][y];
+
+          iterationValues[x][y] = value < 0 ? -1 : (int) value + 1;
+          pixels[row * tile.getWidth() + column] = colorMapper.getSmoothColor(value);
+        }
+      }
+    }
+
+    return new RenderedTile(tile, pixels);
+  }
+
+  /**
+   * Count the iterations done to calculate a tile.
+   *
+   * @param tile The tile, which must have been calculated.
+   * @return The number of iterations.
+   */
+  private long countIterations(final Tile tile) {
+
+    long iterations = 0;
+
+    for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+      for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+
+        final int value = iterationValues[x][y];
+
+        iterations += value == -1 ? configuration.getMaximumIterations() : value;
+      }
+    }
+
+    return iterations;
+  }
+
+  /**
+   * Get the iteration values of the image. These are complete once {@link #render} has returned.
+   *
+   * @return The iteration values, accessed as array[x][y].
+   */
+  public int[][] getIterationValues() {
+    return iterationValues;
+  }
+
+  /**
+   * Get the time each worker spent calculating and colouring tiles. This is complete once
+   * {@link #render} has returned.
+   *
+   * @return The time of each worker, in nanoseconds.
+   */
+  public long[] getWorkerBusyTimes() {
+    return workerBusyTimes.clone();
+  }
+
+  /**
+   * Get the continuous iteration counts of the image. These are complete once {@link #render} has
+   * returned.
+   *
+   * @return The continuous iteration counts, accessed as array[x][y], or null if the configuration
+   *         does not use smooth colouring.
+   */
+  public float[][] getSmoothIterationValues() {
+    return smoothIterationValues;
+  }
+}
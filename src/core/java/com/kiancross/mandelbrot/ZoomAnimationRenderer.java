@@ -0,0 +1,426 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Renders a zoom between two bounds as a sequence of PNG frames, for assembling into a video.
+ *
+ * <p>The width of the view changes geometrically between the two bounds, so the zoom appears to
+ * proceed at a constant rate (before easing is applied), and the centre moves so that the point
+ * being zoomed towards stays fixed on the screen.
+ *
+ * <p>Where the sampling grid of a frame lines up with that of the previous frame (for example when
+ * panning by a whole number of pixels, or zooming by a whole number factor), the iteration values
+ * of the aligned pixels are copied rather than recalculated. The frames are divided into one
+ * contiguous segment per thread, so that the segments are rendered in parallel while the frames
+ * within each segment can still reuse their predecessor.
+ *
+ * <p>Reuse mostly benefits pans. Zooming in by a whole number factor n about a sample reuses only
+ * one pixel in n squared, and the zoom ratios of a typical animation, a few percent per frame, are
+ * not whole numbers, so almost no samples line up and reuse is negligible.
+ */
+public class ZoomAnimationRenderer {
+
+  /**
+   * How closely a sample must line up with a sample of the previous frame to be reused, as a
+   * fraction of a pixel.
+   */
+  private static final double ALIGNMENT_TOLERANCE = 1e-6;
+
+  /**
+   * The rate at which the zoom progresses over the course of the animation.
+   */
+  public enum Easing {
+
+    /**
+     * Constant rate throughout.
+     */
+    LINEAR,
+
+    /**
+     * Start slowly and accelerate.
+     */
+    EASE_IN,
+
+    /**
+     * Start quickly and decelerate.
+     */
+    EASE_OUT,
+
+    /**
+     * Start and end slowly.
+     */
+    EASE_IN_OUT;
+
+    /**
+     * Apply the easing to the progress through the animation.
+     *
+     * @param t The fraction of the animation's frames that have elapsed, between 0 and 1.
+     * @return The fraction of the zoom that should have been completed, between 0 and 1.
+     */
+    public double apply(final double t) {
+
+      switch (this) {
+        case EASE_IN:
+          return t * t;
+
+        case EASE_OUT:
+          return t * (2 - t);
+
+        case EASE_IN_OUT:
+          return t * t * (3 - 2 * t);
+
+        default:
+          return t;
+      }
+    }
+  }
+
+  /**
+   * The configuration of the first frame. Everything but the bound is shared by every frame.
+   */
+  private final ImageConfiguration configuration;
+
+  /**
+   * The bound of the first frame, normalised to the aspect ratio of the frames.
+   */
+  private final Bound startBound;
+
+  /**
+   * The bound of the last frame, normalised to the aspect ratio of the frames.
+   */
+  private final Bound endBound;
+
+  /**
+   * The number of frames.
+   */
+  private final int numberOfFrames;
+
+  /**
+   * The easing applied to the zoom.
+   */
+  private final Easing easing;
+
+  /**
+   * The width of each frame.
+   */
+  private final int width;
+
+  /**
+   * The height of each frame.
+   */
+  private final int height;
+
+  /**
+   * The number of threads the frames are rendered on.
+   */
+  private final int numberOfThreads;
+
+  /**
+   * The number of pixels copied from a previous frame rather than calculated.
+   */
+  private final LongAdder reusedPixels = new LongAdder();
+
+  /**
+   * Construct an animation renderer.
+   *
+   * @param configuration The configuration of the first frame. Everything but the bound is used for
+   *        every frame.
+   * @param endBound The bound of the last frame.
+   * @param numberOfFrames The number of frames, including the first and last.
+   * @param easing The easing applied to the zoom.
+   * @param width The width of each frame.
+   * @param height The height of each frame.
+   * @param numberOfThreads The number of threads to render the frames on.
+   */
+  public ZoomAnimationRenderer(final ImageConfiguration configuration, final Bound endBound,
+      final int numberOfFrames, final Easing easing, final int width, final int height,
+      final int numberOfThreads) {
+
+    if (configuration == null || endBound == null || easing == null) {
+      throw new IllegalArgumentException("configuration, endBound and easing must not be null");
+    }
+
+    if (numberOfFrames < 1 || width < 1 || height < 1 || numberOfThreads < 1) {
+      throw new IllegalArgumentException(
+          "Number of frames, width, height and number of threads must be greater than zero.");
+    }
+
+    this.configuration = configuration;
+    this.startBound = configuration.getBound().normalise(width, height);
+    this.endBound = endBound.normalise(width, height);
+    this.numberOfFrames = numberOfFrames;
+    this.easing = easing;
+    this.width = width;
+    this.height = height;
+    this.numberOfThreads = numberOfThreads;
+  }
+
+  /**
+   * Get the bound of a frame.
+   *
+   * @param frame The frame number, starting from 0.
+   * @return The bound of the frame.
+   */
+  public Bound getFrameBound(final int frame) {
+
+    final double progress =
+        numberOfFrames == 1 ? 0 : easing.apply(frame / (double) (numberOfFrames - 1));
+
+    final ComplexNumber startRange = startBound.getRange();
+    final double startWidth = startRange.getReal();
+    final double endWidth = endBound.getRange().getReal();
+
+    final double scale = Math.pow(endWidth / startWidth, progress);
+    final double frameWidth = startWidth * scale;
+
+    // Move the centre in proportion to the change in width, so that the point both bounds share
+    // in their own coordinates stays still. If the width doesn't change, this is just a pan.
+    final double centreProgress = Math.abs(startWidth - endWidth) < startWidth * 1e-12 ? progress
+        : (startWidth - frameWidth) / (startWidth - endWidth);
+
+    final ComplexNumber startCentre = getCentre(startBound);
+    final ComplexNumber centre = startCentre
+        .add(getCentre(endBound).minus(startCentre).multiply(centreProgress));
+
+    final ComplexNumber halfRange = startRange.multiply(scale / 2);
+
+    return new Bound(centre.minus(halfRange), centre.add(halfRange));
+  }
+
+  /**
+   * Get the number of pixels that were copied from a previous frame rather than calculated.
+   *
+   * @return The number of reused pixels.
+   */
+  public long getReusedPixels() {
+    return reusedPixels.sum();
+  }
+
+  /**
+   * Render every frame, writing frame i to a file named frame-i.png (with i padded to five digits)
+   * in a directory.
+   *
+   * @param directory The directory to write the frames to. It is created if it does not exist.
+   *
+   * @throws IOException If there was a problem writing a frame.
+   */
+  public void render(final Path directory) throws IOException {
+
+    Files.createDirectories(directory);
+
+    final int numberOfSegments = Math.min(numberOfThreads, numberOfFrames);
+    final Thread[] workers = new Thread[numberOfSegments];
+    final IOException[] errors = new IOException[numberOfSegments];
+
+    for (int i = 0; i < numberOfSegments; i++) {
+
+      final int segment = i;
+      final int firstFrame = (int) ((long) numberOfFrames * segment / numberOfSegments);
+      final int lastFrame = (int) ((long) numberOfFrames * (segment + 1) / numberOfSegments);
+
+      workers[i] = new Thread(() -> {
+        try {
+          renderSegment(directory, firstFrame, lastFrame);
+        } catch (IOException e) {
+          errors[segment] = e;
+        }
+      }, "zoom-segment-" + i);
+
+      workers[i].start();
+    }
+
+    try {
+      for (Thread worker : workers) {
+        worker.join();
+      }
+    } catch (InterruptedException e) {
+      throw new RuntimeException(e);
+    }
+
+    for (IOException error : errors) {
+      if (error != null) {
+        throw error;
+      }
+    }
+  }
+
+  /**
+   * Render a contiguous run of frames on the calling thread, each reusing the aligned pixels of its
+   * predecessor.
+   *
+   * @param directory The directory to write the frames to.
+   * @param firstFrame The first frame to render (inclusive).
+   * @param lastFrame The last frame to render (exclusive).
+   *
+   * @throws IOException If there was a problem writing a frame.
+   */
+  private void renderSegment(final Path directory, final int firstFrame, final int lastFrame)
+      throws IOException {
+
+    final HistogramColorMapper colorMapper = new HistogramColorMapper(
+        configuration.getMaximumIterations(), configuration.getColorTheme());
+
+    Bound previousBound = null;
+    int[][] previous = null;
+    int[][] current = new int[width][height];
+
+    for (int frame = firstFrame; frame < lastFrame; frame++) {
+
+      final Bound bound = getFrameBound(frame);
+
+      calculateFrame(current, bound, previous, previousBound);
+
+      // Each segment already has a thread of its own, so the frame is compressed on this thread.
+      writeFrame(getFrameFile(directory, frame), current, colorMapper, 1);
+
+      // Swap the buffers, so the frame just written is available to the next frame.
+      final int[][] spare = previous == null ? new int[width][height] : previous;
+      previous = current;
+      current = spare;
+      previousBound = bound;
+    }
+  }
+
+  /**
+   * Calculate the iteration values of a frame, copying those whose sample lines up with a sample of
+   * the previous frame.
+   *
+   * @param frame The array to place the results, accessed as array[x][y].
+   * @param bound The bound of the frame.
+   * @param previous The iteration values of the previous frame, or null if there is none.
+   * @param previousBound The bound of the previous frame, or null if there is none.
+   */
+  private void calculateFrame(final int[][] frame, final Bound bound, final int[][] previous,
+      final Bound previousBound) {
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        bound, configuration.getMaximumIterations(), configuration.getEscapeRadius());
+
+    final int[] alignedColumns = previous == null ? null
+        : getAlignedSamples(bound.getMinimum().getReal(), bound.getRange().getReal(),
+            previousBound.getMinimum().getReal(), previousBound.getRange().getReal(), width);
+
+    final int[] alignedRows = previous == null ? null
+        : getAlignedSamples(bound.getMinimum().getImaginary(), bound.getRange().getImaginary(),
+            previousBound.getMinimum().getImaginary(), previousBound.getRange().getImaginary(),
+            height);
+
+    long reused = 0;
+
+    for (int x = 0; x < width; x++) {
+
+      final int previousX = alignedColumns == null ? -1 : alignedColumns[x];
+
+      for (int y = 0; y < height; y++) {
+
+        if (previousX >= 0 && alignedRows[y] >= 0) {
+          frame[x][y] = previous[previousX][alignedRows[y]];
+          reused++;
+
+        } else {
+          frame[x][y] = generator.calculatePixel(x, y, width, height);
+        }
+      }
+    }
+
+    reusedPixels.add(reused);
+  }
+
+  /**
+   * Find the samples along one axis that line up with a sample of the previous frame.
+   *
+   * @param minimum The minimum value of the axis in this frame.
+   * @param range The range of the axis in this frame.
+   * @param previousMinimum The minimum value of the axis in the previous frame.
+   * @param previousRange The range of the axis in the previous frame.
+   * @param resolution The number of samples along the axis.
+   *
+   * @return Position i is the index of the previous frame's sample that sample i lines up with, or
+   *         -1 if it doesn't line up with any.
+   */
+  private static int[] getAlignedSamples(final double minimum, final double range,
+      final double previousMinimum, final double previousRange, final int resolution) {
+
+    final int[] aligned = new int[resolution];
+
+    final double step = range / resolution;
+    final double previousStep = previousRange / resolution;
+
+    for (int i = 0; i < resolution; i++) {
+
+      final double position = ((minimum + i * step) - previousMinimum) / previousStep;
+      final long nearest = Math.round(position);
+
+      aligned[i] = nearest >= 0 && nearest < resolution
+          && Math.abs(position - nearest) < ALIGNMENT_TOLERANCE ? (int) nearest : -1;
+    }
+
+    return aligned;
+  }
+
+  /**
+   * Colour a frame and write it as a PNG.
+   *
+   * @param file The file to write.
+   * @param iterationValues The iteration values of the frame, accessed as array[x][y].
+   * @param colorMapper The colour mapper to use. It is cleared before use.
+   * @param numberOfThreads The number of threads to compress the frame with.
+   *
+   * @throws IOException If there was a problem writing the file.
+   */
+  static void writeFrame(final Path file, final int[][] iterationValues,
+      final HistogramColorMapper colorMapper, final int numberOfThreads) throws IOException {
+
+    final int width = iterationValues.length;
+    final int height = iterationValues[0].length;
+
+    colorMapper.clear();
+    colorMapper.addIterations(iterationValues);
+
+    try (final OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+        final PngWriter writer = new PngWriter(out, width, height, numberOfThreads)) {
+
+      final int[] row = new int[width];
+
+      for (int y = height - 1; y >= 0; y--) {
+
+        for (int x = 0; x < width; x++) {
+          row[x] = colorMapper.getColor(iterationValues[x][y]);
+        }
+
+        writer.writeRow(row);
+      }
+    }
+  }
+
+  /**
+   * Get the file a frame is written to.
+   *
+   * @param directory The directory the frames are written to.
+   * @param frame The frame number.
+   * @return The file of the frame.
+   */
+  static Path getFrameFile(final Path directory, final int frame) {
+    return directory.resolve(String.format("frame-%05d.png", frame));
+  }
+
+  /**
+   * Get the centre of a bound.
+   *
+   * @param bound The bound.
+   * @return The centre of the bound.
+   */
+  static ComplexNumber getCentre(final Bound bound) {
+    return bound.getMinimum().add(bound.getRange().multiply(0.5));
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for calculating the iteration values of a whole image of the default view, at several
+ * resolutions and numbers of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CalculateBenchmarks {
+
+  /**
+   * The resolution of the image, as width x height.
+   */
+  @Param({"256x192", "1024x768", "2048x1536"})
+  public String resolution;
+
+  /**
+   * The number of threads to calculate the image on. 24 is the number used by the explorer.
+   */
+  @Param({"1", "4", "24"})
+  public int numberOfThreads;
+
+  /**
+   * The width of the image.
+   */
+  private int width;
+
+  /**
+   * The height of the image.
+   */
+  private int height;
+
+  /**
+   * The generator the image is calculated with.
+   */
+  private MandelbrotSetIterationCountGenerator generator;
+
+  /**
+   * Parse the resolution and create the generator.
+   */
+  @Setup
+  public void setup() {
+
+    final String[] dimensions = resolution.split("x");
+
+    width = Integer.parseInt(dimensions[0]);
+    height = Integer.parseInt(dimensions[1]);
+
+    generator = new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -1.25), new ComplexNumber(0.7, 1.25)).normalise(width,
+            height),
+        1000, 2);
+  }
+
+  /**
+   * Calculate the iteration values of the image.
+   *
+   * @return The iteration values.
+   */
+  @Benchmark
+  public int[][] calculate() {
+    return generator.calculate(width, height, numberOfThreads);
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for colouring iteration values, which is all that is redone when only the colour
+ * scheme changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColoringBenchmarks {
+
+  /**
+   * The width of the image that is coloured.
+   */
+  private static final int WIDTH = 1000;
+
+  /**
+   * The height of the image that is coloured.
+   */
+  private static final int HEIGHT = 750;
+
+  /**
+   * The number of positions along the gradient looked up by each invocation of
+   * {@link #getColor}.
+   */
+  private static final int GRADIENT_POSITIONS = 1024;
+
+  /**
+   * The gradient the image is coloured with, which has the most stops of the explorer's themes.
+   */
+  private ColorGradient gradient;
+
+  /**
+   * The iteration values of the image.
+   */
+  private int[][] iterationValues;
+
+  /**
+   * The continuous iteration counts of the image.
+   */
+  private float[][] smoothIterationValues;
+
+  /**
+   * A colour mapper holding the histogram of the integer iteration values.
+   */
+  private HistogramColorMapper colorMapper;
+
+  /**
+   * A colour mapper holding the histogram of the continuous iteration counts.
+   */
+  private HistogramColorMapper smoothColorMapper;
+
+  /**
+   * Calculate the iteration values of the default view and build their histograms.
+   */
+  @Setup
+  public void setup() {
+
+    gradient = new ColorGradient(SerializableColor.rgb(35, 240, 199),
+        SerializableColor.rgb(255, 227, 71), "Bulb");
+    gradient.setStop(1 / 4.0, SerializableColor.rgb(239, 118, 122));
+    gradient.setStop(2 / 4.0, SerializableColor.rgb(125, 122, 188));
+    gradient.setStop(3 / 4.0, SerializableColor.rgb(100, 87, 166));
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -1.25), new ComplexNumber(0.7, 1.25)).normalise(WIDTH,
+            HEIGHT),
+        1000, 2);
+
+    final int numberOfThreads = Runtime.getRuntime().availableProcessors();
+
+    smoothIterationValues = generator.calculateSmooth(WIDTH, HEIGHT, 0, HEIGHT, numberOfThreads);
+    iterationValues = MandelbrotSetIterationCountGenerator.toIterationCounts(smoothIterationValues);
+
+    colorMapper = new HistogramColorMapper(1000, gradient);
+    colorMapper.addIterations(iterationValues);
+
+    smoothColorMapper = new HistogramColorMapper(1000, gradient);
+    smoothColorMapper.addIterations(smoothIterationValues);
+  }
+
+  /**
+   * Colour the integer iteration values of the image.
+   *
+   * @return The pixels.
+   */
+  @Benchmark
+  public int[][] mapIterationsToColors() {
+    return colorMapper.mapIterationsToColors(iterationValues);
+  }
+
+  /**
+   * Colour the continuous iteration counts of the image.
+   *
+   * @return The pixels.
+   */
+  @Benchmark
+  public int[][] mapSmoothIterationsToColors() {
+    return smoothColorMapper.mapIterationsToColors(smoothIterationValues);
+  }
+
+  /**
+   * Look up colours spread along the whole gradient.
+   *
+   * @param blackhole Consumes the colours, so that the lookups are not optimised away.
+   */
+  @Benchmark
+  @OperationsPerInvocation(GRADIENT_POSITIONS)
+  public void getColor(final Blackhole blackhole) {
+    for (int i = 0; i < GRADIENT_POSITIONS; i++) {
+      blackhole.consume(gradient.getColor(i / (double) (GRADIENT_POSITIONS - 1)));
+    }
+  }
+}
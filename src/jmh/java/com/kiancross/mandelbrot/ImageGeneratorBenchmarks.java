@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for generating a whole frame, as the explorer does after the view changes: calculating
+ * the iteration values, building the histogram and colouring the pixels.
+ *
+ * <p>The image generator caches every stage, so a new generator is created for each invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ImageGeneratorBenchmarks {
+
+  /**
+   * The width of the frame, about the size of the image in the explorer's initial window.
+   */
+  private static final int WIDTH = 1000;
+
+  /**
+   * The height of the frame.
+   */
+  private static final int HEIGHT = 750;
+
+  /**
+   * The view that is generated:
+   *
+   * <ul>
+   * <li>"default" - the whole set, as the explorer starts.</li>
+   * <li>"seahorse" - seahorse valley, 10^-4 wide, which is mostly slowly escaping points.</li>
+   * <li>"spiral" - a spiral deep in seahorse valley, 10^-10 wide.</li>
+   * <li>"minibrot" - the period three minibrot on the real axis, which is mostly interior.</li>
+   * </ul>
+   */
+  @Param({"default", "seahorse", "spiral", "minibrot"})
+  public String view;
+
+  /**
+   * The generator, set to the view.
+   */
+  private ImageGenerator generator;
+
+  /**
+   * Create a new generator and set it to the view.
+   */
+  @Setup(Level.Invocation)
+  public void setup() {
+
+    generator = new ImageGenerator(
+        new ColorGradient(SerializableColor.BLACK, SerializableColor.WHITE, "Grey"));
+
+    switch (view) {
+      case "default":
+        break;
+
+      case "seahorse":
+        zoomTo(-0.7436, 0.1318, 1e-4);
+        generator.setMaximumIterations(2000);
+        break;
+
+      case "spiral":
+        zoomTo(-0.743643887037151, 0.131825904205330, 1e-10);
+        generator.setMaximumIterations(5000);
+        break;
+
+      case "minibrot":
+        zoomTo(-1.7548776662466927, 0, 0.04);
+        break;
+
+      default:
+        throw new IllegalArgumentException("Unknown view: " + view);
+    }
+  }
+
+  /**
+   * Zoom the generator to a view, using the same zoom as the explorer's zoom rectangle.
+   *
+   * @param real The real part of the centre of the view.
+   * @param imaginary The imaginary part of the centre of the view.
+   * @param width The width of the view on the complex plane.
+   */
+  private void zoomTo(final double real, final double imaginary, final double width) {
+
+    final Bound current = generator.getCurrentConfigurationProperty().getValue().getBound()
+        .normalise(WIDTH, HEIGHT);
+
+    final double realRange = current.getMaximum().getReal() - current.getMinimum().getReal();
+    final double imaginaryRange =
+        current.getMaximum().getImaginary() - current.getMinimum().getImaginary();
+
+    final double height = width * HEIGHT / WIDTH;
+
+    // Positions in the frame, where y increases downwards.
+    final double minX = (real - width / 2 - current.getMinimum().getReal()) / realRange * WIDTH;
+    final double maxX = (real + width / 2 - current.getMinimum().getReal()) / realRange * WIDTH;
+    final double minY =
+        (current.getMaximum().getImaginary() - (imaginary - height / 2)) / imaginaryRange * HEIGHT;
+    final double maxY =
+        (current.getMaximum().getImaginary() - (imaginary + height / 2)) / imaginaryRange * HEIGHT;
+
+    generator.zoom(WIDTH, HEIGHT, minX, maxX, minY, maxY);
+  }
+
+  /**
+   * Generate the frame.
+   *
+   * @return The pixels.
+   */
+  @Benchmark
+  public int[] generate() {
+    return generator.generate(WIDTH, HEIGHT);
+  }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks for calculating the iteration count of a single point. The cost of a point depends
+ * almost entirely on how many iterations it takes, so a point is taken from each class.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IterationCountBenchmarks {
+
+  /**
+   * The maximum number of iterations, which is the default of the explorer.
+   */
+  private static final int MAXIMUM_ITERATIONS = 1000;
+
+  /**
+   * The class of the point: "interior" (inside the set, so every iteration is done), "boundary"
+   * (escapes after a few hundred iterations) or "escape" (escapes after the first iteration).
+   */
+  @Param({"interior", "boundary", "escape"})
+  public String pointClass;
+
+  /**
+   * The generator the point is calculated with.
+   */
+  private MandelbrotSetIterationCountGenerator generator;
+
+  /**
+   * The point being calculated.
+   */
+  private ComplexNumber point;
+
+  /**
+   * Create the generator and choose the point.
+   */
+  @Setup
+  public void setup() {
+
+    generator = new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -1.25), new ComplexNumber(0.7, 1.25)), MAXIMUM_ITERATIONS,
+        2);
+
+    switch (pointClass) {
+      case "interior":
+        point = new ComplexNumber(-0.1, 0.1);
+        break;
+
+      case "boundary":
+        // Just outside the cusp of the main cardioid, where points escape very slowly.
+        point = new ComplexNumber(0.2501, 0);
+        break;
+
+      case "escape":
+        point = new ComplexNumber(1.5, 1.5);
+        break;
+
+      default:
+        throw new IllegalArgumentException("Unknown point class: " + pointClass);
+    }
+  }
+
+  /**
+   * Calculate the iteration count of the point.
+   *
+   * @return The iteration count.
+   */
+  @Benchmark
+  public int calculateIterations() {
+    return generator.calculateIterations(point);
+  }
+
+  /**
+   * Calculate the continuous iteration count of the point, as used by smooth colouring.
+   *
+   * @return The continuous iteration count.
+   */
+  @Benchmark
+  public float calculateSmoothIterations() {
+    return generator.calculateSmoothIterations(point);
+  }
+}
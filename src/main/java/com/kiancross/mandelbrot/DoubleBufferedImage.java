@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+/**
+ * A pair of images backed directly by native pixel buffers, used to display the mandelbrot image
+ * without copying it into JavaFX.
+ *
+ * <p>Whole frames are written to the back buffer, which is not on screen, and then swapped to the
+ * front by displaying its image instead. Parts of a frame, such as tiles arriving while the image
+ * is calculated, are written straight into the front buffer, and only the region written is marked
+ * as changed, so only that region is uploaded to the graphics card.
+ *
+ * <p>Pixels are ARGB, with rows from the top of the image. The buffers are premultiplied, as
+ * required by {@link PixelBuffer}, which is the same as straight ARGB for the opaque colours used
+ * here. All methods must be called on the JavaFX application thread.
+ */
+public class DoubleBufferedImage {
+
+  /**
+   * The width of the images.
+   */
+  private final int width;
+
+  /**
+   * The height of the images.
+   */
+  private final int height;
+
+  /**
+   * The native pixel buffers of the two images.
+   */
+  private final PixelBuffer<IntBuffer>[] pixelBuffers;
+
+  /**
+   * The two images, each backed by the pixel buffer at the same position.
+   */
+  private final WritableImage[] images;
+
+  /**
+   * The position of the front (displayed) image.
+   */
+  private int front;
+
+  /**
+   * Construct a double buffered image.
+   *
+   * @param width The width of the image.
+   * @param height The height of the image.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  public DoubleBufferedImage(final int width, final int height) {
+
+    if (width < 1 || height < 1) {
+      throw new IllegalArgumentException("Width and height must be greater than zero.");
+    }
+
+    this.width = width;
+    this.height = height;
+    this.pixelBuffers = new PixelBuffer[2];
+    this.images = new WritableImage[2];
+
+    for (int i = 0; i < 2; i++) {
+
+      final IntBuffer buffer = ByteBuffer.allocateDirect(width * height * Integer.BYTES)
+          .order(ByteOrder.nativeOrder()).asIntBuffer();
+
+      pixelBuffers[i] =
+          new PixelBuffer<IntBuffer>(width, height, buffer, PixelFormat.getIntArgbPreInstance());
+
+      images[i] = new WritableImage(pixelBuffers[i]);
+    }
+  }
+
+  /**
+   * Get the width of the image.
+   *
+   * @return The width of the image.
+   */
+  public int getWidth() {
+    return width;
+  }
+
+  /**
+   * Get the height of the image.
+   *
+   * @return The height of the image.
+   */
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Get the image currently at the front, which should be displayed.
+   *
+   * @return The front image.
+   */
+  public WritableImage getFrontImage() {
+    return images[front];
+  }
+
+  /**
+   * Write a whole frame to the back buffer and swap it to the front.
+   *
+   * @param pixels The ARGB pixels of the frame, in rows from the top of the image.
+   * @return The new front image, which should now be displayed.
+   */
+  public WritableImage present(final int[] pixels) {
+
+    final int back = 1 - front;
+
+    pixelBuffers[back].updateBuffer(pixelBuffer -> {
+
+      final IntBuffer buffer = pixelBuffer.getBuffer();
+
+      buffer.clear();
+      buffer.put(pixels, 0, width * height);
+
+      // A null region marks the whole buffer as changed.
+      return null;
+    });
+
+    front = back;
+
+    return images[front];
+  }
+
+  /**
+   * Write another image into the front image, stretched to the size of this one by repeating its
+   * nearest pixels.
+   *
+   * @param source The image to write, whose front image is read.
+   */
+  public void fill(final DoubleBufferedImage source) {
+
+    final IntBuffer sourceBuffer = source.pixelBuffers[source.front].getBuffer();
+
+    pixelBuffers[front].updateBuffer(pixelBuffer -> {
+
+      final IntBuffer buffer = pixelBuffer.getBuffer();
+
+      for (int y = 0; y < height; y++) {
+
+        final int sourceRow = (int) ((long) y * source.height / height) * source.width;
+
+        for (int x = 0; x < width; x++) {
+          buffer.put(y * width + x,
+              sourceBuffer.get(sourceRow + (int) ((long) x * source.width / width)));
+        }
+      }
+
+      return null;
+    });
+  }
+
+  /**
+   * Write a rectangle of pixels into the front image, marking only that rectangle as changed.
+   *
+   * @param x The left column of the rectangle.
+   * @param y The top row of the rectangle, counting from the top of the image.
+   * @param regionWidth The width of the rectangle.
+   * @param regionHeight The height of the rectangle.
+   * @param pixels The ARGB pixels of the rectangle, in rows from the top of the rectangle.
+   */
+  public void update(final int x, final int y, final int regionWidth, final int regionHeight,
+      final int[] pixels) {
+
+    if (x < 0 || y < 0 || x + regionWidth > width || y + regionHeight > height) {
+      throw new IllegalArgumentException("Region must lie within the image.");
+    }
+
+    pixelBuffers[front].updateBuffer(pixelBuffer -> {
+
+      final IntBuffer buffer = pixelBuffer.getBuffer();
+
+      for (int row = 0; row < regionHeight; row++) {
+        buffer.position((y + row) * width + x);
+        buffer.put(pixels, row * regionWidth, regionWidth);
+      }
+
+      return new Rectangle2D(x, y, regionWidth, regionHeight);
+    });
+  }
+}
@@ -35,6 +35,11 @@ public class ImageConfigurationManager {
   private final InformInitialObjectProperty<ImageConfiguration> currentConfigurationProperty =
       new InformInitialObjectProperty<ImageConfiguration>();
 
+  /**
+   * The recorder interactions are recorded to, or null if the session is not being recorded.
+   */
+  private SessionRecorder sessionRecorder;
+
   /**
    * Construct a configuration manager.
    *
@@ -51,6 +56,7 @@ public class ImageConfigurationManager {
    */
   public void undo() {
     future.addFirst(history.removeFirst());
+    record(SessionEvent.Type.UNDO, null);
     currentConfigurationProperty.setValue(getCurrentConfiguration());
   }
 
@@ -59,6 +65,7 @@ public class ImageConfigurationManager {
    */
   public void redo() {
     history.addFirst(future.removeFirst());
+    record(SessionEvent.Type.REDO, null);
     currentConfigurationProperty.setValue(getCurrentConfiguration());
   }
 
@@ -86,6 +93,7 @@ public class ImageConfigurationManager {
   public void resetAll() {
     history.clear();
     future.clear();
+    record(SessionEvent.Type.RESET, null);
     currentConfigurationProperty.setValue(getCurrentConfiguration());
   }
 
@@ -143,9 +151,45 @@ public class ImageConfigurationManager {
 
       future.clear();
       history.addFirst(newConfiguration);
+      record(SessionEvent.Type.ADD, newConfiguration);
       currentConfigurationProperty.setValue(newConfiguration);
 
       return true;
     }
   }
+
+  /**
+   * Start or stop recording interactions. When recording starts, the initial configuration is
+   * recorded, followed by the current configuration if it is different, so that a replay starts
+   * from the same view.
+   *
+   * @param recorder The recorder to record to, or null to stop recording. The previous recorder
+   *        is not closed.
+   */
+  public void setSessionRecorder(final SessionRecorder recorder) {
+
+    sessionRecorder = recorder;
+
+    if (recorder != null) {
+      recorder.record(SessionEvent.Type.START, initialConfiguration);
+
+      if (!history.isEmpty()) {
+        recorder.record(SessionEvent.Type.ADD, getCurrentConfiguration());
+      }
+    }
+  }
+
+  /**
+   * Record an interaction if the session is being recorded. Interactions are recorded before
+   * listeners are told of the new configuration, so that they are recorded before the image
+   * starts being redrawn.
+   *
+   * @param type The kind of interaction.
+   * @param configuration The configuration of an add interaction, or null.
+   */
+  private void record(final SessionEvent.Type type, final ImageConfiguration configuration) {
+    if (sessionRecorder != null) {
+      sessionRecorder.record(type, configuration);
+    }
+  }
 }
@@ -4,31 +4,135 @@
 
 package com.kiancross.mandelbrot;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import javafx.scene.paint.Color;
+import java.io.OutputStream;
+import java.util.concurrent.Flow;
 
 /**
  * Manages the creation of the mandelbrot image, allowing parameters to be set to modify the
  * resultant image.
+ *
+ * <p>The image is produced by a pipeline of stages, each of which keeps its last result and is
+ * only rerun when something it depends on changes:
+ *
+ * <ol>
+ * <li>iterate: the iteration values, which depend on the bound, maximum iterations, escape radius,
+ * smooth colouring and resolution;</li>
+ * <li>histogram: the cumulative histogram of the iteration values;</li>
+ * <li>palette: the colour of each iteration value, which also depends on the colour theme;</li>
+ * <li>pixels: the colour of each pixel.</li>
+ * </ol>
+ *
+ * <p>The final stage, overlaying the zoom, is drawn by the view on top of the pixels, so toggling
+ * it does not rerun any of these stages. Changing the colour theme only reruns the palette and
+ * pixel stages.
  */
 public class ImageGenerator {
 
   /**
-   * Boolean value indicating whether the iterations need to be recalculated. Changing some options
-   * require the iterations to be recalculated, whereas some do not.
+   * The number of threads used to calculate the iteration values, unless changed through the
+   * engine or learned by a tuner (see {@link #setTuner}).
+   *
+   * <p>Using more threads than the number of cores the computer has may seem pointless. But
+   * actually, as some threads complete a lot quicker than others, due to the way the calculations
+   * are divided, it means that if one thread the calculation very quickly, there are still more
+   * threads to utilise all of the cores. The number 24 is arbitrary: there is probably a sweet
+   * spot somewhere but I haven't done an experiment to find it.
    */
-  boolean recalculateMandelbrotIterations = true;
+  static final int DEFAULT_WORKER_COUNT = 24;
+
+  /**
+   * The number of bytes of iteration values kept for reuse, unless changed through the engine.
+   * This is enough for around a dozen full screen images with smooth colouring.
+   */
+  static final long DEFAULT_CACHE_BUDGET = 256L << 20;
 
   /**
    * The last calculated iteration values.
    */
   int[][] iterationValues;
 
+  /**
+   * The last calculated continuous iteration counts, or null if smooth colouring was not in use
+   * when the iteration values were last calculated.
+   */
+  float[][] smoothIterationValues;
+
+  /**
+   * The configuration the last iteration values were calculated for. Changing some options require
+   * the iterations to be recalculated, whereas some do not. Only the bound, maximum iterations and
+   * escape radius of this configuration are compared to decide.
+   */
+  ImageConfiguration iterationConfiguration;
+
+  /**
+   * The histogram of the last calculated iteration values, or null if it has not been built since
+   * they were calculated. Its gradient is the colour theme of the last generated pixels.
+   */
+  private HistogramColorMapper colorMapper;
+
+  /**
+   * The colour theme the last pixels were generated with.
+   */
+  private ColorGradient pixelsColorTheme;
+
+  /**
+   * The last generated pixels, in rows from the top of the image, or null if they need generating
+   * again.
+   */
+  private int[] pixels;
+
+  /**
+   * The palette cycler for the last generated pixels, or null if it has not been created since they
+   * were generated.
+   */
+  private PaletteCycler paletteCycler;
+
+  /**
+   * The metrics of the last generated frame.
+   */
+  private RenderMetrics renderMetrics = new RenderMetrics.Builder().build();
+
+  /**
+   * The number of stages whose results have been reused since the generator was created.
+   */
+  private long stageHits;
+
+  /**
+   * The number of stages that have been needed since the generator was created.
+   */
+  private long stageLookups;
+
+  /**
+   * The statistics and settings of the generator, exposed through JMX.
+   */
+  private final MandelbrotEngine engine =
+      new MandelbrotEngine(DEFAULT_WORKER_COUNT, new IterationCache(DEFAULT_CACHE_BUDGET));
+
+  /**
+   * The tile renderer calculating the iteration values, or null if they are not being calculated
+   * in tiles.
+   */
+  private volatile TileRenderer activeRenderer;
+
+  /**
+   * The progress of the current or last calculation of the iteration values, or null if they have
+   * not been calculated.
+   */
+  private volatile RenderProgress progress;
+
+  /**
+   * The tuner that chooses the number of workers and the size of tiles, or null if they are not
+   * tuned.
+   */
+  private volatile RenderTuner tuner;
+
   /**
    * The image configuration manager.
    */
@@ -40,89 +144,134 @@ public class ImageGenerator {
    * @param initialColorTheme The initial colour theme that should be used.
    */
   public ImageGenerator(final ColorGradient initialColorTheme) {
-
-    final ImageConfiguration initialConfiguration = new ImageConfiguration.Builder()
+    this(new ImageConfiguration.Builder()
         .bound(new Bound(new ComplexNumber(-2, -1.25), new ComplexNumber(0.7, 1.25)))
         .escapeRadius(2).maximumIterations(1000).overlayZoom(true).colorTheme(initialColorTheme)
-        .build();
+        .build());
+  }
 
+  /**
+   * Construct an image generator starting from a given configuration, which resetting returns to.
+   *
+   * @param initialConfiguration The initial configuration.
+   */
+  public ImageGenerator(final ImageConfiguration initialConfiguration) {
     configurationManger = new ImageConfigurationManager(initialConfiguration);
 
-    // Whenever the configuration changes, check if the iteration values need to be
-    // recalculated. The following value changes require the values to be recalculated:
-    // bound, maximumIterations, escapeRadius.
-    configurationManger.getCurrentConfigurationProperty()
-        .addListener((a, oldConfiguration, newConfiguration) -> {
-
-          if (!(oldConfiguration.getBound().equals(newConfiguration.getBound())
-              && oldConfiguration.getMaximumIterations() == newConfiguration.getMaximumIterations()
-              && oldConfiguration.getEscapeRadius() == newConfiguration.getEscapeRadius())) {
-            recalculateMandelbrotIterations = true;
-          }
-        });
+    engine.setQueueDepthSupplier(() -> {
+      final TileRenderer renderer = activeRenderer;
+      return renderer == null ? 0 : renderer.getQueueDepth();
+    });
   }
 
   /**
-   * Take a bound and scales it such that the aspect ratio of the imaginary part to the yAxis and
-   * the real part to the x-axis are the same. This prevents the image from being scaled
-   * disproportionally (resulting in a stretched/squashed image).
+   * Checks if two configurations produce the same iteration values. The following values affect
+   * the iteration values: bound, maximumIterations, escapeRadius.
    *
-   * @param bound The bound to be normalised.
-   * @param rangeX The width of the image being displayed.
-   * @param rangeY The height of the image being displayed
-   * @return The normalised bound.
+   * @param a The first configuration.
+   * @param b The second configuration.
+   *
+   * @return Whether the iteration values of the two configurations are the same.
    */
-  private Bound normaliseBound(final Bound bound, final double rangeX, final double rangeY) {
-
-    final ComplexNumber minimum = bound.getMinimum();
-    final ComplexNumber maximum = bound.getMaximum();
-
-    final ComplexNumber range = bound.getRange();
-
-    final double realPartRange = range.getReal();
-    final double imaginaryPartRange = range.getImaginary();
+  private static boolean haveSameIterationValues(final ImageConfiguration a,
+      final ImageConfiguration b) {
 
-    final double xRatio = rangeX / realPartRange;
-    final double yRatio = rangeY / imaginaryPartRange;
-
-    final double addToRealRange;
-    final double addToImaginarrangeY;
+    return a.getBound().equals(b.getBound())
+        && a.getMaximumIterations() == b.getMaximumIterations()
+        && a.getEscapeRadius() == b.getEscapeRadius();
+  }
 
-    // Here we calculate the additional value needed to add to the range to make the
-    // two rations equal.
-    if (xRatio > yRatio) {
-      addToRealRange = ((imaginaryPartRange * rangeX) / rangeY) - realPartRange;
-      addToImaginarrangeY = 0;
+  /**
+   * Checks if the iteration values need recalculating. This is based on whether the values were
+   * calculated for the configuration being drawn and also a check to see if the image size is
+   * different.
+   *
+   * @param configuration The configuration being drawn.
+   * @param resolutionX The x resolution of the image being drawn.
+   * @param resolutionY The y resolution of the image being drawn.
+   *
+   * @return A boolean value indicating whether the value needs recalculating.
+   */
+  private boolean checkIfRecalculationNeeded(final ImageConfiguration configuration,
+      final int resolutionX, final int resolutionY) {
+    return iterationValues == null
+        || (configuration.getSmoothColoring() && smoothIterationValues == null)
+        || !haveSameIterationValues(iterationConfiguration, configuration)
+        || resolutionX != iterationValues.length
+        || (resolutionX > 0 && resolutionY != iterationValues[0].length);
+  }
 
-    } else {
+  /**
+   * Checks if generating an image of a given resolution would need the iteration values to be
+   * recalculated, which is slow, rather than only recolouring them or taking them from the cache.
+   *
+   * @param resolutionX The x resolution of the image being drawn.
+   * @param resolutionY The y resolution of the image being drawn.
+   *
+   * @return Whether the iteration values need recalculating.
+   */
+  public boolean isRecalculationNeeded(final int resolutionX, final int resolutionY) {
+    return isRecalculationNeeded(configurationManger.getCurrentConfiguration(), resolutionX,
+        resolutionY);
+  }
 
-      addToRealRange = 0;
-      addToImaginarrangeY = ((realPartRange * rangeY) / rangeX) - imaginaryPartRange;
-    }
+  /**
+   * Checks if generating an image of a configuration would need the iteration values to be
+   * recalculated, which is slow, rather than only recolouring them or taking them from the cache.
+   *
+   * @param configuration The configuration of the image.
+   * @param resolutionX The x resolution of the image being drawn.
+   * @param resolutionY The y resolution of the image being drawn.
+   *
+   * @return Whether the iteration values need recalculating.
+   */
+  public synchronized boolean isRecalculationNeeded(final ImageConfiguration configuration,
+      final int resolutionX, final int resolutionY) {
+    return checkIfRecalculationNeeded(configuration, resolutionX, resolutionY)
+        && !engine.getCache().contains(configuration, resolutionX, resolutionY);
+  }
 
-    // We then add an equal amount of the additional range to both the minimum
-    // and maximum. This ensures the image remains centred.
-    final ComplexNumber newMinimum = new ComplexNumber(minimum.getReal() - (addToRealRange / 2),
-        minimum.getImaginary() - (addToImaginarrangeY / 2));
+  /**
+   * Checks if the current configuration needs different iteration values to the last ones
+   * calculated, such as after a zoom, rather than only the same view at another resolution.
+   *
+   * @return Whether the configuration has changed since the iteration values were calculated.
+   */
+  public synchronized boolean isConfigurationChanged() {
 
-    final ComplexNumber newMaximum = new ComplexNumber(maximum.getReal() + (addToRealRange / 2),
-        maximum.getImaginary() + (addToImaginarrangeY / 2));
+    final ImageConfiguration configuration = configurationManger.getCurrentConfiguration();
 
-    return new Bound(newMinimum, newMaximum);
+    return iterationValues == null
+        || (configuration.getSmoothColoring() && smoothIterationValues == null)
+        || !haveSameIterationValues(iterationConfiguration, configuration);
   }
 
   /**
-   * Checks if the iteration values need recalculating. This is based on the flag that indicates if
-   * the values need recalculating and also a check to see if the image size is different.
+   * Use the iteration values of the current configuration from the cache, if they are there. This
+   * invalidates every later stage.
    *
+   * @param configuration The current configuration.
    * @param resolutionX The x resolution of the image being drawn.
    * @param resolutionY The y resolution of the image being drawn.
    *
-   * @return A boolean value indicating whether the value needs recalculating.
+   * @return Whether the iteration values were in the cache.
    */
-  private boolean checkIfRecalculationNeeded(final int resolutionX, final int resolutionY) {
-    return recalculateMandelbrotIterations || resolutionX != iterationValues.length
-        || resolutionY != iterationValues[0].length;
+  private boolean loadCachedIterations(final ImageConfiguration configuration,
+      final int resolutionX, final int resolutionY) {
+
+    final IterationCache.Entry entry =
+        engine.getCache().get(configuration, resolutionX, resolutionY);
+
+    if (entry == null) {
+      return false;
+    }
+
+    iterationValues = entry.getIterationValues();
+    smoothIterationValues = entry.getSmoothIterationValues();
+    iterationConfiguration = configuration;
+    colorMapper = null;
+
+    return true;
   }
 
   /**
@@ -138,7 +287,7 @@ public class ImageGenerator {
       final double rangeY) {
 
     final Bound currentBound =
-        normaliseBound(configurationManger.getCurrentConfiguration().getBound(), rangeX, rangeY);
+        configurationManger.getCurrentConfiguration().getBound().normalise(rangeX, rangeY);
 
     final ComplexNumber minimumC = currentBound.getMinimum();
     final ComplexNumber maximumC = currentBound.getMaximum();
@@ -258,6 +407,29 @@ public class ImageGenerator {
     configurationManger.addConfiguration(newConfiguration);
   }
 
+  /**
+   * Set whether the image should be coloured using continuous iteration counts.
+   *
+   * @param smoothColoring Whether smooth colouring should be used.
+   */
+  public void setSmoothColoring(final boolean smoothColoring) {
+
+    final ImageConfiguration newConfiguration = new ImageConfiguration.Builder()
+        .use(configurationManger.getCurrentConfiguration()).smoothColoring(smoothColoring).build();
+
+    configurationManger.addConfiguration(newConfiguration);
+  }
+
+  /**
+   * Change to a given configuration, as if it had been set through the other methods. This is
+   * used to replay recorded sessions.
+   *
+   * @param configuration The new configuration.
+   */
+  void addConfiguration(final ImageConfiguration configuration) {
+    configurationManger.addConfiguration(configuration);
+  }
+
   /**
    * Undo the last change.
    */
@@ -293,6 +465,15 @@ public class ImageGenerator {
     return configurationManger.canRedo();
   }
 
+  /**
+   * Start or stop recording the interactions of the session.
+   *
+   * @param recorder The recorder to record to, or null to stop recording.
+   */
+  public void setSessionRecorder(final SessionRecorder recorder) {
+    configurationManger.setSessionRecorder(recorder);
+  }
+
   /**
    * Gets the current configuration property. A listener can be added that is called on changes.
    *
@@ -314,26 +495,40 @@ public class ImageGenerator {
     final ImageConfiguration currentConfiguration = configurationManger.getCurrentConfiguration();
 
     final ComplexNumber initialRange =
-        normaliseBound(initialConfiguration.getBound(), rangeX, rangeY).getRange();
+        initialConfiguration.getBound().normalise(rangeX, rangeY).getRange();
 
     final ComplexNumber currentRange =
-        normaliseBound(currentConfiguration.getBound(), rangeX, rangeY).getRange();
+        currentConfiguration.getBound().normalise(rangeX, rangeY).getRange();
 
     return initialRange.getReal() / currentRange.getReal();
   }
 
   /**
-   * Saves the image configuration to a given file.
+   * Saves the image configuration to a given file. If the iteration values for the current
+   * configuration have been calculated they are saved too, so that the image can be displayed
+   * immediately when the file is loaded.
    *
    * @param file The file to save the image configuration to.
    *
    * @throws ImageConfigurationSaveException Exception thrown if there was an error saving the
    *         configuration.
    */
-  public void saveConfiguration(final File file) throws ImageConfigurationSaveException {
+  public synchronized void saveConfiguration(final File file)
+      throws ImageConfigurationSaveException {
+
+    final ImageConfiguration configuration = configurationManger.getCurrentConfiguration();
 
-    try (final ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(file))) {
-      out.writeObject(configurationManger.getCurrentConfiguration());
+    final int[][] savedIterationValues = iterationValues != null
+        && haveSameIterationValues(iterationConfiguration, configuration) ? iterationValues : null;
+
+    // Smooth coloured images also need their continuous iteration counts to be displayed.
+    final float[][] savedSmoothIterationValues =
+        savedIterationValues != null && configuration.getSmoothColoring()
+            ? smoothIterationValues
+            : null;
+
+    try (final OutputStream out = new FileOutputStream(file)) {
+      new ImageState(configuration, savedIterationValues, savedSmoothIterationValues).write(out);
 
     } catch (IOException e) {
       throw new ImageConfigurationSaveException(e);
@@ -341,18 +536,38 @@ public class ImageGenerator {
   }
 
   /**
-   * Loads the image configuration from a given file.
+   * Loads the image configuration from a given file. Files written by older versions of the
+   * explorer, which used Java serialisation, can still be loaded.
    *
    * @param file The file to save the image configuration to.
    *
    * @throws ImageConfigurationLoadException Exception thrown if there was an error loading the
    *         configuration.
    */
-  public void loadConfiguration(final File file) throws ImageConfigurationLoadException {
+  public synchronized void loadConfiguration(final File file)
+      throws ImageConfigurationLoadException {
+
+    try (final InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+
+      if (!ImageState.isImageState(in)) {
+        configurationManger.addConfiguration((ImageConfiguration) new ObjectInputStream(in)
+            .readObject());
 
-    try (final ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+        return;
+      }
 
-      configurationManger.addConfiguration((ImageConfiguration) in.readObject());
+      final ImageState state = ImageState.read(in);
+
+      // The iteration values must be in place before the configuration is added, as listeners
+      // redraw the image as soon as the configuration changes.
+      if (state.getIterationValues() != null) {
+        iterationValues = state.getIterationValues();
+        smoothIterationValues = state.getSmoothIterationValues();
+        iterationConfiguration = state.getConfiguration();
+        colorMapper = null;
+      }
+
+      configurationManger.addConfiguration(state.getConfiguration());
 
     } catch (ClassNotFoundException e) {
       throw new ImageConfigurationLoadException(e);
@@ -364,42 +579,437 @@ public class ImageGenerator {
   }
 
   /**
-   * Generate an image of a given resolution.
+   * Generate an image of a given resolution. Only the stages affected by changes since the last
+   * call are rerun; if nothing that affects the pixels has changed, the previous pixels are
+   * returned.
+   *
+   * @param resolutionX Number of pixels the width of the image should be.
+   * @param resolutionY Number of pixels the height of the image should be.
+   *
+   * @return The pixels, packed as 0xAARRGGBB, in rows from the top of the image. This is shared
+   *         with later calls, so must not be modified.
+   */
+  public int[] generate(final int resolutionX, final int resolutionY) {
+    return generate(resolutionX, resolutionY, null);
+  }
+
+  /**
+   * Generate an image of the current configuration, publishing tiles to a subscriber as they are
+   * calculated if the iteration values need recalculating. This reads the current configuration,
+   * so must be called on the thread that changes it; use
+   * {@link #generate(ImageConfiguration, int, int, Flow.Subscriber)} from any other thread.
    *
    * @param resolutionX Number of pixels the width of the image should be.
    * @param resolutionY Number of pixels the height of the image should be.
+   * @param tileSubscriber The subscriber to publish tiles to, or null to not publish them. No
+   *        tiles are published if the iteration values do not need recalculating.
+   *
+   * @return The pixels, packed as 0xAARRGGBB, in rows from the top of the image. This is shared
+   *         with later calls, so must not be modified.
+   */
+  public int[] generate(final int resolutionX, final int resolutionY,
+      final Flow.Subscriber<? super RenderedTile> tileSubscriber) {
+    return generate(configurationManger.getCurrentConfiguration(), resolutionX, resolutionY,
+        tileSubscriber);
+  }
+
+  /**
+   * Generate an image of a configuration, publishing tiles to a subscriber as they are calculated
+   * if the iteration values need recalculating. The tiles are coloured with an estimated
+   * histogram, so that they can be displayed before the whole image is done; the pixels returned
+   * use the exact histogram.
+   *
+   * <p>This may be called from a thread other than the JavaFX application thread, with a
+   * configuration taken on that thread. The history of configurations is changed on the JavaFX
+   * application thread without locking, so it is not read here; the configuration given is used
+   * for the whole image, even if the current configuration changes in the meantime.
+   *
+   * @param configuration The configuration of the image.
+   * @param resolutionX Number of pixels the width of the image should be.
+   * @param resolutionY Number of pixels the height of the image should be.
+   * @param tileSubscriber The subscriber to publish tiles to, or null to not publish them. No
+   *        tiles are published if the iteration values do not need recalculating.
+   *
+   * @return The pixels, packed as 0xAARRGGBB, in rows from the top of the image. This is shared
+   *         with later calls, so must not be modified.
+   */
+  public synchronized int[] generate(final ImageConfiguration configuration,
+      final int resolutionX, final int resolutionY,
+      final Flow.Subscriber<? super RenderedTile> tileSubscriber) {
+
+    final long frameStart = System.nanoTime();
+
+    // The iteration count and worker times are kept from the last calculation.
+    final long previousStageHits = stageHits;
+    final RenderMetrics.Builder metrics = new RenderMetrics.Builder().use(renderMetrics)
+        .normaliseTime(0).iterateTime(0).histogramTime(0).colorTime(0).blitTime(0);
+
+    final boolean recalculate = checkIfRecalculationNeeded(configuration, resolutionX, resolutionY)
+        && !loadCachedIterations(configuration, resolutionX, resolutionY);
+
+    final RenderJobEvent jobEvent = new RenderJobEvent(!recalculate ? "cached"
+        : tileSubscriber != null && resolutionX > 0 && resolutionY > 0 ? "tiles" : "threads");
+    jobEvent.begin();
+
+    // The iterate, histogram and colour stages are each either reused or rerun.
+    stageLookups += 3;
+
+    if (recalculate) {
+      calculateIterations(configuration, resolutionX, resolutionY, tileSubscriber, metrics);
+    } else {
+      stageHits++;
+    }
+
+    // Turning smooth colouring off needs no new values, as the integer values are kept with them.
+    if (!configuration.getSmoothColoring() && smoothIterationValues != null) {
+      smoothIterationValues = null;
+      pixels = null;
+    }
+
+    if (colorMapper == null) {
+      final RenderStageEvent event = new RenderStageEvent("histogram");
+      event.begin();
+
+      final long start = System.nanoTime();
+      buildHistogram(configuration);
+      metrics.histogramTime(System.nanoTime() - start);
+
+      commitEvent(event, configuration, resolutionX, resolutionY);
+    } else {
+      stageHits++;
+    }
+
+    final RenderStageEvent colorEvent = new RenderStageEvent("colour");
+    colorEvent.begin();
+
+    final long colorStart = System.nanoTime();
+
+    if (!configuration.getColorTheme().equals(pixelsColorTheme)) {
+      colorMapper.setGradient(configuration.getColorTheme());
+      pixelsColorTheme = configuration.getColorTheme();
+      pixels = null;
+    }
+
+    if (pixels == null) {
+      pixels = mapPixels();
+      paletteCycler = null;
+      metrics.colorTime(System.nanoTime() - colorStart);
+
+      commitEvent(colorEvent, configuration, resolutionX, resolutionY);
+    } else {
+      stageHits++;
+    }
+
+    // If every stage was reused no new frame was made, so the times of the last frame are kept.
+    if (stageHits - previousStageHits == 3) {
+      renderMetrics = new RenderMetrics.Builder().use(renderMetrics)
+          .stageCache(stageHits, stageLookups).build();
+    } else {
+      renderMetrics = metrics.stageCache(stageHits, stageLookups).build();
+
+      engine.recordFrame(System.nanoTime() - frameStart,
+          recalculate ? renderMetrics.getIterations() : 0);
+    }
+
+    engine.recordStages(stageHits - previousStageHits, 3);
+
+    if (recalculate) {
+      jobEvent.iterations = renderMetrics.getIterations();
+    }
+
+    commitEvent(jobEvent, configuration, resolutionX, resolutionY);
+
+    return pixels;
+  }
+
+  /**
+   * End a Flight Recorder event and commit it, if it is enabled, with the fields describing the
+   * image.
+   *
+   * @param event The event.
+   * @param configuration The configuration of the image.
+   * @param resolutionX The width of the image.
+   * @param resolutionY The height of the image.
+   */
+  private static void commitEvent(final RenderEvent event, final ImageConfiguration configuration,
+      final int resolutionX, final int resolutionY) {
+
+    event.end();
+
+    if (event.shouldCommit()) {
+      event.setImage(configuration.getBound().normalise(resolutionX, resolutionY), resolutionX,
+          resolutionY, configuration.getMaximumIterations());
+      event.commit();
+    }
+  }
+
+  /**
+   * Get the statistics and settings of the generator, which can be registered to expose them
+   * through JMX.
+   *
+   * @return The engine.
+   */
+  public MandelbrotEngine getEngine() {
+    return engine;
+  }
+
+  /**
+   * Set the tuner that learns the number of workers and the size of tiles from each tiled
+   * calculation. The engine's worker count is set to the tuner's choice after each calculation it
+   * learns from; changing it by hand makes the tuner continue from the new value.
    *
-   * @return A 2D array of pixels.
+   * @param tuner The tuner, or null to stop tuning.
    */
-  public Color[][] generate(final int resolutionX, final int resolutionY) {
+  public void setTuner(final RenderTuner tuner) {
 
-    /*
-     * Using more threads than the number of cores the computer has may seem pointless. But
-     * actually, as some threads complete a lot quicker than others, due to the way the calculations
-     * are divided, it means that if one thread the calculation very quickly, there are still more
-     * threads to utilise all of the cores. The number 24 is arbitrary: there is probably a sweet
-     * spot somewhere but I haven't done an experiment to find it.
-     */
-    final int numberOfThreads = 24;
+    this.tuner = tuner;
+
+    if (tuner != null) {
+      engine.setWorkerCount(tuner.getWorkerCount());
+    }
+  }
+
+  /**
+   * Get the progress of the current calculation of the iteration values. This is not synchronized,
+   * so it can be read from another thread while {@link #generate} is running.
+   *
+   * @return The progress of the current or last calculation, or null if the iteration values have
+   *         not been calculated.
+   */
+  public RenderProgress getProgress() {
+    return progress;
+  }
+
+  /**
+   * Get the metrics of the last generated frame.
+   *
+   * @return The metrics.
+   */
+  public synchronized RenderMetrics getRenderMetrics() {
+    return renderMetrics;
+  }
+
+  /**
+   * Record the time taken to write the last generated frame to the display, which completes its
+   * metrics.
+   *
+   * @param blitTime The time, in nanoseconds.
+   */
+  public synchronized void recordBlitTime(final long blitTime) {
+    renderMetrics = new RenderMetrics.Builder().use(renderMetrics).blitTime(blitTime).build();
+  }
+
+  /**
+   * Get a palette cycler to animate the colours of the image of a given resolution. This reuses the
+   * iteration values and histogram of {@link #generate}, calculating them first if needed.
+   *
+   * @param resolutionX Number of pixels the width of the image should be.
+   * @param resolutionY Number of pixels the height of the image should be.
+   *
+   * @return The palette cycler. The same cycler is returned until the image changes.
+   */
+  public synchronized PaletteCycler getPaletteCycler(final int resolutionX, final int resolutionY) {
 
     final ImageConfiguration configuration = configurationManger.getCurrentConfiguration();
 
-    if (checkIfRecalculationNeeded(resolutionX, resolutionY)) {
+    // This is called for every frame of the animation, so the stages are only generated (and
+    // counted as cache lookups) when the image has changed since the cycler was made.
+    final boolean current = paletteCycler != null && colorMapper != null && pixels != null
+        && !checkIfRecalculationNeeded(configuration, resolutionX, resolutionY)
+        && configuration.getSmoothColoring() == (smoothIterationValues != null)
+        && configuration.getColorTheme().equals(pixelsColorTheme);
 
-      final MandelbrotSetIterationCountGenerator iterationCountGenerator =
-          new MandelbrotSetIterationCountGenerator(
-              normaliseBound(configuration.getBound(), resolutionX, resolutionY),
-              configuration.getMaximumIterations(), configuration.getEscapeRadius());
+    if (!current) {
+      generate(resolutionX, resolutionY);
+    }
+
+    if (paletteCycler == null) {
+      paletteCycler = smoothIterationValues == null
+          ? new PaletteCycler(colorMapper, iterationValues)
+          : new PaletteCycler(colorMapper, smoothIterationValues);
+    }
+
+    return paletteCycler;
+  }
+
+  /**
+   * Get a map of the cost of the last calculated iteration values. After a pan or small zoom, it
+   * predicts which columns of the new image are expensive.
+   *
+   * @return The cost map, or null if there are no previous iteration values.
+   */
+  private CostMap getPreviousCostMap() {
+
+    if (iterationValues == null || iterationConfiguration == null || iterationValues.length == 0
+        || iterationValues[0].length == 0) {
+      return null;
+    }
+
+    final Bound previousBound = iterationConfiguration.getBound()
+        .normalise(iterationValues.length, iterationValues[0].length);
+
+    return new CostMap(previousBound, iterationValues,
+        iterationConfiguration.getMaximumIterations());
+  }
+
+  /**
+   * The iterate stage: calculate the iteration values for the current configuration, and add them
+   * to the cache. This invalidates every later stage.
+   *
+   * @param configuration The current configuration.
+   * @param resolutionX Number of pixels the width of the image should be.
+   * @param resolutionY Number of pixels the height of the image should be.
+   * @param tileSubscriber The subscriber to publish tiles to as they are calculated, or null.
+   * @param metrics The metrics of the frame, which the times of the stage are recorded to.
+   */
+  private void calculateIterations(final ImageConfiguration configuration, final int resolutionX,
+      final int resolutionY, final Flow.Subscriber<? super RenderedTile> tileSubscriber,
+      final RenderMetrics.Builder metrics) {
+
+    final int numberOfThreads = engine.getWorkerCount();
+
+    final RenderStageEvent normaliseEvent = new RenderStageEvent("normalise");
+    normaliseEvent.begin();
+
+    final long normaliseStart = System.nanoTime();
+    final Bound bound = configuration.getBound().normalise(resolutionX, resolutionY);
+    final long iterateStart = System.nanoTime();
+
+    metrics.normaliseTime(iterateStart - normaliseStart);
+
+    commitEvent(normaliseEvent, configuration, resolutionX, resolutionY);
+
+    final RenderStageEvent iterateEvent = new RenderStageEvent("iterate");
+    iterateEvent.begin();
+
+    final MandelbrotSetIterationCountGenerator iterationCountGenerator =
+        new MandelbrotSetIterationCountGenerator(bound, configuration.getMaximumIterations(),
+            configuration.getEscapeRadius());
+
+    iterationCountGenerator.setCostMap(getPreviousCostMap());
+
+    final RenderProgress newProgress = new RenderProgress((long) resolutionX * resolutionY);
+    iterationCountGenerator.setProgress(newProgress);
+    progress = newProgress;
+
+    final RenderTuner currentTuner = tuner;
+    final long[] workerBusyTimes;
+
+    // Only tiled calculations are learned from, as the tile size is one of the tuned settings.
+    long tileIterations = 0;
+    int tiles = 0;
+
+    if (tileSubscriber != null && resolutionX > 0 && resolutionY > 0) {
+
+      final TileRenderer renderer =
+          new TileRenderer(configuration, resolutionX, resolutionY, numberOfThreads);
+
+      renderer.subscribe(tileSubscriber);
+      renderer.setProgress(newProgress);
+
+      if (currentTuner != null) {
+        tileIterations = currentTuner.getIterationsPerTile();
+        renderer.setIterationsPerTile(tileIterations);
+      }
+
+      activeRenderer = renderer;
+
+      try {
+        renderer.render();
+      } finally {
+        activeRenderer = null;
+      }
+
+      iterationValues = renderer.getIterationValues();
+      smoothIterationValues = renderer.getSmoothIterationValues();
+      workerBusyTimes = renderer.getWorkerBusyTimes();
+      tiles = renderer.getTileCount();
+
+    } else if (configuration.getSmoothColoring()) {
+
+      smoothIterationValues = iterationCountGenerator.calculateSmooth(resolutionX, resolutionY, 0,
+          resolutionY, numberOfThreads);
+
+      // The integer values are kept too, as they are what is saved with the configuration.
+      iterationValues =
+          MandelbrotSetIterationCountGenerator.toIterationCounts(smoothIterationValues);
+      workerBusyTimes = iterationCountGenerator.getWorkerBusyTimes();
+
+    } else {
 
       iterationValues =
           iterationCountGenerator.calculate(resolutionX, resolutionY, numberOfThreads);
 
-      recalculateMandelbrotIterations = false;
+      smoothIterationValues = null;
+      workerBusyTimes = iterationCountGenerator.getWorkerBusyTimes();
     }
 
-    final HistogramColorMapper colorMapper = new HistogramColorMapper(
-        configuration.getMaximumIterations(), configuration.getColorTheme());
+    final long iterations =
+        RenderMetrics.countIterations(iterationValues, configuration.getMaximumIterations());
+
+    final long iterateTime = System.nanoTime() - iterateStart;
+
+    metrics.iterateTime(iterateTime).workerBusyTimes(workerBusyTimes).iterations(iterations);
+
+    if (currentTuner != null && tiles > 0) {
+      currentTuner.record(numberOfThreads, tileIterations, tiles, iterations, iterateTime,
+          workerBusyTimes);
+      engine.setWorkerCount(currentTuner.getWorkerCount());
+    }
+
+    iterateEvent.iterations = iterations;
+    commitEvent(iterateEvent, configuration, resolutionX, resolutionY);
+
+    iterationConfiguration = configuration;
+    colorMapper = null;
+
+    engine.getCache().put(configuration, iterationValues, smoothIterationValues);
+  }
+
+  /**
+   * The histogram stage: build the histogram of the iteration values. This invalidates the palette
+   * and pixel stages.
+   *
+   * @param configuration The current configuration.
+   */
+  private void buildHistogram(final ImageConfiguration configuration) {
+
+    colorMapper = new HistogramColorMapper(configuration.getMaximumIterations(),
+        configuration.getColorTheme());
+
+    colorMapper.addIterations(iterationValues);
+
+    pixelsColorTheme = configuration.getColorTheme();
+    pixels = null;
+  }
+
+  /**
+   * The pixel stage: colour each pixel using the palette. Smooth colouring is used if continuous
+   * iteration counts were calculated. The pixels are produced in the order they are displayed, so
+   * that they can be written to the display in one bulk copy.
+   *
+   * @return The colours of the pixels, packed as 0xAARRGGBB, in rows from the top of the image.
+   */
+  private int[] mapPixels() {
+
+    final int xLength = iterationValues.length;
+    final int yLength = xLength == 0 ? 0 : iterationValues[0].length;
+
+    final int[] colors = new int[xLength * yLength];
+
+    // The y axis of the complex plane increases upwards, so row y of the image is displayed at
+    // row yLength - 1 - y.
+    for (int y = 0; y < yLength; y++) {
+
+      final int row = (yLength - 1 - y) * xLength;
+
+      for (int x = 0; x < xLength; x++) {
+        colors[row + x] = smoothIterationValues == null
+            ? colorMapper.getColor(iterationValues[x][y])
+            : colorMapper.getSmoothColor(smoothIterationValues[x][y]);
+      }
+    }
 
-    return colorMapper.mapIterationsToColors(iterationValues);
+    return colors;
   }
 }
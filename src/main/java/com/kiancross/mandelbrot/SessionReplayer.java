@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a session recorded by a {@link SessionRecorder} through an {@link ImageGenerator},
+ * without a display, and reports how long the generator took to produce the image after each
+ * interaction. This measures the explorer against real navigation rather than single operations.
+ *
+ * <p>Interactions are replayed back to back; the recorded pauses between them are not reproduced.
+ * Undo and redo interactions that reach before the start of the recording can not be replayed, so
+ * are skipped.
+ *
+ * <p>Usage: {@code SessionReplayer <recording>}
+ */
+public class SessionReplayer {
+
+  /**
+   * The percentiles of the latencies that are reported.
+   */
+  private static final double[] PERCENTILES = {50, 90, 99};
+
+  /**
+   * The recorded interactions.
+   */
+  private final List<SessionEvent> events;
+
+  /**
+   * Construct a replayer.
+   *
+   * @param events The recorded interactions. The first must be a start interaction.
+   */
+  public SessionReplayer(final List<SessionEvent> events) {
+
+    if (events.isEmpty() || events.get(0).getType() != SessionEvent.Type.START) {
+      throw new IllegalArgumentException("The interactions must begin with a start interaction.");
+    }
+
+    this.events = events;
+  }
+
+  /**
+   * Entry point of the replayer.
+   *
+   * @param args The command line arguments.
+   */
+  public static void main(final String[] args) {
+
+    final int status = run(args, System.out, System.err);
+
+    if (status != 0) {
+      System.exit(status);
+    }
+  }
+
+  /**
+   * Run the replayer.
+   *
+   * @param args The command line arguments.
+   * @param out The stream to write the report to.
+   * @param err The stream to write errors to.
+   *
+   * @return The exit status: 0 on success, 1 if the recording could not be read, 2 if the
+   *         arguments were invalid.
+   */
+  static int run(final String[] args, final PrintStream out, final PrintStream err) {
+
+    if (args.length != 1) {
+      err.println("Usage: SessionReplayer <recording>");
+      return 2;
+    }
+
+    final List<SessionEvent> events;
+
+    try (final InputStream in = new FileInputStream(args[0])) {
+      events = SessionRecorder.read(in);
+
+    } catch (IOException e) {
+      err.println("Error reading the recording: " + e.getMessage());
+      return 1;
+    }
+
+    new SessionReplayer(events).report(out);
+
+    return 0;
+  }
+
+  /**
+   * Replay the session.
+   *
+   * @return The number of nanoseconds taken to generate the image after each interaction, in the
+   *         same order as the interactions, or -1 for interactions that were skipped.
+   */
+  public long[] replay() {
+
+    final long[] latencies = new long[events.size()];
+
+    ImageGenerator generator = null;
+
+    for (int i = 0; i < events.size(); i++) {
+
+      final SessionEvent event = events.get(i);
+
+      switch (event.getType()) {
+        case START:
+          generator = new ImageGenerator(event.getConfiguration());
+          break;
+
+        case ADD:
+          generator.addConfiguration(event.getConfiguration());
+          break;
+
+        case UNDO:
+          if (!generator.canUndo()) {
+            latencies[i] = -1;
+            continue;
+          }
+
+          generator.undo();
+          break;
+
+        case REDO:
+          if (!generator.canRedo()) {
+            latencies[i] = -1;
+            continue;
+          }
+
+          generator.redo();
+          break;
+
+        case RESET:
+          generator.resetAll();
+          break;
+
+        case RESIZE:
+          break;
+
+        default:
+          throw new IllegalStateException("Unknown interaction: " + event.getType());
+      }
+
+      if (event.getWidth() < 1 || event.getHeight() < 1) {
+        latencies[i] = -1;
+        continue;
+      }
+
+      final long start = System.nanoTime();
+      generator.generate(event.getWidth(), event.getHeight());
+      latencies[i] = System.nanoTime() - start;
+    }
+
+    return latencies;
+  }
+
+  /**
+   * Replay the session and write the latency percentiles of each kind of interaction, and of every
+   * interaction together.
+   *
+   * @param out The stream to write the report to.
+   */
+  public void report(final PrintStream out) {
+
+    final long[] latencies = replay();
+
+    final Map<SessionEvent.Type, List<Long>> byType =
+        new EnumMap<SessionEvent.Type, List<Long>>(SessionEvent.Type.class);
+    final List<Long> all = new ArrayList<Long>();
+
+    int skipped = 0;
+
+    for (int i = 0; i < latencies.length; i++) {
+
+      if (latencies[i] < 0) {
+        skipped++;
+        continue;
+      }
+
+      byType.computeIfAbsent(events.get(i).getType(), type -> new ArrayList<Long>())
+          .add(latencies[i]);
+      all.add(latencies[i]);
+    }
+
+    out.printf("Replayed %d interactions (%d skipped), recorded over %.1f s.%n", all.size(),
+        skipped, events.get(events.size() - 1).getTime() / 1000.0);
+
+    out.printf("%-12s %6s %10s %10s %10s %10s%n", "Interaction", "Count", "p50 (ms)", "p90 (ms)",
+        "p99 (ms)", "Max (ms)");
+
+    for (Map.Entry<SessionEvent.Type, List<Long>> entry : byType.entrySet()) {
+      writeRow(out, entry.getKey().name().toLowerCase(), entry.getValue());
+    }
+
+    writeRow(out, "all", all);
+  }
+
+  /**
+   * Write a row of the report.
+   *
+   * @param out The stream to write to.
+   * @param name The name of the row.
+   * @param latencies The latencies of the row, in nanoseconds.
+   */
+  private static void writeRow(final PrintStream out, final String name,
+      final List<Long> latencies) {
+
+    if (latencies.isEmpty()) {
+      return;
+    }
+
+    final long[] sorted = latencies.stream().mapToLong(Long::longValue).toArray();
+    Arrays.sort(sorted);
+
+    out.printf("%-12s %6d", name, sorted.length);
+
+    for (double percentile : PERCENTILES) {
+      out.printf(" %10.1f", percentile(sorted, percentile) / 1e6);
+    }
+
+    out.printf(" %10.1f%n", sorted[sorted.length - 1] / 1e6);
+  }
+
+  /**
+   * Get a percentile of some values, using the nearest rank method.
+   *
+   * @param sorted The values, sorted in ascending order. There must be at least one.
+   * @param percentile The percentile, between 0 and 100.
+   * @return The smallest value that is at least as large as the given percentage of the values.
+   */
+  static long percentile(final long[] sorted, final double percentile) {
+
+    final int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+
+    return sorted[Math.max(0, rank - 1)];
+  }
+}
@@ -7,11 +7,16 @@ package com.kiancross.mandelbrot;
 import com.kiancross.typedtextfield.DoubleTextField;
 import com.kiancross.typedtextfield.IntegerTextField;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.concurrent.Flow;
+import javafx.animation.AnimationTimer;
 import javafx.animation.PauseTransition;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
-import javafx.embed.swing.SwingFXUtils;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Group;
@@ -21,11 +26,17 @@ import javafx.scene.canvas.Canvas;
 import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.ComboBox;
 import javafx.scene.control.Control;
 import javafx.scene.control.Label;
-import javafx.scene.image.PixelWriter;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.control.TextInputDialog;
+import javafx.scene.image.Image;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.PixelReader;
 import javafx.scene.image.WritableImage;
 import javafx.scene.layout.FlowPane;
 import javafx.scene.layout.HBox;
@@ -38,7 +49,6 @@ import javafx.scene.text.Text;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
 import javafx.util.Duration;
-import javax.imageio.ImageIO;
 
 /**
  * GUI for the explorer using JavaFX.
@@ -46,10 +56,159 @@ import javax.imageio.ImageIO;
 public class View extends Application {
 
   /**
-   * The canvas used to draw the image.
+   * The number of samples along each axis taken of edge pixels when exporting a poster.
+   */
+  private static final int POSTER_SUPERSAMPLING = 4;
+
+  /**
+   * The number of seconds taken to cycle through the whole palette.
+   */
+  private static final double PALETTE_CYCLE_PERIOD = 10;
+
+  /**
+   * The number of seconds a background render must run for before its progress is shown, so that
+   * quick renders don't flash a progress bar.
+   */
+  private static final double PROGRESS_DELAY = 0.5;
+
+  /**
+   * The number of seconds a render is predicted to take before the user is asked whether to go
+   * ahead with it.
+   */
+  private static final double SLOW_RENDER_WARNING = 30;
+
+  /**
+   * The number of seconds each frame should take to calculate while the user is interacting with
+   * the image. Frames predicted to take longer are calculated at a reduced resolution.
+   */
+  private static final double INTERACTIVE_FRAME_TIME = 0.05;
+
+  /**
+   * The largest number the width and height of the image are divided by while the user is
+   * interacting with it.
+   */
+  private static final int MAXIMUM_RESOLUTION_DIVISOR = 8;
+
+  /**
+   * The number of seconds without interaction after which the image is drawn at full resolution.
+   */
+  private static final double IDLE_DELAY = 0.25;
+
+  /**
+   * The canvas the zoom amount is drawn on, on top of the image, so that it can be redrawn without
+   * redrawing the image. Its size is the size of the image.
    */
   final Canvas canvas = new Canvas();
 
+  /**
+   * The view displaying the front image of the display buffer.
+   */
+  private final ImageView imageView = new ImageView();
+
+  /**
+   * The buffers the image is displayed from, or null if the image has not been drawn yet. These
+   * are replaced when the size of the image changes.
+   */
+  private DoubleBufferedImage displayBuffer;
+
+  /**
+   * The pixels last drawn to the display buffer. If the image generator returns the same pixels
+   * again, they do not need to be redrawn.
+   */
+  private int[] drawnImage;
+
+  /**
+   * Whether the iteration values are being recalculated on a background thread. This is only
+   * accessed from the JavaFX application thread.
+   */
+  private boolean rendering;
+
+  /**
+   * The number of background renders that have been started. Tiles can be delivered after their
+   * render has finished, so this is used to ignore tiles from earlier renders.
+   */
+  private int renderCount;
+
+  /**
+   * The pane showing the progress of a slow background render, on top of the image.
+   */
+  private final HBox progressPane = new HBox();
+
+  /**
+   * Updates the progress pane while a background render is running.
+   */
+  private AnimationTimer progressTimer;
+
+  /**
+   * The throughput of the last calculation of the iteration values, in iterations per second, used
+   * to predict how long renders will take, or 0 if it has not been measured.
+   */
+  private double throughput;
+
+  /**
+   * The configuration the last estimate of the cost of a render was made for, or null if none has
+   * been made.
+   */
+  private ImageConfiguration estimateConfiguration;
+
+  /**
+   * The width of the image the last estimate was made for.
+   */
+  private int estimateXResolution;
+
+  /**
+   * The height of the image the last estimate was made for.
+   */
+  private int estimateYResolution;
+
+  /**
+   * The configuration of the last slow render the user chose not to do, or null if there is none.
+   * The current image is kept rather than asking again until the view or size changes.
+   */
+  private ImageConfiguration declinedConfiguration;
+
+  /**
+   * The width of the last slow render the user chose not to do.
+   */
+  private int declinedXResolution;
+
+  /**
+   * The height of the last slow render the user chose not to do.
+   */
+  private int declinedYResolution;
+
+  /**
+   * The last estimate of the cost of a render.
+   */
+  private RenderCostEstimator.Estimate estimate;
+
+  /**
+   * Chooses the reduced resolution the image is drawn at while the user is interacting with it.
+   */
+  private final ResolutionScaler resolutionScaler =
+      new ResolutionScaler(INTERACTIVE_FRAME_TIME, MAXIMUM_RESOLUTION_DIVISOR);
+
+  /**
+   * Whether the user is interacting with the image, such as by resizing the window or panning
+   * repeatedly, in which case it is drawn at a reduced resolution.
+   */
+  private boolean interacting;
+
+  /**
+   * Ends the interaction once there has been none for {@link #IDLE_DELAY} seconds.
+   */
+  private final PauseTransition idleTimer = new PauseTransition(Duration.seconds(IDLE_DELAY));
+
+  /**
+   * Whether the metrics of the last frame are drawn on the overlay.
+   */
+  private boolean overlayMetrics;
+
+  /**
+   * The recorder the session is being recorded to, or null if it is not being recorded.
+   */
+  private SessionRecorder sessionRecorder;
+
   /**
    * The image generator used to generate the image.
    */
@@ -60,6 +219,12 @@ public class View extends Application {
    */
   public View() {
     imageGenerator = new ImageGenerator(getColorThemes()[0]);
+
+    // The number of workers and the size of tiles are learned, and remembered for this machine.
+    imageGenerator.setTuner(RenderTuner.forThisMachine());
+
+    // The explorer can be inspected and retuned with a JMX client while it runs.
+    imageGenerator.getEngine().register("explorer");
   }
 
   @Override
@@ -74,9 +239,22 @@ public class View extends Application {
     // When the scene resizes the image is redrawn.
     addSceneResizeListeners(scene, optionsPane);
 
+    // Once the user stops interacting, the image is drawn at full resolution.
+    idleTimer.setOnFinished(e -> {
+      interacting = false;
+
+      if (sessionRecorder != null) {
+        sessionRecorder.setSize((int) canvas.getWidth(), (int) canvas.getHeight());
+      }
+
+      redrawImage();
+    });
+
     // When the configuration changes, the image is redrawn.
     imageGenerator.getCurrentConfigurationProperty().addListener((a, b, c) -> redrawImage());
 
+    measureThroughput();
+
     // When the UI is clicked, focus is set to the root. This means that the
     // user can click anywhere on the screen to remove focus from a text field
     // and redraw the UI.
@@ -121,25 +299,34 @@ public class View extends Application {
    */
   private void addSceneResizeListeners(final Scene scene, final Pane optionsPane) {
 
-    // Here a debouncer is used to only actually call the callback once there have
-    // been
-    // no events fired for 100ms. Otherwise, when the user resized the window, the
-    // callback would be called for each pixel change in size, which would in turn
-    // recalculate all the Mandelbrot iteration values. The result would be a very
-    // very slow, laggy, and unresponsive resize experience for the user.
-    final PauseTransition debouncer = new PauseTransition(new Duration(100));
+    // Each change in size is drawn straight away, as part of an interaction, so the image keeps
+    // up with the window at a reduced resolution, and is drawn at full resolution once the user
+    // stops resizing. Renders started while another is running are not started: the image is
+    // redrawn for the latest size once it finishes. The size is recorded once the resize is
+    // finished, rather than for every pixel change in size.
+    final Runnable resize = () -> {
+      startInteraction();
 
-    debouncer.setOnFinished(e -> {
       canvas.setWidth(scene.getWidth());
 
       // Take away the height of the options pane.
       canvas.setHeight(scene.getHeight() - optionsPane.getHeight());
 
       redrawImage();
-    });
+    };
 
-    scene.widthProperty().addListener((a, b, c) -> debouncer.playFromStart());
-    scene.heightProperty().addListener((a, b, c) -> debouncer.playFromStart());
+    scene.widthProperty().addListener((a, b, c) -> resize.run());
+    scene.heightProperty().addListener((a, b, c) -> resize.run());
+  }
+
+  /**
+   * Note that the user is interacting with the image. Until there has been no interaction for
+   * {@link #IDLE_DELAY} seconds, images that would take longer than
+   * {@link #INTERACTIVE_FRAME_TIME} to calculate are drawn at a reduced resolution.
+   */
+  private void startInteraction() {
+    interacting = true;
+    idleTimer.playFromStart();
   }
 
   /**
@@ -149,41 +336,44 @@ public class View extends Application {
    */
   private ColorGradient[] getColorThemes() {
 
-    final ColorGradient bulb =
-        new ColorGradient(Color.rgb(35, 240, 199), Color.rgb(255, 227, 71), "Bulb");
-    bulb.setStop(1 / 4.0, Color.rgb(239, 118, 122));
-    bulb.setStop(2 / 4.0, Color.rgb(125, 122, 188));
-    bulb.setStop(3 / 4.0, Color.rgb(100, 87, 166));
-
-    final ColorGradient fire = new ColorGradient(Color.BLACK, Color.WHITE, "Fire");
-    fire.setStop(0.2, Color.rgb(255, 0, 0));
-    fire.setStop(0.8, Color.rgb(255, 255, 0));
-
-    final ColorGradient ocean = new ColorGradient(Color.BLACK, Color.WHITE, "Ocean");
-    ocean.setStop(1 / 5.0, Color.rgb(44, 115, 210));
-    ocean.setStop(2 / 5.0, Color.rgb(0, 129, 207));
-    ocean.setStop(3 / 5.0, Color.rgb(0, 137, 186));
-    ocean.setStop(4 / 5.0, Color.rgb(0, 142, 155));
-
-    final ColorGradient capillary =
-        new ColorGradient(Color.rgb(8, 15, 15), Color.rgb(138, 3, 3), "Capillary");
-    capillary.setStop(1 / 4.0, Color.rgb(164, 186, 183));
-    capillary.setStop(2 / 4.0, Color.rgb(239, 242, 192));
-    capillary.setStop(3 / 4.0, Color.rgb(190, 165, 125));
-
-    final ColorGradient eco =
-        new ColorGradient(Color.rgb(0, 36, 0), Color.rgb(219, 210, 224), "Eco");
-    eco.setStop(1 / 4.0, Color.rgb(39, 59, 9));
-    eco.setStop(2 / 4.0, Color.rgb(88, 100, 29));
-    eco.setStop(3 / 4.0, Color.rgb(123, 144, 75));
-
-    final ColorGradient grey = new ColorGradient(Color.BLACK, Color.WHITE, "Grey");
+    final ColorGradient bulb = new ColorGradient(SerializableColor.rgb(35, 240, 199),
+        SerializableColor.rgb(255, 227, 71), "Bulb");
+    bulb.setStop(1 / 4.0, SerializableColor.rgb(239, 118, 122));
+    bulb.setStop(2 / 4.0, SerializableColor.rgb(125, 122, 188));
+    bulb.setStop(3 / 4.0, SerializableColor.rgb(100, 87, 166));
+
+    final ColorGradient fire =
+        new ColorGradient(SerializableColor.BLACK, SerializableColor.WHITE, "Fire");
+    fire.setStop(0.2, SerializableColor.rgb(255, 0, 0));
+    fire.setStop(0.8, SerializableColor.rgb(255, 255, 0));
+
+    final ColorGradient ocean =
+        new ColorGradient(SerializableColor.BLACK, SerializableColor.WHITE, "Ocean");
+    ocean.setStop(1 / 5.0, SerializableColor.rgb(44, 115, 210));
+    ocean.setStop(2 / 5.0, SerializableColor.rgb(0, 129, 207));
+    ocean.setStop(3 / 5.0, SerializableColor.rgb(0, 137, 186));
+    ocean.setStop(4 / 5.0, SerializableColor.rgb(0, 142, 155));
+
+    final ColorGradient capillary = new ColorGradient(SerializableColor.rgb(8, 15, 15),
+        SerializableColor.rgb(138, 3, 3), "Capillary");
+    capillary.setStop(1 / 4.0, SerializableColor.rgb(164, 186, 183));
+    capillary.setStop(2 / 4.0, SerializableColor.rgb(239, 242, 192));
+    capillary.setStop(3 / 4.0, SerializableColor.rgb(190, 165, 125));
+
+    final ColorGradient eco = new ColorGradient(SerializableColor.rgb(0, 36, 0),
+        SerializableColor.rgb(219, 210, 224), "Eco");
+    eco.setStop(1 / 4.0, SerializableColor.rgb(39, 59, 9));
+    eco.setStop(2 / 4.0, SerializableColor.rgb(88, 100, 29));
+    eco.setStop(3 / 4.0, SerializableColor.rgb(123, 144, 75));
+
+    final ColorGradient grey =
+        new ColorGradient(SerializableColor.BLACK, SerializableColor.WHITE, "Grey");
 
     // Everything is white, apart from the values that lie within the set which are
     // always
     // set to black by the ColorGradient.
     final ColorGradient blackAndWhite =
-        new ColorGradient(Color.WHITE, Color.WHITE, "Black and White");
+        new ColorGradient(SerializableColor.WHITE, SerializableColor.WHITE, "Black and White");
 
     return new ColorGradient[] {bulb, fire, ocean, capillary, eco, grey, blackAndWhite};
   }
@@ -223,7 +413,8 @@ public class View extends Application {
 
     root.getChildren().addAll(getUndoButton(), getRedoButton(), getResetAllButton(),
         getExportStateButton(stage), getImportStateButton(stage), getExportImageButton(stage),
-        getOverlayZoomCheckBox(),
+        getExportPosterButton(stage), getOverlayZoomCheckBox(), getSmoothColoringCheckBox(),
+        getOverlayMetricsCheckBox(), getCyclePaletteCheckBox(), getRecordSessionCheckBox(stage),
 
         // HBoxes are used within the options pane so that these items always appear
         // next to
@@ -306,6 +497,7 @@ public class View extends Application {
 
     // When the button is pressed, pan in the y direction.
     button.setOnAction(event -> {
+      startInteraction();
       imageGenerator.pan(canvas.getWidth(), canvas.getHeight(), 0, textField.getTypedValue());
     });
 
@@ -326,6 +518,7 @@ public class View extends Application {
 
     // When the button is pressed, pan in the x direction.
     button.setOnAction(event -> {
+      startInteraction();
       imageGenerator.pan(canvas.getWidth(), canvas.getHeight(), textField.getTypedValue(), 0);
     });
 
@@ -375,6 +568,188 @@ public class View extends Application {
     return checkBox;
   }
 
+  /**
+   * Return the smooth colouring check box.
+   *
+   * @return The smooth colouring check box.
+   */
+  private Control getSmoothColoringCheckBox() {
+    final CheckBox checkBox = new CheckBox("Smooth Colouring");
+
+    // If the configuration changes, set the value of this checkbox to the value
+    // in the configuration.
+    imageGenerator.getCurrentConfigurationProperty().addListener((a, b, configuration) -> {
+      checkBox.setSelected(configuration.getSmoothColoring());
+    }, true);
+
+    // Update the configuration when the value changes.
+    checkBox.selectedProperty()
+        .addListener((a, b, checked) -> imageGenerator.setSmoothColoring(checked));
+
+    return checkBox;
+  }
+
+  /**
+   * Return the overlay metrics check box. While it is checked, the time taken by each stage of the
+   * last frame, and other render metrics, are drawn under the zoom amount.
+   *
+   * @return The overlay metrics check box.
+   */
+  private Control getOverlayMetricsCheckBox() {
+    final CheckBox checkBox = new CheckBox("Overlay Metrics");
+
+    checkBox.selectedProperty().addListener((a, b, checked) -> {
+      overlayMetrics = checked;
+      redrawImage();
+    });
+
+    return checkBox;
+  }
+
+  /**
+   * Return the cycle palette check box. While it is checked, the colours of the image are
+   * animated by cycling them through the colour scheme, once per display frame.
+   *
+   * @return The cycle palette check box.
+   */
+  private Control getCyclePaletteCheckBox() {
+    final CheckBox checkBox = new CheckBox("Cycle Palette");
+
+    final AnimationTimer timer = new AnimationTimer() {
+
+      /**
+       * The time of the first frame since the timer was started, or -1 before the first frame.
+       */
+      private long startTime;
+
+      @Override
+      public void start() {
+        startTime = -1;
+        super.start();
+      }
+
+      @Override
+      public void handle(final long now) {
+
+        if (startTime < 0) {
+          startTime = now;
+        }
+
+        drawPaletteCycleFrame((now - startTime) / 1e9 / PALETTE_CYCLE_PERIOD);
+      }
+    };
+
+    checkBox.selectedProperty().addListener((a, b, checked) -> {
+      if (checked) {
+        timer.start();
+
+      } else {
+        timer.stop();
+
+        // Put the original colours back.
+        drawnImage = null;
+        redrawImage();
+      }
+    });
+
+    return checkBox;
+  }
+
+  /**
+   * Draw a frame of the palette cycle animation. Only the colours change, so the iteration values
+   * and histogram are reused, and the frame is written to the back buffer and swapped to the front.
+   * No frame is drawn if the iteration values of the displayed image are not available.
+   *
+   * @param phase The rotation of the palette, in cycles.
+   */
+  private void drawPaletteCycleFrame(final double phase) {
+
+    // Frames are skipped while the image is being recalculated.
+    if (rendering) {
+      return;
+    }
+
+    // The colours are cycled at the resolution being displayed, which is reduced while the user is
+    // interacting with a slow image.
+    final int displayWidth =
+        displayBuffer == null ? (int) canvas.getWidth() : displayBuffer.getWidth();
+    final int displayHeight =
+        displayBuffer == null ? (int) canvas.getHeight() : displayBuffer.getHeight();
+
+    // The cycler is made on this thread, so frames are skipped rather than calculating the
+    // iteration values here; they are calculated in the background by the next redraw.
+    if (imageGenerator.isRecalculationNeeded(displayWidth, displayHeight)) {
+      return;
+    }
+
+    final PaletteCycler cycler = imageGenerator.getPaletteCycler(displayWidth, displayHeight);
+
+    final int width = cycler.getWidth();
+    final int height = cycler.getHeight();
+
+    if (width < 1 || height < 1) {
+      return;
+    }
+
+    showImage(getDisplayBuffer(width, height).present(cycler.cycle(phase)));
+
+    // The display no longer shows the image returned by the image generator.
+    drawnImage = null;
+  }
+
+  /**
+   * Get the record session check box. While it is checked, interactions are recorded to a file
+   * chosen when it is checked, so that they can be replayed by {@link SessionReplayer}.
+   *
+   * @param stage The parent stage (used to display a model file selection dialog).
+   *
+   * @return The record session check box.
+   */
+  private Control getRecordSessionCheckBox(final Stage stage) {
+    final CheckBox checkBox = new CheckBox("Record Session");
+
+    checkBox.selectedProperty().addListener((a, b, checked) -> {
+      if (checked) {
+
+        final FileChooser fileChooser = new FileChooser();
+        final File file = fileChooser.showSaveDialog(stage);
+
+        // If no file was selected then don't record.
+        if (file == null) {
+          checkBox.setSelected(false);
+          return;
+        }
+
+        try {
+          sessionRecorder = new SessionRecorder(new FileOutputStream(file),
+              (int) canvas.getWidth(), (int) canvas.getHeight());
+
+        } catch (IOException e) {
+          checkBox.setSelected(false);
+          displayException(e);
+          return;
+        }
+
+        imageGenerator.setSessionRecorder(sessionRecorder);
+
+      } else if (sessionRecorder != null) {
+
+        imageGenerator.setSessionRecorder(null);
+
+        try {
+          sessionRecorder.close();
+
+        } catch (IOException e) {
+          displayException(e);
+        }
+
+        sessionRecorder = null;
+      }
+    });
+
+    return checkBox;
+  }
+
   /**
    * Get the export image button.
    *
@@ -400,15 +775,14 @@ public class View extends Application {
       // In such a case do nothing.
       if (file != null) {
 
-        // Take a snapshot of the canvas.
-        canvas.snapshot((s) -> {
+        // Take a snapshot of the image group, so that the overlay drawn on top of the canvas is
+        // included. The zoom rectangle is hidden unless the mouse is held down.
+        canvas.getParent().snapshot((s) -> {
 
           try {
 
-            // Convert the writeable image to a BufferedImage and then write this to
-            // a file. Some code taken from here:
-            // https://community.oracle.com/thread/2450090?start=0&tstart=0
-            ImageIO.write(SwingFXUtils.fromFXImage(writableImage, null), "png", file);
+            writePng(writableImage, file);
+
           } catch (IOException e) {
             displayException(e);
           }
@@ -423,6 +797,105 @@ public class View extends Application {
     return button;
   }
 
+  /**
+   * Write an image to a file as a PNG. The image is compressed using all of the available cores,
+   * which is much quicker than {@link javax.imageio.ImageIO} for large images.
+   *
+   * @param image The image to write.
+   * @param file The file to write the image to.
+   *
+   * @throws IOException If there was a problem writing to the file.
+   */
+  private void writePng(final Image image, final File file) throws IOException {
+
+    final int width = (int) image.getWidth();
+    final int height = (int) image.getHeight();
+
+    final PixelReader pixelReader = image.getPixelReader();
+    final int[] row = new int[width];
+
+    try (final PngWriter writer = new PngWriter(new FileOutputStream(file), width, height,
+        Runtime.getRuntime().availableProcessors())) {
+
+      for (int y = 0; y < height; y++) {
+        pixelReader.getPixels(0, y, width, 1, PixelFormat.getIntArgbInstance(), row, 0, width);
+        writer.writeRow(row);
+      }
+    }
+  }
+
+  /**
+   * Get the export poster button. Unlike exporting the image, this renders the current
+   * configuration at a resolution chosen by the user, which can be much larger than the display.
+   *
+   * @param stage The parent stage (used to display a model file selection dialog).
+   *
+   * @return The export poster button.
+   */
+  private Control getExportPosterButton(final Stage stage) {
+
+    final Button button = new Button("Export Poster");
+
+    button.setOnAction(event -> {
+
+      final TextInputDialog dialog = new TextInputDialog("7680x4320");
+      dialog.setTitle("Export Poster");
+      dialog.setHeaderText("Enter the resolution of the poster (width x height).");
+
+      final Optional<String> resolution = dialog.showAndWait();
+
+      // If the dialog was cancelled then there is nothing to do.
+      if (!resolution.isPresent()) {
+        return;
+      }
+
+      final String[] dimensions = resolution.get().trim().split("\\s*[xX]\\s*");
+
+      final PosterRenderer renderer;
+
+      // The renderer rejects sizes that are not positive, which is reported in the same way as
+      // sizes that are not numbers.
+      try {
+        final int width = Integer.parseInt(dimensions[0]);
+        final int height = Integer.parseInt(dimensions[dimensions.length - 1]);
+
+        renderer = new PosterRenderer(imageGenerator.getCurrentConfigurationProperty().getValue(),
+            width, height, Runtime.getRuntime().availableProcessors());
+
+      } catch (IllegalArgumentException e) {
+        displayException(e);
+        return;
+      }
+
+      renderer.setSupersampling(POSTER_SUPERSAMPLING);
+
+      final FileChooser fileChooser = new FileChooser();
+      final File file = fileChooser.showSaveDialog(stage);
+
+      // Null if no file selected.
+      if (file == null) {
+        return;
+      }
+
+      // Rendering a poster can take a long time, so it is done in the background to keep the
+      // user interface responsive. The stream is closed even if the render fails before the
+      // PNG writer takes it over.
+      final Thread thread = new Thread(() -> {
+        try (final OutputStream out = new FileOutputStream(file)) {
+          renderer.render(out);
+
+        } catch (IOException | RuntimeException e) {
+          Platform.runLater(() -> displayException(e));
+        }
+      });
+
+      thread.setDaemon(true);
+      thread.start();
+    });
+
+    return button;
+  }
+
   /**
    * Get the reset all button.
    *
@@ -602,18 +1075,84 @@ public class View extends Application {
       zoomRectangle.setHeight(rectangleWidth * widthScaleFactor);
     });
 
-    group.getChildren().addAll(canvas, zoomRectangle);
+    // The overlay lets mouse events through to the group.
+    canvas.setMouseTransparent(true);
+
+    group.getChildren().addAll(imageView, canvas, zoomRectangle, getProgressPane());
 
     return group;
   }
 
   /**
-   * Redraw the mandelbrot image.
+   * Return the progress pane, which shows the proportion of the image calculated and an estimate
+   * of the time remaining while a slow background render is running. It is hidden until the render
+   * has run for {@link #PROGRESS_DELAY} seconds.
+   *
+   * @return The progress pane.
+   */
+  private Pane getProgressPane() {
+
+    final ProgressBar progressBar = new ProgressBar();
+    final Label progressLabel = new Label();
+
+    progressTimer = new AnimationTimer() {
+      @Override
+      public void handle(final long now) {
+
+        final RenderProgress progress = imageGenerator.getProgress();
+
+        // The progress of the last render is still returned until the new one starts.
+        if (progress == null || progress.isDone()
+            || progress.getElapsedTime() < PROGRESS_DELAY * 1e9) {
+          progressPane.setVisible(false);
+          return;
+        }
+
+        final long remaining = progress.getEstimatedTimeRemaining();
+
+        progressBar.setProgress(progress.getFraction());
+        progressLabel.setText(remaining < 0 ? "Estimating time remaining..."
+            : String.format("About %.0f s remaining", Math.ceil(remaining / 1e9)));
+
+        progressPane.setVisible(true);
+      }
+    };
+
+    progressPane.getChildren().addAll(progressBar, progressLabel);
+    progressPane.setSpacing(8);
+    progressPane.setPadding(new Insets(4, 8, 4, 8));
+    progressPane.setAlignment(Pos.CENTER_LEFT);
+    progressPane.setStyle("-fx-background-color: rgba(255, 255, 255, 0.8);");
+    progressPane.setMouseTransparent(true);
+    progressPane.setVisible(false);
+
+    // Keep the pane in the bottom left corner of the image.
+    progressPane.setLayoutX(8);
+    progressPane.layoutYProperty()
+        .bind(canvas.heightProperty().subtract(progressPane.heightProperty()).subtract(8));
+
+    return progressPane;
+  }
+
+  /**
+   * Stop showing the progress of a background render.
+   */
+  private void stopProgress() {
+    progressTimer.stop();
+    progressPane.setVisible(false);
+  }
+
+  /**
+   * Redraw the mandelbrot image. If the iteration values need recalculating, this is done on a
+   * background thread, and the image is drawn tile by tile as it is calculated.
    */
   private void redrawImage() {
 
-    final GraphicsContext graphicsContext = canvas.getGraphicsContext2D();
-    final PixelWriter pixelWriter = graphicsContext.getPixelWriter();
+    // The image is redrawn once the current render has finished, which picks up any changes
+    // made in the meantime.
+    if (rendering) {
+      return;
+    }
 
     final double xRange = canvas.getWidth();
     final double yRange = canvas.getHeight();
@@ -624,23 +1163,349 @@ public class View extends Application {
     final int xResolution = (int) xRange;
     final int yResolution = (int) yRange;
 
+    // The resolution the image is calculated at, which is reduced while the user is interacting
+    // with a slow image.
+    int imageXResolution = xResolution;
+    int imageYResolution = yResolution;
+
+    if (imageGenerator.isRecalculationNeeded(xResolution, yResolution)) {
+
+      if (xResolution == declinedXResolution && yResolution == declinedYResolution
+          && imageGenerator.getCurrentConfigurationProperty().getValue()
+              .equals(declinedConfiguration)) {
+        redrawOverlay(xRange, yRange);
+        return;
+      }
+
+      final double estimatedTime = getEstimatedRenderTime(xResolution, yResolution);
+      final int divisor = interacting ? resolutionScaler.getDivisor(estimatedTime) : 1;
+
+      if (divisor > 1) {
+
+        imageXResolution = ResolutionScaler.scale(xResolution, divisor);
+        imageYResolution = ResolutionScaler.scale(yResolution, divisor);
+
+        // If the reduced image is already calculated, it is drawn below.
+        if (imageGenerator.isRecalculationNeeded(imageXResolution, imageYResolution)) {
+          renderInBackground(imageXResolution, imageYResolution);
+          return;
+        }
+
+      } else {
+
+        // A change to the view can be undone; a resize, or the full resolution redraw once the
+        // user stops interacting, can only be cancelled, keeping the image already drawn.
+        final boolean configurationChanged = imageGenerator.isConfigurationChanged();
+        final boolean undoable = configurationChanged && imageGenerator.canUndo();
+
+        if (estimatedTime > SLOW_RENDER_WARNING && (undoable || !configurationChanged)) {
+          confirmSlowRender(xResolution, yResolution, estimatedTime, undoable);
+        } else {
+          renderInBackground(xResolution, yResolution);
+        }
+
+        return;
+      }
+    }
+
     // Get the image.
-    final Color[][] image = imageGenerator.generate(xResolution, yResolution);
-
-    // Write the image to the canvas.
-    for (int x = 0; x < image.length; x++) {
-      for (int y = 0; y < image[0].length; y++) {
-
-        // The y axis is flipped (positive axis is in the direction of top to bottom
-        // of screen, whereas complex plane has a y axis where the positive direction
-        // is upwards), therefore we need to invert the image on the y-axis. That being
-        // said, the image is symmetrical around the x-axis, so this is done for the
-        // transformations to be displayed correctly - the initial image would look
-        // identical without this correction.
-        pixelWriter.setColor(x, yResolution - y, image[x][y]);
+    final int[] image = imageGenerator.generate(imageXResolution, imageYResolution);
+
+    // Only write the image to the display if it has changed. Changes that only affect the
+    // overlay, such as toggling the zoom, leave the image as it is.
+    if (image != drawnImage && imageXResolution > 0 && imageYResolution > 0) {
+
+      final long blitStart = System.nanoTime();
+
+      // The pixels are already in display order, with the y axis flipped so that the positive
+      // direction of the complex plane is up the screen, so they are copied in one go.
+      showImage(getDisplayBuffer(imageXResolution, imageYResolution).present(image));
+
+      imageGenerator.recordBlitTime(System.nanoTime() - blitStart);
+
+      drawnImage = image;
+    }
+
+    redrawOverlay(xRange, yRange);
+  }
+
+  /**
+   * Measure the throughput of this machine on a background thread, so that renders can be
+   * predicted before the first one has finished without pausing the interface. The measurement is
+   * only used if no render has finished in the meantime, as a render measures it more accurately.
+   */
+  private void measureThroughput() {
+
+    final int numberOfThreads = imageGenerator.getEngine().getWorkerCount();
+
+    final Thread thread = new Thread(() -> {
+
+      final double measured = RenderCostEstimator.measureThroughput(numberOfThreads);
+
+      Platform.runLater(() -> {
+        if (throughput <= 0) {
+          throughput = measured;
+        }
+      });
+    }, "throughput-calibration");
+
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Predict how long calculating the iteration values of the current view will take, from a sparse
+   * sample of it and the throughput of the last calculation. The sample is only taken again when
+   * the view or size changes; while the user is resizing the window, the average cost of a pixel
+   * of the same view is reused for each new size.
+   *
+   * @param xResolution The width of the image.
+   * @param yResolution The height of the image.
+   *
+   * @return The predicted time, in seconds, or 0 if the image is empty or the throughput has not
+   *         been measured yet.
+   */
+  private double getEstimatedRenderTime(final int xResolution, final int yResolution) {
+
+    if (xResolution < 1 || yResolution < 1 || throughput <= 0) {
+      return 0;
+    }
+
+    final ImageConfiguration configuration =
+        imageGenerator.getCurrentConfigurationProperty().getValue();
+
+    if (!configuration.equals(estimateConfiguration) || (!interacting
+        && (xResolution != estimateXResolution || yResolution != estimateYResolution))) {
+
+      estimate = new RenderCostEstimator(configuration, xResolution, yResolution)
+          .estimate(imageGenerator.getEngine().getWorkerCount());
+
+      estimateConfiguration = configuration;
+      estimateXResolution = xResolution;
+      estimateYResolution = yResolution;
+    }
+
+    return estimate.getIterationsPerPixel() * xResolution * yResolution / throughput;
+  }
+
+  /**
+   * Ask the user whether to go ahead with a render that is predicted to be slow, or to undo the
+   * change that led to it. If the render is not the result of a change that can be undone, the
+   * user can cancel it instead, keeping the image already drawn. The dialog is shown once the
+   * current event has been handled, as this may be called during an animation, where dialogs
+   * can't be shown.
+   *
+   * @param xResolution The width of the image.
+   * @param yResolution The height of the image.
+   * @param estimatedTime The predicted time of the render, in seconds.
+   * @param undoable Whether the render is the result of a change to the configuration that can be
+   *        undone.
+   */
+  private void confirmSlowRender(final int xResolution, final int yResolution,
+      final double estimatedTime, final boolean undoable) {
+
+    // Other redraws wait until the user has decided.
+    rendering = true;
+
+    Platform.runLater(() -> {
+
+      final ButtonType render = new ButtonType("Render");
+      final ButtonType undo = new ButtonType("Undo");
+      final ButtonType cancel = ButtonType.CANCEL;
+
+      final Alert alert = new Alert(Alert.AlertType.WARNING,
+          String.format("This view is predicted to take about %s to render.",
+              estimatedTime < 120 ? String.format("%.0f seconds", estimatedTime)
+                  : String.format("%.0f minutes", estimatedTime / 60)),
+          render, undoable ? undo : cancel);
+
+      alert.setTitle("Slow Render");
+      alert.setHeaderText("Render This View?");
+
+      final Optional<ButtonType> choice = alert.showAndWait();
+
+      rendering = false;
+
+      if (choice.isPresent() && choice.get() == undo) {
+        imageGenerator.undo();
+
+      } else if (choice.isPresent() && choice.get() == cancel) {
+        declinedConfiguration = imageGenerator.getCurrentConfigurationProperty().getValue();
+        declinedXResolution = xResolution;
+        declinedYResolution = yResolution;
+
+        redrawImage();
+
+      } else {
+        renderInBackground(xResolution, yResolution);
+      }
+    });
+  }
+
+  /**
+   * Recalculate the iteration values on a background thread, drawing each tile as soon as it is
+   * calculated. Once every tile is done, the image is redrawn with its exact colours.
+   *
+   * @param xResolution The width of the image.
+   * @param yResolution The height of the image.
+   */
+  private void renderInBackground(final int xResolution, final int yResolution) {
+
+    rendering = true;
+    progressTimer.start();
+
+    final int render = ++renderCount;
+
+    // The configuration is changed on this thread, so it is taken here and the background thread
+    // renders this snapshot. Changes made in the meantime are picked up by the redraw afterwards.
+    final ImageConfiguration configuration =
+        imageGenerator.getCurrentConfigurationProperty().getValue();
+
+    final Flow.Subscriber<RenderedTile> subscriber = new Flow.Subscriber<RenderedTile>() {
+
+      @Override
+      public void onSubscribe(final Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+      }
+
+      @Override
+      public void onNext(final RenderedTile tile) {
+        Platform.runLater(() -> {
+          if (rendering && render == renderCount) {
+            drawTile(tile, xResolution, yResolution);
+          }
+        });
+      }
+
+      // The failure itself is rethrown by generate and displayed below; this only stops any tiles
+      // still queued from being drawn over the last complete image.
+      @Override
+      public void onError(final Throwable throwable) {
+        Platform.runLater(() -> {
+          if (render == renderCount) {
+            rendering = false;
+            stopProgress();
+          }
+        });
+      }
+
+      @Override
+      public void onComplete() {}
+    };
+
+    final Thread thread = new Thread(() -> {
+      try {
+        imageGenerator.generate(configuration, xResolution, yResolution, subscriber);
+
+        Platform.runLater(() -> {
+          rendering = false;
+          stopProgress();
+
+          final double iterationsPerSecond =
+              imageGenerator.getRenderMetrics().getIterationsPerSecond();
+
+          if (iterationsPerSecond > 0) {
+            throughput = iterationsPerSecond;
+          }
+
+          redrawImage();
+        });
+
+      } catch (RuntimeException | Error e) {
+        Platform.runLater(() -> {
+          rendering = false;
+          stopProgress();
+          displayException(e);
+        });
+      }
+    });
+
+    // Don't keep the application running if the window is closed during a render.
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Draw a tile published while the image is being calculated. The tile is written straight into
+   * the front buffer, and only its region is marked as changed.
+   *
+   * @param tile The tile.
+   * @param xResolution The width of the image the tile is part of.
+   * @param yResolution The height of the image the tile is part of.
+   */
+  private void drawTile(final RenderedTile tile, final int xResolution, final int yResolution) {
+
+    final Tile region = tile.getTile();
+    final DoubleBufferedImage buffer = getDisplayBuffer(xResolution, yResolution);
+
+    // Rows are placed as in redrawImage, where row y of the image is drawn at
+    // yResolution - 1 - y.
+    final int top = yResolution - 1 - (region.getY() + region.getHeight() - 1);
+
+    buffer.update(region.getX(), top, region.getWidth(), region.getHeight(), tile.getPixels());
+
+    showImage(buffer.getFrontImage());
+
+    drawnImage = null;
+  }
+
+  /**
+   * Display an image. An image calculated at a reduced resolution is stretched to fill the canvas.
+   *
+   * @param image The image.
+   */
+  private void showImage(final Image image) {
+
+    final boolean reduced = (int) image.getWidth() != (int) canvas.getWidth()
+        || (int) image.getHeight() != (int) canvas.getHeight();
+
+    imageView.setFitWidth(reduced ? canvas.getWidth() : 0);
+    imageView.setFitHeight(reduced ? canvas.getHeight() : 0);
+    imageView.setImage(image);
+  }
+
+  /**
+   * Get the buffers to display an image of the given size from, replacing them if they are a
+   * different size.
+   *
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @return The display buffers.
+   */
+  private DoubleBufferedImage getDisplayBuffer(final int width, final int height) {
+
+    if (displayBuffer == null || displayBuffer.getWidth() != width
+        || displayBuffer.getHeight() != height) {
+
+      final DoubleBufferedImage previousBuffer = displayBuffer;
+
+      displayBuffer = new DoubleBufferedImage(width, height);
+      drawnImage = null;
+
+      // Tiles are drawn over the previous image stretched to the new size, such as the reduced
+      // resolution image drawn while the user was interacting, rather than over a blank image.
+      if (previousBuffer != null) {
+        displayBuffer.fill(previousBuffer);
       }
     }
 
+    return displayBuffer;
+  }
+
+  /**
+   * Redraw the overlay on top of the image.
+   *
+   * @param xRange The width of the image.
+   * @param yRange The height of the image.
+   */
+  private void redrawOverlay(final double xRange, final double yRange) {
+
+    final GraphicsContext graphicsContext = canvas.getGraphicsContext2D();
+
+    graphicsContext.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+
+    double textY = 30;
+
     // Display the zoom value if this is set in the configuration.
     if (imageGenerator.getCurrentConfigurationProperty().getValue().getOverlayZoom()) {
       graphicsContext.setStroke(Color.BLACK);
@@ -653,8 +1518,56 @@ public class View extends Application {
 
       // Use white text with a black outline. This ensures it can be read
       // on any coloured background.
-      graphicsContext.strokeText(currentZoomText, 10, 30);
-      graphicsContext.fillText(currentZoomText, 10, 30);
+      graphicsContext.strokeText(currentZoomText, 10, textY);
+      graphicsContext.fillText(currentZoomText, 10, textY);
+
+      textY += 26;
     }
+
+    if (overlayMetrics) {
+      graphicsContext.setStroke(Color.BLACK);
+      graphicsContext.setFill(Color.WHITE);
+      graphicsContext.setFont(new Font(16));
+      graphicsContext.setLineWidth(2);
+
+      for (String line : getMetricsText(imageGenerator.getRenderMetrics())) {
+        graphicsContext.strokeText(line, 10, textY);
+        graphicsContext.fillText(line, 10, textY);
+
+        textY += 20;
+      }
+    }
+  }
+
+  /**
+   * Get the lines of text describing the metrics of a frame, as drawn on the overlay.
+   *
+   * @param metrics The metrics of the frame.
+   * @return The lines of text.
+   */
+  private static String[] getMetricsText(final RenderMetrics metrics) {
+
+    final long[] workerBusyTimes = metrics.getWorkerBusyTimes();
+
+    long minimumBusyTime = Long.MAX_VALUE;
+    long maximumBusyTime = 0;
+
+    for (long busyTime : workerBusyTimes) {
+      minimumBusyTime = Math.min(minimumBusyTime, busyTime);
+      maximumBusyTime = Math.max(maximumBusyTime, busyTime);
+    }
+
+    return new String[] {
+        String.format("Frame: %.1f ms", metrics.getTotalTime() / 1e6),
+        String.format("Normalise %.1f, iterate %.1f, histogram %.1f, colour %.1f, blit %.1f ms",
+            metrics.getNormaliseTime() / 1e6, metrics.getIterateTime() / 1e6,
+            metrics.getHistogramTime() / 1e6, metrics.getColorTime() / 1e6,
+            metrics.getBlitTime() / 1e6),
+        String.format("Iterations: %.1f M (%.1f M/s)", metrics.getIterations() / 1e6,
+            metrics.getIterationsPerSecond() / 1e6),
+        workerBusyTimes.length == 0 ? "Workers: -"
+            : String.format("Workers: %d, busy %.1f to %.1f ms", workerBusyTimes.length,
+                minimumBusyTime / 1e6, maximumBusyTime / 1e6),
+        String.format("Cache hit rate: %.0f%%", metrics.getCacheHitRate() * 100)};
   }
 }
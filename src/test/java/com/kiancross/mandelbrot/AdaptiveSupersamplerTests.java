@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for edge adaptive anti-aliasing.
+ */
+public class AdaptiveSupersamplerTests {
+
+  /**
+   * The width of the images in the tests.
+   */
+  private static final int WIDTH = 90;
+
+  /**
+   * The height of the images in the tests.
+   */
+  private static final int HEIGHT = 60;
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration() {
+    return TestConfigurations
+        .builder(new Bound(new ComplexNumber(-2, -1), new ComplexNumber(1, 1)), 100).build();
+  }
+
+  /**
+   * Test that only a fraction of pixels are supersampled, and that pixels away from edges keep
+   * their colour.
+   */
+  @Test
+  public void testOnlyEdgesSupersampled() {
+
+    final ImageConfiguration configuration = getConfiguration();
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(WIDTH, HEIGHT), 100, 2);
+
+    final int[][] iterationValues = generator.calculate(WIDTH, HEIGHT, 1);
+
+    final HistogramColorMapper colorMapper =
+        new HistogramColorMapper(100, configuration.getColorTheme());
+
+    final int[][] plain = colorMapper.mapIterationsToColors(iterationValues);
+
+    final AdaptiveSupersampler supersampler =
+        new AdaptiveSupersampler(generator, WIDTH, HEIGHT, 4, 3);
+
+    final int[][] antialiased = supersampler.colour(iterationValues, 0, colorMapper);
+
+    assertTrue(supersampler.getSupersampledPixels() > 0);
+    assertTrue(supersampler.getSupersampledPixels() < WIDTH * HEIGHT / 2);
+
+    int changed = 0;
+
+    for (int x = 0; x < WIDTH; x++) {
+      for (int y = 0; y < HEIGHT; y++) {
+        if (plain[x][y] != antialiased[x][y]) {
+          changed++;
+        }
+      }
+    }
+
+    assertTrue(changed > 0);
+    assertTrue(changed <= supersampler.getSupersampledPixels());
+  }
+
+  /**
+   * Test that colouring in strips gives the same result as colouring the whole image, as the rows
+   * either side of each strip are taken into account.
+   */
+  @Test
+  public void testStrips() {
+
+    final ImageConfiguration configuration = getConfiguration();
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(WIDTH, HEIGHT), 100, 2);
+
+    final HistogramColorMapper colorMapper =
+        new HistogramColorMapper(100, configuration.getColorTheme());
+
+    final int[][] whole = generator.calculate(WIDTH, HEIGHT, 1);
+    colorMapper.addIterations(whole);
+
+    final AdaptiveSupersampler supersampler =
+        new AdaptiveSupersampler(generator, WIDTH, HEIGHT, 3, 2);
+
+    final int[][] expected = supersampler.colour(whole, 0, colorMapper);
+
+    final int[][] bottom = supersampler.colour(generator.calculate(WIDTH, HEIGHT, 0, 25, 1), 0,
+        colorMapper);
+    final int[][] top = supersampler.colour(generator.calculate(WIDTH, HEIGHT, 25, HEIGHT, 1), 25,
+        colorMapper);
+
+    for (int x = 0; x < WIDTH; x++) {
+      for (int y = 0; y < HEIGHT; y++) {
+        assertEquals(expected[x][y], y < 25 ? bottom[x][y] : top[x][y - 25]);
+      }
+    }
+  }
+
+  /**
+   * Test that averaging happens in linear light: black and white average to a light grey rather
+   * than 50% grey.
+   */
+  @Test
+  public void testLinearToSrgb() {
+    assertEquals(0, AdaptiveSupersampler.linearToSrgb(0));
+    assertEquals(255, AdaptiveSupersampler.linearToSrgb(1));
+    assertEquals(188, AdaptiveSupersampler.linearToSrgb(0.5));
+  }}
@@ -0,0 +1,229 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for rendering batches of images.
+ */
+public class BatchRendererTests {
+
+  /**
+   * Test that every job in a batch is rendered at its own size, and a job that fails does not
+   * stop the rest.
+   */
+  @Test
+  public void testRender() throws IOException {
+
+    final Path state = RenderCommandTests.writeStateFile().toPath();
+    final Path directory = Files.createTempDirectory("mandelbrot");
+
+    final List<BatchRenderer.Job> jobs = List.of(
+        new BatchRenderer.Job(state, directory.resolve("a.png"), 300, 250),
+        new BatchRenderer.Job(directory.resolve("missing.state"), directory.resolve("b.png"), 8,
+            8),
+        new BatchRenderer.Job(state, directory.resolve("c.png"), 17, 5),
+        new BatchRenderer.Job(state, directory.resolve("d.png"), 1, 1));
+
+    final List<BatchRenderer.Result> results = new BatchRenderer(3).render(jobs);
+
+    assertEquals(jobs.size(), results.size());
+    assertNotNull(results.get(1).getError());
+
+    for (int i : new int[] {0, 2, 3}) {
+
+      assertNull(results.get(i).getError());
+
+      final BatchRenderer.Job job = results.get(i).getJob();
+      final BufferedImage image = ImageIO.read(job.getOutputFile().toFile());
+
+      assertEquals(job.getWidth(), image.getWidth());
+      assertEquals(job.getHeight(), image.getHeight());
+    }
+
+    final ByteArrayOutputStream report = new ByteArrayOutputStream();
+    BatchRenderer.writeReport(results, new PrintStream(report, true, "UTF-8"));
+
+    final String[] lines = report.toString("UTF-8").split("\\R");
+
+    assertEquals(jobs.size() + 1, lines.length);
+    assertTrue(lines[1].contains(",300,250,ok,"));
+    assertTrue(lines[2].contains(",failed,"));
+  }
+
+  /**
+   * Test that a job that fails part way through calculating its tiles is recorded as failed, and
+   * the rest of the batch still finishes.
+   */
+  @Test
+  public void testJobFailsMidRender() throws IOException {
+
+    final Path state = RenderCommandTests.writeStateFile().toPath();
+    final Path directory = Files.createTempDirectory("mandelbrot");
+
+    final Path failing = directory.resolve("b.png");
+    final AtomicInteger calculatedTiles = new AtomicInteger();
+
+    final BatchRenderer renderer = new BatchRenderer(3) {
+      @Override
+      void calculateTile(final MandelbrotSetIterationCountGenerator generator,
+          final int[][] iterationValues, final BatchRenderer.Job job, final Tile tile) {
+
+        if (job.getOutputFile().equals(failing) && calculatedTiles.incrementAndGet() == 3) {
+          throw new IllegalStateException("Tile failed.");
+        }
+
+        super.calculateTile(generator, iterationValues, job, tile);
+      }
+    };
+
+    final List<BatchRenderer.Job> jobs = List.of(
+        new BatchRenderer.Job(state, directory.resolve("a.png"), 600, 500),
+        new BatchRenderer.Job(state, failing, 600, 500),
+        new BatchRenderer.Job(state, directory.resolve("c.png"), 600, 500));
+
+    final List<BatchRenderer.Result> results = renderer.render(jobs);
+
+    assertEquals(jobs.size(), results.size());
+    assertTrue(results.get(1).getError() instanceof IllegalStateException);
+    assertFalse(Files.exists(failing));
+
+    for (int i : new int[] {0, 2}) {
+      assertNull(results.get(i).getError());
+      assertTrue(Files.exists(results.get(i).getJob().getOutputFile()));
+    }
+
+    // The workers are left in a state to render another batch.
+    final List<BatchRenderer.Result> next =
+        renderer.render(List.of(new BatchRenderer.Job(state, directory.resolve("d.png"), 20, 10)));
+
+    assertNull(next.get(0).getError());
+  }
+
+  /**
+   * Test that a batch image matches the same image rendered on its own.
+   */
+  @Test
+  public void testMatchesSingleRender() throws IOException {
+
+    final File state = RenderCommandTests.writeStateFile();
+    final Path directory = Files.createTempDirectory("mandelbrot");
+
+    final Path batchOutput = directory.resolve("batch.png");
+    final Path singleOutput = directory.resolve("single.png");
+
+    new BatchRenderer(2)
+        .render(List.of(new BatchRenderer.Job(state.toPath(), batchOutput, 120, 90)));
+
+    assertEquals(0, RenderCommandTests.run("--width", "120", "--height", "90", state.getPath(),
+        singleOutput.toString()));
+
+    final BufferedImage batch = ImageIO.read(batchOutput.toFile());
+    final BufferedImage single = ImageIO.read(singleOutput.toFile());
+
+    for (int x = 0; x < 120; x++) {
+      for (int y = 0; y < 90; y++) {
+        assertEquals(single.getRGB(x, y), batch.getRGB(x, y));
+      }
+    }
+  }
+
+  /**
+   * Test that a manifest is read relative to its own directory.
+   */
+  @Test
+  public void testReadManifest() throws IOException {
+
+    final Path directory = Files.createTempDirectory("mandelbrot");
+    final Path manifest = directory.resolve("jobs.txt");
+
+    Files.write(manifest, List.of("# comment", "", "a.state a.png", "b.state  out/b.png 10 20"),
+        StandardCharsets.UTF_8);
+
+    final List<BatchRenderer.Job> jobs = BatchRenderer.readManifest(manifest, 30, 40);
+
+    assertEquals(2, jobs.size());
+    assertEquals(directory.resolve("a.state"), jobs.get(0).getStateFile());
+    assertEquals(30, jobs.get(0).getWidth());
+    assertEquals(directory.resolve("out/b.png"), jobs.get(1).getOutputFile());
+    assertEquals(20, jobs.get(1).getHeight());
+
+    Files.write(manifest, List.of("a.state a.png 10"), StandardCharsets.UTF_8);
+
+    assertThrows(IOException.class, () -> {
+      BatchRenderer.readManifest(manifest, 30, 40);
+    });
+  }
+
+  /**
+   * Test that tiles cover every pixel exactly once.
+   */
+  @Test
+  public void testSplit() {
+
+    for (int[] size : new int[][] {{100, 100}, {7, 3}, {1000, 1}, {1, 1000}}) {
+
+      final int[][] covered = new int[size[0]][size[1]];
+
+      for (Tile tile : Tile.split(size[0], size[1], 64)) {
+
+        assertTrue(tile.getArea() <= 100);
+
+        for (int x = tile.getX(); x < tile.getX() + tile.getWidth(); x++) {
+          for (int y = tile.getY(); y < tile.getY() + tile.getHeight(); y++) {
+            covered[x][y]++;
+          }
+        }
+      }
+
+      for (int[] column : covered) {
+        for (int count : column) {
+          assertEquals(1, count);
+        }
+      }
+    }
+  }
+
+  /**
+   * Test the command line batch options.
+   */
+  @Test
+  public void testCommand() throws IOException {
+
+    final File state = RenderCommandTests.writeStateFile();
+    final Path directory = Files.createTempDirectory("mandelbrot");
+    final Path report = directory.resolve("report.csv");
+
+    assertEquals(0, RenderCommandTests.run("--width", "20", "--height", "10", "--output-dir",
+        directory.toString(), "--report", report.toString(), state.getPath()));
+
+    final String name = state.getName().replaceFirst("\\.[^.]*$", "");
+
+    assertTrue(Files.exists(directory.resolve(name + ".png")));
+    assertEquals(2, Files.readAllLines(report, StandardCharsets.UTF_8).size());
+
+    assertEquals(1, RenderCommandTests.run("--output-dir", directory.toString(),
+        directory.resolve("missing.state").toString()));
+  }
+}
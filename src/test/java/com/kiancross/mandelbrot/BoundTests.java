@@ -111,4 +111,17 @@ public class BoundTests {
 
     assertNotEquals(bound1, bound2);
   }
+
+  /**
+   * Test that normalising a bound keeps it centred and matches the aspect ratio.
+   */
+  @Test
+  public void testNormalise() {
+    final Bound bound = new Bound(new ComplexNumber(-2, -1), new ComplexNumber(2, 1));
+
+    final Bound normalised = bound.normalise(100, 100);
+
+    assertEquals(new ComplexNumber(-2, -2), normalised.getMinimum());
+    assertEquals(new ComplexNumber(2, 2), normalised.getMaximum());
+  }
 }
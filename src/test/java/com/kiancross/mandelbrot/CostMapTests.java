@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for dividing calculations between threads by predicted cost.
+ */
+public class CostMapTests {
+
+  /**
+   * The view the tests calculate, with the set on the right hand side.
+   */
+  private static final Bound VIEW = TestConfigurations.DEFAULT_BOUND;
+
+  /**
+   * Test that the cost of cells, and of points outside the mapped region, is predicted.
+   */
+  @Test
+  public void testCost() {
+
+    final int[][] values = {{1, 3}, {-1, 10}};
+    final CostMap map =
+        new CostMap(new Bound(new ComplexNumber(0, 0), new ComplexNumber(2, 2)), values, 50);
+
+    assertEquals(1, map.getCost(0.5, 0.5), 1e-9);
+    assertEquals(3, map.getCost(0.5, 1.5), 1e-9);
+    assertEquals(50, map.getCost(1.5, 0.5), 1e-9);
+
+    // Points outside the region take the cost of the nearest cell.
+    assertEquals(10, map.getCost(7, 9), 1e-9);
+    assertEquals(1, map.getCost(-7, -9), 1e-9);
+  }
+
+  /**
+   * Test that the partition covers every column once, and gives each part a similar actual cost
+   * when predicted from a slightly panned view, where an even split does not.
+   */
+  @Test
+  public void testPartitionBalancesCost() {
+
+    final int width = 240;
+    final int height = 160;
+    final int parts = 8;
+    final int maximumIterations = 500;
+
+    final Bound bound = VIEW.normalise(width, height);
+    final Bound previousBound = new Bound(
+        new ComplexNumber(bound.getMinimum().getReal() - 0.1, bound.getMinimum().getImaginary()),
+        new ComplexNumber(bound.getMaximum().getReal() - 0.1, bound.getMaximum().getImaginary()));
+
+    final int[][] previousValues =
+        new MandelbrotSetIterationCountGenerator(previousBound, maximumIterations, 2)
+            .calculate(width, height, 4);
+
+    final int[][] values =
+        new MandelbrotSetIterationCountGenerator(bound, maximumIterations, 2)
+            .calculate(width, height, 4);
+
+    final int[] boundaries = new CostMap(previousBound, previousValues, maximumIterations)
+        .partition(bound, width, height, 0, height, parts);
+
+    assertEquals(parts + 1, boundaries.length);
+    assertEquals(0, boundaries[0]);
+    assertEquals(width, boundaries[parts]);
+
+    for (int i = 0; i < parts; i++) {
+      assertTrue(boundaries[i] <= boundaries[i + 1]);
+    }
+
+    final int[] evenBoundaries = new int[parts + 1];
+
+    for (int i = 0; i <= parts; i++) {
+      evenBoundaries[i] = i * width / parts;
+    }
+
+    final double imbalance = getImbalance(values, boundaries, maximumIterations);
+    final double evenImbalance = getImbalance(values, evenBoundaries, maximumIterations);
+
+    assertTrue(imbalance < 1.5, "imbalance " + imbalance);
+    assertTrue(imbalance < evenImbalance / 2, imbalance + " vs " + evenImbalance);
+  }
+
+  /**
+   * Test that dividing a calculation by cost does not change its result.
+   */
+  @Test
+  public void testGeneratorResultUnchanged() {
+
+    final MandelbrotSetIterationCountGenerator generator =
+        new MandelbrotSetIterationCountGenerator(VIEW, 300, 2);
+
+    final int[][] expected = generator.calculate(97, 61, 0, 61, 5);
+    final float[][] expectedSmooth = generator.calculateSmooth(97, 61, 10, 40, 5);
+
+    generator.setCostMap(new CostMap(VIEW, expected, 300));
+
+    assertEquals(5, generator.partition(97, 61, 0, 61, 5).length - 1);
+
+    final int[][] actual = generator.calculate(97, 61, 0, 61, 5);
+    final float[][] actualSmooth = generator.calculateSmooth(97, 61, 10, 40, 5);
+
+    for (int x = 0; x < 97; x++) {
+      assertArrayEquals(expected[x], actual[x]);
+      assertArrayEquals(expectedSmooth[x], actualSmooth[x]);
+    }
+  }
+
+  /**
+   * Get how much more work the most expensive part of a partition has than the average part.
+   *
+   * @param values The iteration values of the image.
+   * @param boundaries The boundaries of the parts.
+   * @param maximumIterations The maximum number of iterations.
+   * @return The cost of the most expensive part divided by the average cost.
+   */
+  private static double getImbalance(final int[][] values, final int[] boundaries,
+      final int maximumIterations) {
+
+    long total = 0;
+    long maximum = 0;
+
+    for (int i = 0; i + 1 < boundaries.length; i++) {
+
+      long cost = 0;
+
+      for (int x = boundaries[i]; x < boundaries[i + 1]; x++) {
+        for (final int value : values[x]) {
+          cost += value == -1 ? maximumIterations : value;
+        }
+      }
+
+      total += cost;
+      maximum = Math.max(maximum, cost);
+    }
+
+    return maximum / (total / (double) (boundaries.length - 1));
+  }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for rendering zoom animations from an exponential map.
+ */
+public class ExponentialMapRendererTests {
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration() {
+    return TestConfigurations
+        .builder(new Bound(new ComplexNumber(-2, -1), new ComplexNumber(1, 1)), 100).build();
+  }
+
+  /**
+   * Test that the frames zoom from the start width to the end bound, about its centre, and that
+   * the number of rows calculated grows with the log of the zoom rather than the number of frames.
+   */
+  @Test
+  public void testFrames() throws IOException {
+
+    final Bound end =
+        new Bound(new ComplexNumber(-0.75, 0.1), new ComplexNumber(-0.748, 0.1015));
+
+    final ExponentialMapRenderer renderer = new ExponentialMapRenderer(getConfiguration(), end,
+        40, ZoomAnimationRenderer.Easing.LINEAR, 32, 24, 2);
+
+    assertEquals(3, renderer.getFrameBound(0).getRange().getReal(), 1e-12);
+    assertEquals(end.getRange().getReal(), renderer.getFrameBound(39).getRange().getReal(), 1e-12);
+    assertEquals(-0.749, renderer.getFrameBound(20).getMaximum().minus(
+        renderer.getFrameBound(20).getRange().multiply(0.5)).getReal(), 1e-12);
+
+    final Path directory = Files.createTempDirectory("mandelbrot");
+    renderer.render(directory);
+
+    for (int frame = 0; frame < 40; frame++) {
+      assertTrue(Files.exists(ZoomAnimationRenderer.getFrameFile(directory, frame)));
+    }
+
+    final double step = 2 * Math.PI / renderer.getColumns();
+    final double expectedRows = (Math.log(1500) + Math.log(Math.hypot(32, 24))) / step;
+
+    assertTrue(renderer.getRows() <= expectedRows + 4);
+  }
+
+  /**
+   * Test that a resampled frame closely matches the same frame calculated directly.
+   */
+  @Test
+  public void testMatchesDirectRender() throws IOException {
+
+    final Bound end = new Bound(new ComplexNumber(-0.8, 0.1), new ComplexNumber(-0.7, 0.2));
+
+    final ExponentialMapRenderer renderer = new ExponentialMapRenderer(getConfiguration(), end,
+        3, ZoomAnimationRenderer.Easing.LINEAR, 120, 80, 2);
+
+    final Path directory = Files.createTempDirectory("mandelbrot");
+    renderer.render(directory);
+
+    for (int frame = 0; frame < 3; frame++) {
+
+      final ImageConfiguration configuration =
+          TestConfigurations.builder(renderer.getFrameBound(frame), 100).build();
+
+      final ByteArrayOutputStream direct = new ByteArrayOutputStream();
+      new PosterRenderer(configuration, 120, 80, 1).renderInMemory(direct);
+
+      final BufferedImage expected = ImageIO.read(new ByteArrayInputStream(direct.toByteArray()));
+      final BufferedImage actual =
+          ImageIO.read(ZoomAnimationRenderer.getFrameFile(directory, frame).toFile());
+
+      int close = 0;
+
+      for (int x = 0; x < 120; x++) {
+        for (int y = 0; y < 80; y++) {
+          if (Math.abs((expected.getRGB(x, y) & 0xFF) - (actual.getRGB(x, y) & 0xFF)) <= 16) {
+            close++;
+          }
+        }
+      }
+
+      assertTrue(close > 120 * 80 * 0.9, "Frame " + frame + ": " + close);
+    }
+  }
+}
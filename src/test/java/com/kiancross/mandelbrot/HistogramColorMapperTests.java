@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the histogram colour mapper.
+ */
+public class HistogramColorMapperTests {
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration() {
+    return TestConfigurations
+        .builder(new Bound(new ComplexNumber(-2, -1), new ComplexNumber(1, 1)), 100)
+        .escapeRadius(4).smoothColoring(true).build();
+  }
+
+  /**
+   * Test that smooth colours increase steadily between integer iteration counts, and agree with
+   * the integer colours at them.
+   */
+  @Test
+  public void testSmoothColorIsContinuous() {
+
+    final HistogramColorMapper colorMapper =
+        new HistogramColorMapper(10, getConfiguration().getColorTheme());
+
+    colorMapper.addIterations(new int[][] {{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}});
+
+    int previous = 0;
+
+    for (float value = 0; value < 10; value += 0.125f) {
+
+      final int grey = colorMapper.getSmoothColor(value) & 0xFF;
+
+      assertTrue(grey >= previous);
+      assertTrue(grey - previous <= 4);
+
+      previous = grey;
+    }
+
+    for (int n = 1; n <= 10; n++) {
+      final int expected = colorMapper.getColor(n) & 0xFF;
+      final int actual = colorMapper.getSmoothColor(Math.nextDown((float) n)) & 0xFF;
+
+      assertTrue(Math.abs(expected - actual) <= 1);
+    }
+
+    assertEquals(SerializableColor.BLACK.toArgb(), colorMapper.getSmoothColor(-1));
+  }
+
+  /**
+   * Test that smooth colouring removes the bands of integer colouring: neighbouring pixels have
+   * many more distinct colours.
+   */
+  @Test
+  public void testFewerBands() {
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        getConfiguration().getBound().normalise(90, 60), 100, 4);
+
+    final HistogramColorMapper colorMapper =
+        new HistogramColorMapper(100, getConfiguration().getColorTheme());
+
+    final int[][] banded = colorMapper.mapIterationsToColors(generator.calculate(90, 60, 2));
+    final int[][] smooth =
+        colorMapper.mapIterationsToColors(generator.calculateSmooth(90, 60, 0, 60, 2));
+
+    assertTrue(countColours(smooth) > 2 * countColours(banded));
+  }
+
+  /**
+   * Test that replacing the gradient keeps the histogram, giving the same colours as a new mapper
+   * built with that gradient.
+   */
+  @Test
+  public void testSetGradient() {
+
+    final int[][] iterationValues = {{1, 2, 2, 3, -1}, {3, 3, 4, 5, 5}};
+
+    final ColorGradient red =
+        new ColorGradient(SerializableColor.BLACK, SerializableColor.rgb(255, 0, 0), "Red");
+
+    final HistogramColorMapper expected = new HistogramColorMapper(5, red);
+    expected.addIterations(iterationValues);
+
+    final HistogramColorMapper colorMapper =
+        new HistogramColorMapper(5, getConfiguration().getColorTheme());
+
+    colorMapper.addIterations(iterationValues);
+    colorMapper.getColor(1);
+    colorMapper.getSmoothColor(1.5f);
+
+    colorMapper.setGradient(red);
+
+    for (int n = -1; n <= 5; n++) {
+      assertEquals(expected.getColor(n), colorMapper.getColor(n));
+      assertEquals(expected.getSmoothColor(n + 0.5f), colorMapper.getSmoothColor(n + 0.5f));
+    }
+  }
+
+
+  /**
+   * Count the distinct colours in an image.
+   *
+   * @param colours The colours of the image.
+   * @return The number of distinct colours.
+   */
+  private static long countColours(final int[][] colours) {
+    return Arrays.stream(colours).flatMapToInt(Arrays::stream).distinct().count();
+  }
+}
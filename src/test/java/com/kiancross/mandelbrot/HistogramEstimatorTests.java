@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for estimating the histogram from a low resolution pre-pass.
+ */
+public class HistogramEstimatorTests {
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration() {
+    return TestConfigurations.builder(200).build();
+  }
+
+  /**
+   * Test that the low resolution image keeps the aspect ratio, and is never larger than the image.
+   */
+  @Test
+  public void testSampleResolution() {
+
+    final HistogramEstimator estimator = new HistogramEstimator(getConfiguration(), 4000, 1000);
+
+    assertArrayEquals(new int[] {200, 50}, estimator.getSampleResolution(10000));
+    assertArrayEquals(new int[] {4000, 1000}, estimator.getSampleResolution(1 << 30));
+    assertArrayEquals(new int[] {2, 1}, estimator.getSampleResolution(1));
+  }
+
+  /**
+   * Test that colours from the estimated histogram are close to those from the exact histogram.
+   */
+  @Test
+  public void testCloseToExact() {
+
+    final int width = 600;
+    final int height = 400;
+
+    final ImageConfiguration configuration = getConfiguration();
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(width, height), 200, 2);
+
+    final HistogramColorMapper exact = new HistogramColorMapper(200, configuration.getColorTheme());
+    exact.addIterations(generator.calculate(width, height, 2));
+
+    final HistogramColorMapper estimated =
+        new HistogramEstimator(configuration, width, height).estimate(10000, 2);
+
+    for (int n = 1; n <= 200; n++) {
+      assertTrue(Math.abs((exact.getColor(n) & 0xFF) - (estimated.getColor(n) & 0xFF)) <= 8);
+    }
+  }}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for reusing the stages of the image generator's pipeline.
+ */
+public class ImageGeneratorTests {
+
+  /**
+   * Test that changing the colour theme reuses the iteration values and histogram, and only
+   * recolours the pixels.
+   */
+  @Test
+  public void testColorThemeReusesIterations() {
+
+    final ImageGenerator generator = new ImageGenerator(TestConfigurations.builder(100).build());
+
+    final int[] pixels = generator.generate(40, 30);
+    final long hits = generator.getRenderMetrics().getStageHits();
+
+    generator.setColorTheme(
+        new ColorGradient(SerializableColor.WHITE, SerializableColor.BLACK, "Inverted"));
+
+    assertFalse(generator.isRecalculationNeeded(40, 30));
+
+    final int[] recoloured = generator.generate(40, 30);
+    final RenderMetrics metrics = generator.getRenderMetrics();
+
+    // The iterate and histogram stages are reused; only the colour stage is rerun.
+    assertEquals(hits + 2, metrics.getStageHits());
+    assertEquals(0, metrics.getIterateTime());
+    assertEquals(0, metrics.getHistogramTime());
+    assertTrue(metrics.getColorTime() > 0);
+
+    assertNotEquals(pixels[0], recoloured[0]);
+  }
+
+  /**
+   * Test that an image generated from a configuration taken earlier uses that configuration
+   * throughout, rather than the current one.
+   */
+  @Test
+  public void testGenerateSnapshot() {
+
+    final ImageGenerator generator = new ImageGenerator(TestConfigurations.builder(100).build());
+    final ImageConfiguration snapshot = TestConfigurations.builder(50).build();
+
+    generator.generate(snapshot, 40, 30, null);
+
+    assertFalse(generator.isRecalculationNeeded(snapshot, 40, 30));
+    assertTrue(generator.isRecalculationNeeded(40, 30));
+    assertEquals(RenderMetrics.countIterations(new MandelbrotSetIterationCountGenerator(
+        TestConfigurations.DEFAULT_BOUND.normalise(40, 30), 50, 2).calculate(40, 30, 1), 50),
+        generator.getRenderMetrics().getIterations());
+  }
+
+  /**
+   * Test that toggling the zoom overlay, which the view draws on top of the pixels, reruns no
+   * stages and returns the same pixels.
+   */
+  @Test
+  public void testOverlayZoomReusesPixels() {
+
+    final ImageGenerator generator = new ImageGenerator(TestConfigurations.builder(100).build());
+
+    final int[] pixels = generator.generate(40, 30);
+    final long hits = generator.getRenderMetrics().getStageHits();
+
+    generator.setOverlayZoom(true);
+    assertSame(pixels, generator.generate(40, 30));
+
+    generator.setOverlayZoom(false);
+    assertSame(pixels, generator.generate(40, 30));
+
+    assertEquals(hits + 6, generator.getRenderMetrics().getStageHits());
+  }
+
+  /**
+   * Test that the palette cycler is reused for every frame without counting more stage lookups,
+   * and made again once the image changes.
+   */
+  @Test
+  public void testPaletteCyclerReused() {
+
+    final ImageGenerator generator = new ImageGenerator(TestConfigurations.builder(100).build());
+
+    final PaletteCycler cycler = generator.getPaletteCycler(40, 30);
+    final long lookups = generator.getRenderMetrics().getStageLookups();
+
+    assertSame(cycler, generator.getPaletteCycler(40, 30));
+    assertEquals(lookups, generator.getRenderMetrics().getStageLookups());
+
+    generator.setColorTheme(
+        new ColorGradient(SerializableColor.WHITE, SerializableColor.BLACK, "Inverted"));
+
+    assertNotSame(cycler, generator.getPaletteCycler(40, 30));
+    assertEquals(lookups + 3, generator.getRenderMetrics().getStageLookups());
+  }
+
+  /**
+   * Test that the pixels are generated in rows from the top of the image, the same order as the
+   * frames of the palette cycler.
+   */
+  @Test
+  public void testPixelOrder() {
+
+    // The bound is not symmetric about the real axis, so flipped rows would not match.
+    final Bound bound = new Bound(new ComplexNumber(-2, -0.2), new ComplexNumber(0.5, 1.2));
+
+    final ImageGenerator generator = new ImageGenerator(
+        TestConfigurations.builder(bound, 100).smoothColoring(true).build());
+
+    final int[] pixels = generator.generate(40, 30);
+
+    assertEquals(40 * 30, pixels.length);
+    assertArrayEquals(pixels, generator.getPaletteCycler(40, 30).cycle(0));
+  }
+
+  /**
+   * Test that a change to the view is told apart from the same view at another resolution.
+   */
+  @Test
+  public void testConfigurationChanged() {
+
+    final ImageGenerator generator = new ImageGenerator(TestConfigurations.builder(100).build());
+
+    assertTrue(generator.isConfigurationChanged());
+
+    generator.generate(40, 30);
+
+    assertTrue(generator.isRecalculationNeeded(80, 60));
+    assertFalse(generator.isConfigurationChanged());
+
+    generator.zoom(40, 30, 10, 30, 5, 25);
+
+    assertTrue(generator.isConfigurationChanged());
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the binary state format.
+ */
+public class ImageStateTests {
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration() {
+
+    final ColorGradient gradient =
+        new ColorGradient(SerializableColor.BLACK, SerializableColor.WHITE, "Test");
+    gradient.setStop(0.5, SerializableColor.rgb(255, 0, 0));
+
+    return TestConfigurations.builder(1000).overlayZoom(true).colorTheme(gradient).build();
+  }
+
+  /**
+   * Write a state and read it back again.
+   *
+   * @param state The state to write.
+   * @return The state that was read.
+   */
+  private ImageState roundTrip(final ImageState state) throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    state.write(out);
+
+    return ImageState.read(new ByteArrayInputStream(out.toByteArray()));
+  }
+
+  /**
+   * Test a configuration without iteration values is read back unchanged.
+   */
+  @Test
+  public void testConfigurationOnly() throws IOException {
+
+    final ImageState state = roundTrip(new ImageState(getConfiguration(), null));
+
+    assertEquals(getConfiguration(), state.getConfiguration());
+    assertEquals("Test", state.getConfiguration().getColorTheme().getName());
+    assertNull(state.getIterationValues());
+  }
+
+  /**
+   * Test the smooth colouring setting is read back unchanged.
+   */
+  @Test
+  public void testSmoothColoring() throws IOException {
+
+    final ImageConfiguration configuration =
+        new ImageConfiguration.Builder().use(getConfiguration()).smoothColoring(true).build();
+
+    final ImageState state = roundTrip(new ImageState(configuration, null));
+
+    assertEquals(configuration, state.getConfiguration());
+    assertTrue(state.getConfiguration().getSmoothColoring());
+    assertFalse(roundTrip(new ImageState(getConfiguration(), null)).getConfiguration()
+        .getSmoothColoring());
+  }
+
+  /**
+   * Test the iteration values are read back unchanged.
+   */
+  @Test
+  public void testIterationValues() throws IOException {
+
+    final int[][] iterationValues =
+        {{1, 1, -1, 1}, {1, 3, -1, 3}, {2, -1, -1, -1}, {1, 2, 3, Integer.MAX_VALUE}};
+
+    final ImageState state = roundTrip(new ImageState(getConfiguration(), iterationValues));
+
+    assertEquals(getConfiguration(), state.getConfiguration());
+    assertEquals(iterationValues.length, state.getIterationValues().length);
+
+    for (int x = 0; x < iterationValues.length; x++) {
+      assertArrayEquals(iterationValues[x], state.getIterationValues()[x]);
+    }
+  }
+
+  /**
+   * Test continuous iteration counts are stored alongside the iteration values.
+   */
+  @Test
+  public void testSmoothIterationValues() throws IOException {
+
+    final int[][] iterationValues = {{1, 1, -1}, {2, 3, -1}};
+    final float[][] smoothIterationValues = {{0.5f, 1.25f, -1}, {2.75f, 3.125f, -1}};
+
+    final ImageState state =
+        roundTrip(new ImageState(getConfiguration(), iterationValues, smoothIterationValues));
+
+    for (int x = 0; x < iterationValues.length; x++) {
+      assertArrayEquals(iterationValues[x], state.getIterationValues()[x]);
+      assertArrayEquals(smoothIterationValues[x], state.getSmoothIterationValues()[x]);
+    }
+
+    assertNull(roundTrip(new ImageState(getConfiguration(), iterationValues))
+        .getSmoothIterationValues());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> new ImageState(getConfiguration(), null, smoothIterationValues));
+  }
+
+  /**
+   * Test the magic number is detected without consuming the stream.
+   */
+  @Test
+  public void testIsImageState() throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ImageState(getConfiguration(), null).write(out);
+
+    final InputStream in = new ByteArrayInputStream(out.toByteArray());
+
+    assertTrue(ImageState.isImageState(in));
+    assertEquals(getConfiguration(), ImageState.read(in).getConfiguration());
+
+    assertFalse(ImageState.isImageState(new ByteArrayInputStream(new byte[] {1, 2, 3, 4})));
+  }
+
+  /**
+   * Test that a state whose iteration values are larger than any image, or are cut short, is
+   * rejected with an exception rather than running out of memory.
+   */
+  @Test
+  public void testInvalidIterationValues() throws IOException {
+
+    final ByteArrayOutputStream configurationOnly = new ByteArrayOutputStream();
+    new ImageState(getConfiguration(), null).write(configurationOnly);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new ImageState(getConfiguration(), new int[64][64]).write(out);
+
+    // The resolution follows the configuration, which is the same length with or without values.
+    final ByteBuffer oversized = ByteBuffer.wrap(out.toByteArray());
+    oversized.putInt(configurationOnly.size(), Integer.MAX_VALUE);
+    oversized.putInt(configurationOnly.size() + 4, Integer.MAX_VALUE);
+
+    assertThrows(IOException.class, () -> {
+      ImageState.read(new ByteArrayInputStream(oversized.array()));
+    });
+
+    final byte[] truncated = Arrays.copyOf(out.toByteArray(), configurationOnly.size() + 10);
+
+    assertThrows(IOException.class, () -> {
+      ImageState.read(new ByteArrayInputStream(truncated));
+    });
+  }
+
+  /**
+   * Test that reading something that is not a state throws an exception.
+   */
+  @Test
+  public void testInvalidMagic() {
+    assertThrows(IOException.class, () -> {
+      ImageState.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6}));
+    });
+  }
+}
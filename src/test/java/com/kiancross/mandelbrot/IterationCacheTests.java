@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the cache of iteration values.
+ */
+public class IterationCacheTests {
+
+  /**
+   * Get a configuration with a given maximum number of iterations.
+   *
+   * @param maximumIterations The maximum number of iterations.
+   * @param smoothColoring Whether smooth colouring is used.
+   * @return The configuration.
+   */
+  private static ImageConfiguration getConfiguration(final int maximumIterations,
+      final boolean smoothColoring) {
+
+    return TestConfigurations.builder(maximumIterations).smoothColoring(smoothColoring).build();
+  }
+
+  /**
+   * Test that cached values are found only for the same image, and lookups are counted.
+   */
+  @Test
+  public void testGet() {
+
+    final IterationCache cache = new IterationCache(1 << 20);
+    final int[][] values = new int[4][3];
+
+    cache.put(getConfiguration(10, false), values, null);
+
+    assertSame(values, cache.get(getConfiguration(10, false), 4, 3).getIterationValues());
+    assertNull(cache.get(getConfiguration(20, false), 4, 3));
+    assertNull(cache.get(getConfiguration(10, false), 3, 4));
+
+    // Smooth colouring needs continuous iteration counts, which were not cached.
+    assertFalse(cache.contains(getConfiguration(10, true), 4, 3));
+
+    assertEquals(1, cache.getEntryCount());
+    assertEquals(4 * 3 * Integer.BYTES, cache.getSize());
+    assertEquals(1 / 3.0, cache.getHitRatio(), 1e-9);
+  }
+
+  /**
+   * Test that the least recently used images are evicted to stay within the budget.
+   */
+  @Test
+  public void testEviction() {
+
+    // Room for two images of 100 bytes.
+    final IterationCache cache = new IterationCache(200);
+
+    cache.put(getConfiguration(1, false), new int[5][5], null);
+    cache.put(getConfiguration(2, false), new int[5][5], null);
+    cache.get(getConfiguration(1, false), 5, 5);
+    cache.put(getConfiguration(3, false), new int[5][5], null);
+
+    assertTrue(cache.contains(getConfiguration(1, false), 5, 5));
+    assertFalse(cache.contains(getConfiguration(2, false), 5, 5));
+    assertTrue(cache.contains(getConfiguration(3, false), 5, 5));
+    assertEquals(200, cache.getSize());
+
+    // Continuous iteration counts double the size, so only one image fits.
+    cache.put(getConfiguration(4, true), new int[5][5], new float[5][5]);
+
+    assertEquals(1, cache.getEntryCount());
+    assertTrue(cache.contains(getConfiguration(4, true), 5, 5));
+
+    cache.setBudget(100);
+
+    assertEquals(0, cache.getEntryCount());
+    assertEquals(0, cache.getSize());
+
+    // An image larger than the whole budget is not cached.
+    cache.put(getConfiguration(5, false), new int[6][5], null);
+
+    assertEquals(0, cache.getEntryCount());
+  }
+}
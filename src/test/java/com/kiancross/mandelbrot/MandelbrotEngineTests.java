@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the management interface of renderers.
+ */
+public class MandelbrotEngineTests {
+
+  /**
+   * Test that the engine's statistics and settings can be read and changed through the platform
+   * MBean server.
+   */
+  @Test
+  public void testRegister() throws JMException {
+
+    final MandelbrotEngine engine = new MandelbrotEngine(4, new IterationCache(1000));
+    final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+    engine.register("test-register");
+
+    try {
+      engine.recordFrame(2_000_000, 100);
+      engine.recordFrame(4_000_000, 50);
+      engine.recordStages(1, 4);
+
+      assertEquals(2L, server.getAttribute(engine.getObjectName(), "FramesRendered"));
+      assertEquals(150L, server.getAttribute(engine.getObjectName(), "IterationsComputed"));
+      assertEquals(3.0, server.getAttribute(engine.getObjectName(), "AverageFrameLatency"));
+      assertEquals(0.25, server.getAttribute(engine.getObjectName(), "StageHitRatio"));
+
+      server.setAttribute(engine.getObjectName(), new Attribute("WorkerCount", 7));
+      server.setAttribute(engine.getObjectName(), new Attribute("CacheBudget", 500L));
+
+      assertEquals(7, engine.getWorkerCount());
+      assertEquals(500, engine.getCache().getBudget());
+
+    } finally {
+      engine.unregister();
+    }
+
+    assertNull(engine.getObjectName());
+    assertFalse(server.queryNames(null, null).stream()
+        .anyMatch(name -> name.toString().contains("test-register")));
+  }
+
+  /**
+   * Test that invalid settings are rejected.
+   */
+  @Test
+  public void testInvalidSettings() {
+
+    final MandelbrotEngine engine = new MandelbrotEngine(1, null);
+
+    assertThrows(IllegalArgumentException.class, () -> engine.setWorkerCount(0));
+    assertThrows(UnsupportedOperationException.class, () -> engine.setCacheBudget(10));
+    assertEquals(0, engine.getCacheBudget());
+  }
+
+  /**
+   * Test that returning to an image the explorer has already calculated takes its iteration
+   * values from the cache, and that frames are counted.
+   */
+  @Test
+  public void testImageGeneratorCache() {
+
+    final ImageGenerator generator = new ImageGenerator(TestConfigurations.builder(100).build());
+
+    final MandelbrotEngine engine = generator.getEngine();
+
+    final int[] first = generator.generate(40, 30);
+    final long iterations = engine.getIterationsComputed();
+
+    generator.zoom(40, 30, 10, 30, 5, 25);
+    generator.generate(40, 30);
+    generator.undo();
+
+    assertFalse(generator.isRecalculationNeeded(40, 30));
+
+    final int[] undone = generator.generate(40, 30);
+
+    assertArrayEquals(first, undone);
+
+    assertEquals(3, engine.getFramesRendered());
+    assertEquals(2, engine.getCacheEntries());
+    assertEquals(1 / 3.0, engine.getCacheHitRatio(), 1e-9);
+    assertTrue(engine.getIterationsComputed() > iterations);
+
+    // Redoing returns to the zoomed image, which is still cached.
+    generator.redo();
+    generator.generate(40, 30);
+
+    assertEquals(0.5, engine.getCacheHitRatio(), 1e-9);
+  }
+
+  /**
+   * Test that the number of workers of a batch renderer can be changed while a batch is running,
+   * and every image is still rendered.
+   */
+  @Test
+  public void testBatchWorkerCount() throws IOException, InterruptedException {
+
+    final Path state = RenderCommandTests.writeStateFile().toPath();
+    final Path directory = Files.createTempDirectory("mandelbrot");
+
+    final List<BatchRenderer.Job> jobs = new ArrayList<BatchRenderer.Job>();
+
+    for (int i = 0; i < 8; i++) {
+      jobs.add(new BatchRenderer.Job(state, directory.resolve(i + ".png"), 400, 300));
+    }
+
+    final BatchRenderer renderer = new BatchRenderer(1);
+    final MandelbrotEngine engine = renderer.getEngine();
+
+    final Thread tuner = new Thread(() -> {
+      for (int count : new int[] {6, 2, 4}) {
+        engine.setWorkerCount(count);
+        Thread.yield();
+      }
+    });
+
+    tuner.start();
+
+    final List<BatchRenderer.Result> results = renderer.render(jobs);
+
+    tuner.join();
+
+    for (BatchRenderer.Result result : results) {
+      assertNull(result.getError());
+    }
+
+    assertEquals(jobs.size(), engine.getFramesRendered());
+    assertEquals(0, engine.getQueueDepth());
+    assertTrue(engine.getIterationsComputed() > 0);
+  }
+}
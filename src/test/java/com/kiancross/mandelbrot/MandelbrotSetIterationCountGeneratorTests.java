@@ -7,6 +7,7 @@ package com.kiancross.mandelbrot;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import org.junit.jupiter.api.Test;
 
@@ -52,6 +53,37 @@ public class MandelbrotSetIterationCountGeneratorTests {
     assertArrayEquals(new int[] {1, 2, 3, 2}, iterationValues[3]);
   }
 
+  /**
+   * Test that the continuous iteration counts lie just below the integer iteration counts they are
+   * derived from.
+   */
+  @Test
+  public void testSmoothIterations() {
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -1.5), new ComplexNumber(1, 1.5)), 200, 4);
+
+    final int[][] iterationValues = generator.calculate(30, 30, 1);
+    final float[][] smoothIterationValues = generator.calculateSmooth(30, 30, 0, 30, 3);
+
+    for (int x = 0; x < 30; x++) {
+      for (int y = 0; y < 30; y++) {
+
+        final int n = iterationValues[x][y];
+        final float smooth = smoothIterationValues[x][y];
+
+        if (n == -1) {
+          assertEquals(-1, smooth);
+        } else {
+          assertTrue(smooth >= n - 1 && smooth < n);
+        }
+      }
+
+      assertArrayEquals(iterationValues[x],
+          MandelbrotSetIterationCountGenerator.toIterationCounts(smoothIterationValues)[x]);
+    }
+  }
+
   /**
    * Test generating values with 0x0 resolution.
    */
@@ -89,4 +121,35 @@ public class MandelbrotSetIterationCountGeneratorTests {
       generator.calculate(10, 10, 0);
     });
   }
+
+  /**
+   * Test generating the values of a strip matches the same rows of the full image.
+   */
+  @Test
+  public void testStrip() {
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -2), new ComplexNumber(2, 2)), 1000, 2);
+
+    final int[][] iterationValues = generator.calculate(4, 4, 1, 3, 2);
+
+    assertArrayEquals(new int[] {1, -1}, iterationValues[0]);
+    assertArrayEquals(new int[] {3, -1}, iterationValues[1]);
+    assertArrayEquals(new int[] {-1, -1}, iterationValues[2]);
+    assertArrayEquals(new int[] {2, 3}, iterationValues[3]);
+  }
+
+  /**
+   * Test that a strip outside of the resolution throws an exception.
+   */
+  @Test
+  public void testStripOutOfRange() {
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -2), new ComplexNumber(2, 2)), 1000, 2);
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      generator.calculate(4, 4, 2, 5, 1);
+    });
+  }
 }
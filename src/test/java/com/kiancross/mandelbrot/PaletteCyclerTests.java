@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for palette cycling.
+ */
+public class PaletteCyclerTests {
+
+  /**
+   * The width of the image in the tests.
+   */
+  private static final int WIDTH = 40;
+
+  /**
+   * The height of the image in the tests.
+   */
+  private static final int HEIGHT = 30;
+
+  /**
+   * Get a generator to use in the tests.
+   *
+   * @return The generator.
+   */
+  private MandelbrotSetIterationCountGenerator getGenerator() {
+    return new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -1), new ComplexNumber(1, 1)).normalise(WIDTH, HEIGHT),
+        100, 4);
+  }
+
+  /**
+   * Get a colour mapper to use in the tests.
+   *
+   * @return The colour mapper.
+   */
+  private HistogramColorMapper getColorMapper() {
+
+    final ColorGradient gradient =
+        new ColorGradient(SerializableColor.BLACK, SerializableColor.WHITE, "Test");
+    gradient.setStop(0.5, SerializableColor.rgb(255, 0, 0));
+
+    return new HistogramColorMapper(100, gradient);
+  }
+
+  /**
+   * Test that a phase of zero gives the same colours as the colour mapper, with the rows in order
+   * from the top of the image.
+   */
+  @Test
+  public void testPhaseZero() {
+
+    final float[][] smoothIterationValues =
+        getGenerator().calculateSmooth(WIDTH, HEIGHT, 0, HEIGHT, 1);
+
+    final HistogramColorMapper colorMapper = getColorMapper();
+    colorMapper.addIterations(smoothIterationValues);
+
+    final int[] frame = new PaletteCycler(colorMapper, smoothIterationValues).cycle(0);
+
+    for (int x = 0; x < WIDTH; x++) {
+      for (int y = 0; y < HEIGHT; y++) {
+        assertEquals(colorMapper.getSmoothColor(smoothIterationValues[x][y]),
+            frame[(HEIGHT - 1 - y) * WIDTH + x]);
+      }
+    }
+  }
+
+  /**
+   * Test that the colours change as the phase increases, repeat with a period of one, and that the
+   * inside of the set stays black.
+   */
+  @Test
+  public void testCycle() {
+
+    final int[][] iterationValues = getGenerator().calculate(WIDTH, HEIGHT, 1);
+
+    final HistogramColorMapper colorMapper = getColorMapper();
+    colorMapper.addIterations(iterationValues);
+
+    final PaletteCycler cycler = new PaletteCycler(colorMapper, iterationValues);
+
+    final int[] start = cycler.cycle(0).clone();
+
+    assertFalse(Arrays.equals(start, cycler.cycle(0.25)));
+    assertArrayEquals(start, cycler.cycle(1));
+    assertArrayEquals(start, cycler.cycle(-2));
+
+    final int[] frame = cycler.cycle(0.4);
+
+    for (int x = 0; x < WIDTH; x++) {
+      for (int y = 0; y < HEIGHT; y++) {
+        if (iterationValues[x][y] == -1) {
+          assertEquals(SerializableColor.BLACK.toArgb(), frame[(HEIGHT - 1 - y) * WIDTH + x]);
+        }
+      }
+    }
+  }
+}
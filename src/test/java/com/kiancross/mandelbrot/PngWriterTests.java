@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the streaming PNG writer. The written images are decoded with
+ * {@link javax.imageio.ImageIO} to check they are valid.
+ */
+public class PngWriterTests {
+
+  /**
+   * Write an image and check the pixels can be read back.
+   *
+   * @param width The width of the image.
+   * @param height The height of the image.
+   * @param numberOfThreads The number of threads to compress the image with.
+   */
+  private void checkReadBack(final int width, final int height, final int numberOfThreads)
+      throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    try (final PngWriter writer = new PngWriter(out, width, height, numberOfThreads)) {
+
+      final int[] row = new int[width];
+
+      for (int y = 0; y < height; y++) {
+        for (int x = 0; x < width; x++) {
+          row[x] = ((x / 3) * 7919 + (y / 5) * 104729) & 0xFFFFFF;
+        }
+
+        writer.writeRow(row);
+      }
+    }
+
+    final BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+
+    assertEquals(width, image.getWidth());
+    assertEquals(height, image.getHeight());
+
+    for (int y = 0; y < height; y++) {
+      for (int x = 0; x < width; x++) {
+        assertEquals(((x / 3) * 7919 + (y / 5) * 104729) & 0xFFFFFF, image.getRGB(x, y) & 0xFFFFFF);
+      }
+    }
+  }
+
+  /**
+   * Test that the pixels written can be read back.
+   */
+  @Test
+  public void testReadBack() throws IOException {
+    checkReadBack(300, 200, 1);
+  }
+
+  /**
+   * Test that the pixels written can be read back when the image is large enough to be split into
+   * several strips that are compressed in parallel.
+   */
+  @Test
+  public void testReadBackMultipleThreads() throws IOException {
+    checkReadBack(1000, 800, 4);
+  }
+
+  /**
+   * Test that an image with multiple strips compressed on a single thread can be read back.
+   */
+  @Test
+  public void testReadBackMultipleStripsOneThread() throws IOException {
+    checkReadBack(1000, 800, 1);
+  }
+
+  /**
+   * Test that closing the writer before all of the rows are written throws an exception.
+   */
+  @Test
+  public void testMissingRows() {
+    assertThrows(IOException.class, () -> {
+      try (final PngWriter writer = new PngWriter(new ByteArrayOutputStream(), 2, 2)) {
+        writer.writeRow(new int[2]);
+      }
+    });
+  }
+
+  /**
+   * Test that a row of the wrong width throws an exception.
+   */
+  @Test
+  public void testWrongRowWidth() throws IOException {
+
+    final PngWriter writer = new PngWriter(new ByteArrayOutputStream(), 2, 2);
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      writer.writeRow(new int[3]);
+    });
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for rendering images of any resolution straight to a PNG.
+ */
+public class PosterRendererTests {
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @param maximumIterations The maximum number of iterations.
+   * @param smoothColoring Whether smooth colouring should be used.
+   * @return The configuration.
+   */
+  private static ImageConfiguration getConfiguration(final int maximumIterations,
+      final boolean smoothColoring) {
+    return TestConfigurations.builder(maximumIterations).smoothColoring(smoothColoring).build();
+  }
+
+  /**
+   * Render an image both in strips and in memory, and check that they are the same.
+   *
+   * @param renderer The renderer.
+   */
+  private static void assertEnginesEqual(final PosterRenderer renderer) throws IOException {
+
+    final ByteArrayOutputStream strips = new ByteArrayOutputStream();
+    renderer.render(strips);
+
+    final ByteArrayOutputStream inMemory = new ByteArrayOutputStream();
+    renderer.renderInMemory(inMemory);
+
+    assertArrayEquals(inMemory.toByteArray(), strips.toByteArray());
+  }
+
+  /**
+   * Test that both engines produce the same image, with and without smooth colouring and
+   * anti-aliasing.
+   */
+  @Test
+  public void testEnginesEqual() throws IOException {
+
+    for (final boolean smoothColoring : new boolean[] {false, true}) {
+
+      final PosterRenderer renderer =
+          new PosterRenderer(getConfiguration(100, smoothColoring), 90, 60, 2);
+
+      for (int samplesPerAxis = 1; samplesPerAxis <= 3; samplesPerAxis++) {
+        renderer.setSupersampling(samplesPerAxis);
+        assertEnginesEqual(renderer);
+      }
+    }
+  }
+
+  /**
+   * Test that both engines produce the same image when the image is split into more than one
+   * strip.
+   */
+  @Test
+  public void testEnginesEqualAcrossStrips() throws IOException {
+
+    final PosterRenderer renderer = new PosterRenderer(getConfiguration(20, false), 2048, 2100, 2);
+
+    assertEnginesEqual(renderer);
+  }
+
+  /**
+   * Test that rendering in strips with an estimated histogram colours every strip the same way, so
+   * the result matches colouring the whole image at once.
+   */
+  @Test
+  public void testEstimatedHistogram() throws IOException {
+
+    final int width = 90;
+    final int height = 60;
+
+    final ImageConfiguration configuration = getConfiguration(200, false);
+
+    final PosterRenderer renderer = new PosterRenderer(configuration, width, height, 2);
+    renderer.setHistogramEstimation(true);
+
+    final ByteArrayOutputStream strips = new ByteArrayOutputStream();
+    renderer.render(strips);
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(width, height), 200, 2);
+
+    final int[][] iterationValues = generator.calculate(width, height, 1);
+    final HistogramColorMapper colorMapper =
+        new HistogramEstimator(configuration, width, height).estimate(2);
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+    try (final PngWriter writer = new PngWriter(expected, width, height, 2)) {
+
+      final int[] row = new int[width];
+
+      for (int y = height - 1; y >= 0; y--) {
+
+        for (int x = 0; x < width; x++) {
+          row[x] = colorMapper.getColor(iterationValues[x][y]);
+        }
+
+        writer.writeRow(row);
+      }
+    }
+
+    assertArrayEquals(expected.toByteArray(), strips.toByteArray());
+  }
+
+  /**
+   * Test that invalid arguments are rejected.
+   */
+  @Test
+  public void testInvalidArguments() {
+
+    final ImageConfiguration configuration = getConfiguration(100, false);
+
+    assertThrows(IllegalArgumentException.class, () -> new PosterRenderer(null, 10, 10, 1));
+    assertThrows(IllegalArgumentException.class, () -> new PosterRenderer(configuration, 0, 0, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PosterRenderer(configuration, -5, 10, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new PosterRenderer(configuration, 10, 10, 1).setSupersampling(0));
+  }
+}
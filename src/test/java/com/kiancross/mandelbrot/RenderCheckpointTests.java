@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for saving and resuming long renders.
+ */
+public class RenderCheckpointTests {
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @param maximumIterations The maximum number of iterations.
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration(final int maximumIterations) {
+    return TestConfigurations.builder(maximumIterations).build();
+  }
+
+  /**
+   * Test that a saved strip is loaded back unchanged, and that a corrupt strip is discarded.
+   */
+  @Test
+  public void testSaveAndLoad() throws IOException {
+
+    final Path directory = Files.createTempDirectory("mandelbrot");
+    final int[][] strip = {{1, 2, 3}, {-1, 5, 6}};
+
+    RenderCheckpoint checkpoint = new RenderCheckpoint(directory, getConfiguration(10), 2, 9, 3);
+
+    assertNull(checkpoint.load(0, 3));
+    checkpoint.save(1, strip);
+
+    // Reopening the checkpoint for the same job keeps the saved strips.
+    checkpoint = new RenderCheckpoint(directory, getConfiguration(10), 2, 9, 3);
+
+    final int[][] loaded = checkpoint.load(1, 3);
+
+    for (int x = 0; x < strip.length; x++) {
+      assertArrayEquals(strip[x], loaded[x]);
+    }
+
+    final Path file = directory.resolve("strip-000001.bin");
+    final byte[] contents = Files.readAllBytes(file);
+
+    Files.write(file, Arrays.copyOf(contents, contents.length - 3));
+
+    assertNull(checkpoint.load(1, 3));
+    assertFalse(Files.exists(file));
+  }
+
+  /**
+   * Test that a checkpoint for a different job is rejected.
+   */
+  @Test
+  public void testDifferentJob() throws IOException {
+
+    final Path directory = Files.createTempDirectory("mandelbrot");
+
+    new RenderCheckpoint(directory, getConfiguration(10), 2, 9, 3);
+
+    assertThrows(IOException.class, () -> {
+      new RenderCheckpoint(directory, getConfiguration(20), 2, 9, 3);
+    });
+  }
+
+  /**
+   * Test that an interrupted render is resumed from its checkpoint, producing the same image as an
+   * uninterrupted render, and that the checkpoint is deleted afterwards.
+   */
+  @Test
+  public void testResume() throws IOException {
+
+    final Path directory = Files.createTempDirectory("mandelbrot").resolve("checkpoint");
+    final PosterRenderer renderer = new PosterRenderer(getConfiguration(50), 300, 40000, 2);
+
+    // Fail as soon as the image starts being written, after the first pass has saved every strip.
+    final OutputStream failing = new OutputStream() {
+      @Override
+      public void write(final int b) throws IOException {
+        throw new IOException("Interrupted");
+      }
+    };
+
+    assertThrows(IOException.class, () -> {
+      renderer.render(failing, directory);
+    });
+
+    assertTrue(Files.exists(directory.resolve("strip-000000.bin")));
+
+    final ByteArrayOutputStream resumed = new ByteArrayOutputStream();
+    renderer.render(resumed, directory);
+
+    assertFalse(Files.exists(directory));
+
+    final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    renderer.render(expected);
+
+    assertArrayEquals(expected.toByteArray(), resumed.toByteArray());
+  }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the headless command line renderer.
+ */
+public class RenderCommandTests {
+
+  /**
+   * Write a state file to use in the tests.
+   *
+   * @return The state file.
+   */
+  static File writeStateFile() throws IOException {
+    return writeStateFile(TestConfigurations.builder(100).build());
+  }
+
+  /**
+   * Write a state file of a configuration to use in the tests.
+   *
+   * @param configuration The configuration.
+   * @return The state file.
+   */
+  static File writeStateFile(final ImageConfiguration configuration) throws IOException {
+
+    final File file = File.createTempFile("mandelbrot", ".state");
+    file.deleteOnExit();
+
+    try (final OutputStream out = new FileOutputStream(file)) {
+      new ImageState(configuration, null).write(out);
+    }
+
+    return file;
+  }
+
+  /**
+   * Run the command, discarding anything it prints.
+   *
+   * @param args The arguments.
+   * @return The exit status.
+   */
+  static int run(final String... args) {
+    final PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+    return RenderCommand.run(args, discard, discard);
+  }
+
+  /**
+   * Test that an image predicted to take longer than the maximum time is reduced in resolution,
+   * keeping its aspect ratio.
+   */
+  @Test
+  public void testFitToTime() {
+
+    final ImageConfiguration configuration = TestConfigurations.builder(100).build();
+
+    final PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+
+    final long iterations =
+        new RenderCostEstimator(configuration, 400, 300).estimate(2).getIterations();
+
+    // A throughput at which the full image would take 100 seconds.
+    final int[] size =
+        RenderCommand.fitToTime(configuration, 400, 300, 2, 25, iterations / 100.0, discard);
+
+    assertEquals(200, size[0], 1);
+    assertEquals(150, size[1], 1);
+
+    final int[] unchanged =
+        RenderCommand.fitToTime(configuration, 400, 300, 2, 25, iterations, discard);
+
+    assertEquals(400, unchanged[0]);
+    assertEquals(300, unchanged[1]);
+  }
+
+  /**
+   * Test that both engines render an image of the requested size.
+   */
+  @Test
+  public void testRender() throws IOException {
+
+    final File state = writeStateFile();
+
+    for (String engine : new String[] {"memory", "strip"}) {
+
+      final File output = File.createTempFile("mandelbrot", ".png");
+      output.deleteOnExit();
+
+      assertEquals(0, run("--width", "64", "--height", "48", "--threads", "2", "--engine", engine,
+          state.getPath(), output.getPath()));
+
+      final BufferedImage image = ImageIO.read(output);
+
+      assertEquals(64, image.getWidth());
+      assertEquals(48, image.getHeight());
+    }
+  }
+
+  /**
+   * Test that invalid arguments are rejected.
+   */
+  @Test
+  public void testInvalidArguments() {
+    assertEquals(2, run("only-one-file"));
+    assertEquals(2, run("--engine", "gpu", "a", "b"));
+    assertEquals(2, run("--width", "-5", "a", "b"));
+    assertEquals(2, run("a", "b", "--height"));
+    assertEquals(2, run("--histogram", "guess", "a", "b"));
+    assertEquals(2, run("--histogram", "estimated", "--engine", "memory", "a", "b"));
+  }
+
+  /**
+   * Test that options a batch or an animation would ignore are rejected rather than accepted.
+   */
+  @Test
+  public void testUnsupportedOptions() throws IOException {
+
+    final String state = writeStateFile().getPath();
+    final String directory = Files.createTempDirectory("mandelbrot").toString();
+
+    assertEquals(2, run("--output-dir", directory, "--antialias", "2", state));
+    assertEquals(2, run("--output-dir", directory, "--engine", "strip", state));
+    assertEquals(2, run("--output-dir", directory, "--engine", "exponential-map", state));
+    assertEquals(2, run("--frames", "3", "--zoom-to", "-1,-0.1,-0.8,0.1", "--antialias", "2",
+        state, directory));
+
+    for (String[] option : new String[][] {{"--checkpoint", directory},
+        {"--histogram", "estimated"}, {"--engine", "memory"}, {"--engine", "strip"}}) {
+
+      assertEquals(2, run("--frames", "3", "--zoom-to", "-1,-0.1,-0.8,0.1", option[0], option[1],
+          state, directory));
+    }
+
+    assertEquals(0, run("--width", "8", "--height", "4", "--output-dir", directory, state));
+  }
+
+  /**
+   * Test that a warning is written when a state file that uses smooth colouring is rendered as a
+   * batch or an animation, which colour by whole iteration counts.
+   */
+  @Test
+  public void testSmoothColoringWarning() throws IOException {
+
+    final String state =
+        writeStateFile(TestConfigurations.builder(100).smoothColoring(true).build()).getPath();
+    final String directory = Files.createTempDirectory("mandelbrot").toString();
+
+    final String[][] commands = {
+        {"--width", "8", "--height", "4", "--output-dir", directory, state},
+        {"--width", "8", "--height", "4", "--frames", "2", "--zoom-to", "-1,-0.1,-0.8,0.1", state,
+            directory},
+        {"--width", "8", "--height", "4", "--frames", "2", "--zoom-to", "-1,-0.1,-0.8,0.1",
+            "--engine", "exponential-map", state, directory}};
+
+    for (String[] command : commands) {
+
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      final PrintStream discard = new PrintStream(new ByteArrayOutputStream());
+
+      assertEquals(0, RenderCommand.run(command, new PrintStream(out, true, "UTF-8"), discard));
+      assertTrue(out.toString("UTF-8").contains("smooth colouring"));
+    }
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final PrintStream printOut = new PrintStream(out, true, "UTF-8");
+
+    RenderCommand.run(new String[] {"--width", "8", "--height", "4", "--output-dir", directory,
+        writeStateFile().getPath()}, printOut, printOut);
+
+    assertFalse(out.toString("UTF-8").contains("smooth colouring"));
+  }
+
+  /**
+   * Test that a missing state file is reported as a failure.
+   */
+  @Test
+  public void testMissingStateFile() {
+    assertTrue(run("does-not-exist.state", "out.png") != 0);
+  }
+
+  /**
+   * Test that options are separated from files.
+   */
+  @Test
+  public void testParseArguments() {
+
+    final Map<String, String> options = new HashMap<String, String>();
+    final List<String> files = new ArrayList<String>();
+
+    RenderCommand.parseArguments(new String[] {"a", "--width", "10", "b"}, options, files);
+
+    assertEquals("10", options.get("width"));
+    assertEquals(List.of("a", "b"), files);
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      RenderCommand.parsePositive(Map.of("threads", "zero"), "threads", 1);
+    });
+  }
+}
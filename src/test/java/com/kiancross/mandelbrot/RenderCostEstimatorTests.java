@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for predicting the cost of images.
+ */
+public class RenderCostEstimatorTests {
+
+  /**
+   * Get a configuration with a given bound.
+   *
+   * @param bound The bound.
+   * @return The configuration.
+   */
+  private static ImageConfiguration getConfiguration(final Bound bound) {
+    return TestConfigurations.builder(bound, 500).build();
+  }
+
+  /**
+   * Test that a sparse sample predicts the iterations of the whole image, for a view that is
+   * mostly cheap and a view that is mostly inside the set.
+   */
+  @Test
+  public void testEstimateIterations() {
+
+    final Bound[] bounds = {TestConfigurations.DEFAULT_BOUND,
+        new Bound(new ComplexNumber(-0.5, -0.3), new ComplexNumber(0.1, 0.3))};
+
+    for (Bound bound : bounds) {
+
+      final ImageConfiguration configuration = getConfiguration(bound);
+
+      final long actual = RenderMetrics.countIterations(
+          new MandelbrotSetIterationCountGenerator(bound.normalise(400, 300), 500, 2)
+              .calculate(400, 300, 4), 500);
+
+      final RenderCostEstimator.Estimate estimate =
+          new RenderCostEstimator(configuration, 400, 300).estimate(4);
+
+      assertEquals(actual, estimate.getIterations(), actual * 0.15);
+      assertEquals(estimate.getIterations() / 120000.0, estimate.getIterationsPerPixel(), 1e-6);
+    }
+  }
+
+  /**
+   * Test the time and tile sizes derived from an estimate.
+   */
+  @Test
+  public void testDerivedFigures() {
+
+    final RenderCostEstimator.Estimate estimate = new RenderCostEstimator.Estimate(4000, 100);
+
+    assertEquals(2_000_000_000L, estimate.getTime(2000));
+    assertEquals(250, estimate.getPixelsPerTile(10000, 1, 1000));
+    assertEquals(300, estimate.getPixelsPerTile(10000, 300, 1000));
+    assertEquals(200, estimate.getPixelsPerTile(10000, 1, 200));
+
+    assertTrue(RenderCostEstimator.measureThroughput(2) > 0);
+  }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the Flight Recorder events emitted while rendering.
+ */
+public class RenderEventTests {
+
+  /**
+   * The maximum number of iterations of the images in the tests.
+   */
+  private static final int MAXIMUM_ITERATIONS = 50;
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration() {
+    return TestConfigurations.builder(MAXIMUM_ITERATIONS).build();
+  }
+
+  /**
+   * Run some work inside a recording with the render events enabled.
+   *
+   * @param work The work to run.
+   * @return The render events that were recorded.
+   */
+  private List<RecordedEvent> record(final Runnable work) throws IOException {
+
+    final Path file = Files.createTempFile("mandelbrot", ".jfr");
+
+    try (final Recording recording = new Recording()) {
+
+      recording.enable(RenderJobEvent.class).withoutThreshold();
+      recording.enable(RenderStageEvent.class).withoutThreshold();
+      recording.enable(RenderTileEvent.class).withoutThreshold();
+
+      recording.start();
+      work.run();
+      recording.stop();
+      recording.dump(file);
+
+      return RecordingFile.readAllEvents(file).stream()
+          .filter(event -> event.getEventType().getName().startsWith("com.kiancross.mandelbrot"))
+          .collect(Collectors.toList());
+
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  /**
+   * Test the events of rendering a poster in memory.
+   */
+  @Test
+  public void testPosterRenderer() throws IOException {
+
+    final List<RecordedEvent> events = record(() -> {
+      try {
+        new PosterRenderer(getConfiguration(), 60, 40, 2)
+            .renderInMemory(new ByteArrayOutputStream());
+
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    });
+
+    assertEquals(1, events.size());
+
+    final RecordedEvent event = events.get(0);
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        getConfiguration().getBound().normalise(60, 40), MAXIMUM_ITERATIONS, 2);
+
+    assertEquals("memory", event.getString("engine"));
+    assertEquals(60, event.getInt("width"));
+    assertEquals(40, event.getInt("height"));
+    assertEquals(MAXIMUM_ITERATIONS, event.getInt("maximumIterations"));
+    assertEquals(RenderMetrics.countIterations(generator.calculate(60, 40, 1), MAXIMUM_ITERATIONS),
+        event.getLong("iterations"));
+    assertEquals(getConfiguration().getBound().normalise(60, 40).getMinimum().getReal(),
+        event.getDouble("minimumReal"));
+  }
+
+  /**
+   * Test that an event is recorded for each tile, and that their iterations add up to the whole
+   * image.
+   */
+  @Test
+  public void testTileRenderer() throws IOException {
+
+    final TileRenderer renderer = new TileRenderer(getConfiguration(), 300, 200, 2);
+
+    final List<RecordedEvent> events = record(renderer::render);
+
+    // The tile renderer only records tile events.
+    final long tileIterations =
+        events.stream().mapToLong(event -> event.getLong("iterations")).sum();
+
+    final long tileArea = events.stream()
+        .mapToLong(event -> event.getInt("tileWidth") * event.getInt("tileHeight")).sum();
+
+    assertTrue(events.size() > 1);
+    assertEquals(300 * 200, tileArea);
+    assertEquals(
+        RenderMetrics.countIterations(renderer.getIterationValues(), MAXIMUM_ITERATIONS),
+        tileIterations);
+  }
+
+  /**
+   * Test the job and stage events of the explorer's image generator, and that stages that are
+   * reused are not recorded.
+   */
+  @Test
+  public void testImageGenerator() throws IOException {
+
+    final ImageGenerator generator = new ImageGenerator(getConfiguration());
+
+    final List<RecordedEvent> events = record(() -> {
+      generator.generate(40, 30);
+      generator.generate(40, 30);
+    });
+
+    final List<String> names = events.stream()
+        .map(event -> event.hasField("stage") ? event.getString("stage")
+            : event.getString("engine"))
+        .collect(Collectors.toList());
+
+    assertEquals(List.of("normalise", "iterate", "histogram", "colour", "threads", "cached"),
+        names);
+
+    assertEquals(events.get(1).getLong("iterations"), events.get(4).getLong("iterations"));
+    assertEquals(0, events.get(5).getLong("iterations"));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the metrics of rendered frames.
+ */
+public class RenderMetricsTests {
+
+  /**
+   * Test counting the iterations done to calculate iteration values.
+   */
+  @Test
+  public void testCountIterations() {
+    assertEquals(1 + 3 + 10 + 2,
+        RenderMetrics.countIterations(new int[][] {{1, 3}, {-1, 2}}, 10));
+  }
+
+  /**
+   * Test the figures derived from the measurements.
+   */
+  @Test
+  public void testDerivedFigures() {
+
+    final RenderMetrics metrics = new RenderMetrics.Builder().normaliseTime(1).iterateTime(2000)
+        .histogramTime(3).colorTime(4).blitTime(5).iterations(1000).stageCache(1, 4).build();
+
+    assertEquals(2013, metrics.getTotalTime());
+    assertEquals(5e8, metrics.getIterationsPerSecond(), 1e-6);
+    assertEquals(0.25, metrics.getCacheHitRate(), 1e-9);
+
+    final RenderMetrics empty = new RenderMetrics.Builder().build();
+
+    assertEquals(0, empty.getIterationsPerSecond());
+    assertEquals(0, empty.getCacheHitRate());
+  }
+
+  /**
+   * Test that the time of each worker thread is recorded.
+   */
+  @Test
+  public void testWorkerBusyTimes() {
+
+    final MandelbrotSetIterationCountGenerator generator = new MandelbrotSetIterationCountGenerator(
+        new Bound(new ComplexNumber(-2, -2), new ComplexNumber(2, 2)), 100, 2);
+
+    assertEquals(0, generator.getWorkerBusyTimes().length);
+
+    generator.calculate(30, 20, 3);
+
+    assertEquals(3, generator.getWorkerBusyTimes().length);
+
+    for (long busyTime : generator.getWorkerBusyTimes()) {
+      assertTrue(busyTime > 0);
+    }
+  }
+
+  /**
+   * Test the metrics recorded by the image generator, including that frames made entirely from
+   * reused stages keep the times of the last frame.
+   */
+  @Test
+  public void testImageGenerator() {
+
+    final ImageGenerator generator = new ImageGenerator(TestConfigurations.GREY);
+
+    final int[] pixels = generator.generate(40, 30);
+    final RenderMetrics first = generator.getRenderMetrics();
+
+    assertTrue(first.getIterateTime() > 0);
+    assertTrue(first.getHistogramTime() > 0);
+    assertTrue(first.getColorTime() > 0);
+    assertEquals(0, first.getBlitTime());
+    assertEquals(0, first.getCacheHitRate());
+
+    final int[] pixelsAgain = generator.generate(40, 30);
+
+    assertSame(pixels, pixelsAgain);
+
+    generator.recordBlitTime(7);
+
+    final RenderMetrics second = generator.getRenderMetrics();
+
+    assertEquals(first.getIterateTime(), second.getIterateTime());
+    assertEquals(first.getIterations(), second.getIterations());
+    assertEquals(7, second.getBlitTime());
+    assertEquals(0.5, second.getCacheHitRate(), 1e-9);
+  }
+}
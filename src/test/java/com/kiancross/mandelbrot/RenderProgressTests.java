@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for reporting the progress of calculations.
+ */
+public class RenderProgressTests {
+
+  /**
+   * Test the progress and estimates derived from the reported pixels.
+   */
+  @Test
+  public void testEstimates() throws InterruptedException {
+
+    final RenderProgress progress = new RenderProgress(100);
+
+    assertEquals(0, progress.getFraction(), 1e-9);
+    assertEquals(-1, progress.getEstimatedTimeRemaining());
+
+    progress.record(25, 1000);
+
+    Thread.sleep(5);
+
+    assertEquals(0.25, progress.getFraction(), 1e-9);
+    assertEquals(3000, progress.getEstimatedRemainingIterations());
+    assertFalse(progress.isDone());
+    assertTrue(progress.getIterationRate() > 0);
+    assertTrue(progress.getEstimatedTimeRemaining() > 0);
+
+    progress.record(75, 3000);
+
+    assertTrue(progress.isDone());
+    assertEquals(0, progress.getEstimatedTimeRemaining());
+    assertEquals(1, new RenderProgress(0).getFraction(), 1e-9);
+  }
+
+  /**
+   * Test that every pixel, and every iteration, of a multithreaded calculation is reported.
+   */
+  @Test
+  public void testGeneratorReportsEveryPixel() {
+
+    final MandelbrotSetIterationCountGenerator generator =
+        new MandelbrotSetIterationCountGenerator(TestConfigurations.DEFAULT_BOUND, 200, 2);
+
+    final RenderProgress progress = new RenderProgress(97 * 61);
+    generator.setProgress(progress);
+
+    final int[][] values = generator.calculate(97, 61, 5);
+
+    assertTrue(progress.isDone());
+    assertEquals(97 * 61, progress.getCompletedPixels());
+    assertEquals(RenderMetrics.countIterations(values, 200), progress.getIterations());
+
+    final RenderProgress smoothProgress = new RenderProgress(97 * 61);
+    generator.setProgress(smoothProgress);
+
+    final float[][] smoothValues = generator.calculateSmooth(97, 61, 0, 61, 3);
+
+    assertEquals(97 * 61, smoothProgress.getCompletedPixels());
+    assertEquals(RenderMetrics.countIterations(smoothValues, 200), smoothProgress.getIterations());
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.prefs.BackingStoreException;
+import java.util.prefs.Preferences;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for learning the number of workers and the size of tiles.
+ */
+public class RenderTunerTests {
+
+  /**
+   * The number of iterations of the renders in the tests.
+   */
+  private static final long ITERATIONS = 1L << 30;
+
+  /**
+   * Tell a tuner about a render using its chosen settings, in which every worker was busy for the
+   * whole render.
+   *
+   * @param tuner The tuner.
+   * @param tiles The number of tiles.
+   * @param time The time the render took, in nanoseconds.
+   */
+  private static void record(final RenderTuner tuner, final int tiles, final long time) {
+
+    final long[] busyTimes = new long[tuner.getWorkerCount()];
+    Arrays.fill(busyTimes, time);
+
+    tuner.record(tuner.getWorkerCount(), tuner.getIterationsPerTile(), tiles, ITERATIONS, time,
+        busyTimes);
+  }
+
+  /**
+   * Test that a trial number of workers is kept only if it is faster.
+   */
+  @Test
+  public void testWorkerTrials() {
+
+    final RenderTuner tuner = new RenderTuner(1000, null);
+    final int workers = tuner.getWorkerCount();
+
+    // The first render sets the throughput to beat, and a trial of more workers follows.
+    record(tuner, 1000, 1_000_000_000);
+
+    final int more = workers + Math.max(1, workers / 4);
+    assertEquals(more, tuner.getWorkerCount());
+
+    // The trial is faster, so it is kept.
+    record(tuner, 1000, 500_000_000);
+    assertEquals(more, tuner.getWorkerCount());
+
+    // The next trial is of fewer workers, which is slower, so is abandoned.
+    record(tuner, 1000, 500_000_000);
+    assertEquals(more - Math.max(1, more / 4), tuner.getWorkerCount());
+
+    record(tuner, 1000, 600_000_000);
+    assertEquals(more, tuner.getWorkerCount());
+    assertEquals(4, tuner.getSamples());
+  }
+
+  /**
+   * Test that tiles are made larger when they are quick, and smaller when workers are idle.
+   */
+  @Test
+  public void testTileSize() {
+
+    final RenderTuner tuner = new RenderTuner(1000, null);
+    final long iterationsPerTile = tuner.getIterationsPerTile();
+    final int workers = tuner.getWorkerCount();
+
+    // A hundred thousand tiles in a tenth of a second take a microsecond or so each.
+    record(tuner, 100_000, 100_000_000);
+    assertEquals(2 * iterationsPerTile, tuner.getIterationsPerTile());
+    assertEquals(workers, tuner.getWorkerCount());
+
+    // Each worker is only busy for half of the render, and has just one tile.
+    final long[] busyTimes = new long[workers];
+    Arrays.fill(busyTimes, 500_000_000);
+
+    tuner.record(workers, tuner.getIterationsPerTile(), workers, ITERATIONS, 1_000_000_000,
+        busyTimes);
+
+    assertEquals(0.5, tuner.getIdleFraction(), 1e-9);
+    assertEquals(500_000_000, tuner.getTileTime());
+    assertEquals(iterationsPerTile, tuner.getIterationsPerTile());
+  }
+
+  /**
+   * Test that cheap renders are not learned from, and that settings changed by hand are continued
+   * from.
+   */
+  @Test
+  public void testIgnoredAndChangedSettings() {
+
+    final RenderTuner tuner = new RenderTuner(1000, null);
+
+    tuner.record(3, 1 << 20, 100, 1000, 1_000_000, new long[3]);
+    assertEquals(0, tuner.getSamples());
+
+    final long[] busyTimes = new long[7];
+    Arrays.fill(busyTimes, 1_000_000_000);
+
+    tuner.record(7, 1 << 20, 1000, ITERATIONS, 1_000_000_000, busyTimes);
+
+    assertEquals(7, tuner.getWorkerCount());
+    assertEquals(1 << 20, tuner.getIterationsPerTile());
+  }
+
+  /**
+   * Test that the learned settings are saved and loaded again.
+   */
+  @Test
+  public void testPreferences() throws BackingStoreException {
+
+    final Preferences preferences =
+        Preferences.userNodeForPackage(RenderTunerTests.class).node("testPreferences");
+
+    try {
+      final RenderTuner tuner = new RenderTuner(1000, preferences);
+
+      final long[] busyTimes = new long[5];
+      Arrays.fill(busyTimes, 1_000_000_000);
+
+      tuner.record(5, 1 << 21, 1000, ITERATIONS, 1_000_000_000, busyTimes);
+
+      final RenderTuner loaded = new RenderTuner(1000, preferences);
+
+      assertEquals(5, loaded.getWorkerCount());
+      assertEquals(1 << 21, loaded.getIterationsPerTile());
+
+    } finally {
+      preferences.removeNode();
+    }
+  }
+}
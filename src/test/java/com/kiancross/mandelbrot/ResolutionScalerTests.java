@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for reducing the resolution of images while the user is interacting.
+ */
+public class ResolutionScalerTests {
+
+  /**
+   * Test that the divisor brings the predicted time within the target.
+   */
+  @Test
+  public void testDivisor() {
+
+    final ResolutionScaler scaler = new ResolutionScaler(0.05, 8);
+
+    assertEquals(1, scaler.getDivisor(0));
+    assertEquals(1, scaler.getDivisor(0.05));
+
+    // Halving the width and height quarters the time.
+    assertEquals(2, scaler.getDivisor(0.2));
+    assertEquals(3, scaler.getDivisor(0.21));
+
+    // Very slow images are limited to the maximum divisor.
+    assertEquals(8, scaler.getDivisor(1000));
+    assertEquals(1, scaler.getDivisor(Double.NaN));
+  }
+
+  /**
+   * Test that reduced resolutions cover the whole image.
+   */
+  @Test
+  public void testScale() {
+    assertEquals(1920, ResolutionScaler.scale(1920, 1));
+    assertEquals(640, ResolutionScaler.scale(1920, 3));
+    assertEquals(101, ResolutionScaler.scale(801, 8));
+    assertEquals(1, ResolutionScaler.scale(5, 8));
+    assertEquals(0, ResolutionScaler.scale(0, 8));
+  }
+
+  /**
+   * Test that invalid settings are rejected.
+   */
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> new ResolutionScaler(0, 8));
+    assertThrows(IllegalArgumentException.class, () -> new ResolutionScaler(0.05, 0));
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for recording and replaying explorer sessions.
+ */
+public class SessionRecorderTests {
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @param maximumIterations The maximum number of iterations of the configuration.
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration(final int maximumIterations) {
+    return TestConfigurations.builder(maximumIterations).build();
+  }
+
+  /**
+   * Record a session through a configuration manager, as the explorer does.
+   *
+   * @return The recording.
+   */
+  private byte[] recordSession() throws IOException {
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ImageConfigurationManager manager = new ImageConfigurationManager(getConfiguration(50));
+
+    // Changes made before recording starts are summarised by the current configuration.
+    manager.addConfiguration(getConfiguration(60));
+
+    try (final SessionRecorder recorder = new SessionRecorder(out, 40, 30)) {
+
+      manager.setSessionRecorder(recorder);
+
+      manager.addConfiguration(getConfiguration(70));
+
+      // Not a change, so not recorded.
+      manager.addConfiguration(getConfiguration(70));
+
+      recorder.setSize(40, 30);
+      recorder.setSize(20, 10);
+
+      manager.undo();
+      manager.undo();
+      manager.redo();
+      manager.resetAll();
+
+      manager.setSessionRecorder(null);
+      manager.addConfiguration(getConfiguration(80));
+    }
+
+    return out.toByteArray();
+  }
+
+  /**
+   * Test that the interactions read back are the ones recorded.
+   */
+  @Test
+  public void testRoundTrip() throws IOException {
+
+    final List<SessionEvent> events =
+        SessionRecorder.read(new ByteArrayInputStream(recordSession()));
+
+    final SessionEvent.Type[] expectedTypes = {SessionEvent.Type.START, SessionEvent.Type.ADD,
+        SessionEvent.Type.ADD, SessionEvent.Type.RESIZE, SessionEvent.Type.UNDO,
+        SessionEvent.Type.UNDO, SessionEvent.Type.REDO, SessionEvent.Type.RESET};
+
+    assertArrayEquals(expectedTypes,
+        events.stream().map(SessionEvent::getType).toArray(SessionEvent.Type[]::new));
+
+    assertEquals(getConfiguration(50), events.get(0).getConfiguration());
+    assertEquals(getConfiguration(60), events.get(1).getConfiguration());
+    assertEquals(getConfiguration(70), events.get(2).getConfiguration());
+    assertNull(events.get(4).getConfiguration());
+
+    assertEquals(40, events.get(2).getWidth());
+    assertEquals(30, events.get(2).getHeight());
+    assertEquals(20, events.get(3).getWidth());
+    assertEquals(10, events.get(7).getHeight());
+
+    for (int i = 1; i < events.size(); i++) {
+      assertTrue(events.get(i).getTime() >= events.get(i - 1).getTime());
+    }
+  }
+
+  /**
+   * Test that invalid recordings are rejected.
+   */
+  @Test
+  public void testInvalidRecordings() throws IOException {
+
+    final byte[] recording = recordSession();
+
+    assertThrows(IOException.class,
+        () -> SessionRecorder.read(new ByteArrayInputStream(new byte[] {'M', 'B', 'S', 'T'})));
+
+    assertThrows(IOException.class, () -> SessionRecorder
+        .read(new ByteArrayInputStream(Arrays.copyOf(recording, recording.length - 1))));
+
+    // A header without any interactions.
+    final byte[] header = Arrays.copyOf(recording, SessionRecorder.MAGIC.length + 2);
+
+    assertThrows(IOException.class, () -> SessionRecorder.read(new ByteArrayInputStream(header)));
+  }
+
+  /**
+   * Test that replaying a session generates an image after each interaction.
+   */
+  @Test
+  public void testReplay() throws IOException {
+
+    final List<SessionEvent> events =
+        SessionRecorder.read(new ByteArrayInputStream(recordSession()));
+
+    final long[] latencies = new SessionReplayer(events).replay();
+
+    assertEquals(events.size(), latencies.length);
+
+    for (long latency : latencies) {
+      assertTrue(latency >= 0);
+    }
+  }
+
+  /**
+   * Test that undoing and redoing beyond the changes made during the recording is skipped.
+   */
+  @Test
+  public void testReplaySkipsUnreplayableInteractions() {
+
+    final List<SessionEvent> events = Arrays.asList(
+        new SessionEvent(SessionEvent.Type.START, 0, 20, 10, getConfiguration(50)),
+        new SessionEvent(SessionEvent.Type.UNDO, 1, 20, 10, null),
+        new SessionEvent(SessionEvent.Type.REDO, 2, 20, 10, null),
+        new SessionEvent(SessionEvent.Type.RESIZE, 3, 0, 10, null));
+
+    final long[] latencies = new SessionReplayer(events).replay();
+
+    assertTrue(latencies[0] >= 0);
+    assertEquals(-1, latencies[1]);
+    assertEquals(-1, latencies[2]);
+    assertEquals(-1, latencies[3]);
+  }
+
+  /**
+   * Test the nearest rank percentiles of the report.
+   */
+  @Test
+  public void testPercentile() {
+
+    final long[] sorted = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+
+    assertEquals(5, SessionReplayer.percentile(sorted, 50));
+    assertEquals(9, SessionReplayer.percentile(sorted, 90));
+    assertEquals(10, SessionReplayer.percentile(sorted, 99));
+    assertEquals(1, SessionReplayer.percentile(sorted, 0));
+  }
+}
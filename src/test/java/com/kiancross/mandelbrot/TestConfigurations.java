@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+/**
+ * Configurations shared by the tests.
+ */
+final class TestConfigurations {
+
+  /**
+   * The region of the plane the explorer starts at, which shows the whole set.
+   */
+  static final Bound DEFAULT_BOUND =
+      new Bound(new ComplexNumber(-2, -1.25), new ComplexNumber(0.7, 1.25));
+
+  /**
+   * A colour theme from black to white.
+   */
+  static final ColorGradient GREY =
+      new ColorGradient(SerializableColor.BLACK, SerializableColor.WHITE, "Grey");
+
+  /**
+   * Not instantiable.
+   */
+  private TestConfigurations() {}
+
+  /**
+   * Get a builder for a configuration of a region of the plane, with an escape radius of 2 and the
+   * grey colour theme, which tests can change further.
+   *
+   * @param bound The region of the plane.
+   * @param maximumIterations The maximum number of iterations.
+   * @return The builder.
+   */
+  static ImageConfiguration.Builder builder(final Bound bound, final int maximumIterations) {
+    return new ImageConfiguration.Builder().bound(bound).escapeRadius(2)
+        .maximumIterations(maximumIterations).colorTheme(GREY);
+  }
+
+  /**
+   * Get a builder for a configuration of the default region of the plane, with an escape radius of
+   * 2 and the grey colour theme, which tests can change further.
+   *
+   * @param maximumIterations The maximum number of iterations.
+   * @return The builder.
+   */
+  static ImageConfiguration.Builder builder(final int maximumIterations) {
+    return builder(DEFAULT_BOUND, maximumIterations);
+  }
+}
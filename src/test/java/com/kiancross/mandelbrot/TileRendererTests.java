@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for publishing tiles as they are rendered.
+ */
+public class TileRendererTests {
+
+  /**
+   * The width of the image in the tests. Wider than a tile, so that tiles are split by column.
+   */
+  private static final int WIDTH = 20000;
+
+  /**
+   * The height of the image in the tests.
+   */
+  private static final int HEIGHT = 3;
+
+  /**
+   * Collects the tiles published to it.
+   */
+  private static class CollectingSubscriber implements Flow.Subscriber<RenderedTile> {
+
+    /**
+     * The tiles that have been published.
+     */
+    final List<RenderedTile> tiles = new CopyOnWriteArrayList<RenderedTile>();
+
+    /**
+     * Completed once every tile has been published.
+     */
+    final CompletableFuture<Void> completed = new CompletableFuture<Void>();
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+      subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final RenderedTile tile) {
+      tiles.add(tile);
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+      completed.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+      completed.complete(null);
+    }
+  }
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @param smoothColoring Whether smooth colouring should be used.
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration(final boolean smoothColoring) {
+    return TestConfigurations
+        .builder(new Bound(new ComplexNumber(-2, -0.01), new ComplexNumber(0.7, 0.01)), 50)
+        .smoothColoring(smoothColoring).build();
+  }
+
+  /**
+   * Render an image, checking that the published tiles cover every pixel exactly once, and that
+   * the pixels of each tile are in rows from the top.
+   *
+   * @param configuration The configuration of the image.
+   * @return The tile renderer, once rendering has finished.
+   */
+  private TileRenderer renderAndCheckTiles(final ImageConfiguration configuration)
+      throws Exception {
+
+    final TileRenderer renderer = new TileRenderer(configuration, WIDTH, HEIGHT, 3);
+    final CollectingSubscriber subscriber = new CollectingSubscriber();
+
+    renderer.subscribe(subscriber);
+    renderer.render();
+
+    subscriber.completed.get(10, TimeUnit.SECONDS);
+
+    assertTrue(subscriber.tiles.size() > 1);
+
+    final int[][] covered = new int[WIDTH][HEIGHT];
+    final HistogramColorMapper colorMapper =
+        new HistogramColorMapper(50, configuration.getColorTheme());
+
+    for (RenderedTile renderedTile : subscriber.tiles) {
+
+      final Tile tile = renderedTile.getTile();
+
+      for (int row = 0; row < tile.getHeight(); row++) {
+        for (int column = 0; column < tile.getWidth(); column++) {
+
+          final int x = tile.getX() + column;
+          final int y = tile.getY() + tile.getHeight() - 1 - row;
+
+          covered[x][y]++;
+
+          // Inside the set is black whatever the histogram.
+          if (renderer.getIterationValues()[x][y] == -1) {
+            assertEquals(colorMapper.getColor(-1),
+                renderedTile.getPixels()[row * tile.getWidth() + column]);
+          }
+        }
+      }
+    }
+
+    for (int x = 0; x < WIDTH; x++) {
+      assertArrayEquals(new int[] {1, 1, 1}, covered[x]);
+    }
+
+    return renderer;
+  }
+
+  /**
+   * Test that the iteration values are the same as calculating the image directly.
+   */
+  @Test
+  public void testIterationValues() throws Exception {
+
+    final ImageConfiguration configuration = getConfiguration(false);
+    final TileRenderer renderer = renderAndCheckTiles(configuration);
+
+    final int[][] expected = new MandelbrotSetIterationCountGenerator(
+        configuration.getBound().normalise(WIDTH, HEIGHT), 50, 2).calculate(WIDTH, HEIGHT, 1);
+
+    for (int x = 0; x < WIDTH; x++) {
+      assertArrayEquals(expected[x], renderer.getIterationValues()[x]);
+    }
+  }
+
+  /**
+   * Test that both the continuous and integer iteration values are produced with smooth colouring.
+   */
+  @Test
+  public void testSmoothIterationValues() throws Exception {
+
+    final ImageConfiguration configuration = getConfiguration(true);
+    final TileRenderer renderer = renderAndCheckTiles(configuration);
+
+    final int[][] expected = MandelbrotSetIterationCountGenerator.toIterationCounts(
+        renderer.getSmoothIterationValues());
+
+    for (int x = 0; x < WIDTH; x++) {
+      assertArrayEquals(expected[x], renderer.getIterationValues()[x]);
+    }
+  }
+
+  /**
+   * Test that a tile failing on a worker closes the publisher exceptionally and is rethrown,
+   * rather than the image being reported as finished.
+   */
+  @Test
+  public void testWorkerFailure() {
+
+    final TileRenderer renderer = new TileRenderer(getConfiguration(false), WIDTH, HEIGHT, 3);
+    final CollectingSubscriber subscriber = new CollectingSubscriber();
+
+    renderer.subscribe(subscriber);
+    renderer.setProgress(new RenderProgress((long) WIDTH * HEIGHT) {
+      @Override
+      public void record(final long pixels, final long pixelIterations) {
+        throw new IllegalStateException("Test failure");
+      }
+    });
+
+    assertThrows(IllegalStateException.class, renderer::render);
+
+    final ExecutionException exception = assertThrows(ExecutionException.class,
+        () -> subscriber.completed.get(10, TimeUnit.SECONDS));
+
+    assertTrue(exception.getCause() instanceof IllegalStateException);
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2021 Kian Cross
+ */
+
+package com.kiancross.mandelbrot;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for rendering zoom animations.
+ */
+public class ZoomAnimationRendererTests {
+
+  /**
+   * The bound of the first frame in the tests (already at a 2:1 aspect ratio).
+   */
+  private static final Bound START =
+      new Bound(new ComplexNumber(-2, -0.5), new ComplexNumber(0, 0.5));
+
+  /**
+   * Get a configuration to use in the tests.
+   *
+   * @return The configuration.
+   */
+  private ImageConfiguration getConfiguration() {
+    return TestConfigurations.builder(START, 100).build();
+  }
+
+  /**
+   * Assert that two bounds are equal, to within rounding error.
+   *
+   * @param expected The expected bound.
+   * @param actual The actual bound.
+   */
+  private void assertBoundEquals(final Bound expected, final Bound actual) {
+    assertEquals(expected.getMinimum().getReal(), actual.getMinimum().getReal(), 1e-12);
+    assertEquals(expected.getMinimum().getImaginary(), actual.getMinimum().getImaginary(), 1e-12);
+    assertEquals(expected.getMaximum().getReal(), actual.getMaximum().getReal(), 1e-12);
+    assertEquals(expected.getMaximum().getImaginary(), actual.getMaximum().getImaginary(), 1e-12);
+  }
+
+  /**
+   * Test that the frames start and end at the requested bounds, and that the width changes
+   * geometrically.
+   */
+  @Test
+  public void testFrameBounds() {
+
+    final Bound end = new Bound(new ComplexNumber(-0.5, -0.125), new ComplexNumber(0, 0.125));
+
+    final ZoomAnimationRenderer renderer = new ZoomAnimationRenderer(getConfiguration(), end, 3,
+        ZoomAnimationRenderer.Easing.LINEAR, 20, 10, 1);
+
+    assertBoundEquals(START, renderer.getFrameBound(0));
+    assertBoundEquals(end, renderer.getFrameBound(2));
+    assertEquals(1, renderer.getFrameBound(1).getRange().getReal(), 1e-12);
+
+    // The point shared by both bounds (0 + 0i is the maximum real of both) stays fixed.
+    assertEquals(0, renderer.getFrameBound(1).getMaximum().getReal(), 1e-12);
+  }
+
+  /**
+   * Test the easing functions start at 0, end at 1 and are monotonic.
+   */
+  @Test
+  public void testEasing() {
+
+    for (ZoomAnimationRenderer.Easing easing : ZoomAnimationRenderer.Easing.values()) {
+
+      assertEquals(0, easing.apply(0), 1e-12);
+      assertEquals(1, easing.apply(1), 1e-12);
+
+      for (double t = 0; t < 1; t += 0.05) {
+        assertTrue(easing.apply(t + 0.05) >= easing.apply(t));
+      }
+    }
+  }
+
+  /**
+   * Test that panning by a whole number of pixels reuses the overlapping pixels, and produces the
+   * same frames as rendering each from scratch.
+   */
+  @Test
+  public void testReuse() throws IOException {
+
+    final int width = 40;
+    final int height = 20;
+    final double step = 2.0 / width;
+
+    // Pan right by 2 pixels per frame over 4 frames.
+    final Bound end = new Bound(new ComplexNumber(-2 + 6 * step, -0.5),
+        new ComplexNumber(6 * step, 0.5));
+
+    final ZoomAnimationRenderer renderer = new ZoomAnimationRenderer(getConfiguration(), end, 4,
+        ZoomAnimationRenderer.Easing.LINEAR, width, height, 1);
+
+    final Path directory = Files.createTempDirectory("mandelbrot");
+    renderer.render(directory);
+
+    assertEquals(3L * (width - 2) * height, renderer.getReusedPixels());
+    assertFramesMatch(renderer, directory, 4, width, height);
+  }
+
+  /**
+   * Test that zooming in by a factor of 2 per frame about a sample reuses the pixels of the
+   * previous frame whose samples line up, which is every other column of every other row, and
+   * produces the same frames as rendering each from scratch.
+   */
+  @Test
+  public void testZoomReuse() throws IOException {
+
+    final int width = 40;
+    final int height = 20;
+
+    // Zoom about -1 + 0i, which is the sample of column 20 and row 10 of every frame.
+    final Bound end = new Bound(new ComplexNumber(-1.25, -0.125), new ComplexNumber(-0.75, 0.125));
+
+    final ZoomAnimationRenderer renderer = new ZoomAnimationRenderer(getConfiguration(), end, 3,
+        ZoomAnimationRenderer.Easing.LINEAR, width, height, 1);
+
+    assertEquals(1, renderer.getFrameBound(1).getRange().getReal(), 1e-12);
+
+    final Path directory = Files.createTempDirectory("mandelbrot");
+    renderer.render(directory);
+
+    assertEquals(2L * (width / 2) * (height / 2), renderer.getReusedPixels());
+    assertFramesMatch(renderer, directory, 3, width, height);
+  }
+
+  /**
+   * Assert that each frame written by a renderer is the same as the frame rendered from scratch.
+   *
+   * @param renderer The renderer that wrote the frames.
+   * @param directory The directory the frames were written to.
+   * @param numberOfFrames The number of frames.
+   * @param width The width of each frame.
+   * @param height The height of each frame.
+   */
+  private void assertFramesMatch(final ZoomAnimationRenderer renderer, final Path directory,
+      final int numberOfFrames, final int width, final int height) throws IOException {
+
+    for (int frame = 0; frame < numberOfFrames; frame++) {
+
+      final ImageConfiguration configuration =
+          TestConfigurations.builder(renderer.getFrameBound(frame), 100).build();
+
+      final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      new PosterRenderer(configuration, width, height, 1).renderInMemory(expected);
+
+      final Path file = directory.resolve(String.format("frame-%05d.png", frame));
+
+      assertArrayEquals(expected.toByteArray(), Files.readAllBytes(file));
+    }
+  }
+
+  /**
+   * Test that the frames are split between threads, and the command writes every frame.
+   */
+  @Test
+  public void testCommand() throws IOException {
+
+    final File state = RenderCommandTests.writeStateFile();
+    final Path directory = Files.createTempDirectory("mandelbrot");
+
+    assertEquals(0, RenderCommandTests.run("--width", "16", "--height", "8", "--threads", "3",
+        "--frames", "5", "--zoom-to", "-1,-0.1,-0.8,0.1", "--easing", "ease-in-out",
+        state.getPath(), directory.toString()));
+
+    for (int frame = 0; frame < 5; frame++) {
+
+      final BufferedImage image =
+          ImageIO.read(directory.resolve(String.format("frame-%05d.png", frame)).toFile());
+
+      assertEquals(16, image.getWidth());
+    }
+
+    assertEquals(2, RenderCommandTests.run("--frames", "5", "--zoom-to", "1,2,3", state.getPath(),
+        directory.toString()));
+
+    assertThrows(IllegalArgumentException.class, () -> {
+      RenderCommand.parseBound("1,1,0,2");
+    });
+  }
+}